@@ -19,6 +19,7 @@ import simpledb.storage.IntField;
 import simpledb.storage.StringField;
 import simpledb.storage.Tuple;
 import simpledb.storage.TupleDesc;
+import simpledb.storage.VarcharField;
 import simpledb.transaction.Transaction;
 import simpledb.transaction.TransactionId;
 
@@ -109,6 +110,8 @@ public class Parser {
                 if (!op2const) { // right op is a nested query
                     LogicalPlan sublp = parseQueryLogicalPlan(tid,
                             (ZQuery) ops.get(1));
+                    // the join rewinds the subquery, restarting any workers
+                    sublp.setWorkers(1);
                     OpIterator pp = sublp.physicalPlan(tid,
                             TableStats.getStatsMap(), explain);
                     lp.addJoin(tab1field, pp, op);
@@ -361,13 +364,14 @@ public class Parser {
                     IntField f = new IntField(new Integer(zc.getValue()));
                     t.setField(i, f);
                 } else if (zc.getType() == ZConstant.STRING) {
-                    if (td.getFieldType(i) != Type.STRING_TYPE) {
+                    if (td.getFieldType(i) == Type.INT_TYPE) {
                         throw new simpledb.ParsingException("Value "
                                 + zc.getValue()
                                 + " is a string, expected an integer.");
                     }
-                    StringField f = new StringField(zc.getValue(),
-                            Type.STRING_LEN);
+                    StringField f = td.getFieldType(i) == Type.VARCHAR_TYPE
+                            ? new VarcharField(zc.getValue(), Type.STRING_LEN)
+                            : new StringField(zc.getValue(), Type.STRING_LEN);
                     t.setField(i, f);
                 } else {
                     throw new simpledb.ParsingException(
@@ -383,6 +387,7 @@ public class Parser {
         } else {
             ZQuery zq = s.getQuery();
             LogicalPlan lp = parseQueryLogicalPlan(tId, zq);
+            lp.setWorkers(1);
             newTups = lp.physicalPlan(tId, TableStats.getStatsMap(), explain);
         }
         Query insertQ = new Query(tId);
@@ -414,6 +419,7 @@ public class Parser {
         if (s.getWhere() != null)
             processExpression(tid, (ZExpression) s.getWhere(), lp);
         lp.addProjectField("null.*", null);
+        lp.setWorkers(1);
 
         OpIterator op = new Delete(tid, lp.physicalPlan(tid,
                 TableStats.getStatsMap(), false));
@@ -151,9 +151,16 @@ public class Catalog {
         return id2Name.getOrDefault(id,"");
     }
     
-    /** Delete all tables from the catalog */
+    /** Delete all tables from the catalog, closing their files */
     public void clear() {
         // some code goes here
+        for (Table table : catalogMap.values()) {
+            try {
+                table.dbfile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
         catalogMap.clear();
     }
     
@@ -183,6 +190,8 @@ public class Catalog {
                         types.add(Type.INT_TYPE);
                     else if (els2[1].trim().equalsIgnoreCase("string"))
                         types.add(Type.STRING_TYPE);
+                    else if (els2[1].trim().equalsIgnoreCase("varchar"))
+                        types.add(Type.VARCHAR_TYPE);
                     else {
                         System.out.println("Unknown type " + els2[1]);
                         System.exit(0);
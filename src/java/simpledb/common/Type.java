@@ -3,9 +3,11 @@ package simpledb.common;
 import simpledb.storage.StringField;
 import simpledb.storage.Field;
 import simpledb.storage.IntField;
+import simpledb.storage.VarcharField;
 
 import java.text.ParseException;
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * Class representing a type in SimpleDB.
@@ -28,6 +30,11 @@ public enum Type implements Serializable {
             }
         }
 
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return new IntField(buf.getInt(offset));
+        }
+
     }, STRING_TYPE() {
         @Override
         public int getLen() {
@@ -46,6 +53,53 @@ public enum Type implements Serializable {
                 throw new ParseException("couldn't parse", 0);
             }
         }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            int strLen = buf.getInt(offset);
+            byte[] bs = new byte[strLen];
+            for (int i = 0; i < strLen; i++) {
+                bs[i] = buf.get(offset + 4 + i);
+            }
+            return new StringField(new String(bs), STRING_LEN);
+        }
+    }, VARCHAR_TYPE() {
+        /** The most a value can take: a two-byte length and STRING_LEN bytes. */
+        @Override
+        public int getLen() {
+            return STRING_LEN+2;
+        }
+
+        @Override
+        public int getLen(ByteBuffer buf, int offset) {
+            return 2 + (buf.getShort(offset) & 0xFFFF);
+        }
+
+        @Override
+        public boolean isVariableLength() {
+            return true;
+        }
+
+        @Override
+        public Field parse(DataInputStream dis) throws ParseException {
+            try {
+                byte[] bs = new byte[dis.readUnsignedShort()];
+                dis.readFully(bs);
+                return new VarcharField(new String(bs), STRING_LEN);
+            } catch (IOException e) {
+                throw new ParseException("couldn't parse", 0);
+            }
+        }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            int strLen = buf.getShort(offset) & 0xFFFF;
+            byte[] bs = new byte[strLen];
+            for (int i = 0; i < strLen; i++) {
+                bs[i] = buf.get(offset + 2 + i);
+            }
+            return new VarcharField(new String(bs), STRING_LEN);
+        }
     };
     
     public static final int STRING_LEN = 128;
@@ -55,6 +109,23 @@ public enum Type implements Serializable {
    */
     public abstract int getLen();
 
+  /**
+   * @return the number of bytes the field stored at the absolute index
+   *   offset of buf takes.  For fixed-length types this is getLen().
+   */
+    public int getLen(ByteBuffer buf, int offset) {
+        return getLen();
+    }
+
+  /**
+   * @return whether fields of this type take a varying number of bytes,
+   *   in which case getLen() is only their maximum and tuples with such
+   *   fields are stored in SlottedPages.
+   */
+    public boolean isVariableLength() {
+        return false;
+    }
+
   /**
    * @return a Field object of the same type as this object that has contents
    *   read from the specified DataInputStream.
@@ -64,4 +135,14 @@ public enum Type implements Serializable {
    */
     public abstract Field parse(DataInputStream dis) throws ParseException;
 
+  /**
+   * @return a Field object of the same type as this object whose contents
+   *   are the getLen() bytes of buf starting at the absolute index offset.
+   *   The position of buf is not changed, so buf may be shared, e.g. by
+   *   the iterators of a page.
+   * @param buf The buffer to read from
+   * @param offset The index of the first byte of the field in buf
+   */
+    public abstract Field parse(ByteBuffer buf, int offset);
+
 }
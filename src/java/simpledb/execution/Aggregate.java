@@ -25,6 +25,8 @@ public class Aggregate extends Operator {
     private int gfield;
     private Type gType;
     private Aggregator.Op aop;
+    /** Whether another Aggregate merges this one's results. */
+    private final boolean partial;
     Aggregator aggregator;
     OpIterator oit;
 
@@ -42,11 +44,23 @@ public class Aggregate extends Operator {
      * @param aop    The aggregation operator to use
      */
     public Aggregate(OpIterator child, int afield, int gfield, Aggregator.Op aop) {
+        this(child, afield, gfield, aop, false);
+    }
+
+    /**
+     * Constructor for one worker's part of a parallel aggregate, whose
+     * results another Aggregate merges.  See
+     * {@link IntegerAggregator#IntegerAggregator(int, Type, int, Aggregator.Op, boolean)}.
+     *
+     * @param partial whether another Aggregate merges the results
+     */
+    public Aggregate(OpIterator child, int afield, int gfield, Aggregator.Op aop, boolean partial) {
         // some code goes here
         this.child = child;
         this.afield = afield;
         this.gfield = gfield;
         this.aop = aop;
+        this.partial = partial;
 
         this.gType = child.getTupleDesc().getFieldType(gfield);
     }
@@ -106,7 +120,7 @@ public class Aggregate extends Operator {
         super.open();
         child.open();
         if (child.getTupleDesc().getFieldType(afield) == Type.INT_TYPE) {
-            aggregator = new IntegerAggregator(gfield, gType, afield, aop);
+            aggregator = new IntegerAggregator(gfield, gType, afield, aop, partial);
         } else {
             aggregator = new StringAggregator(gfield,gType, afield, aop);
         }
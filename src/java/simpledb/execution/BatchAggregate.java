@@ -0,0 +1,206 @@
+package simpledb.execution;
+
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.storage.Field;
+import simpledb.storage.IntField;
+import simpledb.storage.TupleBatch;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionAbortedException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static simpledb.execution.Aggregator.NO_GROUPING;
+
+/**
+ * BatchAggregate is the batch form of {@link Aggregate}, computing MIN, MAX,
+ * SUM, AVG or COUNT of one field, optionally grouped by another, with the
+ * same results as IntegerAggregator and StringAggregator.  Each group's
+ * running value and count are kept in int arrays indexed by group, and
+ * without grouping each batch is folded in by one {@link IntKernels} call.
+ */
+public class BatchAggregate implements BatchIterator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BatchIterator child;
+    private final int afield;
+    private final int gfield;
+    private final Aggregator.Op aop;
+    private final TupleDesc td;
+
+    // group number of each group value: Integers for INT groups, else Fields
+    private transient Map<Object, Integer> groups;
+    private transient Field[] keys;
+    // per group: MIN, MAX or SUM so far, and the number of rows
+    private transient int[] value;
+    private transient int[] count;
+    private transient int numGroups;
+    private transient int nextGroup;
+    private transient TupleBatch out;
+
+    /**
+     * @param child  The BatchIterator that is feeding us rows.
+     * @param afield The column over which we are computing an aggregate.
+     * @param gfield The column over which we are grouping the result, or -1 if
+     *               there is no grouping
+     * @param aop    The aggregation operator to use
+     * @throws IllegalArgumentException if afield is not an INT field and aop
+     *         is not COUNT, or aop is not one of MIN, MAX, SUM, AVG, COUNT
+     */
+    public BatchAggregate(BatchIterator child, int afield, int gfield, Aggregator.Op aop) {
+        TupleDesc childTd = child.getTupleDesc();
+        if (childTd.getFieldType(afield) != Type.INT_TYPE && aop != Aggregator.Op.COUNT) {
+            throw new IllegalArgumentException(aop + " of a " + childTd.getFieldType(afield) + " field");
+        }
+        switch (aop) {
+            case MIN:
+            case MAX:
+            case SUM:
+            case AVG:
+            case COUNT:
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported aggregate " + aop);
+        }
+        this.child = child;
+        this.afield = afield;
+        this.gfield = gfield;
+        this.aop = aop;
+        String aggName = aop + " (" + childTd.getFieldName(afield) + ")";
+        if (gfield == NO_GROUPING) {
+            td = new TupleDesc(new Type[] {Type.INT_TYPE}, new String[] {aggName});
+        } else {
+            td = new TupleDesc(new Type[] {childTd.getFieldType(gfield), Type.INT_TYPE},
+                    new String[] {childTd.getFieldName(gfield), aggName});
+        }
+    }
+
+    public TupleDesc getTupleDesc() {
+        return td;
+    }
+
+    public void open() throws DbException, TransactionAbortedException {
+        child.open();
+        groups = new HashMap<>();
+        keys = new Field[16];
+        value = new int[16];
+        count = new int[16];
+        numGroups = 0;
+        TupleBatch batch;
+        while ((batch = child.nextBatch()) != null) {
+            if (gfield == NO_GROUPING) {
+                if (numGroups == 0) {
+                    numGroups = 1;
+                    value[0] = IntKernels.identity(aop);
+                }
+                fold(batch);
+            } else {
+                merge(batch);
+            }
+        }
+        // as Aggregate: the COUNT or SUM of no tuples is 0
+        if (gfield == NO_GROUPING && numGroups == 0
+                && (aop == Aggregator.Op.COUNT || aop == Aggregator.Op.SUM)) {
+            numGroups = 1;
+        }
+        nextGroup = 0;
+        out = new TupleBatch(td);
+    }
+
+    /** Folds the rows of batch into the single group 0. */
+    private void fold(TupleBatch batch) {
+        int n = batch.size();
+        count[0] += n;
+        if (aop != Aggregator.Op.COUNT) {
+            value[0] = IntKernels.fold(aop, value[0], batch.getInts(afield), batch.getSelection(), n);
+        }
+    }
+
+    /** Adds each row of batch to the group of its gfield value. */
+    private void merge(TupleBatch batch) {
+        int[] v = aop == Aggregator.Op.COUNT ? null : batch.getInts(afield);
+        int[] g = batch.getInts(gfield);
+        Field[] gf = batch.getFields(gfield);
+        for (int i = 0; i < batch.size(); i++) {
+            int r = batch.row(i);
+            Object key = g != null ? (Object) g[r] : gf[r];
+            Integer group = groups.get(key);
+            if (group == null) {
+                group = newGroup(g != null ? new IntField(g[r]) : gf[r]);
+                groups.put(key, group);
+            }
+            count[group]++;
+            if (v != null) {
+                switch (aop) {
+                    case MIN:
+                        value[group] = Math.min(value[group], v[r]);
+                        break;
+                    case MAX:
+                        value[group] = Math.max(value[group], v[r]);
+                        break;
+                    default:
+                        value[group] += v[r];
+                        break;
+                }
+            }
+        }
+    }
+
+    private int newGroup(Field key) {
+        if (numGroups == keys.length) {
+            keys = Arrays.copyOf(keys, numGroups * 2);
+            value = Arrays.copyOf(value, numGroups * 2);
+            count = Arrays.copyOf(count, numGroups * 2);
+        }
+        keys[numGroups] = key;
+        value[numGroups] = IntKernels.identity(aop);
+        return numGroups++;
+    }
+
+    /** @return the aggregate of group group */
+    private int result(int group) {
+        switch (aop) {
+            case COUNT:
+                return count[group];
+            case AVG:
+                return value[group] / count[group];
+            default:
+                return value[group];
+        }
+    }
+
+    public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+        if (out == null) {
+            throw new IllegalStateException("iterator is closed");
+        }
+        out.clear();
+        int aggColumn = gfield == NO_GROUPING ? 0 : 1;
+        while (nextGroup < numGroups && !out.isFull()) {
+            int row = out.addRow();
+            if (aggColumn == 1) {
+                if (out.getInts(0) != null) {
+                    out.getInts(0)[row] = ((IntField) keys[nextGroup]).getValue();
+                } else {
+                    out.getFields(0)[row] = keys[nextGroup];
+                }
+            }
+            out.getInts(aggColumn)[row] = result(nextGroup);
+            nextGroup++;
+        }
+        return out.size() == 0 ? null : out;
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        nextGroup = 0;
+    }
+
+    public void close() {
+        child.close();
+        groups = null;
+        keys = null;
+        out = null;
+    }
+}
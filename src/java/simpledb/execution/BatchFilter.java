@@ -0,0 +1,90 @@
+package simpledb.execution;
+
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.storage.Field;
+import simpledb.storage.IntField;
+import simpledb.storage.TupleBatch;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionAbortedException;
+
+/**
+ * BatchFilter is the batch form of {@link Filter}.  It narrows the selection
+ * vector of each batch from its child to the rows that satisfy the
+ * predicate; an INT field compared with an IntField is tested by
+ * {@link IntKernels#select}, other fields a Field at a time.
+ */
+public class BatchFilter implements BatchIterator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Predicate p;
+    private final BatchIterator child;
+    private final boolean intColumn;
+    // the rows that passed, in the batch last returned
+    private transient int[] sel;
+
+    /**
+     * @param p
+     *            The predicate to filter rows with
+     * @param child
+     *            The child operator
+     */
+    public BatchFilter(Predicate p, BatchIterator child) {
+        this.p = p;
+        this.child = child;
+        this.intColumn = child.getTupleDesc().getFieldType(p.getField()) == Type.INT_TYPE
+                && p.getOperand() instanceof IntField;
+    }
+
+    public Predicate getPredicate() {
+        return p;
+    }
+
+    public TupleDesc getTupleDesc() {
+        return child.getTupleDesc();
+    }
+
+    public void open() throws DbException, TransactionAbortedException {
+        child.open();
+    }
+
+    public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+        TupleBatch batch;
+        while ((batch = child.nextBatch()) != null) {
+            if (sel == null || sel.length < batch.capacity()) {
+                sel = new int[batch.capacity()];
+            }
+            int n = intColumn
+                    ? IntKernels.select(batch.getInts(p.getField()), batch.getSelection(), batch.size(),
+                            p.getOp(), ((IntField) p.getOperand()).getValue(), sel)
+                    : select(batch, sel);
+            if (n > 0) {
+                batch.select(sel, n);
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    /** Puts the rows of batch that satisfy p in out, a Field at a time. */
+    private int select(TupleBatch batch, int[] out) {
+        int n = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            int r = batch.row(i);
+            Field f = batch.getField(r, p.getField());
+            if (f.compare(p.getOp(), p.getOperand())) {
+                out[n++] = r;
+            }
+        }
+        return n;
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        child.rewind();
+    }
+
+    public void close() {
+        child.close();
+    }
+}
@@ -0,0 +1,154 @@
+package simpledb.execution;
+
+import simpledb.common.DbException;
+import simpledb.storage.Field;
+import simpledb.storage.TupleBatch;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionAbortedException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * BatchHashEquiJoin is the batch form of {@link HashEquiJoin}.  It copies
+ * all of child1's rows into one growing TupleBatch and hashes their join
+ * values, chaining rows with equal values through an int array, then
+ * streams child2's batches past the table.  Unlike HashEquiJoin it holds
+ * the whole of child1 in memory.
+ */
+public class BatchHashEquiJoin implements BatchIterator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final JoinPredicate pred;
+    private final BatchIterator child1, child2;
+    private final TupleDesc td;
+
+    // child1's rows, and for each join value the last of its rows
+    private transient TupleBatch build;
+    private transient Map<Object, Integer> head;
+    // next[row] is the previous row of build with row's join value, or -1
+    private transient int[] next;
+
+    // the child2 batch being probed, the next of its rows to look up, and
+    // the build row to pair with its row probeRow next, or -1
+    private transient TupleBatch probe;
+    private transient int probeIndex;
+    private transient int probeRow;
+    private transient int chain;
+    private transient TupleBatch out;
+
+    /**
+     * @param p
+     *            The predicate to use to join the children; its operator
+     *            must be EQUALS
+     * @param child1
+     *            Iterator for the left(outer) relation to join
+     * @param child2
+     *            Iterator for the right(inner) relation to join
+     */
+    public BatchHashEquiJoin(JoinPredicate p, BatchIterator child1, BatchIterator child2) {
+        if (p.getOperator() != Predicate.Op.EQUALS) {
+            throw new IllegalArgumentException("hash join on " + p.getOperator());
+        }
+        this.pred = p;
+        this.child1 = child1;
+        this.child2 = child2;
+        this.td = TupleDesc.merge(child1.getTupleDesc(), child2.getTupleDesc());
+    }
+
+    public JoinPredicate getJoinPredicate() {
+        return pred;
+    }
+
+    public TupleDesc getTupleDesc() {
+        return td;
+    }
+
+    public void open() throws DbException, TransactionAbortedException {
+        child1.open();
+        child2.open();
+        build = new TupleBatch(child1.getTupleDesc());
+        TupleBatch batch;
+        while ((batch = child1.nextBatch()) != null) {
+            build.append(batch);
+        }
+        head = new HashMap<>();
+        next = new int[build.getRowCount()];
+        for (int row = 0; row < next.length; row++) {
+            Object key = key(build, row, pred.getField1());
+            Integer previous = head.put(key, row);
+            next[row] = previous == null ? -1 : previous;
+        }
+        out = new TupleBatch(td);
+        probe = null;
+        chain = -1;
+    }
+
+    /** @return the hash key of column c of row row of batch */
+    private static Object key(TupleBatch batch, int row, int c) {
+        int[] ints = batch.getInts(c);
+        return ints != null ? (Object) ints[row] : batch.getFields(c)[row];
+    }
+
+    public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+        if (out == null) {
+            throw new IllegalStateException("iterator is closed");
+        }
+        out.clear();
+        while (!out.isFull()) {
+            if (chain >= 0) {
+                emit(chain, probeRow);
+                chain = next[chain];
+            } else if (probe != null && probeIndex < probe.size()) {
+                probeRow = probe.row(probeIndex++);
+                Integer row = head.get(key(probe, probeRow, pred.getField2()));
+                chain = row == null ? -1 : row;
+            } else {
+                probe = child2.nextBatch();
+                probeIndex = 0;
+                if (probe == null) {
+                    break;
+                }
+            }
+        }
+        return out.size() == 0 ? null : out;
+    }
+
+    /** Adds a row of build row left followed by probe row right to out. */
+    private void emit(int left, int right) {
+        int row = out.addRow();
+        int n1 = build.getTupleDesc().numFields();
+        copy(build, left, out, row, 0, n1);
+        copy(probe, right, out, row, n1, probe.getTupleDesc().numFields());
+    }
+
+    /** Copies the n columns of row from of src to columns at.. of row to of dst. */
+    private static void copy(TupleBatch src, int from, TupleBatch dst, int to, int at, int n) {
+        for (int c = 0; c < n; c++) {
+            int[] ints = src.getInts(c);
+            if (ints != null) {
+                dst.getInts(at + c)[to] = ints[from];
+            } else {
+                Field[] fields = src.getFields(c);
+                dst.getFields(at + c)[to] = fields[from];
+            }
+        }
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        child2.rewind();
+        probe = null;
+        chain = -1;
+    }
+
+    public void close() {
+        child1.close();
+        child2.close();
+        build = null;
+        head = null;
+        next = null;
+        probe = null;
+        out = null;
+    }
+}
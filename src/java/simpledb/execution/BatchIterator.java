@@ -0,0 +1,50 @@
+package simpledb.execution;
+
+import simpledb.common.DbException;
+import simpledb.storage.TupleBatch;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionAbortedException;
+
+import java.io.Serializable;
+
+/**
+ * BatchIterator is the interface of operators that pass rows a
+ * {@link TupleBatch} at a time rather than a Tuple at a time, so that the
+ * cost of a call is spread over up to a batch's worth of rows.
+ * {@link TupleToBatch} and {@link BatchToTuple} connect batch operators to
+ * OpIterators, so a plan can mix the two.  As with OpIterator, none of the
+ * methods but open() work on an iterator that is not open.
+ */
+public interface BatchIterator extends Serializable {
+    /**
+     * Opens the iterator. This must be called before any of the other methods.
+     * @throws DbException when there are problems opening/accessing the database.
+     */
+    void open() throws DbException, TransactionAbortedException;
+
+    /**
+     * Returns the next batch of rows.  The batch belongs to the iterator,
+     * which may refill it on the next call, so the caller must be done with
+     * it, or have copied what it needs, before calling again.  A returned
+     * batch is never empty.
+     *
+     * @return the next batch, or null if there are no more rows
+     */
+    TupleBatch nextBatch() throws DbException, TransactionAbortedException;
+
+    /**
+     * Resets the iterator to the start.
+     * @throws DbException when rewind is unsupported.
+     */
+    void rewind() throws DbException, TransactionAbortedException;
+
+    /**
+     * @return the TupleDesc of the rows of the batches this iterator returns
+     */
+    TupleDesc getTupleDesc();
+
+    /**
+     * Closes the iterator.
+     */
+    void close();
+}
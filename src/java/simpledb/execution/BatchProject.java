@@ -0,0 +1,66 @@
+package simpledb.execution;
+
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.storage.TupleBatch;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionAbortedException;
+
+import java.util.List;
+
+/**
+ * BatchProject is the batch form of {@link Project}.  It copies no values:
+ * each batch it returns is a view of the chosen columns of its child's.
+ */
+public class BatchProject implements BatchIterator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BatchIterator child;
+    private final TupleDesc td;
+    private final int[] outFields;
+    private transient TupleBatch out;
+
+    /**
+     * @param fieldList The ids of the fields child's tupleDesc to project out
+     * @param types     the types of the fields in the final projection
+     * @param child     The child operator
+     */
+    public BatchProject(List<Integer> fieldList, Type[] types, BatchIterator child) {
+        this.child = child;
+        String[] fieldAr = new String[fieldList.size()];
+        outFields = new int[fieldList.size()];
+        for (int i = 0; i < fieldAr.length; i++) {
+            outFields[i] = fieldList.get(i);
+            fieldAr[i] = child.getTupleDesc().getFieldName(outFields[i]);
+        }
+        td = new TupleDesc(types, fieldAr);
+    }
+
+    public TupleDesc getTupleDesc() {
+        return td;
+    }
+
+    public void open() throws DbException, TransactionAbortedException {
+        child.open();
+        out = null;
+    }
+
+    public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+        TupleBatch batch = child.nextBatch();
+        if (batch == null) {
+            return null;
+        }
+        out = batch.project(outFields, td, out);
+        return out;
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        child.rewind();
+    }
+
+    public void close() {
+        child.close();
+        out = null;
+    }
+}
@@ -0,0 +1,147 @@
+package simpledb.execution;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Permissions;
+import simpledb.common.Type;
+import simpledb.storage.*;
+import simpledb.transaction.TransactionAbortedException;
+import simpledb.transaction.TransactionId;
+
+import java.util.Collections;
+
+/**
+ * BatchSeqScan is the batch form of {@link SeqScan}: it reads the tuples of
+ * a table in file order into TupleBatches.  Pages of a {@link HeapFile} are
+ * decoded straight into the batch's columns; other files are read through
+ * their DbFileIterator.
+ */
+public class BatchSeqScan implements BatchIterator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TransactionId tid;
+    private final int tableId;
+    private final String alias;
+    // fields of the table to return, or null for all of them
+    private final int[] columns;
+    private final TupleDesc td;
+
+    private transient TupleBatch batch;
+    private transient boolean open = false;
+    // reading a heap file: the page being read, its number and next slot
+    private transient BufferRing ring;
+    private transient TuplePage page;
+    private transient int pageNo;
+    private transient int slot;
+    // reading any other file
+    private transient DbFileIterator it;
+
+    /**
+     * Creates a scan over the specified table as a part of the specified
+     * transaction.
+     *
+     * @param tableAlias
+     *            the alias of this table; fields are named
+     *            tableAlias.fieldName, as by SeqScan
+     */
+    public BatchSeqScan(TransactionId tid, int tableId, String tableAlias) {
+        this(tid, tableId, tableAlias, null);
+    }
+
+    /**
+     * Creates a scan that returns only some fields of the specified table.
+     *
+     * @param columns
+     *            indexes of the fields to return, in the order they appear
+     *            in the batches this scan returns, or null for all of them
+     */
+    public BatchSeqScan(TransactionId tid, int tableId, String tableAlias, int[] columns) {
+        this.tid = tid;
+        this.tableId = tableId;
+        this.alias = tableAlias;
+        this.columns = columns == null ? null : columns.clone();
+        TupleDesc fileTd = Database.getCatalog().getTupleDesc(tableId);
+        if (columns != null) {
+            fileTd = fileTd.project(columns);
+        }
+        Type[] types = new Type[fileTd.numFields()];
+        String[] names = new String[fileTd.numFields()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = fileTd.getFieldType(i);
+            names[i] = tableAlias + "." + fileTd.getFieldName(i);
+        }
+        this.td = new TupleDesc(types, names);
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public TupleDesc getTupleDesc() {
+        return td;
+    }
+
+    public void open() throws DbException, TransactionAbortedException {
+        if (open) {
+            throw new DbException("double open on one BatchIterator.");
+        }
+        DbFile file = Database.getCatalog().getDatabaseFile(tableId);
+        batch = new TupleBatch(td);
+        if (file instanceof HeapFile) {
+            ring = Database.getBufferPool().newScanRing(((HeapFile) file).numPages());
+            page = null;
+            pageNo = 0;
+            slot = 0;
+        } else {
+            it = file.iterator(tid, Collections.emptyList(), columns);
+            it.setReuseTuples(true);
+            it.open();
+        }
+        open = true;
+    }
+
+    public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+        if (!open) {
+            throw new IllegalStateException("iterator is closed");
+        }
+        batch.clear();
+        if (it != null) {
+            while (!batch.isFull() && it.hasNext()) {
+                batch.addTuple(it.next());
+            }
+        } else {
+            HeapFile file = (HeapFile) Database.getCatalog().getDatabaseFile(tableId);
+            int numPages = file.numPages();
+            while (!batch.isFull() && pageNo < numPages) {
+                if (page == null) {
+                    page = (TuplePage) Database.getBufferPool()
+                            .getPage(tid, new HeapPageId(tableId, pageNo), Permissions.READ_ONLY, ring);
+                    slot = 0;
+                }
+                slot = page.fill(batch, slot, columns);
+                if (slot >= page.getNumSlots()) {
+                    page = null;
+                    pageNo++;
+                }
+            }
+        }
+        return batch.size() == 0 ? null : batch;
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        close();
+        open();
+    }
+
+    public void close() {
+        if (it != null) {
+            it.close();
+            it = null;
+        }
+        page = null;
+        ring = null;
+        batch = null;
+        open = false;
+    }
+}
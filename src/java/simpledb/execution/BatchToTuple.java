@@ -0,0 +1,86 @@
+package simpledb.execution;
+
+import simpledb.common.DbException;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionAbortedException;
+
+/**
+ * BatchToTuple returns the rows of a BatchIterator's batches one Tuple at a
+ * time, so batch operators can feed the rest of a plan, e.g. a Join or the
+ * top of a Query.
+ */
+public class BatchToTuple extends Operator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BatchIterator child;
+    private transient TupleBatch batch;
+    // the next row of batch to return
+    private transient int index;
+    // the Tuple every fetchNext() returns, if reusing one
+    private transient Tuple row = null;
+    private boolean reuse = false;
+
+    public BatchToTuple(BatchIterator child) {
+        this.child = child;
+    }
+
+    /**
+     * Makes the operator return one Tuple, refilled for every row, rather
+     * than a new Tuple per row; for consumers that are done with each tuple
+     * before they ask for the next.  Call before open().
+     */
+    public void setReuseTuples(boolean reuse) {
+        this.reuse = reuse;
+    }
+
+    public TupleDesc getTupleDesc() {
+        return child.getTupleDesc();
+    }
+
+    public void open() throws DbException, TransactionAbortedException {
+        child.open();
+        batch = null;
+        row = reuse ? new Tuple(getTupleDesc()) : null;
+        super.open();
+    }
+
+    protected Tuple fetchNext() throws DbException, TransactionAbortedException {
+        if (batch == null || index == batch.size()) {
+            batch = child.nextBatch();
+            index = 0;
+            if (batch == null) {
+                return null;
+            }
+        }
+        Tuple t = row != null ? row : new Tuple(getTupleDesc());
+        batch.readInto(t, batch.row(index++));
+        return t;
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        child.rewind();
+        batch = null;
+    }
+
+    public void close() {
+        super.close();
+        child.close();
+        batch = null;
+    }
+
+    /**
+     * @return no children: the child is a BatchIterator, which the
+     *         optimizer does not walk into
+     */
+    @Override
+    public OpIterator[] getChildren() {
+        return new OpIterator[0];
+    }
+
+    @Override
+    public void setChildren(OpIterator[] children) {
+    }
+}
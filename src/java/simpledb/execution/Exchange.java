@@ -0,0 +1,224 @@
+package simpledb.execution;
+
+import simpledb.common.DbException;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionAbortedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchange runs several copies of a plan, its workers, each on a thread of
+ * its own, and gathers the tuples they return into one stream, in whatever
+ * order they arrive.  The workers usually divide a table between them by
+ * scanning it through shared {@link simpledb.storage.PageMorsels}, so that
+ * together they return what one copy of the plan would.
+ * <p>
+ * Workers hand their tuples over in chunks through a bounded queue, so a
+ * worker that gets ahead of the consumer waits rather than filling memory.
+ * Workers start when the Exchange is opened and are stopped by close().
+ * Since the workers' tuples are kept by the consumer, they must not reuse
+ * them.
+ */
+public class Exchange extends Operator {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Default number of workers: one per core. */
+    public static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors();
+
+    /** Tuples a worker hands over at a time. */
+    private static final int CHUNK_TUPLES = 256;
+    /** Chunks waiting in the queue per worker before workers wait. */
+    private static final int QUEUE_CHUNKS = 4;
+
+    /** Sent by each worker once it has returned all its tuples. */
+    private static final List<Tuple> DONE = Collections.emptyList();
+
+    /**
+     * Shared by all Exchanges and parallel joins; threads are made as needed
+     * and die off when idle, so workers of one Exchange never wait for those
+     * of another, e.g. on both sides of a join.
+     */
+    static final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "simpledb-exchange");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private OpIterator[] workers;
+
+    private transient BlockingQueue<List<Tuple>> queue;
+    private transient Future<?>[] tasks;
+    // number of workers that have sent DONE
+    private transient int finished;
+    private transient Iterator<Tuple> chunk;
+    // set by close() to stop the workers
+    private transient volatile boolean stopped;
+    // the first exception a worker threw, if any
+    private transient volatile Exception failure;
+
+    /**
+     * @param workers
+     *            the plans to run, which return tuples of the same TupleDesc;
+     *            at least one
+     */
+    public Exchange(OpIterator[] workers) {
+        if (workers.length == 0) {
+            throw new IllegalArgumentException("an exchange needs a worker");
+        }
+        // copied into an OpIterator[], which e.g. a SeqScan[] passed in is not
+        this.workers = Arrays.copyOf(workers, workers.length, OpIterator[].class);
+    }
+
+    /** @return the name of this operator in plans, with its number of workers */
+    public String getName() {
+        return "exchange(" + workers.length + ")";
+    }
+
+    public TupleDesc getTupleDesc() {
+        return workers[0].getTupleDesc();
+    }
+
+    public void open() throws DbException, NoSuchElementException,
+            TransactionAbortedException {
+        super.open();
+        queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS * workers.length + 1);
+        finished = 0;
+        chunk = Collections.emptyIterator();
+        stopped = false;
+        failure = null;
+        tasks = new Future<?>[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            OpIterator worker = workers[i];
+            tasks[i] = executor.submit(() -> run(worker));
+        }
+    }
+
+    /** The body of a worker's thread. */
+    private void run(OpIterator worker) {
+        try {
+            worker.open();
+            List<Tuple> tuples = new ArrayList<>(CHUNK_TUPLES);
+            while (!stopped && worker.hasNext()) {
+                tuples.add(worker.next());
+                if (tuples.size() == CHUNK_TUPLES) {
+                    send(tuples);
+                    tuples = new ArrayList<>(CHUNK_TUPLES);
+                }
+            }
+            if (!tuples.isEmpty()) {
+                send(tuples);
+            }
+        } catch (Exception e) {
+            if (failure == null) {
+                failure = e;
+            }
+        } finally {
+            send(DONE);
+        }
+    }
+
+    /** Puts tuples in the queue, waiting for room unless stopped. */
+    private void send(List<Tuple> tuples) {
+        try {
+            while (!stopped) {
+                if (queue.offer(tuples, 10, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected Tuple fetchNext() throws DbException, TransactionAbortedException {
+        while (!chunk.hasNext()) {
+            if (finished == workers.length) {
+                return null;
+            }
+            List<Tuple> tuples;
+            try {
+                tuples = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DbException("interrupted while waiting for exchange workers");
+            }
+            if (tuples == DONE) {
+                finished++;
+                rethrow(failure);
+            }
+            chunk = tuples.iterator();
+        }
+        return chunk.next();
+    }
+
+    /** Throws e, what a worker threw, if not null. */
+    static void rethrow(Exception e) throws DbException, TransactionAbortedException {
+        if (e instanceof TransactionAbortedException) {
+            throw (TransactionAbortedException) e;
+        }
+        if (e instanceof DbException) {
+            throw (DbException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e != null) {
+            DbException wrapped = new DbException("exchange worker failed: " + e);
+            wrapped.initCause(e);
+            throw wrapped;
+        }
+    }
+
+    /** Stops the workers, waits for them to finish and closes them. */
+    public void close() {
+        super.close();
+        if (tasks != null) {
+            stopped = true;
+            queue.clear();
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    // run() catches what the worker throws
+                }
+            }
+            tasks = null;
+        }
+        for (OpIterator worker : workers) {
+            worker.close();
+        }
+        queue = null;
+        chunk = Collections.emptyIterator();
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        close();
+        open();
+    }
+
+    @Override
+    public OpIterator[] getChildren() {
+        return workers.clone();
+    }
+
+    @Override
+    public void setChildren(OpIterator[] children) {
+        workers = Arrays.copyOf(children, children.length, OpIterator[].class);
+    }
+}
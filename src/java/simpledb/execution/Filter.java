@@ -15,6 +15,8 @@ public class Filter extends Operator {
     private static final long serialVersionUID = 1L;
     private  Predicate p;
     private OpIterator child;
+    // p compiled against the child's TupleDesc
+    private transient PredicateCompiler.TupleMatcher match;
     /**
      * Constructor accepts a predicate to apply and a child operator to read
      * tuples to filter from.
@@ -45,6 +47,7 @@ public class Filter extends Operator {
         // some code goes here
         super.open();
         child.open();
+        match = PredicateCompiler.compile(Collections.singletonList(p), child.getTupleDesc());
 
     }
 
@@ -72,10 +75,13 @@ public class Filter extends Operator {
     protected Tuple fetchNext() throws NoSuchElementException,
             TransactionAbortedException, DbException {
         // some code goes here
-        if (!child.hasNext()) return null;
-        Tuple t = child.next();
-        if (p.filter(t))return t;
-        else return fetchNext();
+        // a loop rather than a call per rejected tuple, which overflowed
+        // the stack on long runs of them
+        while (child.hasNext()) {
+            Tuple t = child.next();
+            if (match.matches(t)) return t;
+        }
+        return null;
     }
 
     @Override
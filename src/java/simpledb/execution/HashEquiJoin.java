@@ -2,26 +2,70 @@ package simpledb.execution;
 
 import simpledb.transaction.TransactionAbortedException;
 import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.storage.Field;
 import simpledb.storage.Tuple;
 import simpledb.storage.TupleDesc;
 
 import java.util.*;
 
 /**
- * The Join operator implements the relational join operation.
+ * The HashEquiJoin operator implements an equality join as a hybrid hash
+ * join.  The tuples of child1 are split into partitions by the hash of their
+ * join field, and those of child2 are looked up in hash tables of the
+ * partitions kept in memory.  Once the tuples of child1 take more than the
+ * memory budget, the largest partition in memory is written to a temporary
+ * file, and so are the later tuples of both children that fall into it.
+ * Each such pair of files is then joined on its own, in the same way, with
+ * the hash function changed so that a partition that still does not fit is
+ * split further.  Each child is read once, and each tuple that spills is
+ * written and read back about once per level of splitting, however big
+ * child1 is.
+ * <p>
+ * When both join fields are INTs, the tuples of child1 held in memory are
+ * found through an {@link IntHashTable} of their join values rather than a
+ * map of Fields.
  */
 public class HashEquiJoin extends Operator {
 
     private static final long serialVersionUID = 1L;
+
+    /** Default memory budget of a join, in bytes: 64 MB. */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    /** Each level splits its input into 2^PARTITION_BITS partitions. */
+    private static final int PARTITION_BITS = 5;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+    /**
+     * Partitions are split this many times at most; past that, as when all
+     * of a partition's tuples have the same join value, it is held in
+     * memory whatever its size.
+     */
+    private static final int MAX_LEVEL = 3;
+    /** Bytes a tuple held in memory takes besides its fields, roughly. */
+    private static final int TUPLE_OVERHEAD = 64;
+
     private final JoinPredicate pred;
     private OpIterator child1, child2;
     private final TupleDesc comboTD;
+    private final long memoryBudget;
+    // 0 for a join of the children, one more for each split of a partition
+    private final int level;
+    // whether both join fields are INTs, looked up in keys rather than map
+    private final boolean intKeys;
     transient private Tuple t1 = null;
     transient private Tuple t2 = null;
 
+    // indexed by partition, the files of the partitions that spilled, or null
+    transient private SpillFile[] buildSpills;
+    transient private SpillFile[] probeSpills;
+    // the partition after the one whose files spillJoin joins
+    transient private int nextSpill;
+    transient private HashEquiJoin spillJoin;
+
     /**
      * Constructor. Accepts to children to join and the predicate to join them
-     * on
+     * on, with the default memory budget
      * 
      * @param p
      *            The predicate to use to join the children
@@ -31,9 +75,35 @@ public class HashEquiJoin extends Operator {
      *            Iterator for the right(inner) relation to join
      */
     public HashEquiJoin(JoinPredicate p, OpIterator child1, OpIterator child2) {
+        this(p, child1, child2, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param p
+     *            The predicate to use to join the children
+     * @param child1
+     *            Iterator for the left(outer) relation to join, which is
+     *            held in memory as far as the budget allows
+     * @param child2
+     *            Iterator for the right(inner) relation to join
+     * @param memoryBudget
+     *            The most bytes the tuples of child1 held in memory may take,
+     *            roughly
+     */
+    public HashEquiJoin(JoinPredicate p, OpIterator child1, OpIterator child2, long memoryBudget) {
+        this(p, child1, child2, memoryBudget, 0);
+    }
+
+    private HashEquiJoin(JoinPredicate p, OpIterator child1, OpIterator child2, long memoryBudget, int level) {
         this.pred = p;
         this.child1 = child1;
         this.child2 = child2;
+        this.memoryBudget = memoryBudget;
+        this.level = level;
+        this.intKeys = child1.getTupleDesc().getFieldType(p.getField1()) == Type.INT_TYPE
+                && child2.getTupleDesc().getFieldType(p.getField2()) == Type.INT_TYPE;
         comboTD = TupleDesc.merge(child1.getTupleDesc(), child2.getTupleDesc());
     }
 
@@ -55,21 +125,124 @@ public class HashEquiJoin extends Operator {
 	return this.child2.getTupleDesc().getFieldName(this.pred.getField2());
     }
     
+    /**
+     * @return the number of partitions of child1 that did not fit in memory
+     *         and were written to disk when the join was opened
+     */
+    public int numSpilledPartitions() {
+        int n = 0;
+        for (int p = 0; buildSpills != null && p < PARTITIONS; p++) {
+            if (buildSpills[p] != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // child1's tuples of the partitions held in memory, by join value
     final Map<Object, List<Tuple>> map = new HashMap<>();
-    public final static int MAP_SIZE = 20000;
 
-    private boolean loadMap() throws DbException, TransactionAbortedException {
-        int cnt = 0;
-        map.clear();
+    // in place of map for INT join fields: the ids of the join values, and
+    // child1's tuples held in memory, chained by join value from the first
+    // with each id; next[r] is the row after r in its chain, or -1
+    transient private IntHashTable keys;
+    transient private Tuple[] rows;
+    transient private int[] first;
+    transient private int[] next;
+    // the next row of the chain being joined with t2, or -1
+    transient private int row = -1;
+
+    /** @return the partition of tuples whose join field is key */
+    private int partition(Field key) {
+        return partition(key.hashCode());
+    }
+
+    /** @return the partition of tuples whose join field's hash code is hash */
+    private int partition(int hash) {
+        // murmur3's finalizer, seeded by the level, so each level splits
+        // by different bits
+        int h = hash ^ (level * 0x9e3779b9);
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h >>> (32 - PARTITION_BITS);
+    }
+
+    /**
+     * Reads all of child1, into map or, for the partitions that do not fit
+     * in memory, into buildSpills.
+     */
+    private void loadMap() throws DbException, TransactionAbortedException {
+        TupleDesc td1 = child1.getTupleDesc();
+        long maxTuples = Math.max(1, memoryBudget / (td1.getSize() + TUPLE_OVERHEAD));
+        @SuppressWarnings("unchecked")
+        List<Tuple>[] parts = new List[PARTITIONS];
+        for (int p = 0; p < PARTITIONS; p++) {
+            parts[p] = new ArrayList<>();
+        }
+        buildSpills = new SpillFile[PARTITIONS];
+        probeSpills = new SpillFile[PARTITIONS];
+        nextSpill = 0;
+        long inMemory = 0;
         while (child1.hasNext()) {
             t1 = child1.next();
-            List<Tuple> list = map.computeIfAbsent(t1.getField(pred.getField1()), k -> new ArrayList<>());
-            list.add(t1);
-            if (cnt++ == MAP_SIZE)
-                return true;
+            int p = intKeys ? partition(t1.getInt(pred.getField1())) : partition(t1.getField(pred.getField1()));
+            if (buildSpills[p] != null) {
+                buildSpills[p].add(t1);
+                continue;
+            }
+            parts[p].add(t1);
+            if (++inMemory > maxTuples && level < MAX_LEVEL) {
+                // spill the largest partition in memory
+                int victim = p;
+                for (int q = 0; q < PARTITIONS; q++) {
+                    if (parts[q] != null && parts[q].size() > parts[victim].size()) {
+                        victim = q;
+                    }
+                }
+                buildSpills[victim] = new SpillFile(td1);
+                probeSpills[victim] = new SpillFile(child2.getTupleDesc());
+                for (Tuple t : parts[victim]) {
+                    buildSpills[victim].add(t);
+                }
+                inMemory -= parts[victim].size();
+                parts[victim] = null;
+            }
         }
-        return cnt > 0;
+        map.clear();
+        if (intKeys) {
+            chainRows(parts, (int) inMemory);
+            return;
+        }
+        for (List<Tuple> part : parts) {
+            if (part != null) {
+                for (Tuple t : part) {
+                    map.computeIfAbsent(t.getField(pred.getField1()), k -> new ArrayList<>()).add(t);
+                }
+            }
+        }
+    }
 
+    /** Fills keys, rows, first and next with the n tuples of parts. */
+    private void chainRows(List<Tuple>[] parts, int n) {
+        keys = new IntHashTable(n);
+        rows = new Tuple[n];
+        first = new int[n];
+        next = new int[n];
+        Arrays.fill(first, -1);
+        int r = 0;
+        for (List<Tuple> part : parts) {
+            if (part != null) {
+                for (Tuple t : part) {
+                    int id = keys.add(t.getInt(pred.getField1()));
+                    rows[r] = t;
+                    next[r] = first[id];
+                    first[id] = r++;
+                }
+            }
+        }
     }
 
     public void open() throws DbException, NoSuchElementException,
@@ -80,6 +253,22 @@ public class HashEquiJoin extends Operator {
         super.open();
     }
 
+    /** Closes the join of the spilled partitions, if any, and deletes their files. */
+    private void deleteSpills() {
+        if (spillJoin != null) {
+            spillJoin.close();
+            spillJoin = null;
+        }
+        for (int p = 0; buildSpills != null && p < PARTITIONS; p++) {
+            if (buildSpills[p] != null) {
+                buildSpills[p].delete();
+                probeSpills[p].delete();
+            }
+        }
+        buildSpills = null;
+        probeSpills = null;
+    }
+
     public void close() {
         super.close();
         child2.close();
@@ -88,15 +277,34 @@ public class HashEquiJoin extends Operator {
         this.t2=null;
         this.listIt=null;
         this.map.clear();
+        clearRows();
+        deleteSpills();
     }
 
     public void rewind() throws DbException, TransactionAbortedException {
+        deleteSpills();
+        listIt = null;
+        clearRows();
         child1.rewind();
         child2.rewind();
+        loadMap();
+    }
+
+    private void clearRows() {
+        keys = null;
+        rows = null;
+        first = null;
+        next = null;
+        row = -1;
     }
 
     transient Iterator<Tuple> listIt = null;
 
+    /** @return whether there is a tuple of child1 left to join with t2 */
+    private boolean hasMatch() {
+        return intKeys ? row >= 0 : listIt != null && listIt.hasNext();
+    }
+
     /**
      * Returns the next tuple generated by the join, or null if there are no
      * more tuples. Logically, this is the next tuple in r1 cross r2 that
@@ -116,7 +324,12 @@ public class HashEquiJoin extends Operator {
      * @see JoinPredicate#filter
      */
     private Tuple processList() {
-        t1 = listIt.next();
+        if (intKeys) {
+            t1 = rows[row];
+            row = next[row];
+        } else {
+            t1 = listIt.next();
+        }
 
         int td1n = t1.getTupleDesc().numFields();
         int td2n = t2.getTupleDesc().numFields();
@@ -124,25 +337,44 @@ public class HashEquiJoin extends Operator {
         // set fields in combined tuple
         Tuple t = new Tuple(comboTD);
         for (int i = 0; i < td1n; i++)
-            t.setField(i, t1.getField(i));
+            t.copyField(i, t1, i);
         for (int i = 0; i < td2n; i++)
-            t.setField(td1n + i, t2.getField(i));
+            t.copyField(td1n + i, t2, i);
         return t;
 
     }
 
     protected Tuple fetchNext() throws TransactionAbortedException, DbException {
-        if (listIt != null && listIt.hasNext()) {
+        if (hasMatch()) {
             return processList();
         }
 
         // loop around child2
         while (child2.hasNext()) {
             t2 = child2.next();
+            if (intKeys) {
+                int key = t2.getInt(pred.getField2());
+                int p = partition(key);
+                if (probeSpills[p] != null) {
+                    probeSpills[p].add(t2);
+                    continue;
+                }
+                int id = keys.get(key);
+                if (id < 0)
+                    continue;
+                row = first[id];
+                return processList();
+            }
+            Field key = t2.getField(pred.getField2());
+            int p = partition(key);
+            if (probeSpills[p] != null) {
+                probeSpills[p].add(t2);
+                continue;
+            }
 
             // if match, create a combined tuple and fill it with the values
             // from both tuples
-            List<Tuple> l = map.get(t2.getField(pred.getField2()));
+            List<Tuple> l = map.get(key);
             if (l == null)
                 continue;
             listIt = l.iterator();
@@ -151,13 +383,33 @@ public class HashEquiJoin extends Operator {
 
         }
 
-        // child2 is done: advance child1
-        child2.rewind();
-        if (loadMap()) {
-            return fetchNext();
+        // child2 is done: join the partitions that spilled, one at a time
+        while (true) {
+            if (spillJoin != null) {
+                if (spillJoin.hasNext()) {
+                    return spillJoin.next();
+                }
+                spillJoin.close();
+                spillJoin = null;
+                buildSpills[nextSpill - 1].delete();
+                probeSpills[nextSpill - 1].delete();
+            }
+            while (nextSpill < PARTITIONS && buildSpills[nextSpill] == null) {
+                nextSpill++;
+            }
+            if (nextSpill == PARTITIONS) {
+                return null;
+            }
+            int p = nextSpill++;
+            if (probeSpills[p].size() > 0) {
+                spillJoin = new HashEquiJoin(pred, buildSpills[p].reader(), probeSpills[p].reader(),
+                        memoryBudget, level + 1);
+                spillJoin.open();
+            } else {
+                buildSpills[p].delete();
+                probeSpills[p].delete();
+            }
         }
-
-        return null;
     }
 
     @Override
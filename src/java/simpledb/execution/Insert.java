@@ -11,6 +11,8 @@ import simpledb.transaction.TransactionAbortedException;
 import simpledb.transaction.TransactionId;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Inserts tuples read from the child operator into the tableId specified in the
@@ -20,6 +22,9 @@ public class Insert extends Operator {
 
     private static final long serialVersionUID = 1L;
 
+    /** Tuples handed to BufferPool.insertTuples at a time. */
+    public static final int BATCH_SIZE = 1024;
+
     private TransactionId transactionId;
     private OpIterator child;
     private int tableId;
@@ -80,19 +85,23 @@ public class Insert extends Operator {
      * @return A 1-field tuple containing the number of inserted records, or
      *         null if called more than once.
      * @see Database#getBufferPool
-     * @see BufferPool#insertTuple
+     * @see BufferPool#insertTuples
      */
     protected Tuple fetchNext() throws TransactionAbortedException, DbException {
         // some code goes here
         if (called) return null;
         int count = 0;
+        List<Tuple> batch = new ArrayList<>(BATCH_SIZE);
         while (child.hasNext()) {
-            Tuple tuple = child.next();
-            try {
-                Database.getBufferPool().insertTuple(transactionId, tableId, tuple);
-                count++;
-            } catch ( IOException e) {
-                throw  new DbException("IOexception");
+            batch.add(child.next());
+            if (batch.size() == BATCH_SIZE || !child.hasNext()) {
+                try {
+                    Database.getBufferPool().insertTuples(transactionId, tableId, batch);
+                } catch ( IOException e) {
+                    throw  new DbException("IOexception");
+                }
+                count += batch.size();
+                batch.clear();
             }
         }
         Tuple res = new Tuple(getTupleDesc());
@@ -0,0 +1,117 @@
+package simpledb.execution;
+
+import java.util.Arrays;
+
+/**
+ * A set of int keys, each given an id: 0 for the first key added, 1 for the
+ * next and so on, so that callers keep what they need per key, e.g. join
+ * rows or aggregate values, in arrays indexed by id rather than in boxed map
+ * entries.  Keys are held in open addressing with linear probing in a
+ * power-of-two array of slots that is at most half full, and are hashed with
+ * a multiplication, so an add or a lookup costs a few int compares and
+ * allocates nothing but when the table grows.
+ */
+public final class IntHashTable {
+
+    private static final int MIN_SLOTS = 16;
+
+    // per slot: the id of the key in it plus 1, or 0 for an empty slot, and
+    // the key, valid only if the slot is not empty
+    private int[] slotIds;
+    private int[] slotKeys;
+    private int shift;
+    // per id: its key
+    private int[] keys;
+    private int size;
+
+    public IntHashTable() {
+        this(MIN_SLOTS / 2);
+    }
+
+    /** @param expected the number of keys to make room for up front */
+    public IntHashTable(int expected) {
+        int slots = Integer.highestOneBit(Math.max(MIN_SLOTS, 2 * expected - 1)) << 1;
+        slotIds = new int[slots];
+        slotKeys = new int[slots];
+        shift = 32 - Integer.numberOfTrailingZeros(slots);
+        keys = new int[slots / 2];
+    }
+
+    /** @return the number of keys added */
+    public int size() {
+        return size;
+    }
+
+    /** @return the slot to start looking for key in */
+    private int slot(int key) {
+        // Fibonacci hashing: the top bits of the product depend on all of key's
+        return (key * 0x9e3779b9) >>> shift;
+    }
+
+    /**
+     * Adds key, if not added yet.
+     *
+     * @return the id of key
+     */
+    public int add(int key) {
+        int mask = slotIds.length - 1;
+        for (int s = slot(key); ; s = (s + 1) & mask) {
+            int id = slotIds[s] - 1;
+            if (id < 0) {
+                break;
+            }
+            if (slotKeys[s] == key) {
+                return id;
+            }
+        }
+        if (size == keys.length) {
+            grow();
+        }
+        int id = size++;
+        keys[id] = key;
+        insert(key, id);
+        return id;
+    }
+
+    /** @return the id of key, or -1 if it was not added */
+    public int get(int key) {
+        int mask = slotIds.length - 1;
+        for (int s = slot(key); ; s = (s + 1) & mask) {
+            int id = slotIds[s] - 1;
+            if (id < 0 || slotKeys[s] == key) {
+                return id;
+            }
+        }
+    }
+
+    /** @return the key whose id is id */
+    public int key(int id) {
+        if (id >= size) {
+            throw new IndexOutOfBoundsException("no key has id " + id);
+        }
+        return keys[id];
+    }
+
+    /** Puts key, known not to be in the table, in the first free slot for it. */
+    private void insert(int key, int id) {
+        int mask = slotIds.length - 1;
+        int s = slot(key);
+        while (slotIds[s] != 0) {
+            s = (s + 1) & mask;
+        }
+        slotIds[s] = id + 1;
+        slotKeys[s] = key;
+    }
+
+    /** Doubles the slots and re-inserts the keys. */
+    private void grow() {
+        int slots = slotIds.length * 2;
+        slotIds = new int[slots];
+        slotKeys = new int[slots];
+        shift--;
+        keys = Arrays.copyOf(keys, slots / 2);
+        for (int id = 0; id < size; id++) {
+            insert(keys[id], id);
+        }
+    }
+}
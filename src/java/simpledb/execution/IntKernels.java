@@ -0,0 +1,209 @@
+package simpledb.execution;
+
+/**
+ * Loops over int columns, e.g. those of a {@link simpledb.storage.TupleBatch},
+ * for every {@link Predicate.Op} and for the aggregates MIN, MAX, SUM, AVG
+ * and COUNT.
+ * <p>
+ * Each kernel takes the column v, an optional selection vector sel and a
+ * row count n: with sel null it reads v[0] to v[n-1], else v[sel[0]] to
+ * v[sel[n-1]].  The operator is switched on once per call, outside the
+ * loop, and the loops have no branches on the data: selection writes every
+ * row index and advances the output by the comparison's result, so it
+ * costs the same at any selectivity, and the reductions over a dense
+ * column are simple enough for the JIT to compile to SIMD instructions.
+ * Reductions wrap on overflow, as IntegerAggregator's do.
+ */
+public final class IntKernels {
+
+    private IntKernels() {
+    }
+
+    /**
+     * Puts the rows whose value satisfies v op x in out, in order.
+     *
+     * @param out
+     *            room for n row indexes; may be sel itself
+     * @return the number of rows put in out
+     */
+    public static int select(int[] v, int[] sel, int n, Predicate.Op op, int x, int[] out) {
+        return sel == null ? selectDense(v, n, op, x, out) : selectSparse(v, sel, n, op, x, out);
+    }
+
+    private static int selectDense(int[] v, int n, Predicate.Op op, int x, int[] out) {
+        int k = 0;
+        switch (op) {
+            case EQUALS:
+            case LIKE:
+                for (int i = 0; i < n; i++) {
+                    out[k] = i;
+                    k += v[i] == x ? 1 : 0;
+                }
+                break;
+            case NOT_EQUALS:
+                for (int i = 0; i < n; i++) {
+                    out[k] = i;
+                    k += v[i] != x ? 1 : 0;
+                }
+                break;
+            case GREATER_THAN:
+                for (int i = 0; i < n; i++) {
+                    out[k] = i;
+                    k += v[i] > x ? 1 : 0;
+                }
+                break;
+            case GREATER_THAN_OR_EQ:
+                for (int i = 0; i < n; i++) {
+                    out[k] = i;
+                    k += v[i] >= x ? 1 : 0;
+                }
+                break;
+            case LESS_THAN:
+                for (int i = 0; i < n; i++) {
+                    out[k] = i;
+                    k += v[i] < x ? 1 : 0;
+                }
+                break;
+            case LESS_THAN_OR_EQ:
+                for (int i = 0; i < n; i++) {
+                    out[k] = i;
+                    k += v[i] <= x ? 1 : 0;
+                }
+                break;
+        }
+        return k;
+    }
+
+    private static int selectSparse(int[] v, int[] sel, int n, Predicate.Op op, int x, int[] out) {
+        int k = 0;
+        switch (op) {
+            case EQUALS:
+            case LIKE:
+                for (int i = 0; i < n; i++) {
+                    int r = sel[i];
+                    out[k] = r;
+                    k += v[r] == x ? 1 : 0;
+                }
+                break;
+            case NOT_EQUALS:
+                for (int i = 0; i < n; i++) {
+                    int r = sel[i];
+                    out[k] = r;
+                    k += v[r] != x ? 1 : 0;
+                }
+                break;
+            case GREATER_THAN:
+                for (int i = 0; i < n; i++) {
+                    int r = sel[i];
+                    out[k] = r;
+                    k += v[r] > x ? 1 : 0;
+                }
+                break;
+            case GREATER_THAN_OR_EQ:
+                for (int i = 0; i < n; i++) {
+                    int r = sel[i];
+                    out[k] = r;
+                    k += v[r] >= x ? 1 : 0;
+                }
+                break;
+            case LESS_THAN:
+                for (int i = 0; i < n; i++) {
+                    int r = sel[i];
+                    out[k] = r;
+                    k += v[r] < x ? 1 : 0;
+                }
+                break;
+            case LESS_THAN_OR_EQ:
+                for (int i = 0; i < n; i++) {
+                    int r = sel[i];
+                    out[k] = r;
+                    k += v[r] <= x ? 1 : 0;
+                }
+                break;
+        }
+        return k;
+    }
+
+    /** @return the sum of the rows' values, wrapping on overflow */
+    public static int sum(int[] v, int[] sel, int n) {
+        int s = 0;
+        if (sel == null) {
+            for (int i = 0; i < n; i++) {
+                s += v[i];
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                s += v[sel[i]];
+            }
+        }
+        return s;
+    }
+
+    /** @return the least of the rows' values, or Integer.MAX_VALUE if n is 0 */
+    public static int min(int[] v, int[] sel, int n) {
+        int m = Integer.MAX_VALUE;
+        if (sel == null) {
+            for (int i = 0; i < n; i++) {
+                m = Math.min(m, v[i]);
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                m = Math.min(m, v[sel[i]]);
+            }
+        }
+        return m;
+    }
+
+    /** @return the greatest of the rows' values, or Integer.MIN_VALUE if n is 0 */
+    public static int max(int[] v, int[] sel, int n) {
+        int m = Integer.MIN_VALUE;
+        if (sel == null) {
+            for (int i = 0; i < n; i++) {
+                m = Math.max(m, v[i]);
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                m = Math.max(m, v[sel[i]]);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * @return the starting value of a running MIN, MAX or SUM, which folding
+     *         in no rows leaves as it is
+     */
+    public static int identity(Aggregator.Op op) {
+        switch (op) {
+            case MIN:
+                return Integer.MAX_VALUE;
+            case MAX:
+                return Integer.MIN_VALUE;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Folds the rows into acc, a running MIN, MAX or SUM, the last also
+     * serving AVG, which divides it by the count at the end.  COUNT needs
+     * no values: it is n.
+     *
+     * @return the new running value
+     */
+    public static int fold(Aggregator.Op op, int acc, int[] v, int[] sel, int n) {
+        switch (op) {
+            case MIN:
+                return Math.min(acc, min(v, sel, n));
+            case MAX:
+                return Math.max(acc, max(v, sel, n));
+            case SUM:
+            case AVG:
+                return acc + sum(v, sel, n);
+            case COUNT:
+                return acc;
+            default:
+                throw new IllegalArgumentException("unsupported aggregate " + op);
+        }
+    }
+}
@@ -4,12 +4,18 @@ import simpledb.common.Type;
 import simpledb.storage.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Knows how to compute some aggregate over a set of IntFields.
+ * <p>
+ * Without grouping, or grouped by an INT field, groups are numbered by an
+ * {@link IntHashTable} of their values and their running values and counts
+ * kept in int arrays indexed by group; other groups are kept by the string
+ * form of their value.
  */
 public class IntegerAggregator implements Aggregator {
 
@@ -21,6 +27,16 @@ public class IntegerAggregator implements Aggregator {
     private int gbfield;
     private Type gbfieldtype;
     private int afield;
+    private Op what;
+    /** Whether this is one worker's part of a parallel aggregate. */
+    private final boolean partial;
+
+    // for INT or no grouping: the groups' ids, with group 0 for all tuples
+    // without grouping, and per group the MIN, MAX or SUM so far and the
+    // number of tuples
+    private IntHashTable groups;
+    private int[] value;
+    private int[] count;
 
     /**
      * Aggregate constructor
@@ -35,13 +51,46 @@ public class IntegerAggregator implements Aggregator {
      *            the 0-based index of the aggregate field in the tuple
      * @param what
      *            the aggregation operator
+     * @throws IllegalArgumentException if what is not MIN, MAX, SUM, AVG or
+     *            COUNT
      */
 
     public IntegerAggregator(int gbfield, Type gbfieldtype, int afield, Op what) {
+        this(gbfield, gbfieldtype, afield, what, false);
+    }
+
+    /**
+     * Aggregate constructor for the workers of a parallel aggregate, whose
+     * results are merged by another aggregate.  Without grouping, a partial
+     * aggregate of no tuples returns no row, where a complete COUNT or SUM
+     * returns 0, so that empty workers do not add rows to the merge.
+     *
+     * @param partial
+     *            whether the results are merged by another aggregate
+     */
+    public IntegerAggregator(int gbfield, Type gbfieldtype, int afield, Op what, boolean partial) {
         // some code goes here
+        switch (what) {
+            case MIN:
+            case MAX:
+            case SUM:
+            case AVG:
+            case COUNT:
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported aggregate " + what);
+        }
         this.gbfield = gbfield;
         this.gbfieldtype = gbfieldtype;
         this.afield = afield;
+        this.what = what;
+        this.partial = partial;
+        if (gbfield == NO_GROUPING || gbfieldtype == Type.INT_TYPE) {
+            groups = new IntHashTable();
+            value = new int[16];
+            count = new int[16];
+            return;
+        }
 
         switch (what) {
             case MIN :{
@@ -157,6 +206,34 @@ public class IntegerAggregator implements Aggregator {
      */
     public void mergeTupleIntoGroup(Tuple tup) {
         // some code goes here
+        if (groups != null) {
+            int group = gbfield == NO_GROUPING ? 0 : groups.add(tup.getInt(gbfield));
+            if (group == value.length) {
+                value = Arrays.copyOf(value, 2 * group);
+                count = Arrays.copyOf(count, 2 * group);
+            }
+            int v = tup.getInt(afield);
+            if (count[group]++ == 0) {
+                value[group] = v;
+                return;
+            }
+            switch (what) {
+                case MIN:
+                    value[group] = Math.min(value[group], v);
+                    break;
+                case MAX:
+                    value[group] = Math.max(value[group], v);
+                    break;
+                case SUM:
+                case AVG:
+                    value[group] += v;
+                    break;
+                default:
+                    // COUNT only needs count
+                    break;
+            }
+            return;
+        }
         String key;
         if(gbfield == NO_GROUPING){
             key = NOGROUPING;
@@ -179,14 +256,22 @@ public class IntegerAggregator implements Aggregator {
         Type[] types;
         TupleDesc td;
         List<Tuple> list = new ArrayList<>();
+        if (groups != null) {
+            return groupsIterator();
+        }
         if(gbfield == NO_GROUPING) {
-            gbHandler.getGbResult().get(NOGROUPING);
+            Integer value = gbHandler.getGbResult().get(NOGROUPING);
             types= new Type[]{Type.INT_TYPE};
             String[] names = new String[]{"aggregateVal"};
             td = new TupleDesc(types, names);
-            Tuple tuple = new Tuple(td);
-            tuple.setField(0, new IntField(gbHandler.getGbResult().get(NOGROUPING)));
-            list.add(tuple);
+            if (value == null && emptyIsZero()) {
+                value = 0;
+            }
+            if (value != null) {
+                Tuple tuple = new Tuple(td);
+                tuple.setField(0, new IntField(value));
+                list.add(tuple);
+            }
         } else {
             types= new Type[]{gbfieldtype, Type.INT_TYPE};
             String[] names = new String[]{"groupVal", "aggregateVal"};
@@ -205,4 +290,48 @@ public class IntegerAggregator implements Aggregator {
         return new TupleIterator(td, list);
     }
 
+    /** @return the tuples of the groups in groups, in the order they were added */
+    private OpIterator groupsIterator() {
+        List<Tuple> list = new ArrayList<>();
+        TupleDesc td;
+        if (gbfield == NO_GROUPING) {
+            td = new TupleDesc(new Type[]{Type.INT_TYPE}, new String[]{"aggregateVal"});
+            if (count[0] > 0 || emptyIsZero()) {
+                Tuple tuple = new Tuple(td);
+                tuple.setField(0, new IntField(count[0] > 0 ? result(0) : 0));
+                list.add(tuple);
+            }
+        } else {
+            td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.INT_TYPE}, new String[]{"groupVal", "aggregateVal"});
+            for (int group = 0; group < groups.size(); group++) {
+                Tuple tuple = new Tuple(td);
+                tuple.setField(0, new IntField(groups.key(group)));
+                tuple.setField(1, new IntField(result(group)));
+                list.add(tuple);
+            }
+        }
+        return new TupleIterator(td, list);
+    }
+
+    /**
+     * @return whether the aggregate of no tuples is 0 rather than no row:
+     *         for a COUNT, or a SUM such as the merge of partial COUNTs,
+     *         unless this is a partial aggregate
+     */
+    private boolean emptyIsZero() {
+        return !partial && (what == Op.COUNT || what == Op.SUM);
+    }
+
+    /** @return the aggregate of group group */
+    private int result(int group) {
+        switch (what) {
+            case COUNT:
+                return count[group];
+            case AVG:
+                return value[group] / count[group];
+            default:
+                return value[group];
+        }
+    }
+
 }
@@ -132,11 +132,11 @@ public class Join extends Operator {
             Tuple res =  new Tuple(td);
             int i = 0;
             for(; i < left.getTupleDesc().numFields();i++){
-                res.setField(i, left.getField(i));
+                res.copyField(i, left, i);
             }
             int j = 0;
             for(; j < right.getTupleDesc().numFields();j++){
-                res.setField(i+j, right.getField(j));
+                res.copyField(i+j, right, j);
             }
             return res;
         } else {
@@ -0,0 +1,379 @@
+package simpledb.execution;
+
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionAbortedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A hash equi-join whose build and probe are split between worker threads.
+ * Each side is given as several inputs, e.g. scans sharing the pages of a
+ * table from {@link SeqScan#split}, one per worker.
+ * <p>
+ * open() builds the hash table in two parallel passes.  In the first, each
+ * worker reads its build input and partitions the tuples by the top bits of
+ * the hash of their join key into lists of its own, so the workers never
+ * touch the same list.  In the second, the workers take partitions in turn
+ * and chain each partition's tuples from all the workers' lists into a
+ * table of its own.  The probe workers then read their probe inputs, under
+ * an {@link Exchange} that gathers the joined tuples, and look each tuple
+ * up in the table of its partition, which by then is only read.
+ * <p>
+ * As with {@link HashEquiJoin}, the tuples returned are those of the first
+ * (build) side followed by those of the second (probe) side, in no
+ * particular order, and the whole build side is held in memory.
+ */
+public class ParallelHashEquiJoin extends Operator {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The build side is split into 2^PARTITION_BITS partitions. */
+    private static final int PARTITION_BITS = 6;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+
+    private final JoinPredicate pred;
+    private OpIterator[] build;
+    private OpIterator[] probe;
+    private final TupleDesc comboTD;
+    // whether both join fields are INTs, compared without Fields
+    private final boolean intKeys;
+
+    // indexed by partition, null for empty ones; read only while probing
+    private transient Table[] tables;
+    private transient Exchange probes;
+
+    /**
+     * The build tuples of one partition, chained by the hash of their key.
+     */
+    private static final class Table {
+        final Tuple[] rows;
+        final int[] hashes;
+        // next[r] is the row after r in its chain, or -1
+        final int[] next;
+        // head[h & mask] is the first row of the chain of hash h, or -1
+        final int[] head;
+        final int mask;
+
+        Table(List<List<Tuple>> lists, List<int[]> hashLists) {
+            int n = 0;
+            for (List<Tuple> list : lists) {
+                n += list.size();
+            }
+            rows = new Tuple[n];
+            hashes = new int[n];
+            next = new int[n];
+            int size = Integer.highestOneBit(Math.max(2, 2 * n - 1)) << 1;
+            head = new int[size];
+            Arrays.fill(head, -1);
+            mask = size - 1;
+            int r = 0;
+            for (int i = 0; i < lists.size(); i++) {
+                List<Tuple> list = lists.get(i);
+                int[] h = hashLists.get(i);
+                for (int k = 0; k < list.size(); k++, r++) {
+                    rows[r] = list.get(k);
+                    hashes[r] = h[k];
+                    int b = h[k] & mask;
+                    next[r] = head[b];
+                    head[b] = r;
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param p
+     *            the predicate to join on; its operator must be EQUALS
+     * @param build
+     *            the inputs of the first relation, whose tuples are hashed,
+     *            one per build worker
+     * @param probe
+     *            the inputs of the second relation, one per probe worker
+     */
+    public ParallelHashEquiJoin(JoinPredicate p, OpIterator[] build, OpIterator[] probe) {
+        if (p.getOperator() != Predicate.Op.EQUALS) {
+            throw new IllegalArgumentException("a hash join needs an equality predicate");
+        }
+        if (build.length == 0 || probe.length == 0) {
+            throw new IllegalArgumentException("a join needs an input on each side");
+        }
+        this.pred = p;
+        this.build = Arrays.copyOf(build, build.length, OpIterator[].class);
+        this.probe = Arrays.copyOf(probe, probe.length, OpIterator[].class);
+        TupleDesc td1 = build[0].getTupleDesc(), td2 = probe[0].getTupleDesc();
+        this.comboTD = TupleDesc.merge(td1, td2);
+        this.intKeys = td1.getFieldType(p.getField1()) == Type.INT_TYPE
+                && td2.getFieldType(p.getField2()) == Type.INT_TYPE;
+    }
+
+    public JoinPredicate getJoinPredicate() {
+        return pred;
+    }
+
+    public String getJoinField1Name() {
+        return build[0].getTupleDesc().getFieldName(pred.getField1());
+    }
+
+    public String getJoinField2Name() {
+        return probe[0].getTupleDesc().getFieldName(pred.getField2());
+    }
+
+    /** @return the number of workers on the build and on the probe side */
+    public int[] getWorkers() {
+        return new int[] {build.length, probe.length};
+    }
+
+    public TupleDesc getTupleDesc() {
+        return comboTD;
+    }
+
+    /** @return the hash of t's join key, field f */
+    private int hash(Tuple t, int f) {
+        int h = intKeys ? t.getInt(f) : t.getField(f).hashCode();
+        // murmur3's finalizer, so both the top and the bottom bits vary
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    public void open() throws DbException, NoSuchElementException,
+            TransactionAbortedException {
+        // pass one: each worker partitions its own input
+        @SuppressWarnings("unchecked")
+        List<Tuple>[][] parts = new List[build.length][PARTITIONS];
+        int[][][] partHashes = new int[build.length][PARTITIONS][];
+        List<Callable<Void>> partitioners = new ArrayList<>();
+        for (int w = 0; w < build.length; w++) {
+            int worker = w;
+            partitioners.add(() -> {
+                partition(build[worker], parts[worker], partHashes[worker]);
+                return null;
+            });
+        }
+        runAll(partitioners);
+
+        // pass two: the workers build the partitions' tables in turn
+        tables = new Table[PARTITIONS];
+        AtomicInteger nextPart = new AtomicInteger();
+        List<Callable<Void>> builders = new ArrayList<>();
+        for (int w = 0; w < build.length; w++) {
+            builders.add(() -> {
+                for (int p = nextPart.getAndIncrement(); p < PARTITIONS; p = nextPart.getAndIncrement()) {
+                    List<List<Tuple>> lists = new ArrayList<>();
+                    List<int[]> hashLists = new ArrayList<>();
+                    for (int w2 = 0; w2 < parts.length; w2++) {
+                        if (!parts[w2][p].isEmpty()) {
+                            lists.add(parts[w2][p]);
+                            hashLists.add(partHashes[w2][p]);
+                        }
+                    }
+                    tables[p] = lists.isEmpty() ? null : new Table(lists, hashLists);
+                }
+                return null;
+            });
+        }
+        runAll(builders);
+
+        OpIterator[] probers = new OpIterator[probe.length];
+        for (int i = 0; i < probe.length; i++) {
+            probers[i] = new Probe(probe[i]);
+        }
+        probes = new Exchange(probers);
+        probes.open();
+        super.open();
+    }
+
+    /**
+     * Reads all of input into lists, one per partition, and the hashes of
+     * their keys into hashes.
+     */
+    private void partition(OpIterator input, List<Tuple>[] lists, int[][] hashes)
+            throws DbException, TransactionAbortedException {
+        for (int p = 0; p < PARTITIONS; p++) {
+            lists[p] = new ArrayList<>();
+            hashes[p] = new int[16];
+        }
+        input.open();
+        int f = pred.getField1();
+        while (input.hasNext()) {
+            Tuple t = input.next();
+            int h = hash(t, f);
+            int p = h >>> (32 - PARTITION_BITS);
+            int n = lists[p].size();
+            if (n == hashes[p].length) {
+                hashes[p] = Arrays.copyOf(hashes[p], 2 * n);
+            }
+            hashes[p][n] = h;
+            lists[p].add(t);
+        }
+    }
+
+    /**
+     * Runs tasks on the workers' threads and waits for all of them, then
+     * throws what the first to fail threw, if any did.
+     */
+    private static void runAll(List<Callable<Void>> tasks) throws DbException, TransactionAbortedException {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(Exchange.executor.submit(task));
+        }
+        Exception failure = null;
+        for (Future<Void> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = failure != null ? failure : new DbException("interrupted while joining");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                failure = failure != null ? failure : (Exception) cause;
+            }
+        }
+        Exchange.rethrow(failure);
+    }
+
+    /**
+     * One probe worker: joins the tuples of its probe input with those of
+     * the build side that have the same key.
+     */
+    private final class Probe extends Operator {
+
+        private static final long serialVersionUID = 1L;
+
+        private OpIterator child;
+        private transient Tuple t2;
+        private transient int h2;
+        private transient Table table;
+        // the next row of table's chain to look at, or -1
+        private transient int row = -1;
+
+        Probe(OpIterator child) {
+            this.child = child;
+        }
+
+        public TupleDesc getTupleDesc() {
+            return comboTD;
+        }
+
+        public void open() throws DbException, NoSuchElementException,
+                TransactionAbortedException {
+            child.open();
+            row = -1;
+            super.open();
+        }
+
+        protected Tuple fetchNext() throws DbException, TransactionAbortedException {
+            int f1 = pred.getField1(), f2 = pred.getField2();
+            while (true) {
+                while (row >= 0) {
+                    int r = row;
+                    row = table.next[r];
+                    Tuple t1 = table.rows[r];
+                    if (table.hashes[r] == h2 && (intKeys ? t1.getInt(f1) == t2.getInt(f2)
+                            : t1.getField(f1).equals(t2.getField(f2)))) {
+                        return join(t1, t2);
+                    }
+                }
+                if (!child.hasNext()) {
+                    return null;
+                }
+                t2 = child.next();
+                h2 = hash(t2, f2);
+                table = tables[h2 >>> (32 - PARTITION_BITS)];
+                row = table == null ? -1 : table.head[h2 & table.mask];
+            }
+        }
+
+        private Tuple join(Tuple t1, Tuple t2) {
+            int td1n = t1.getTupleDesc().numFields();
+            int td2n = t2.getTupleDesc().numFields();
+            Tuple t = new Tuple(comboTD);
+            for (int i = 0; i < td1n; i++)
+                t.copyField(i, t1, i);
+            for (int i = 0; i < td2n; i++)
+                t.copyField(td1n + i, t2, i);
+            return t;
+        }
+
+        public void close() {
+            super.close();
+            child.close();
+            t2 = null;
+            table = null;
+        }
+
+        public void rewind() throws DbException, TransactionAbortedException {
+            close();
+            open();
+        }
+
+        @Override
+        public OpIterator[] getChildren() {
+            return new OpIterator[] {child};
+        }
+
+        @Override
+        public void setChildren(OpIterator[] children) {
+            child = children[0];
+        }
+    }
+
+    protected Tuple fetchNext() throws DbException, TransactionAbortedException {
+        return probes.hasNext() ? probes.next() : null;
+    }
+
+    public void close() {
+        super.close();
+        if (probes != null) {
+            // closes the probe inputs
+            probes.close();
+            probes = null;
+        } else {
+            for (OpIterator input : probe) {
+                input.close();
+            }
+        }
+        for (OpIterator input : build) {
+            input.close();
+        }
+        tables = null;
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        close();
+        open();
+    }
+
+    /**
+     * @return the first input of each side, which stand for the others,
+     *         e.g. to estimate the join's cardinality
+     */
+    @Override
+    public OpIterator[] getChildren() {
+        return new OpIterator[] {build[0], probe[0]};
+    }
+
+    /** Makes children[0] the only build input and children[1] the only probe input. */
+    @Override
+    public void setChildren(OpIterator[] children) {
+        build = new OpIterator[] {children[0]};
+        probe = new OpIterator[] {children[1]};
+    }
+}
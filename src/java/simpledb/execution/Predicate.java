@@ -1,9 +1,13 @@
 package simpledb.execution;
 
+import simpledb.common.Type;
 import simpledb.storage.Field;
+import simpledb.storage.IntField;
 import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 /**
  * Predicate compares tuples to a specified Field value.
@@ -108,9 +112,35 @@ public class Predicate implements Serializable {
      */
     public boolean filter(Tuple t) {
         // some code goes here
+        if (operand instanceof IntField && t.getTupleDesc().getFieldType(field) == Type.INT_TYPE) {
+            return IntField.compare(op, t.getInt(field), ((IntField) operand).getValue());
+        }
         return t.getField(field).compare(op, getOperand());
     }
 
+    /**
+     * Like {@link #filter(Tuple)}, but evaluated against the serialized form
+     * of a tuple, e.g. a slot of a HeapPage, so that tuples that fail need
+     * never be decoded.  INT fields are compared straight from the bytes;
+     * other types are decoded one field at a time.
+     *
+     * @param data
+     *            the bytes holding the tuple
+     * @param offset
+     *            the index in data of the tuple's first byte
+     * @param td
+     *            the schema the tuple was serialized with
+     * @return true if the comparison is true, false otherwise.
+     */
+    public boolean filter(ByteBuffer data, int offset, TupleDesc td) {
+        Type type = td.getFieldType(field);
+        int fieldOffset = offset + td.getFieldOffset(field);
+        if (type == Type.INT_TYPE && operand instanceof IntField) {
+            return IntField.compare(op, data.getInt(fieldOffset), ((IntField) operand).getValue());
+        }
+        return type.parse(data, fieldOffset).compare(op, operand);
+    }
+
     /**
      * Returns something useful, like "f = field_id op = op_string operand =
      * operand_string"
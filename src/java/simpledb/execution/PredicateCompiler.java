@@ -0,0 +1,227 @@
+package simpledb.execution;
+
+import simpledb.common.Type;
+import simpledb.storage.Field;
+import simpledb.storage.IntField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Compiles a conjunction of {@link Predicate}s on tuples of a TupleDesc into
+ * a matcher made for those field types and operators.  Predicate.filter
+ * finds the field's type, switches on the operator and compares Fields on
+ * every call; a compiled matcher has settled all of that once, so testing
+ * an INT field is one read and one comparison, which the JIT inlines into
+ * the caller's loop.
+ * <p>
+ * Matchers are built from lambdas, one per operator and field type, rather
+ * than generated classes, and are cached by the signature of the
+ * conjunction: the fields' types and positions, the operators and the
+ * operands.
+ */
+public final class PredicateCompiler {
+
+    /** A compiled conjunction, tested against Tuples. */
+    public interface TupleMatcher {
+        boolean matches(Tuple t);
+    }
+
+    /**
+     * A compiled conjunction, tested against the serialized form of a
+     * tuple of a fixed-size TupleDesc, e.g. a slot of a HeapPage.
+     */
+    public interface SlotMatcher {
+        /**
+         * @param offset the index in data of the tuple's first byte
+         */
+        boolean matches(ByteBuffer data, int offset);
+    }
+
+    /** Conjunctions to keep compiled before the cache starts over. */
+    private static final int CACHE_SIZE = 1024;
+
+    private static final Map<List<Object>, TupleMatcher> tupleCache = new ConcurrentHashMap<>();
+    private static final Map<List<Object>, SlotMatcher> slotCache = new ConcurrentHashMap<>();
+
+    private static final TupleMatcher ALL_TUPLES = t -> true;
+    private static final SlotMatcher ALL_SLOTS = (data, offset) -> true;
+
+    private PredicateCompiler() {
+    }
+
+    /**
+     * @return the key of preds on td in the caches: for each predicate, its
+     *         field's position, type and offset, its operator, and its
+     *         operand's type and value, compared as values rather than as
+     *         a string, so that no operand can pass for another predicate
+     */
+    private static List<Object> signature(List<Predicate> preds, TupleDesc td) {
+        List<Object> key = new ArrayList<>(6 * preds.size());
+        for (Predicate p : preds) {
+            Field operand = p.getOperand();
+            key.add(p.getField());
+            key.add(td.getFieldType(p.getField()));
+            key.add(td.getFieldOffset(p.getField()));
+            key.add(p.getOp());
+            key.add(operand.getType());
+            key.add(operand);
+        }
+        return key;
+    }
+
+    private static <M> M cached(Map<List<Object>, M> cache, List<Object> key, Supplier<M> build) {
+        M m = cache.get(key);
+        if (m == null) {
+            if (cache.size() >= CACHE_SIZE) {
+                cache.clear();
+            }
+            m = build.get();
+            cache.put(key, m);
+        }
+        return m;
+    }
+
+    /**
+     * @return a matcher of the tuples of td that satisfy all of preds
+     */
+    public static TupleMatcher compile(List<Predicate> preds, TupleDesc td) {
+        if (preds.isEmpty()) {
+            return ALL_TUPLES;
+        }
+        return cached(tupleCache, signature(preds, td), () -> {
+            TupleMatcher[] ms = new TupleMatcher[preds.size()];
+            for (int i = 0; i < ms.length; i++) {
+                ms[i] = compile(preds.get(i), td);
+            }
+            return and(ms);
+        });
+    }
+
+    private static TupleMatcher compile(Predicate p, TupleDesc td) {
+        int f = p.getField();
+        Predicate.Op op = p.getOp();
+        Field operand = p.getOperand();
+        if (td.getFieldType(f) != Type.INT_TYPE || !(operand instanceof IntField)) {
+            return t -> t.getField(f).compare(op, operand);
+        }
+        int x = ((IntField) operand).getValue();
+        switch (op) {
+            case EQUALS:
+            case LIKE:
+                return t -> t.getInt(f) == x;
+            case NOT_EQUALS:
+                return t -> t.getInt(f) != x;
+            case GREATER_THAN:
+                return t -> t.getInt(f) > x;
+            case GREATER_THAN_OR_EQ:
+                return t -> t.getInt(f) >= x;
+            case LESS_THAN:
+                return t -> t.getInt(f) < x;
+            case LESS_THAN_OR_EQ:
+                return t -> t.getInt(f) <= x;
+            default:
+                throw new IllegalArgumentException("unsupported operator " + op);
+        }
+    }
+
+    private static TupleMatcher and(TupleMatcher[] ms) {
+        switch (ms.length) {
+            case 1:
+                return ms[0];
+            case 2: {
+                TupleMatcher a = ms[0], b = ms[1];
+                return t -> a.matches(t) && b.matches(t);
+            }
+            case 3: {
+                TupleMatcher a = ms[0], b = ms[1], c = ms[2];
+                return t -> a.matches(t) && b.matches(t) && c.matches(t);
+            }
+            default:
+                return t -> {
+                    for (TupleMatcher m : ms) {
+                        if (!m.matches(t)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+        }
+    }
+
+    /**
+     * @return a matcher of the serialized tuples of td, which must have
+     *         fields of fixed size, that satisfy all of preds
+     */
+    public static SlotMatcher compileSlot(List<Predicate> preds, TupleDesc td) {
+        if (preds.isEmpty()) {
+            return ALL_SLOTS;
+        }
+        return cached(slotCache, signature(preds, td), () -> {
+            SlotMatcher[] ms = new SlotMatcher[preds.size()];
+            for (int i = 0; i < ms.length; i++) {
+                ms[i] = compileSlot(preds.get(i), td);
+            }
+            return and(ms);
+        });
+    }
+
+    private static SlotMatcher compileSlot(Predicate p, TupleDesc td) {
+        Type type = td.getFieldType(p.getField());
+        int at = td.getFieldOffset(p.getField());
+        Predicate.Op op = p.getOp();
+        Field operand = p.getOperand();
+        if (type != Type.INT_TYPE || !(operand instanceof IntField)) {
+            return (data, offset) -> type.parse(data, offset + at).compare(op, operand);
+        }
+        int x = ((IntField) operand).getValue();
+        switch (op) {
+            case EQUALS:
+            case LIKE:
+                return (data, offset) -> data.getInt(offset + at) == x;
+            case NOT_EQUALS:
+                return (data, offset) -> data.getInt(offset + at) != x;
+            case GREATER_THAN:
+                return (data, offset) -> data.getInt(offset + at) > x;
+            case GREATER_THAN_OR_EQ:
+                return (data, offset) -> data.getInt(offset + at) >= x;
+            case LESS_THAN:
+                return (data, offset) -> data.getInt(offset + at) < x;
+            case LESS_THAN_OR_EQ:
+                return (data, offset) -> data.getInt(offset + at) <= x;
+            default:
+                throw new IllegalArgumentException("unsupported operator " + op);
+        }
+    }
+
+    private static SlotMatcher and(SlotMatcher[] ms) {
+        switch (ms.length) {
+            case 1:
+                return ms[0];
+            case 2: {
+                SlotMatcher a = ms[0], b = ms[1];
+                return (data, offset) -> a.matches(data, offset) && b.matches(data, offset);
+            }
+            case 3: {
+                SlotMatcher a = ms[0], b = ms[1], c = ms[2];
+                return (data, offset) -> a.matches(data, offset) && b.matches(data, offset)
+                        && c.matches(data, offset);
+            }
+            default:
+                return (data, offset) -> {
+                    for (SlotMatcher m : ms) {
+                        if (!m.matches(data, offset)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+        }
+    }
+}
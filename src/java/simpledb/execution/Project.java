@@ -16,7 +16,12 @@ public class Project extends Operator {
     private static final long serialVersionUID = 1L;
     private OpIterator child;
     private final TupleDesc td;
-    private final List<Integer> outFieldIds;
+    private final int[] outFields;
+    // true if the projection keeps every field of the child, in order, so
+    // child tuples can be returned as they are
+    private final boolean passThrough;
+    // the Tuple every fetchNext() returns, if reusing one
+    private Tuple row = null;
 
     /**
      * Constructor accepts a child operator to read tuples to apply projection
@@ -34,7 +39,6 @@ public class Project extends Operator {
     public Project(List<Integer> fieldList, Type[] types,
                    OpIterator child) {
         this.child = child;
-        outFieldIds = fieldList;
         String[] fieldAr = new String[fieldList.size()];
         TupleDesc childtd = child.getTupleDesc();
 
@@ -42,6 +46,22 @@ public class Project extends Operator {
             fieldAr[i] = childtd.getFieldName(fieldList.get(i));
         }
         td = new TupleDesc(types, fieldAr);
+        outFields = new int[fieldList.size()];
+        boolean identity = outFields.length == childtd.numFields() && td.equals(childtd);
+        for (int i = 0; i < outFields.length; i++) {
+            outFields[i] = fieldList.get(i);
+            identity &= outFields[i] == i;
+        }
+        passThrough = identity;
+    }
+
+    /**
+     * Makes the projection return one Tuple, refilled for every row, rather
+     * than a new Tuple per row; for consumers that are done with each tuple
+     * before they ask for the next.
+     */
+    public void setReuseTuples(boolean reuse) {
+        row = reuse ? new Tuple(td) : null;
     }
 
     public TupleDesc getTupleDesc() {
@@ -73,10 +93,13 @@ public class Project extends Operator {
             TransactionAbortedException, DbException {
         if (!child.hasNext()) return null;
         Tuple t = child.next();
-        Tuple newTuple = new Tuple(td);
+        if (passThrough) {
+            return t;
+        }
+        Tuple newTuple = row != null ? row : new Tuple(td);
         newTuple.setRecordId(t.getRecordId());
-        for (int i = 0; i < td.numFields(); i++) {
-            newTuple.setField(i, t.getField(outFieldIds.get(i)));
+        for (int i = 0; i < outFields.length; i++) {
+            newTuple.copyField(i, t, outFields[i]);
         }
         return newTuple;
     }
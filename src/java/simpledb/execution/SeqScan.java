@@ -5,7 +5,10 @@ import simpledb.transaction.TransactionAbortedException;
 import simpledb.transaction.TransactionId;
 import simpledb.common.Type;
 import simpledb.common.DbException;
+import simpledb.storage.DbFile;
 import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.PageMorsels;
 import simpledb.storage.Tuple;
 import simpledb.storage.TupleDesc;
 
@@ -26,6 +29,15 @@ public class SeqScan implements OpIterator {
     String alias;
     //Todo 为什么是 transient
     private transient DbFileIterator it;
+    // fields of the table to return, or null for all of them
+    private int[] columns;
+    // tuples must pass all of these
+    private List<Predicate> preds = Collections.emptyList();
+    // the pages to read, if shared with other scans, else null
+    private PageMorsels morsels;
+
+    // whether to ask the file iterator for one reused Tuple
+    private boolean reuse = false;
 
     private TupleDesc myTd;
 
@@ -53,6 +65,116 @@ public class SeqScan implements OpIterator {
         reset(tableid, tableAlias);
     }
 
+    /**
+     * Creates a scan that returns only the tuples of the specified table that
+     * satisfy pred.  The file can then pass over pages that hold no such
+     * tuples, e.g. by the ranges in a {@link simpledb.storage.HeapFile}'s
+     * zone map.
+     *
+     * @param pred
+     *            the predicate, on the fields of the table
+     * @see #SeqScan(TransactionId, int, String)
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, Predicate pred) {
+        this(tid, tableid, tableAlias, Collections.singletonList(pred), null);
+    }
+
+    /**
+     * Creates a scan that returns only some fields of the specified table,
+     * which spares reading the others from files that store fields apart,
+     * such as a {@link simpledb.storage.ColumnFile}.
+     *
+     * @param columns
+     *            indexes of the fields to return, in the order they appear
+     *            in the tuples this scan returns
+     * @see #SeqScan(TransactionId, int, String)
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, int[] columns) {
+        this(tid, tableid, tableAlias, Collections.emptyList(), columns);
+    }
+
+    /**
+     * Creates a scan that returns the tuples of the specified table that
+     * satisfy all of preds, cut down to the fields in columns.  The file
+     * tests the predicates and picks out the fields as it reads each page,
+     * so tuples that fail are never built, nor fields that are not wanted.
+     *
+     * @param preds
+     *            predicates on the fields of the table, possibly none
+     * @param columns
+     *            indexes of the fields to return, in the order they appear
+     *            in the tuples this scan returns, or null for all of them
+     * @see #SeqScan(TransactionId, int, String)
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, List<Predicate> preds, int[] columns) {
+        this.tid = tid;
+        this.tableId = tableid;
+        this.preds = new ArrayList<>(preds);
+        this.columns = columns == null ? null : columns.clone();
+        reset(tableid, tableAlias);
+    }
+
+    /**
+     * Creates a scan like {@link #SeqScan(TransactionId, int, String, List, int[])}
+     * that reads only the pages it claims from morsels, which other scans
+     * of the same table share, e.g. one per worker of an {@link Exchange}.
+     * Between them, the scans return each tuple of the table once.
+     *
+     * @param morsels
+     *            the pages of the table, which must be a HeapFile
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, List<Predicate> preds, int[] columns,
+                   PageMorsels morsels) {
+        this.tid = tid;
+        this.tableId = tableid;
+        this.preds = new ArrayList<>(preds);
+        this.columns = columns == null ? null : columns.clone();
+        this.morsels = morsels;
+        reset(tableid, tableAlias);
+    }
+
+    /**
+     * Splits this scan into n scans that read the table's pages between
+     * them, one morsel at a time, with this scan's predicates and fields;
+     * e.g. for the workers of an {@link Exchange}.
+     *
+     * @return the scans, or null if the table is not a HeapFile
+     */
+    public SeqScan[] split(int n) {
+        DbFile file = Database.getCatalog().getDatabaseFile(tableId);
+        if (!(file instanceof HeapFile)) {
+            return null;
+        }
+        PageMorsels shared = new PageMorsels((HeapFile) file);
+        SeqScan[] scans = new SeqScan[n];
+        for (int i = 0; i < n; i++) {
+            scans[i] = new SeqScan(tid, tableId, alias, preds, columns, shared);
+        }
+        return scans;
+    }
+
+    /**
+     * @return the predicates every tuple this scan returns satisfies, on the
+     *         fields of the table rather than of the scan's TupleDesc
+     */
+    public List<Predicate> getPredicates() {
+        return Collections.unmodifiableList(preds);
+    }
+
+    /**
+     * Makes the scan return one Tuple, refilled by every call to next(),
+     * where the table's file supports it, rather than a new Tuple per row.
+     * Only for plans whose operators are done with each tuple before they
+     * ask for the next, e.g. Filter and Project; not under joins, OrderBy
+     * or Insert, which keep the tuples they are given.  Call before open().
+     *
+     * @return true if the scan will reuse its Tuple
+     */
+    public boolean setReuseTuples(boolean reuse) {
+        this.reuse = reuse;
+        return it.setReuseTuples(reuse);
+    }
+
     /**
      * @return
      *       return the table name of the table the operator scans. This should
@@ -88,9 +210,27 @@ public class SeqScan implements OpIterator {
         this.isOpen = false;
         this.alias = tableAlias;
         this.tableName = Database.getCatalog().getTableName(tableid);
-        this.it = Database.getCatalog().getDatabaseFile(tableid).iterator(tid);
-
+        DbFile file = Database.getCatalog().getDatabaseFile(tableid);
         myTd = Database.getCatalog().getTupleDesc(tableid);
+        if (morsels != null) {
+            if (morsels.getFile() != file) {
+                throw new IllegalArgumentException("morsels of another table");
+            }
+            this.it = morsels.getFile().iterator(tid, preds, columns, morsels);
+            if (columns != null) {
+                myTd = myTd.project(columns);
+            }
+        } else if (preds.isEmpty() && columns == null) {
+            this.it = file.iterator(tid);
+        } else {
+            this.it = file.iterator(tid, preds, columns);
+            if (columns != null) {
+                myTd = myTd.project(columns);
+            }
+        }
+        if (reuse) {
+            it.setReuseTuples(true);
+        }
         String[] newNames = new String[myTd.numFields()];
         Type[] newTypes = new Type[myTd.numFields()];
         for (int i = 0; i < myTd.numFields(); i++) {
@@ -0,0 +1,451 @@
+package simpledb.execution;
+
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.index.BTreeScan;
+import simpledb.storage.Field;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionAbortedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * SortMergeJoin joins two inputs in ascending order of their join fields,
+ * on EQUALS or any of the inequality operators of {@link Predicate.Op}.
+ * An input that is not known to be in that order, see {@link #isSortedOn},
+ * is read into memory and sorted when the join is opened; one that is, e.g.
+ * a {@link BTreeScan} on its key, is read as it is.
+ * <p>
+ * On EQUALS both inputs are merged as they are read.  The tuples of child2
+ * with the join value of child1's current tuple, a run, are kept and paired
+ * with each tuple of child1 with that value, so values repeated on both
+ * sides are joined without reading either input again.  On the other
+ * operators the tuples of child2 that match a tuple of child1 are a prefix
+ * or a suffix of child2 in order, or both for NOT_EQUALS, so child2 is held
+ * in memory with two cursors into it, at the first tuple not less than the
+ * value of child1's tuple and at the first greater, which only move forward
+ * as child1's values grow.
+ * <p>
+ * The inputs held in memory may take up to a memory budget.  If they take
+ * more, the join does not hold them but joins the children by nested loops,
+ * as {@link Join} does.
+ * <p>
+ * Tuples are returned in the order of child1's, sorted unless the join
+ * fell back to nested loops.
+ */
+public class SortMergeJoin extends Operator {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Default memory budget of a join, in bytes, as for a HashEquiJoin. */
+    public static final long DEFAULT_MEMORY_BUDGET = HashEquiJoin.DEFAULT_MEMORY_BUDGET;
+
+    /** Bytes a tuple held in memory takes besides its fields, roughly. */
+    private static final int TUPLE_OVERHEAD = 64;
+
+    private final JoinPredicate pred;
+    private OpIterator child1, child2;
+    private final TupleDesc comboTD;
+    private final long memoryBudget;
+    // whether both join fields are INTs, compared without Fields
+    private final boolean intKeys;
+    private boolean sorted1, sorted2;
+
+    // child1 and, on EQUALS, child2 in order: the children, or their tuples
+    // sorted
+    private transient OpIterator in1, in2;
+    // on EQUALS: the run, and the tuple of in2 after it, or null at the end
+    private transient List<Tuple> run;
+    private transient Tuple next2;
+    // on other operators: child2's tuples in order, and the cursors into them
+    private transient List<Tuple> rights;
+    private transient int lower, upper;
+
+    // bytes of the budget not taken by tuples held in memory yet
+    private transient long budgetLeft;
+    // the nested loops join of the children, if they did not fit in memory
+    private transient Join loop;
+
+    // t1 is joined with matches[pos] to matches[end - 1], then, if from2 is
+    // not -1, with matches[from2] to matches[end2 - 1]
+    private transient Tuple t1;
+    private transient List<Tuple> matches;
+    private transient int pos, end, from2 = -1, end2;
+
+    /**
+     * Constructor, with the default memory budget.
+     *
+     * @param p
+     *            The predicate to use to join the children; its operator
+     *            must not be LIKE
+     * @param child1
+     *            Iterator for the left(outer) relation to join
+     * @param child2
+     *            Iterator for the right(inner) relation to join
+     */
+    public SortMergeJoin(JoinPredicate p, OpIterator child1, OpIterator child2) {
+        this(p, child1, child2, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param p
+     *            The predicate to use to join the children; its operator
+     *            must not be LIKE
+     * @param child1
+     *            Iterator for the left(outer) relation to join
+     * @param child2
+     *            Iterator for the right(inner) relation to join
+     * @param memoryBudget
+     *            The most bytes the tuples held in memory may take, roughly
+     */
+    public SortMergeJoin(JoinPredicate p, OpIterator child1, OpIterator child2, long memoryBudget) {
+        if (p.getOperator() == Predicate.Op.LIKE) {
+            throw new IllegalArgumentException("a merge join cannot join on LIKE");
+        }
+        this.pred = p;
+        this.child1 = child1;
+        this.child2 = child2;
+        this.memoryBudget = memoryBudget;
+        TupleDesc td1 = child1.getTupleDesc(), td2 = child2.getTupleDesc();
+        this.comboTD = TupleDesc.merge(td1, td2);
+        this.intKeys = td1.getFieldType(p.getField1()) == Type.INT_TYPE
+                && td2.getFieldType(p.getField2()) == Type.INT_TYPE;
+        this.sorted1 = isSortedOn(child1, p.getField1());
+        this.sorted2 = isSortedOn(child2, p.getField2());
+    }
+
+    /**
+     * @return whether the tuples of it are known to come in ascending order
+     *         of its field field: those of a BTreeScan on its key or an
+     *         ascending OrderBy, possibly through Filters
+     */
+    public static boolean isSortedOn(OpIterator it, int field) {
+        if (it instanceof BTreeScan) {
+            return ((BTreeScan) it).getKeyField() == field;
+        }
+        if (it instanceof OrderBy) {
+            OrderBy o = (OrderBy) it;
+            return o.isASC() && o.getOrderByField() == field;
+        }
+        if (it instanceof Filter) {
+            return isSortedOn(((Filter) it).getChildren()[0], field);
+        }
+        return false;
+    }
+
+    public JoinPredicate getJoinPredicate() {
+        return pred;
+    }
+
+    public String getJoinField1Name() {
+        return child1.getTupleDesc().getFieldName(pred.getField1());
+    }
+
+    public String getJoinField2Name() {
+        return child2.getTupleDesc().getFieldName(pred.getField2());
+    }
+
+    /**
+     * @return whether child1 and child2 are read in order as they are,
+     *         rather than sorted when the join is opened
+     */
+    public boolean[] getSortedInputs() {
+        return new boolean[] {sorted1, sorted2};
+    }
+
+    /**
+     * @return whether the join, when it was opened, found its inputs too big
+     *         to hold in memory and joins them by nested loops instead
+     */
+    public boolean usesNestedLoops() {
+        return loop != null;
+    }
+
+    /**
+     * @return roughly the bytes card tuples of tupleSize bytes take when a
+     *         merge join holds them in memory, to compare with its budget
+     */
+    public static long estimateMemory(int card, int tupleSize) {
+        return (long) card * (tupleSize + TUPLE_OVERHEAD);
+    }
+
+    public TupleDesc getTupleDesc() {
+        return comboTD;
+    }
+
+    /** @return the order of a's field fa and b's field fb */
+    private int compare(Tuple a, int fa, Tuple b, int fb) {
+        if (intKeys) {
+            return Integer.compare(a.getInt(fa), b.getInt(fb));
+        }
+        Field x = a.getField(fa), y = b.getField(fb);
+        if (x.compare(Predicate.Op.LESS_THAN, y)) {
+            return -1;
+        }
+        return x.compare(Predicate.Op.EQUALS, y) ? 0 : 1;
+    }
+
+    /**
+     * @return the tuples of the open child, taken out of budgetLeft, or null
+     *         if they take more than is left of it
+     */
+    private List<Tuple> load(OpIterator child) throws DbException, TransactionAbortedException {
+        long tupleBytes = estimateMemory(1, child.getTupleDesc().getSize());
+        List<Tuple> tuples = new ArrayList<>();
+        while (child.hasNext()) {
+            budgetLeft -= tupleBytes;
+            if (budgetLeft < 0) {
+                return null;
+            }
+            tuples.add(child.next());
+        }
+        return tuples;
+    }
+
+    /** @return tuples, sorted by field f */
+    private List<Tuple> sort(List<Tuple> tuples, int f) {
+        tuples.sort((a, b) -> compare(a, f, b, f));
+        return tuples;
+    }
+
+    /** @return an open iterator over tuples of child, sorted by field f */
+    private OpIterator sorted(OpIterator child, List<Tuple> tuples, int f)
+            throws DbException, TransactionAbortedException {
+        OpIterator it = new SortedTuples(child.getTupleDesc(), sort(tuples, f));
+        it.open();
+        return it;
+    }
+
+    /**
+     * The sorted tuples of a child.  Unlike a TupleIterator it takes them as
+     * they are, e.g. with the TupleDesc of a scan's file rather than the
+     * scan's aliased one.
+     */
+    private static final class SortedTuples extends Operator {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TupleDesc td;
+        private final List<Tuple> tuples;
+        private int next;
+
+        SortedTuples(TupleDesc td, List<Tuple> tuples) {
+            this.td = td;
+            this.tuples = tuples;
+        }
+
+        public TupleDesc getTupleDesc() {
+            return td;
+        }
+
+        protected Tuple fetchNext() {
+            return next < tuples.size() ? tuples.get(next++) : null;
+        }
+
+        public void rewind() {
+            next = 0;
+        }
+
+        @Override
+        public OpIterator[] getChildren() {
+            return new OpIterator[0];
+        }
+
+        @Override
+        public void setChildren(OpIterator[] children) {
+        }
+    }
+
+    public void open() throws DbException, NoSuchElementException,
+            TransactionAbortedException {
+        child1.open();
+        child2.open();
+        int f1 = pred.getField1(), f2 = pred.getField2();
+        boolean equals = pred.getOperator() == Predicate.Op.EQUALS;
+        // child1 is held unless sorted, child2 unless sorted on EQUALS
+        budgetLeft = memoryBudget;
+        List<Tuple> tuples1 = null, tuples2 = null;
+        boolean fits = true;
+        if (!sorted1) {
+            tuples1 = load(child1);
+            fits = tuples1 != null;
+        }
+        if (fits && !(equals && sorted2)) {
+            tuples2 = load(child2);
+            fits = tuples2 != null;
+        }
+        if (!fits) {
+            child2.close();
+            child1.close();
+            loop = new Join(pred, child1, child2);
+            loop.open();
+            super.open();
+            return;
+        }
+
+        in1 = sorted1 ? child1 : sorted(child1, tuples1, f1);
+        if (equals) {
+            in2 = sorted2 ? child2 : sorted(child2, tuples2, f2);
+            run = new ArrayList<>();
+        } else {
+            rights = sorted2 ? tuples2 : sort(tuples2, f2);
+        }
+        start();
+        super.open();
+    }
+
+    /** Sets up the merge from the start of in1 and in2. */
+    private void start() throws DbException, TransactionAbortedException {
+        if (in2 != null) {
+            run.clear();
+            next2 = in2.hasNext() ? in2.next() : null;
+        }
+        lower = upper = 0;
+        t1 = null;
+        pos = end = 0;
+        from2 = -1;
+    }
+
+    /** Finds the tuples of child2 that t1 joins with. */
+    private void match() throws DbException, TransactionAbortedException {
+        int f1 = pred.getField1(), f2 = pred.getField2();
+        from2 = -1;
+        if (in2 != null) {
+            matches = run;
+            pos = 0;
+            if (!run.isEmpty() && compare(t1, f1, run.get(0), f2) == 0) {
+                end = run.size();
+                return;
+            }
+            run.clear();
+            while (next2 != null && compare(t1, f1, next2, f2) > 0) {
+                next2 = in2.hasNext() ? in2.next() : null;
+            }
+            while (next2 != null && compare(t1, f1, next2, f2) == 0) {
+                run.add(next2);
+                next2 = in2.hasNext() ? in2.next() : null;
+            }
+            end = run.size();
+            return;
+        }
+
+        matches = rights;
+        int n = rights.size();
+        while (lower < n && compare(t1, f1, rights.get(lower), f2) > 0) {
+            lower++;
+        }
+        upper = Math.max(upper, lower);
+        while (upper < n && compare(t1, f1, rights.get(upper), f2) >= 0) {
+            upper++;
+        }
+        switch (pred.getOperator()) {
+            case LESS_THAN:
+                pos = upper;
+                end = n;
+                break;
+            case LESS_THAN_OR_EQ:
+                pos = lower;
+                end = n;
+                break;
+            case GREATER_THAN:
+                pos = 0;
+                end = lower;
+                break;
+            case GREATER_THAN_OR_EQ:
+                pos = 0;
+                end = upper;
+                break;
+            case NOT_EQUALS:
+                pos = 0;
+                end = lower;
+                from2 = upper;
+                end2 = n;
+                break;
+            default:
+                throw new IllegalStateException("merge join on " + pred.getOperator());
+        }
+    }
+
+    /**
+     * Returns the next tuple generated by the join, or null if there are no
+     * more tuples: the concatenation of a tuple of child1 and one of child2
+     * whose join fields satisfy the predicate.
+     */
+    protected Tuple fetchNext() throws DbException, TransactionAbortedException {
+        if (loop != null) {
+            return loop.hasNext() ? loop.next() : null;
+        }
+        while (true) {
+            if (pos < end) {
+                return join(t1, matches.get(pos++));
+            }
+            if (from2 >= 0) {
+                pos = from2;
+                end = end2;
+                from2 = -1;
+                continue;
+            }
+            if (!in1.hasNext()) {
+                return null;
+            }
+            t1 = in1.next();
+            match();
+        }
+    }
+
+    private Tuple join(Tuple t1, Tuple t2) {
+        int td1n = t1.getTupleDesc().numFields();
+        int td2n = t2.getTupleDesc().numFields();
+        Tuple t = new Tuple(comboTD);
+        for (int i = 0; i < td1n; i++)
+            t.copyField(i, t1, i);
+        for (int i = 0; i < td2n; i++)
+            t.copyField(td1n + i, t2, i);
+        return t;
+    }
+
+    public void close() {
+        super.close();
+        if (loop != null) {
+            // closes the children
+            loop.close();
+            loop = null;
+        } else {
+            child2.close();
+            child1.close();
+        }
+        in1 = in2 = null;
+        run = rights = matches = null;
+        next2 = t1 = null;
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        if (loop != null) {
+            loop.rewind();
+            return;
+        }
+        in1.rewind();
+        if (in2 != null) {
+            in2.rewind();
+        }
+        start();
+    }
+
+    @Override
+    public OpIterator[] getChildren() {
+        return new OpIterator[]{this.child1, this.child2};
+    }
+
+    @Override
+    public void setChildren(OpIterator[] children) {
+        this.child1 = children[0];
+        this.child2 = children[1];
+        this.sorted1 = isSortedOn(child1, pred.getField1());
+        this.sorted2 = isSortedOn(child2, pred.getField2());
+    }
+}
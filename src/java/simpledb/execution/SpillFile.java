@@ -0,0 +1,183 @@
+package simpledb.execution;
+
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.storage.Field;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.storage.VarcharField;
+import simpledb.transaction.TransactionAbortedException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.NoSuchElementException;
+
+/**
+ * A temporary file of tuples of one TupleDesc, for operators that spill what
+ * does not fit in memory.  Tuples are added in order and then read back, as
+ * often as needed, through {@link #reader}.  Fields are stored as
+ * {@link Field#serialize} writes those of their column's type.
+ */
+class SpillFile {
+
+    /** Bytes buffered between the file and its writer or readers. */
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final TupleDesc td;
+    private final File file;
+    private DataOutputStream out;
+    private int size;
+
+    /** Creates an empty spill file for tuples of td. */
+    SpillFile(TupleDesc td) throws DbException {
+        this.td = td;
+        try {
+            file = File.createTempFile("simpledb", ".spill");
+            file.deleteOnExit();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_BYTES));
+        } catch (IOException e) {
+            throw failure("could not create spill file", e);
+        }
+    }
+
+    private static DbException failure(String message, Exception e) {
+        DbException wrapped = new DbException(message + ": " + e);
+        wrapped.initCause(e);
+        return wrapped;
+    }
+
+    /**
+     * Appends t, which must not come after a call to reader().  Each field
+     * is written in the format of its column's type, which is what it is
+     * read back as: a StringField in a VARCHAR column is written as a
+     * VARCHAR, a VarcharField in a STRING column as a STRING.
+     */
+    void add(Tuple t) throws DbException {
+        try {
+            for (int i = 0; i < td.numFields(); i++) {
+                Type type = td.getFieldType(i);
+                Field f = t.getField(i);
+                if (f.getType() == type) {
+                    f.serialize(out);
+                } else if (type == Type.VARCHAR_TYPE && f instanceof StringField) {
+                    new VarcharField(((StringField) f).getValue(), Type.STRING_LEN).serialize(out);
+                } else if (type == Type.STRING_TYPE && f instanceof StringField) {
+                    new StringField(((StringField) f).getValue(), Type.STRING_LEN).serialize(out);
+                } else {
+                    throw new DbException("cannot spill a " + f.getType() + " field in " + type + " column " + i);
+                }
+            }
+        } catch (IOException e) {
+            throw failure("could not write spill file " + file, e);
+        }
+        size++;
+    }
+
+    /** @return the number of tuples added */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finishes writing, if not done yet.
+     *
+     * @return an iterator over the tuples added, in the order they were
+     */
+    OpIterator reader() throws DbException {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw failure("could not write spill file " + file, e);
+            }
+            out = null;
+        }
+        return new Reader();
+    }
+
+    /** Deletes the file; readers must be closed first. */
+    void delete() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // the file goes anyway
+            }
+            out = null;
+        }
+        file.delete();
+    }
+
+    private final class Reader extends Operator {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient DataInputStream in;
+        private transient int remaining;
+
+        public TupleDesc getTupleDesc() {
+            return td;
+        }
+
+        public void open() throws DbException, NoSuchElementException,
+                TransactionAbortedException {
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_BYTES));
+            } catch (IOException e) {
+                throw failure("could not read spill file " + file, e);
+            }
+            remaining = size;
+            super.open();
+        }
+
+        protected Tuple fetchNext() throws DbException {
+            if (remaining == 0) {
+                return null;
+            }
+            Tuple t = new Tuple(td);
+            try {
+                for (int i = 0; i < td.numFields(); i++) {
+                    t.setField(i, td.getFieldType(i).parse(in));
+                }
+            } catch (ParseException e) {
+                throw failure("could not read spill file " + file, e);
+            }
+            remaining--;
+            return t;
+        }
+
+        public void close() {
+            super.close();
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // nothing more is read
+                }
+                in = null;
+            }
+        }
+
+        public void rewind() throws DbException, TransactionAbortedException {
+            close();
+            open();
+        }
+
+        @Override
+        public OpIterator[] getChildren() {
+            return new OpIterator[0];
+        }
+
+        @Override
+        public void setChildren(OpIterator[] children) {
+        }
+    }
+}
@@ -94,12 +94,13 @@ public class StringAggregator implements Aggregator {
         List<Tuple> list = new ArrayList<>();
 
         if(gbfield == NO_GROUPING) {
-            gbHandler.getGbResult().get(NOGROUPING);
+            Integer value = gbHandler.getGbResult().get(NOGROUPING);
             types= new Type[]{Type.INT_TYPE};
             String[] names = new String[]{"aggregateVal"};
             td = new TupleDesc(types, names);
             Tuple tuple = new Tuple(td);
-            tuple.setField(0, new IntField(gbHandler.getGbResult().get(NOGROUPING)));
+            // 0 if no tuples were merged
+            tuple.setField(0, new IntField(value == null ? 0 : value));
             list.add(tuple);
         } else {
             types= new Type[]{gbfieldtype, Type.INT_TYPE};
@@ -49,6 +49,27 @@ public class JoinOptimizer {
      */
     public static OpIterator instantiateJoin(LogicalJoinNode lj,
                                              OpIterator plan1, OpIterator plan2) throws ParsingException {
+        return instantiateJoin(lj, plan1, plan2, null, 1);
+    }
+
+    /**
+     * Return best iterator for computing a given logical join, as
+     * {@link #instantiateJoin(LogicalJoinNode, OpIterator, OpIterator)} does,
+     * but one that may split an equi-join of two scans between up to workers
+     * threads, with a {@link ParallelHashEquiJoin}, if
+     * {@link #estimateHashJoinCost} says it pays, and that joins scans the
+     * stats show too big to sort in memory by nested loops rather than a
+     * {@link SortMergeJoin}.
+     *
+     * @param stats
+     *            The table stats, referenced by table names, not alias; the
+     *            join is not split, nor its inputs sized, without them
+     * @param workers
+     *            The most threads the join may use
+     */
+    public static OpIterator instantiateJoin(LogicalJoinNode lj,
+                                             OpIterator plan1, OpIterator plan2,
+                                             Map<String, TableStats> stats, int workers) throws ParsingException {
 
         int t1id = 0, t2id = 0;
         OpIterator j;
@@ -74,17 +95,23 @@ public class JoinOptimizer {
         JoinPredicate p = new JoinPredicate(t1id, lj.p, t2id);
 
         if (lj.p == Predicate.Op.EQUALS) {
-
-            try {
-                // dynamically load HashEquiJoin -- if it doesn't exist, just
-                // fall back on regular join
-                Class<?> c = Class.forName("simpledb.execution.HashEquiJoin");
-                java.lang.reflect.Constructor<?> ct = c.getConstructors()[0];
-                j = (OpIterator) ct
-                        .newInstance(new Object[] { p, plan1, plan2 });
-            } catch (Exception e) {
-                j = new Join(p, plan1, plan2);
+            // both inputs come in order of the join fields: merging them
+            // costs no more than hashing one, and holds only a run in memory
+            if (SortMergeJoin.isSortedOn(plan1, t1id) && SortMergeJoin.isSortedOn(plan2, t2id)) {
+                return new SortMergeJoin(p, plan1, plan2);
+            }
+            int n = parallelHashJoinWorkers(plan1, plan2, stats, workers);
+            SeqScan[] build = n > 1 ? ((SeqScan) plan1).split(n) : null;
+            SeqScan[] probe = n > 1 ? ((SeqScan) plan2).split(n) : null;
+            if (build != null && probe != null) {
+                return new ParallelHashEquiJoin(p, build, probe);
             }
+
+            j = new HashEquiJoin(p, plan1, plan2);
+        } else if (lj.p != Predicate.Op.LIKE && mayFitInMemory(plan1, plan2, stats)) {
+            // see estimateJoinCost; joins by nested loops if its inputs
+            // turn out too big to sort in memory
+            j = new SortMergeJoin(p, plan1, plan2);
         } else {
             j = new Join(p, plan1, plan2);
         }
@@ -93,6 +120,111 @@ public class JoinOptimizer {
 
     }
 
+    /**
+     * @return the number of threads to split a hash join of plan1 and plan2
+     *         between, up to workers, or 1 if it is not worth splitting; only
+     *         joins of two scans whose tables have stats are split, and only
+     *         if the build side, plan1, fits the memory budget of a
+     *         {@link HashEquiJoin}: the parallel build holds all of it in
+     *         memory, where HashEquiJoin spills
+     */
+    private static int parallelHashJoinWorkers(OpIterator plan1, OpIterator plan2,
+                                               Map<String, TableStats> stats, int workers) {
+        if (workers < 2 || stats == null || !(plan1 instanceof SeqScan) || !(plan2 instanceof SeqScan)) {
+            return 1;
+        }
+        int card1 = scanCardinality((SeqScan) plan1, stats);
+        int card2 = scanCardinality((SeqScan) plan2, stats);
+        if (card1 < 0 || card2 < 0
+                || SortMergeJoin.estimateMemory(card1, plan1.getTupleDesc().getSize())
+                > HashEquiJoin.DEFAULT_MEMORY_BUDGET) {
+            return 1;
+        }
+        int best = 1;
+        for (int n = 2; n <= workers; n++) {
+            if (estimateHashJoinCost(card1, card2, n) < estimateHashJoinCost(card1, card2, best)) {
+                best = n;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return false if the inputs that are scans of tables with stats are
+     *         already too big for a {@link SortMergeJoin} to sort in memory
+     */
+    private static boolean mayFitInMemory(OpIterator plan1, OpIterator plan2, Map<String, TableStats> stats) {
+        int[] cards = new int[2];
+        OpIterator[] plans = {plan1, plan2};
+        for (int i = 0; i < 2; i++) {
+            if (stats != null && plans[i] instanceof SeqScan) {
+                cards[i] = Math.max(0, scanCardinality((SeqScan) plans[i], stats));
+            }
+        }
+        return fitsInMemory(cards[0], plan1.getTupleDesc().getSize(), cards[1], plan2.getTupleDesc().getSize());
+    }
+
+    /**
+     * @return whether a {@link SortMergeJoin} can sort inputs of card1 tuples
+     *         of size1 bytes and card2 tuples of size2 bytes in memory
+     */
+    private static boolean fitsInMemory(int card1, int size1, int card2, int size2) {
+        return SortMergeJoin.estimateMemory(card1, size1) + SortMergeJoin.estimateMemory(card2, size2)
+                <= SortMergeJoin.DEFAULT_MEMORY_BUDGET;
+    }
+
+    /** @return the estimated number of tuples scan returns, or -1 without stats for its table */
+    private static int scanCardinality(SeqScan scan, Map<String, TableStats> stats) {
+        TableStats s = stats.get(scan.getTableName());
+        if (s == null) {
+            return -1;
+        }
+        double selectivity = 1.0;
+        for (Predicate p : scan.getPredicates()) {
+            selectivity *= s.estimateSelectivity(p.getField(), p.getOp(), p.getOperand());
+        }
+        return s.estimateTableCardinality(selectivity);
+    }
+
+    /** Cost, in tuples, of starting each worker of a parallel join and merging its output. */
+    static final double PARALLEL_JOIN_WORKER_COST = 20000;
+
+    /**
+     * Estimate the CPU cost of a hash join of inputs of card1 and card2
+     * tuples split between workers threads, leaving out reading the inputs.
+     * Hashing or probing a tuple costs 1, spread evenly over the workers,
+     * and each worker beyond the first costs
+     * {@link #PARALLEL_JOIN_WORKER_COST}, so only joins of large inputs are
+     * worth splitting.
+     *
+     * @param workers
+     *            the number of threads; 1 for {@link simpledb.execution.HashEquiJoin}
+     */
+    public static double estimateHashJoinCost(int card1, int card2, int workers) {
+        return ((double) card1 + card2) / workers + PARALLEL_JOIN_WORKER_COST * (workers - 1);
+    }
+
+    /**
+     * Estimate the CPU cost of a {@link SortMergeJoin} of inputs of card1 and
+     * card2 tuples that returns outCard tuples, leaving out reading the
+     * inputs.  Sorting an input of n tuples not already sorted costs
+     * n log2 n, and merging costs 1 per input and output tuple.
+     *
+     * @param sorted1
+     *            whether the first input is in order of its join field
+     * @param sorted2
+     *            whether the second input is in order of its join field
+     */
+    public static double estimateSortMergeJoinCost(int card1, int card2, boolean sorted1, boolean sorted2,
+                                                   int outCard) {
+        return (sorted1 ? 0 : sortCost(card1)) + (sorted2 ? 0 : sortCost(card2))
+                + (double) card1 + card2 + outCard;
+    }
+
+    private static double sortCost(int card) {
+        return card > 1 ? card * (Math.log(card) / Math.log(2)) : 0;
+    }
+
     /**
      * Estimate the cost of a join.
      * 
@@ -131,10 +263,31 @@ public class JoinOptimizer {
             // a join algorithm that's more complicated than a basic
             // nested-loops join.
 //            return -1.0;
+            if (j.p != Predicate.Op.EQUALS && j.p != Predicate.Op.LIKE
+                    && fitsInMemory(card1, tupleSize(j.t1Alias), card2, tupleSize(j.t2Alias))) {
+                // instantiateJoin merges, sorting both inputs: the plans
+                // joined here are scans and joins, which are never in order
+                // of the join fields, so neither input counts as sorted.
+                // The nested loops below would compare every pair, where a
+                // merge skips the pairs that do not match; inputs too big
+                // to sort in memory are joined by nested loops after all
+                int outCard = estimateTableJoinCardinality(j.p, j.t1Alias, j.t2Alias,
+                        j.f1PureName, j.f2PureName, card1, card2, false, false, null, null);
+                return cost1 + cost2 + estimateSortMergeJoinCost(card1, card2, false, false, outCard);
+            }
             return cost1 + card1 * cost2 + card1 *card2;//联合检索，基数低的放在前面，由第二项可知。
         }
     }
 
+    /**
+     * @return the bytes of a tuple of the table alias, or 0 if the plan has
+     *         no such table; a lower bound for a join with that table
+     */
+    private int tupleSize(String alias) {
+        Integer tableId = alias == null ? null : p.getTableId(alias);
+        return tableId == null ? 0 : Database.getCatalog().getTupleDesc(tableId).getSize();
+    }
+
     /**
      * Estimate the cardinality of a join. The cardinality of a join is the
      * number of tuples produced by the join.
@@ -248,6 +401,10 @@ public class JoinOptimizer {
             Map<String, TableStats> stats,
             Map<String, Double> filterSelectivities, boolean explain)
             throws ParsingException {
+        if (joins.isEmpty()) {
+            // a single-table query; there is nothing to order
+            return joins;
+        }
         PlanCache planCache = new PlanCache();
         CostCard bestCostCard = new CostCard();
         int size = joins.size();
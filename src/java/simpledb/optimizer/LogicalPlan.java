@@ -39,8 +39,12 @@ public class LogicalPlan {
     private boolean oByAsc, hasOrderBy = false;
     private String oByField;
     private String query;
+    private int workers = Exchange.DEFAULT_WORKERS;
 //    private Query owner;
 
+    /** Fewest pages a table needs for its scan to be split between workers. */
+    public static final int PARALLEL_MIN_PAGES = 4 * PageMorsels.DEFAULT_MORSEL_PAGES;
+
     /** Constructor -- generate an empty logical plan */
     public LogicalPlan() {
         joins = new ArrayList<>();
@@ -69,6 +73,20 @@ public class LogicalPlan {
         return query;
     }
 
+    /** Set the most threads the physical plan may scan a table with; 1 keeps the whole
+        plan on the thread that runs it.  Plans that update the tables they read, such as
+        those of INSERT ... SELECT and DELETE, must use 1, since workers would read pages
+        as they are changed.
+
+        @param workers the number of threads, {@link Exchange#DEFAULT_WORKERS} unless set
+    */
+    public void setWorkers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("a plan needs a thread");
+        }
+        this.workers = workers;
+    }
+
     /** Given a table alias, return id of the table object (this id can be supplied to {@link Catalog#getDatabaseFile(int)}).
         Aliases are added as base tables are added via {@link #addScan}.
 
@@ -274,6 +292,119 @@ public class LogicalPlan {
         throw new ParsingException("Unknown predicate " + s);
     }
 
+    /** Find the fields of a table that the plan above its scan uses: those in the select list,
+     *  the join conditions, the aggregate and GROUP BY, or the ORDER BY.  Filters are tested
+     *  by the scan itself, so their fields need not be returned.
+     *  @param table the scan of the table
+     *  @return the indexes of the fields, in the order they have in the table, or null if
+     *   the query needs all of them, e.g. for SELECT *
+     */
+    private int[] referencedColumns(LogicalScanNode table) {
+        List<String> names = new ArrayList<>();
+        for (LogicalSelectListNode si : selectList) {
+            names.add(si.fname);
+        }
+        for (LogicalJoinNode lj : joins) {
+            names.add(lj.f1QuantifiedName);
+            if (!(lj instanceof LogicalSubplanJoinNode)) {
+                names.add(lj.f2QuantifiedName);
+            }
+        }
+        names.add(aggField);
+        names.add(groupByField);
+        names.add(oByField);
+
+        TupleDesc td = Database.getCatalog().getTupleDesc(table.t);
+        boolean[] used = new boolean[td.numFields()];
+        String prefix = table.alias + ".";
+        for (String name : names) {
+            if (name == null) {
+                continue;
+            }
+            if (name.equals("*") || name.equals("null.*") || name.equals(prefix + "*")) {
+                return null;
+            }
+            if (name.startsWith(prefix)) {
+                try {
+                    used[td.fieldNameToIndex(name.substring(prefix.length()))] = true;
+                } catch (NoSuchElementException e) {
+                    // reported when the plan is built
+                }
+            }
+        }
+        List<Integer> columns = new ArrayList<>();
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                columns.add(i);
+            }
+        }
+        if (columns.size() == used.length) {
+            return null;
+        }
+        if (columns.isEmpty()) {
+            // e.g. a table that is only counted; one column gives the row count
+            columns.add(0);
+        }
+        int[] result = new int[columns.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = columns.get(i);
+        }
+        return result;
+    }
+
+    /** Split the scan of a table between workers, each of which reads the pages it claims
+     *  from the table's {@link PageMorsels}, gathered by an {@link Exchange}.
+     *  @return the split scan, or null if it should run on one thread: if the plan may only
+     *   have one, the table is too small to be worth splitting, or it is not a HeapFile
+     */
+    private OpIterator parallelScan(LogicalScanNode table, SeqScan ss) {
+        DbFile file = Database.getCatalog().getDatabaseFile(table.t);
+        if (workers < 2 || !(file instanceof HeapFile)) {
+            return null;
+        }
+        int pages = ((HeapFile) file).numPages();
+        int n = Math.min(workers, pages / PageMorsels.DEFAULT_MORSEL_PAGES);
+        if (pages < PARALLEL_MIN_PAGES || n < 2) {
+            return null;
+        }
+        return new Exchange(ss.split(n));
+    }
+
+    /** Split an aggregate over the tuples an Exchange gathers into one per worker, over
+     *  the worker's share of them, and one that merges the workers' results: MIN, MAX
+     *  and SUM of the partial results, or the SUM of the partial COUNTs.
+     *  @return the merging aggregate, or null if op cannot be split, i.e. AVG, or is not
+     *   over an INT field
+     */
+    private static OpIterator parallelAggregate(Exchange ex, int afield, int gfield, Aggregator.Op op) {
+        if (ex.getTupleDesc().getFieldType(afield) != Type.INT_TYPE) {
+            return null;
+        }
+        Aggregator.Op merge;
+        switch (op) {
+            case MIN:
+            case MAX:
+            case SUM:
+                merge = op;
+                break;
+            case COUNT:
+                merge = Aggregator.Op.SUM;
+                break;
+            default:
+                return null;
+        }
+        OpIterator[] workers = ex.getChildren();
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Aggregate(workers[i], afield, gfield, op, true);
+        }
+        Exchange partials = new Exchange(workers);
+        // the partial results are (aggregate) or (group, aggregate)
+        if (gfield == Aggregator.NO_GROUPING) {
+            return new Aggregate(partials, 0, Aggregator.NO_GROUPING, merge);
+        }
+        return new Aggregate(partials, 1, 0, merge);
+    }
+
     /** Convert this LogicalPlan into a physicalPlan represented by a {@link OpIterator}.  Attempts to
      *   find the optimal plan by using {@link JoinOptimizer#orderJoins} to order the joins in the plan.
      *  @param t The transaction that the returned OpIterator will run as a part of
@@ -292,17 +423,18 @@ public class LogicalPlan {
         Map<String,String> equivMap = new HashMap<>();
         Map<String,Double> filterSelectivities = new HashMap<>();
         Map<String,TableStats> statsMap = new HashMap<>();
+        // the filters on each table, which its scan tests as it reads each page
+        Map<String,List<Predicate>> scanPredicates = new HashMap<>();
 
         while (tableIt.hasNext()) {
             LogicalScanNode table = tableIt.next();
-            SeqScan ss = null;
             try {
-                 ss = new SeqScan(t, Database.getCatalog().getDatabaseFile(table.t).getId(), table.alias);
+                Database.getCatalog().getDatabaseFile(table.t);
             } catch (NoSuchElementException e) {
                 throw new ParsingException("Unknown table " + table.t);
             }
-            
-            subplanMap.put(table.alias,ss);
+
+            scanPredicates.put(table.alias, new ArrayList<>());
             String baseTableName = Database.getCatalog().getTableName(table.t);
             statsMap.put(baseTableName, baseTableStats.get(baseTableName));
             filterSelectivities.put(table.alias, 1.0);
@@ -310,17 +442,20 @@ public class LogicalPlan {
         }
 
         for (LogicalFilterNode lf : filters) {
-            OpIterator subplan = subplanMap.get(lf.tableAlias);
-            if (subplan == null) {
+            List<Predicate> predicates = scanPredicates.get(lf.tableAlias);
+            if (predicates == null) {
                 throw new ParsingException("Unknown table in WHERE clause " + lf.tableAlias);
             }
 
             Field f;
             Type ftyp;
-            TupleDesc td = subplanMap.get(lf.tableAlias).getTupleDesc();
+            // predicates are on the fields of the base table
+            TupleDesc td = Database.getCatalog().getTupleDesc(this.getTableId(lf.tableAlias));
+            int field;
 
-            try {//td.fieldNameToIndex(disambiguateName(lf.fieldPureName))
-                ftyp = td.getFieldType(td.fieldNameToIndex(lf.fieldQuantifiedName));
+            try {
+                field = td.fieldNameToIndex(lf.fieldPureName);
+                ftyp = td.getFieldType(field);
             } catch (NoSuchElementException e) {
                 throw new ParsingException("Unknown field in filter expression " + lf.fieldQuantifiedName);
             }
@@ -329,21 +464,25 @@ public class LogicalPlan {
             else
                 f = new StringField(lf.c, Type.STRING_LEN);
 
-            Predicate p = null;
-            try {
-                p = new Predicate(subplan.getTupleDesc().fieldNameToIndex(lf.fieldQuantifiedName), lf.p, f);
-            } catch (NoSuchElementException e) {
-                throw new ParsingException("Unknown field " + lf.fieldQuantifiedName);
-            }
-            subplanMap.put(lf.tableAlias, new Filter(p, subplan));
+            predicates.add(new Predicate(field, lf.p, f));
 
             TableStats s = statsMap.get(Database.getCatalog().getTableName(this.getTableId(lf.tableAlias)));
 
-            double sel = s.estimateSelectivity(subplan.getTupleDesc().fieldNameToIndex(lf.fieldQuantifiedName), lf.p, f);
+            double sel = s.estimateSelectivity(field, lf.p, f);
             filterSelectivities.put(lf.tableAlias, filterSelectivities.get(lf.tableAlias) * sel);
 
             //s.addSelectivityFactor(estimateFilterSelectivity(lf,statsMap));
         }
+
+        for (LogicalScanNode table : tables) {
+            // read only the fields the rest of the plan uses
+            SeqScan ss = new SeqScan(t, Database.getCatalog().getDatabaseFile(table.t).getId(), table.alias,
+                    scanPredicates.get(table.alias), referencedColumns(table));
+            // joins split their inputs themselves, if it pays, so only scans
+            // that feed the rest of the plan directly are split here
+            OpIterator parallel = joins.isEmpty() ? parallelScan(table, ss) : null;
+            subplanMap.put(table.alias, parallel != null ? parallel : ss);
+        }
         
         JoinOptimizer jo = new JoinOptimizer(this,joins);
 
@@ -381,7 +520,7 @@ public class LogicalPlan {
                 throw new ParsingException("Unknown table in WHERE clause " + lj.t2Alias);
 
             OpIterator j;
-            j = JoinOptimizer.instantiateJoin(lj, plan1, plan2);
+            j = JoinOptimizer.instantiateJoin(lj, plan1, plan2, statsMap, workers);
             subplanMap.put(t1name, j);
 
             if (!isSubqueryJoin) {
@@ -459,12 +598,15 @@ public class LogicalPlan {
 
         if (hasAgg) {
             TupleDesc td = node.getTupleDesc();
-            Aggregate aggNode;
+            OpIterator aggNode;
             try {
-                aggNode = new Aggregate(node,
-                                        td.fieldNameToIndex(aggField),
-                                        groupByField == null?Aggregator.NO_GROUPING:td.fieldNameToIndex(groupByField),
-                                getAggOp(aggOp));
+                int afield = td.fieldNameToIndex(aggField);
+                int gfield = groupByField == null?Aggregator.NO_GROUPING:td.fieldNameToIndex(groupByField);
+                aggNode = node instanceof Exchange
+                        ? parallelAggregate((Exchange) node, afield, gfield, getAggOp(aggOp)) : null;
+                if (aggNode == null) {
+                    aggNode = new Aggregate(node, afield, gfield, getAggOp(aggOp));
+                }
             } catch (NoSuchElementException | IllegalArgumentException e) {
                 throw new simpledb.ParsingException(e);
             }
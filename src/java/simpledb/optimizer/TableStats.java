@@ -73,7 +73,7 @@ public class TableStats {
 
     private int tableid;
     private int iocostperpage;
-    private HeapFile heapFile;
+    private DbFile heapFile;
     private TupleDesc td;
     private int max[],min[];
     private int tupleSum;
@@ -102,7 +102,7 @@ public class TableStats {
         // some code goes here
         this.tableid = tableid;
         this.iocostperpage = ioCostPerPage;
-        this.heapFile = (HeapFile) Database.getCatalog().getDatabaseFile(tableid);
+        this.heapFile = Database.getCatalog().getDatabaseFile(tableid);
         this.td = heapFile.getTupleDesc();
         max = new int[td.numFields()];
         min = new int[td.numFields()];
@@ -117,7 +117,7 @@ public class TableStats {
                 Tuple tuple = dbFileIterator.next();
                 tupleSum++;
                 for(int i =0; i< td.numFields(); i++) {
-                    if(td.getFieldType(i) == Type.STRING_TYPE)continue;
+                    if(td.getFieldType(i) != Type.INT_TYPE)continue;
                     IntField field = (IntField) tuple.getField(i);
                     max[i] = Math.max(field.getValue(), max[i]);
                     min[i] = Math.min(field.getValue(), min[i]);
@@ -128,7 +128,7 @@ public class TableStats {
             e.printStackTrace();
         }
         for (int i=0; i< td.numFields(); i++) {
-            if (td.getFieldType(i) == Type.STRING_TYPE) stringHistogramHashMap.put(i,new StringHistogram(100));
+            if (td.getFieldType(i) != Type.INT_TYPE) stringHistogramHashMap.put(i,new StringHistogram(100));
             else intHistogramHashMap.put(i, new IntHistogram(100,min[i], max[i]));
         }
         try {
@@ -136,7 +136,7 @@ public class TableStats {
             while (dbFileIterator.hasNext()) {
                 Tuple tuple = dbFileIterator.next();
                 for(int i =0; i< td.numFields(); i++) {
-                    if(td.getFieldType(i) == Type.STRING_TYPE){
+                    if(td.getFieldType(i) != Type.INT_TYPE){
                         String val = ((StringField)tuple.getField(i)).getValue();
                         stringHistogramHashMap.get(i).addValue(val);
                     } else {
@@ -166,8 +166,11 @@ public class TableStats {
      */
     public double estimateScanCost() {
         // some code goes here
-        HeapFile heapFile = (HeapFile) Database.getCatalog().getDatabaseFile(tableid);
-        return heapFile.numPages() * iocostperpage;
+        DbFile file = Database.getCatalog().getDatabaseFile(tableid);
+        if (file instanceof ColumnFile) {
+            return ((ColumnFile) file).numPages() * iocostperpage;
+        }
+        return ((HeapFile) file).numPages() * iocostperpage;
     }
 
     /**
@@ -197,7 +200,7 @@ public class TableStats {
     public double avgSelectivity(int field, Predicate.Op op) {
         // some code goes here
         double res;
-        if (td.getFieldType(field) == Type.STRING_TYPE) {
+        if (td.getFieldType(field) != Type.INT_TYPE) {
            res = stringHistogramHashMap.get(field).avgSelectivity();
         } else {
            res = intHistogramHashMap.get(field).avgSelectivity();
@@ -221,7 +224,7 @@ public class TableStats {
     public double estimateSelectivity(int field, Predicate.Op op, Field constant) {
         // some code goes here
         double res;
-        if(td.getFieldType(field) == Type.STRING_TYPE) {
+        if(td.getFieldType(field) != Type.INT_TYPE) {
            res = stringHistogramHashMap.get(field).estimateSelectivity(op, ((StringField)constant).getValue());
         } else {
            res = intHistogramHashMap.get(field).estimateSelectivity(op, ((IntField)constant).getValue());
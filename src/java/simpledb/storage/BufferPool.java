@@ -7,12 +7,11 @@ import simpledb.transaction.TransactionId;
 import java.io.*;
 
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * BufferPool manages the reading and writing of pages into memory from
@@ -22,6 +21,27 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * The BufferPool is also responsible for locking;  when a transaction fetches
  * a page, BufferPool checks that the transaction has the appropriate
  * locks to read/write the page.
+ * <p>
+ * The page table is split into a power-of-two number of shards, selected by
+ * the hash of the PageId.  Each shard has its own lock and its own
+ * {@link EvictionPolicy} instance, so misses on different shards never wait
+ * for each other, and a miss reads its page without holding the lock, so
+ * it does not hold up lookups on its own shard either.  Hits do not take
+ * any lock at all: they look the frame up in the shard's concurrent map and
+ * let the policy note the access, which for the CLOCK-based policies is
+ * just setting a reference bit.  The
+ * capacity bound is global and is enforced by reserving a frame before a
+ * page is read.
+ * <p>
+ * Misses feed a {@link Prefetcher}, which reads ahead of sequential scans
+ * on a background executor; a miss on a page it has already read takes
+ * that copy instead of going to disk.
+ * <p>
+ * Dirty pages are written when they are evicted or flushed, always after
+ * their update record has been logged and forced (the WAL rule).  An
+ * optional {@link PageWriter} writes them ahead of time in the background
+ * so that eviction rarely has to, and spreads the writes of checkpoints.
+ * Shard locks are taken before the {@link LogFile} monitor.
  * 
  * @Threadsafe, all fields are final
  */
@@ -36,11 +56,69 @@ public class BufferPool {
     constructor instead. */
     public static final int DEFAULT_PAGES = 50;
 
-//    private ConcurrentHashMap <PageId, Page> pageMap;
-    private LinkedHashMap<PageId, Page> cache;
-    private int capacity;
-    private ReadWriteLock rwlock;
+    /** Default number of page table shards: four per core, rounded up to a
+    power of two. */
+    public static final int DEFAULT_SHARDS = shardsFor(4 * Runtime.getRuntime().availableProcessors());
+
+    /** Most frames a scan ring gets; 128KB with the default page size. */
+    public static final int DEFAULT_RING_PAGES = 32;
+
+    /** Default size, as a fraction of the pool, above which a scan gets a ring. */
+    public static final double DEFAULT_RING_THRESHOLD = 1.0;
+
+    /** Default number of pages read ahead of a sequential scan. */
+    public static final int DEFAULT_PREFETCH_WINDOW = 8;
 
+    /** Default rate limit of the background writer. */
+    public static final int DEFAULT_WRITER_PAGES_PER_SECOND = 1000;
+
+    /** Default fraction of the pool the background writer keeps clean. */
+    public static final double DEFAULT_WRITER_CLEAN_FRACTION = 0.25;
+
+    private final int capacity;
+    private final Shard[] shards;
+    private final int shardMask;
+    /** Number of frames in use or reserved by a pending read. */
+    private final AtomicInteger numFrames;
+    /** Where the next eviction starts looking for a victim shard. */
+    private final AtomicInteger evictHand;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile double ringThreshold = DEFAULT_RING_THRESHOLD;
+    private final Prefetcher prefetcher = new Prefetcher(this, DEFAULT_PREFETCH_WINDOW);
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final LongAccumulator maxFlushNanos = new LongAccumulator(Math::max, 0);
+    private final Object writerLock = new Object();
+    private PageWriter writer; // guarded by writerLock
+
+    /**
+     * One stripe of the page table.  The map may be read without the lock;
+     * all structural changes happen with the lock held.
+     */
+    private static final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final ConcurrentHashMap<PageId, Frame> frames = new ConcurrentHashMap<>();
+        /** Guarded by lock, except for touch. */
+        final EvictionPolicy policy;
+        /** Number of frames ever removed from the shard; guarded by lock. */
+        long removals;
+
+        Shard(EvictionPolicy policy) {
+            this.policy = policy;
+        }
+    }
+
+    /** A cached page plus its replacement state. */
+    private static final class Frame {
+        volatile Page page;
+        final EvictionPolicy.Handle handle;
+
+        Frame(Page page, EvictionPolicy.Handle handle) {
+            this.page = page;
+            this.handle = handle;
+        }
+    }
 
     /**
      * Creates a BufferPool that caches up to numPages pages.
@@ -48,10 +126,58 @@ public class BufferPool {
      * @param numPages maximum number of pages in this buffer pool.
      */
     public BufferPool(int numPages) {
-        // some code goes here
-        cache = new LinkedHashMap<>();
+        this(numPages, DEFAULT_SHARDS, EvictionPolicy.DEFAULT);
+    }
+
+    /**
+     * Creates a BufferPool that caches up to numPages pages and replaces
+     * them according to the given policy.
+     *
+     * @param numPages maximum number of pages in this buffer pool.
+     * @param policy the replacement policy, e.g. {@link EvictionPolicy.Kind#CLOCK}.
+     */
+    public BufferPool(int numPages, EvictionPolicy.Factory policy) {
+        this(numPages, DEFAULT_SHARDS, policy);
+    }
+
+    /**
+     * Creates a BufferPool that caches up to numPages pages in a page table
+     * split into numShards lock stripes.
+     *
+     * @param numPages maximum number of pages in this buffer pool.
+     * @param numShards number of page table shards; rounded up to a power of two.
+     */
+    public BufferPool(int numPages, int numShards) {
+        this(numPages, numShards, EvictionPolicy.DEFAULT);
+    }
+
+    /**
+     * Creates a BufferPool that caches up to numPages pages in a page table
+     * split into numShards lock stripes, each replacing pages according to
+     * its own instance of the given policy.
+     *
+     * @param numPages maximum number of pages in this buffer pool.
+     * @param numShards number of page table shards; rounded up to a power of two.
+     * @param policy the replacement policy, e.g. {@link EvictionPolicy.Kind#CLOCK}.
+     */
+    public BufferPool(int numPages, int numShards, EvictionPolicy.Factory policy) {
         capacity = numPages;
-        rwlock = new ReentrantReadWriteLock();
+        shards = new Shard[shardsFor(numShards)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(policy.create());
+        }
+        shardMask = shards.length - 1;
+        numFrames = new AtomicInteger();
+        evictHand = new AtomicInteger();
+    }
+
+    private static int shardsFor(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private Shard shardFor(PageId pid) {
+        int h = pid.hashCode();
+        return shards[(h ^ (h >>> 16)) & shardMask];
     }
     
     public static int getPageSize() {
@@ -68,6 +194,205 @@ public class BufferPool {
     	BufferPool.pageSize = DEFAULT_PAGE_SIZE;
     }
 
+    /** @return the maximum number of pages this buffer pool caches. */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** @return the number of page table shards. */
+    public int getNumShards() {
+        return shards.length;
+    }
+
+    /**
+     * Sets how big a sequential scan must be, as a fraction of the pool's
+     * capacity, before it reads through a private {@link BufferRing}.
+     */
+    public void setRingThreshold(double fraction) {
+        ringThreshold = fraction;
+    }
+
+    /**
+     * Returns a ring for a sequential scan of scanPages pages, or null if the
+     * scan is small enough to go through the shared pool.
+     */
+    public BufferRing newScanRing(int scanPages) {
+        if (scanPages <= ringThreshold * capacity) {
+            return null;
+        }
+        return new BufferRing(Math.max(1, Math.min(DEFAULT_RING_PAGES, capacity / 8)));
+    }
+
+    /**
+     * Sets how many pages are read ahead of a sequential scan; 0 turns
+     * read-ahead off.
+     */
+    public void setPrefetchWindow(int pages) {
+        prefetcher.setWindow(pages);
+    }
+
+    public int getPrefetchWindow() {
+        return prefetcher.getWindow();
+    }
+
+    /**
+     * Hints that pid will be read soon, e.g. the next leaf of an index
+     * scan.  The page is read in the background unless it is cached.
+     */
+    public void prefetch(PageId pid) {
+        if (pid != null) {
+            prefetcher.prefetch(pid);
+        }
+    }
+
+    /** @return the number of pages read ahead so far. */
+    public long getPrefetchIssuedCount() {
+        return prefetcher.getIssued();
+    }
+
+    /** @return the number of pages read ahead that a later miss then used. */
+    public long getPrefetchUsedCount() {
+        return prefetcher.getUsed();
+    }
+
+    /** @return the number of pages read ahead and dropped without being used. */
+    public long getPrefetchUnusedCount() {
+        return prefetcher.getUnused();
+    }
+
+    /** @return true if pid is currently cached in the pool. */
+    boolean isCached(PageId pid) {
+        return shardFor(pid).frames.containsKey(pid);
+    }
+
+    /**
+     * Starts a background writer with the default rate and clean target
+     * and no periodic checkpoints.
+     */
+    public void startBackgroundWriter() {
+        startBackgroundWriter(DEFAULT_WRITER_PAGES_PER_SECOND, DEFAULT_WRITER_CLEAN_FRACTION, 0);
+    }
+
+    /**
+     * Starts a background thread that writes dirty pages ahead of eviction,
+     * replacing any writer already running.
+     *
+     * @param pagesPerSecond most pages the writer writes per second
+     * @param cleanFraction fraction of the pool's capacity the writer tries
+     *                      to keep clean (free frames count as clean)
+     * @param checkpointMillis interval between checkpoints of the log, or 0
+     *                         for none
+     */
+    public void startBackgroundWriter(int pagesPerSecond, double cleanFraction,
+                                      long checkpointMillis) {
+        synchronized (writerLock) {
+            stopBackgroundWriter();
+            writer = new PageWriter(this, pagesPerSecond, cleanFraction, checkpointMillis);
+            writer.start();
+        }
+    }
+
+    /** Stops the background writer, if one is running. */
+    public void stopBackgroundWriter() {
+        // not synchronized on this: the writer may be waiting for this
+        // monitor in a checkpoint
+        synchronized (writerLock) {
+            if (writer != null) {
+                writer.stop();
+                writer = null;
+            }
+        }
+    }
+
+    /** @return the number of cached pages that are dirty. */
+    public int getDirtyPageCount() {
+        int n = 0;
+        for (Shard shard : shards) {
+            for (Frame frame : shard.frames.values()) {
+                if (frame.page.isDirty() != null) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /** @return the number of dirty pages written to disk. */
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    /**
+     * @return the total time spent writing dirty pages, including logging
+     * and forcing their update records, in nanoseconds.
+     */
+    public long getFlushTimeNanos() {
+        return flushNanos.sum();
+    }
+
+    /** @return the longest time a single dirty page took to write, in nanoseconds. */
+    public long getMaxFlushTimeNanos() {
+        return maxFlushNanos.get();
+    }
+
+    /** @return the ids of the cached dirty pages. */
+    List<PageId> dirtyPageIds() {
+        List<PageId> pids = new ArrayList<>();
+        for (Shard shard : shards) {
+            for (Frame frame : shard.frames.values()) {
+                if (frame.page.isDirty() != null) {
+                    pids.add(frame.handle.getPageId());
+                }
+            }
+        }
+        return pids;
+    }
+
+    /**
+     * Returns the ids of the dirty pages among the next n pages eviction
+     * would choose, less the frames that are still free.  Each shard is
+     * asked for its share of n in proportion to its size.
+     */
+    List<PageId> upcomingDirtyPageIds(int n) {
+        List<PageId> pids = new ArrayList<>();
+        int cached = numFrames.get();
+        n -= capacity - cached;
+        if (n <= 0 || cached == 0) {
+            return pids;
+        }
+        List<EvictionPolicy.Handle> handles = new ArrayList<>();
+        for (Shard shard : shards) {
+            int size = shard.frames.size();
+            if (size == 0) {
+                continue;
+            }
+            handles.clear();
+            shard.lock.lock();
+            try {
+                shard.policy.upcoming((int) Math.ceil((double) n * size / cached), handles);
+            } finally {
+                shard.lock.unlock();
+            }
+            for (EvictionPolicy.Handle h : handles) {
+                Frame frame = shard.frames.get(h.getPageId());
+                if (frame != null && frame.page.isDirty() != null) {
+                    pids.add(h.getPageId());
+                }
+            }
+        }
+        return pids;
+    }
+
+    /** @return the number of getPage calls answered from the pool. */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** @return the number of getPage calls that had to read the page. */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
     /**
      * Retrieve the specified page with the associated permissions.
      * Will acquire a lock and may block if that lock is held by another
@@ -86,30 +411,169 @@ public class BufferPool {
     public  Page getPage(TransactionId tid, PageId pid, Permissions perm)
         throws TransactionAbortedException, DbException {
         // some code goes here
-        rwlock.readLock().lock();
-        Page page = cache.get(pid);
+        Shard shard = shardFor(pid);
+        Frame frame = shard.frames.get(pid);
+        if (frame != null) {
+            shard.policy.touch(frame.handle);
+            hits.increment();
+            return frame.page;
+        }
+        return readIntoPool(shard, pid);
+    }
+
+    /**
+     * Retrieve the specified page on behalf of a sequential scan reading
+     * through ring.  Pages already in the shared pool are returned from it;
+     * any other page is read into the ring instead of the pool.  A null ring,
+     * or a request for write access, behaves exactly like
+     * {@link #getPage(TransactionId, PageId, Permissions)}.
+     *
+     * @param ring the scan's ring, from {@link #newScanRing}, or null
+     */
+    public Page getPage(TransactionId tid, PageId pid, Permissions perm, BufferRing ring)
+        throws TransactionAbortedException, DbException {
+        if (ring == null || perm != Permissions.READ_ONLY) {
+            return getPage(tid, pid, perm);
+        }
+        Shard shard = shardFor(pid);
+        Frame frame = shard.frames.get(pid);
+        if (frame != null) {
+            shard.policy.touch(frame.handle);
+            hits.increment();
+            return frame.page;
+        }
+        Page page = ring.get(pid);
+        if (page != null) {
+            hits.increment();
+            return page;
+        }
+        misses.increment();
+        prefetcher.onMiss(pid);
+        page = prefetcher.take(pid);
         if (page == null) {
-            DbFile file = Database.getCatalog().getDatabaseFile(pid.getTableId());
-            page = file.readPage(pid);
+            page = Database.getCatalog().getDatabaseFile(pid.getTableId()).readPage(pid);
         }
-        put(pid,page);
-        rwlock.readLock().unlock();
+        ring.add(page);
         return page;
     }
 
-    public void put(PageId pageId, Page page) throws DbException{
-        if (cache.containsKey(pageId)) {
-            makeRecently(pageId);//更新位置
-        }  else if (cache.size() >= capacity) {
-            evictPage();//释放最旧的page
+    /**
+     * Miss path of getPage: reserve a frame, read the page without holding
+     * the shard lock, then install it unless another thread got there first.
+     * If a frame of the shard was removed meanwhile, the page may have been
+     * written since it was read, so it is read again.
+     */
+    private Page readIntoPool(Shard shard, PageId pid) throws DbException {
+        prefetcher.onMiss(pid);
+        reserveFrame();
+        boolean used = false;
+        try {
+            for (boolean first = true; ; first = false) {
+                long removals;
+                shard.lock.lock();
+                try {
+                    Frame frame = shard.frames.get(pid);
+                    if (frame != null) {
+                        shard.policy.touch(frame.handle);
+                        if (first) {
+                            hits.increment();
+                        }
+                        return frame.page;
+                    }
+                    if (first) {
+                        misses.increment();
+                    }
+                    removals = shard.removals;
+                } finally {
+                    shard.lock.unlock();
+                }
+
+                Page page = prefetcher.take(pid);
+                if (page == null) {
+                    DbFile file = Database.getCatalog().getDatabaseFile(pid.getTableId());
+                    page = file.readPage(pid);
+                }
+
+                shard.lock.lock();
+                try {
+                    Frame frame = shard.frames.get(pid);
+                    if (frame != null) {
+                        shard.policy.touch(frame.handle);
+                        return frame.page;
+                    }
+                    if (shard.removals == removals) {
+                        shard.frames.put(pid, new Frame(page, shard.policy.admit(pid)));
+                        used = true;
+                        return page;
+                    }
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+        } finally {
+            if (!used) {
+                numFrames.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Adds a page to the pool, or replaces the cached version of it.  Used
+     * for pages dirtied by inserts and deletes.
+     */
+    private void cachePage(Page page) throws DbException {
+        PageId pid = page.getId();
+        prefetcher.invalidate(pid);
+        Shard shard = shardFor(pid);
+        shard.lock.lock();
+        try {
+            Frame frame = shard.frames.get(pid);
+            if (frame != null) {
+                frame.page = page;
+                shard.policy.touch(frame.handle);
+                return;
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+
+        reserveFrame();
+        boolean used = false;
+        shard.lock.lock();
+        try {
+            Frame frame = shard.frames.get(pid);
+            if (frame != null) {
+                frame.page = page;
+                shard.policy.touch(frame.handle);
+            } else {
+                shard.frames.put(pid, new Frame(page, shard.policy.admit(pid)));
+                used = true;
+            }
+        } finally {
+            shard.lock.unlock();
+            if (!used) {
+                numFrames.decrementAndGet();
+            }
         }
-        cache.put(pageId, page);
     }
 
-    private void makeRecently(PageId pageId) {
-        // 删除原来的节点，再重新加入
-        Page page = cache.remove(pageId);
-        cache.put(pageId, page);
+    /**
+     * Claims one frame of the global capacity, evicting pages until one is
+     * available.  Never called with a shard lock held, so eviction only ever
+     * holds one shard lock at a time.
+     */
+    private void reserveFrame() throws DbException {
+        while (true) {
+            int n = numFrames.get();
+            if (n < capacity) {
+                if (numFrames.compareAndSet(n, n + 1)) {
+                    return;
+                }
+            } else if (!evictPage()) {
+                // every frame is reserved by a read that is still in flight
+                Thread.yield();
+            }
+        }
     }
 
     /**
@@ -177,11 +641,30 @@ public class BufferPool {
         DbFile dbFile = Database.getCatalog().getDatabaseFile(tableId);//思考并注意这里用的不是t中的tableId
         List<Page> dirtyPages =  dbFile.insertTuple(tid, t);
         for(Page page: dirtyPages) {
-            put(page.getId(), page);
+            cachePage(page);
         }
 
     }
 
+    /**
+     * Add tuples to the specified table on behalf of transaction tid, like
+     * {@link #insertTuple} but with the table looked up once and each
+     * dirtied page put into the cache once, however many of the tuples went
+     * to it.
+     *
+     * @param tid the transaction adding the tuples
+     * @param tableId the table to add the tuples to
+     * @param tuples the tuples to add
+     * @see DbFile#insertTuples
+     */
+    public void insertTuples(TransactionId tid, int tableId, Iterable<Tuple> tuples)
+        throws DbException, IOException, TransactionAbortedException {
+        DbFile dbFile = Database.getCatalog().getDatabaseFile(tableId);
+        for (Page page : dbFile.insertTuples(tid, tuples)) {
+            cachePage(page);
+        }
+    }
+
     /**
      * Remove the specified tuple from the buffer pool.
      * Will acquire a write lock on the page the tuple is removed from and any
@@ -203,7 +686,7 @@ public class BufferPool {
         DbFile dbFile = Database.getCatalog().getDatabaseFile(pageId.getTableId());
         List<Page> dirtyPages = dbFile.deleteTuple(tid, t);
         for(Page page: dirtyPages) {
-            put(page.getId(), page);
+            cachePage(page);
         }
     }
 
@@ -215,13 +698,14 @@ public class BufferPool {
     public synchronized void flushAllPages() throws IOException {
         // some code goes here
         // not necessary for lab1
-        for(Map.Entry<PageId,Page> entry: cache.entrySet()) {
-            Page page = entry.getValue();
-            TransactionId tid = page.isDirty();
-            if(tid != null) {
-                DbFile dbFile = Database.getCatalog().getDatabaseFile(entry.getKey().getTableId());
-                dbFile.writePage(page);
-                page.markDirty(false,tid);
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                for (Frame frame : shard.frames.values()) {
+                    flushPage(frame.page);
+                }
+            } finally {
+                shard.lock.unlock();
             }
         }
     }
@@ -234,26 +718,75 @@ public class BufferPool {
         Also used by B+ tree files to ensure that deleted pages
         are removed from the cache so they can be reused safely
     */
-    public synchronized void discardPage(PageId pid) {
+    public void discardPage(PageId pid) {
         // some code goes here
         // not necessary for lab1
-        cache.remove(pid);
+        prefetcher.invalidate(pid);
+        Shard shard = shardFor(pid);
+        shard.lock.lock();
+        try {
+            Frame frame = shard.frames.remove(pid);
+            if (frame != null) {
+                shard.removals++;
+                shard.policy.remove(frame.handle);
+                numFrames.decrementAndGet();
+            }
+        } finally {
+            shard.lock.unlock();
+        }
     }
 
     /**
      * Flushes a certain page to disk
      * @param pid an ID indicating the page to flush
      */
-    private synchronized  void flushPage(PageId pid) throws IOException {
+    private void flushPage(PageId pid) throws IOException {
         // some code goes here
         // not necessary for lab1
-        Page page = cache.get(pid);
+        flushCached(pid);
+    }
+
+    /**
+     * Writes the cached page pid to disk if it is dirty.
+     *
+     * @return true if a page was written
+     */
+    boolean flushCached(PageId pid) throws IOException {
+        Shard shard = shardFor(pid);
+        shard.lock.lock();
+        try {
+            Frame frame = shard.frames.get(pid);
+            return frame != null && flushPage(frame.page);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes page to disk if it is dirty, after logging and forcing its
+     * update record.  Caller holds the page's shard lock.
+     *
+     * @return true if the page was dirty
+     */
+    private boolean flushPage(Page page) throws IOException {
         TransactionId tid = page.isDirty();
-        if(tid != null) {
-            DbFile dbFile = Database.getCatalog().getDatabaseFile(pid.getTableId());
-            dbFile.writePage(page);
-            page.markDirty(false,tid);
+        if (tid == null) {
+            return false;
         }
+        long start = System.nanoTime();
+        LogFile log = Database.getLogFile();
+        log.logWrite(tid, page.getBeforeImage(), page);
+        log.force();
+        DbFile dbFile = Database.getCatalog().getDatabaseFile(page.getId().getTableId());
+        dbFile.writePage(page);
+        page.markDirty(false,tid);
+        // a copy read ahead before the write would bring back the old page
+        prefetcher.invalidate(page.getId());
+        long nanos = System.nanoTime() - start;
+        flushes.increment();
+        flushNanos.add(nanos);
+        maxFlushNanos.accumulate(nanos);
+        return true;
     }
 
     /** Write all pages of the specified transaction to disk.
@@ -266,18 +799,44 @@ public class BufferPool {
     /**
      * Discards a page from the buffer pool.
      * Flushes the page to disk to ensure dirty pages are updated on disk.
+     * <p>
+     * Shards are visited round robin starting at the eviction hand; within a
+     * shard the shard's replacement policy picks the victim.
+     *
+     * @return false if no shard had a frame to evict
      */
-    private synchronized  void evictPage() throws DbException {
+    private boolean evictPage() throws DbException {
         // some code goes here
         // not necessary for lab1
-        PageId pageOldest = cache.keySet().iterator().next();
-        try {
-            flushPage(pageOldest);
-        } catch (IOException e) {
-            throw new DbException(" flush page error");
-        }//不确定是不是这样 TODO
-
-        cache.remove(pageOldest);
+        int start = evictHand.getAndIncrement();
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[(start + i) & shardMask];
+            if (shard.frames.isEmpty()) {
+                continue;
+            }
+            shard.lock.lock();
+            try {
+                EvictionPolicy.Handle victim = shard.policy.victim();
+                if (victim == null) {
+                    continue;
+                }
+                Frame frame = shard.frames.get(victim.getPageId());
+                try {
+                    flushPage(frame.page);
+                } catch (IOException e) {
+                    throw new DbException("flush page error: " + e.getMessage());
+                }
+                shard.frames.remove(victim.getPageId());
+                shard.removals++;
+                shard.policy.remove(victim);
+                prefetcher.invalidate(victim.getPageId());
+                numFrames.decrementAndGet();
+                return true;
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return false;
     }
 
 }
@@ -0,0 +1,43 @@
+package simpledb.storage;
+
+/**
+ * A small private set of frames used by one large sequential scan instead
+ * of the shared BufferPool, in the spirit of PostgreSQL's BAS_BULKREAD
+ * strategy.  Pages the scan misses on are read into the ring, overwriting
+ * the oldest one, and never enter the shared pool, so a scan of a table much
+ * bigger than the pool leaves the pool's working set alone.
+ * <p>
+ * A ring belongs to a single iterator and is not thread safe.
+ *
+ * @see BufferPool#newScanRing
+ * @see BufferPool#getPage(simpledb.transaction.TransactionId, PageId, simpledb.common.Permissions, BufferRing)
+ */
+public final class BufferRing {
+    private final Page[] pages;
+    private int next;
+
+    BufferRing(int size) {
+        pages = new Page[size];
+    }
+
+    /** @return the page with the given id if it is in the ring, else null */
+    Page get(PageId pid) {
+        for (Page p : pages) {
+            if (p != null && p.getId().equals(pid)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /** Puts a page in the ring in place of the oldest one. */
+    void add(Page page) {
+        pages[next] = page;
+        next = (next + 1) % pages.length;
+    }
+
+    /** @return the number of frames in the ring */
+    public int size() {
+        return pages.length;
+    }
+}
@@ -0,0 +1,107 @@
+package simpledb.storage;
+
+import java.util.List;
+
+/**
+ * Second-chance CLOCK replacement.
+ * <p>
+ * Pages sit on a circular list.  A hit only sets the page's reference bit;
+ * the hand sweeps the list, clearing set bits and stopping at the first
+ * page whose bit was already clear.  New pages are admitted with the bit
+ * clear just behind the hand, which makes them the last the hand reaches:
+ * a page read once by a scan survives one full sweep and goes when the
+ * hand comes round to it, unless it was touched again in the meantime.
+ */
+final class ClockPolicy implements EvictionPolicy {
+
+    static final class Node extends Handle {
+        Node prev, next;
+
+        Node(PageId pid) {
+            super(pid);
+        }
+    }
+
+    private Node hand;
+    private int size;
+
+    @Override
+    public Handle admit(PageId pid) {
+        Node n = new Node(pid);
+        link(n);
+        return n;
+    }
+
+    /** Puts n on the clock just behind the hand. */
+    void link(Node n) {
+        if (hand == null) {
+            n.prev = n.next = n;
+            hand = n;
+        } else {
+            n.next = hand;
+            n.prev = hand.prev;
+            hand.prev.next = n;
+            hand.prev = n;
+        }
+        size++;
+    }
+
+    @Override
+    public void touch(Handle h) {
+        if (!h.referenced) {
+            h.referenced = true;
+        }
+    }
+
+    @Override
+    public void remove(Handle h) {
+        Node n = (Node) h;
+        if (n.next == null) {
+            return;
+        }
+        if (n.next == n) {
+            hand = null;
+        } else {
+            n.prev.next = n.next;
+            n.next.prev = n.prev;
+            if (hand == n) {
+                hand = n.next;
+            }
+        }
+        n.prev = n.next = null;
+        size--;
+    }
+
+    @Override
+    public Handle victim() {
+        if (hand == null) {
+            return null;
+        }
+        // concurrent hits may set bits behind the hand; give up after two
+        // full sweeps and take whatever is under the hand
+        for (int i = 0; i < 2 * size && hand.referenced; i++) {
+            hand.referenced = false;
+            hand = hand.next;
+        }
+        return hand;
+    }
+
+    /** Pages with a clear bit in hand order, then the rest in hand order. */
+    @Override
+    public void upcoming(int n, List<Handle> out) {
+        int limit = out.size() + Math.min(n, size);
+        for (int pass = 0; pass < 2; pass++) {
+            Node node = hand;
+            for (int i = 0; i < size && out.size() < limit; i++, node = node.next) {
+                if (node.referenced == (pass == 1)) {
+                    out.add(node);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,465 @@
+package simpledb.storage;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Permissions;
+import simpledb.common.Type;
+import simpledb.execution.Predicate;
+import simpledb.transaction.TransactionAbortedException;
+import simpledb.transaction.TransactionId;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * ColumnFile is a read-only DbFile that stores a table column by column, so
+ * that a scan of a few columns of a wide table reads only their pages.
+ * <p>
+ * Rows are split into row groups of rowsPerGroup rows, the last one
+ * possibly shorter.  Within a group each column has its own run of
+ * {@link ColumnPage}s, the runs following each other in field order; a
+ * column's page holds as many values as fit at the type's fixed width (a
+ * VARCHAR takes its maximum width).  Page 0 is a header with the row group
+ * size and the number of rows, from which, with the TupleDesc, the position
+ * of every other page follows.
+ * <p>
+ * Tables are written whole by {@link #convert}; inserts and deletes are
+ * refused.  Tuples read from a ColumnFile have no RecordId.
+ */
+public class ColumnFile implements DbFile {
+
+    /** Rows per row group unless convert is told otherwise. */
+    public static final int DEFAULT_ROWS_PER_GROUP = 65536;
+
+    private static final int MAGIC = 0x434f4c31;
+    private static final int HEADER_BYTES = 16;
+
+    private final File file;
+    private final TupleDesc td;
+    private final DbFileChannel channel;
+    private final int rowsPerGroup;
+    private final int numRows;
+
+    /**
+     * Opens the column file f holding a table with the given TupleDesc.  An
+     * empty or missing file is an empty table.
+     *
+     * @throws IllegalArgumentException if f is not a column file
+     */
+    public ColumnFile(File f, TupleDesc td) {
+        this.file = f;
+        this.td = td;
+        this.channel = new DbFileChannel(f);
+        if (f.length() == 0) {
+            this.rowsPerGroup = DEFAULT_ROWS_PER_GROUP;
+            this.numRows = 0;
+            return;
+        }
+        byte[] header = new byte[HEADER_BYTES];
+        try {
+            channel.read(header, 0);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(header);
+        if (buf.getInt() != MAGIC || buf.getInt() != td.numFields()) {
+            throw new IllegalArgumentException(f + " is not a column file of " + td);
+        }
+        this.rowsPerGroup = buf.getInt();
+        this.numRows = buf.getInt();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getId() {
+        return file.getAbsoluteFile().hashCode();
+    }
+
+    public TupleDesc getTupleDesc() {
+        return td;
+    }
+
+    /** @return the number of rows in the table */
+    public int numRows() {
+        return numRows;
+    }
+
+    /** @return the number of rows in a row group, except perhaps the last */
+    public int rowsPerGroup() {
+        return rowsPerGroup;
+    }
+
+    /** @return the number of pages in the file, the header page included */
+    public int numPages() {
+        return (int) (file.length() / BufferPool.getPageSize());
+    }
+
+    // layout; the pages of row group g start right after those of the full
+    // groups before it, and only the last group can be shorter
+
+    private int numGroups() {
+        return (numRows + rowsPerGroup - 1) / rowsPerGroup;
+    }
+
+    private int groupRows(int g) {
+        return Math.min(rowsPerGroup, numRows - g * rowsPerGroup);
+    }
+
+    private int columnPages(int col, int rows) {
+        int perPage = ColumnPage.valuesPerPage(td.getFieldType(col));
+        return (rows + perPage - 1) / perPage;
+    }
+
+    private int groupPages(int rows) {
+        int pages = 0;
+        for (int c = 0; c < td.numFields(); c++) {
+            pages += columnPages(c, rows);
+        }
+        return pages;
+    }
+
+    /** @return the number of the first page of column col in row group g */
+    private int firstPage(int g, int col) {
+        int pageNo = 1 + g * groupPages(rowsPerGroup);
+        int rows = groupRows(g);
+        for (int c = 0; c < col; c++) {
+            pageNo += columnPages(c, rows);
+        }
+        return pageNo;
+    }
+
+    /** @return the column whose values are on page pageNo */
+    private int columnOf(int pageNo) {
+        if (pageNo >= 1 && numRows > 0) {
+            int full = groupPages(rowsPerGroup);
+            int g = (pageNo - 1) / full;
+            if (g < numGroups()) {
+                int rest = pageNo - 1 - g * full;
+                int rows = groupRows(g);
+                for (int c = 0; c < td.numFields(); c++) {
+                    rest -= columnPages(c, rows);
+                    if (rest < 0) {
+                        return c;
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException("no column page " + pageNo + " in " + file);
+    }
+
+    // see DbFile.java for javadocs
+    public Page readPage(PageId pid) {
+        HeapPageId id = (HeapPageId) pid;
+        Type type = td.getFieldType(columnOf(id.getPageNumber()));
+        byte[] data = new byte[BufferPool.getPageSize()];
+        try {
+            channel.read(data, (long) id.getPageNumber() * data.length);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return new ColumnPage(id, type, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Column files are written whole by {@link #convert}.
+     *
+     * @throws IOException always
+     */
+    public void writePage(Page p) throws IOException {
+        throw new IOException("column files are read-only");
+    }
+
+    /**
+     * Column files are read-only.
+     *
+     * @throws DbException always
+     */
+    public List<Page> insertTuple(TransactionId tid, Tuple t) throws DbException {
+        throw new DbException("cannot insert into column file " + file);
+    }
+
+    /**
+     * Column files are read-only.
+     *
+     * @throws DbException always
+     */
+    public List<Page> deleteTuple(TransactionId tid, Tuple t) throws DbException {
+        throw new DbException("cannot delete from column file " + file);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // see DbFile.java for javadocs
+    public DbFileIterator iterator(TransactionId tid) {
+        return new ColumnFileIterator(tid, Collections.emptyList(), null);
+    }
+
+    /**
+     * Returns an iterator over the rows that satisfy preds, cut down to
+     * columns.  Only the pages of those columns and of the predicates'
+     * fields are read, and a row's other columns are only decoded once it
+     * has passed the predicates, so pages of them holding no such row are
+     * not read either.
+     */
+    @Override
+    public DbFileIterator iterator(TransactionId tid, List<Predicate> preds, int[] columns) {
+        return new ColumnFileIterator(tid, preds, columns);
+    }
+
+    private class ColumnFileIterator implements DbFileIterator {
+        private final TransactionId tid;
+        private final Predicate[] preds;
+        private final TupleDesc outTd;
+        /** the fields read: those returned, then those only tested */
+        private final int[] fields;
+        /** for each predicate and returned column, its index in fields */
+        private final int[] predField;
+        private final int[] outField;
+        /** for each field read: values per page, current page and its number */
+        private final int[] perPage;
+        private final ColumnPage[] pages;
+        private final int[] pageNos;
+        /** number of the first page of each field read in the current group */
+        private final int[] first;
+        private BufferRing ring;
+        private boolean open;
+        private int group;
+        /** next row within the current group, and the group's size */
+        private int row;
+        private int rows;
+        private Tuple next;
+
+        ColumnFileIterator(TransactionId tid, List<Predicate> preds, int[] columns) {
+            this.tid = tid;
+            this.preds = preds.toArray(new Predicate[0]);
+            if (columns == null) {
+                columns = new int[td.numFields()];
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = i;
+                }
+            }
+            this.outTd = td.project(columns);
+            List<Integer> read = new ArrayList<>();
+            this.outField = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                outField[i] = indexOf(read, columns[i]);
+            }
+            this.predField = new int[this.preds.length];
+            for (int i = 0; i < predField.length; i++) {
+                predField[i] = indexOf(read, this.preds[i].getField());
+            }
+            this.fields = new int[read.size()];
+            this.perPage = new int[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = read.get(i);
+                perPage[i] = ColumnPage.valuesPerPage(td.getFieldType(fields[i]));
+            }
+            this.pages = new ColumnPage[fields.length];
+            this.pageNos = new int[fields.length];
+            this.first = new int[fields.length];
+        }
+
+        /** @return the index of field in read, adding it if it is not there */
+        private int indexOf(List<Integer> read, int field) {
+            int i = read.indexOf(field);
+            if (i < 0) {
+                read.add(field);
+                i = read.size() - 1;
+            }
+            return i;
+        }
+
+        public void open() {
+            int scanPages = 0;
+            for (int i = 0; i < fields.length; i++) {
+                scanPages += (numRows + perPage[i] - 1) / perPage[i];
+            }
+            ring = Database.getBufferPool().newScanRing(scanPages);
+            group = -1;
+            row = rows = 0;
+            next = null;
+            open = true;
+        }
+
+        /** @return the page holding fields[i] of the current row */
+        private ColumnPage page(int i) throws DbException, TransactionAbortedException {
+            int pageNo = first[i] + row / perPage[i];
+            if (pages[i] == null || pageNos[i] != pageNo) {
+                pages[i] = (ColumnPage) Database.getBufferPool()
+                        .getPage(tid, new HeapPageId(getId(), pageNo), Permissions.READ_ONLY, ring);
+                pageNos[i] = pageNo;
+            }
+            return pages[i];
+        }
+
+        /** @return the value of fields[i] in the current row */
+        private Field value(int i) throws DbException, TransactionAbortedException {
+            return page(i).getField(row % perPage[i]);
+        }
+
+        /** @return the value of fields[i], an INT field, in the current row */
+        private int intValue(int i) throws DbException, TransactionAbortedException {
+            return page(i).getInt(row % perPage[i]);
+        }
+
+        private boolean isInt(int i) {
+            return td.getFieldType(fields[i]) == Type.INT_TYPE;
+        }
+
+        private boolean matches(int i) throws DbException, TransactionAbortedException {
+            Predicate pred = preds[i];
+            if (isInt(predField[i]) && pred.getOperand() instanceof IntField) {
+                return IntField.compare(pred.getOp(), intValue(predField[i]),
+                        ((IntField) pred.getOperand()).getValue());
+            }
+            return value(predField[i]).compare(pred.getOp(), pred.getOperand());
+        }
+
+        public boolean hasNext() throws DbException, TransactionAbortedException {
+            if (!open) {
+                return false;
+            }
+            rows:
+            while (next == null) {
+                if (row == rows) {
+                    if (group + 1 >= numGroups()) {
+                        return false;
+                    }
+                    group++;
+                    row = 0;
+                    rows = groupRows(group);
+                    for (int i = 0; i < fields.length; i++) {
+                        first[i] = firstPage(group, fields[i]);
+                    }
+                }
+                for (int i = 0; i < preds.length; i++) {
+                    if (!matches(i)) {
+                        row++;
+                        continue rows;
+                    }
+                }
+                Tuple t = new Tuple(outTd);
+                for (int i = 0; i < outField.length; i++) {
+                    if (isInt(outField[i])) {
+                        t.setInt(i, intValue(outField[i]));
+                    } else {
+                        t.setField(i, value(outField[i]));
+                    }
+                }
+                row++;
+                next = t;
+            }
+            return true;
+        }
+
+        public Tuple next() throws DbException, TransactionAbortedException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Tuple t = next;
+            next = null;
+            return t;
+        }
+
+        public void rewind() {
+            close();
+            open();
+        }
+
+        public void close() {
+            open = false;
+            ring = null;
+            next = null;
+            Arrays.fill(pages, null);
+        }
+    }
+
+    /**
+     * Writes the tuples of source to outFile as a column file with the
+     * default row group size.
+     *
+     * @see #convert(DbFile, TransactionId, File, int)
+     */
+    public static ColumnFile convert(DbFile source, TransactionId tid, File outFile)
+            throws IOException, DbException, TransactionAbortedException {
+        return convert(source, tid, outFile, DEFAULT_ROWS_PER_GROUP);
+    }
+
+    /**
+     * Writes the tuples of source, e.g. a HeapFile, to outFile as a column
+     * file and returns it; the result is not added to the catalog.  source
+     * is read through the buffer pool as part of tid, one row group at a
+     * time.
+     *
+     * @param rowsPerGroup the number of rows in each row group
+     */
+    public static ColumnFile convert(DbFile source, TransactionId tid, File outFile, int rowsPerGroup)
+            throws IOException, DbException, TransactionAbortedException {
+        if (rowsPerGroup < 1) {
+            throw new IllegalArgumentException("rowsPerGroup must be positive: " + rowsPerGroup);
+        }
+        TupleDesc td = source.getTupleDesc();
+        int n = td.numFields();
+        int pageSize = BufferPool.getPageSize();
+        ByteArrayOutputStream[] bytes = new ByteArrayOutputStream[n];
+        DataOutputStream[] outs = new DataOutputStream[n];
+        for (int c = 0; c < n; c++) {
+            bytes[c] = new ByteArrayOutputStream();
+            outs[c] = new DataOutputStream(bytes[c]);
+        }
+
+        int numRows = 0;
+        long pos = pageSize;
+        new FileOutputStream(outFile).close();
+        try (DbFileChannel out = new DbFileChannel(outFile)) {
+            DbFileIterator it = source.iterator(tid);
+            it.open();
+            try {
+                boolean more = it.hasNext();
+                while (more) {
+                    Tuple t = it.next();
+                    for (int c = 0; c < n; c++) {
+                        Type type = td.getFieldType(c);
+                        int start = outs[c].size();
+                        t.getField(c).serialize(outs[c]);
+                        pad(outs[c], start + type.getLen());
+                        if ((numRows % rowsPerGroup + 1) % ColumnPage.valuesPerPage(type) == 0) {
+                            pad(outs[c], ((outs[c].size() + pageSize - 1) / pageSize) * pageSize);
+                        }
+                    }
+                    numRows++;
+                    more = it.hasNext();
+                    if (numRows % rowsPerGroup == 0 || !more) {
+                        // the group is complete; write its columns in field order
+                        for (int c = 0; c < n; c++) {
+                            pad(outs[c], ((outs[c].size() + pageSize - 1) / pageSize) * pageSize);
+                            out.write(bytes[c].toByteArray(), pos);
+                            pos += bytes[c].size();
+                            bytes[c].reset();
+                            outs[c] = new DataOutputStream(bytes[c]);
+                        }
+                    }
+                }
+            } finally {
+                it.close();
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(pageSize);
+            header.putInt(MAGIC).putInt(n).putInt(rowsPerGroup).putInt(numRows);
+            out.write(header.array(), 0);
+        }
+        return new ColumnFile(outFile, td);
+    }
+
+    /** Writes zeros to out until it has written size bytes. */
+    private static void pad(DataOutputStream out, int size) throws IOException {
+        while (out.size() < size) {
+            out.write(0);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package simpledb.storage;
+
+import simpledb.common.Type;
+import simpledb.transaction.TransactionId;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A page of a {@link ColumnFile}: consecutive values of one column, packed
+ * at the column type's fixed width from the start of the page.  Which rows
+ * the values belong to follows from the page's position in the file.
+ * <p>
+ * Column files are written whole and never modified afterwards, so a
+ * ColumnPage is never dirty and is never logged.
+ */
+public class ColumnPage implements Page {
+
+    private final HeapPageId pid;
+    private final Type type;
+    private final int len;
+    private final ByteBuffer data;
+
+    /**
+     * Creates a page of values of the given type from the page's bytes.
+     * The page keeps data and decodes values from it as they are asked for.
+     */
+    public ColumnPage(HeapPageId id, Type type, ByteBuffer data) {
+        this.pid = id;
+        this.type = type;
+        this.len = type.getLen();
+        this.data = data;
+    }
+
+    public HeapPageId getId() {
+        return pid;
+    }
+
+    /** @return the type of the values on this page */
+    public Type getType() {
+        return type;
+    }
+
+    /** @return how many values of this page's type fit on a page */
+    public static int valuesPerPage(Type type) {
+        return BufferPool.getPageSize() / type.getLen();
+    }
+
+    /**
+     * @return value i of the page, counting from 0
+     */
+    public Field getField(int i) {
+        return type.parse(data, i * len);
+    }
+
+    /**
+     * @return value i of the page, counting from 0, which must be a page of
+     *         INT values
+     */
+    public int getInt(int i) {
+        return data.getInt(i * len);
+    }
+
+    public TransactionId isDirty() {
+        return null;
+    }
+
+    /**
+     * Column pages are read-only.
+     *
+     * @throws UnsupportedOperationException if dirty is true
+     */
+    public void markDirty(boolean dirty, TransactionId tid) {
+        if (dirty) {
+            throw new UnsupportedOperationException("column file pages are read-only");
+        }
+    }
+
+    public byte[] getPageData() {
+        byte[] bytes = new byte[data.capacity()];
+        ByteBuffer src = data.duplicate();
+        src.clear();
+        src.get(bytes);
+        return bytes;
+    }
+
+    /** The page never changes, so it is its own before image. */
+    public Page getBeforeImage() {
+        return this;
+    }
+
+    public void setBeforeImage() {
+    }
+}
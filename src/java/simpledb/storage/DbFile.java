@@ -3,6 +3,8 @@ package simpledb.storage;
 
 import simpledb.common.DbException;
 import simpledb.common.Catalog;
+import simpledb.execution.Predicate;
+import simpledb.execution.PredicateCompiler;
 import simpledb.transaction.TransactionAbortedException;
 import simpledb.transaction.TransactionId;
 
@@ -48,6 +50,30 @@ public interface DbFile {
     List<Page> insertTuple(TransactionId tid, Tuple t)
         throws DbException, IOException, TransactionAbortedException;
 
+    /**
+     * Inserts the specified tuples to the file on behalf of transaction, as
+     * {@link #insertTuple} would one at a time.  Implementations should fill
+     * a page before moving on to the next, so that each page is locked and
+     * dirtied once per call.
+     *
+     * @param tid The transaction performing the update
+     * @param tuples The tuples to add.  Each is updated to reflect that it
+     *          is now stored in this file.
+     * @return The pages that were modified, each listed once
+     * @throws DbException if a tuple cannot be added
+     * @throws IOException if the needed file can't be read/written
+     */
+    default List<Page> insertTuples(TransactionId tid, Iterable<Tuple> tuples)
+        throws DbException, IOException, TransactionAbortedException {
+        Map<PageId, Page> dirty = new LinkedHashMap<>();
+        for (Tuple t : tuples) {
+            for (Page p : insertTuple(tid, t)) {
+                dirty.put(p.getId(), p);
+            }
+        }
+        return new ArrayList<>(dirty.values());
+    }
+
     /**
      * Removes the specified tuple from the file on behalf of the specified
      * transaction.
@@ -73,6 +99,94 @@ public interface DbFile {
      */
     DbFileIterator iterator(TransactionId tid);
 
+    /**
+     * Returns an iterator over the tuples stored in this DbFile that satisfy
+     * pred.
+     *
+     * @param pred the predicate, on fields of getTupleDesc()
+     * @see #iterator(TransactionId, List, int[])
+     */
+    default DbFileIterator iterator(TransactionId tid, Predicate pred) {
+        return iterator(tid, Collections.singletonList(pred), null);
+    }
+
+    /**
+     * Returns an iterator over the given fields of all the tuples stored in
+     * this DbFile.
+     *
+     * @param columns indexes of the fields to return, into getTupleDesc()
+     * @see #iterator(TransactionId, List, int[])
+     */
+    default DbFileIterator iterator(TransactionId tid, int[] columns) {
+        return iterator(tid, Collections.emptyList(), columns);
+    }
+
+    /**
+     * Returns an iterator over the tuples stored in this DbFile that satisfy
+     * all of preds, each cut down to the fields columns[0], columns[1], ...
+     * of the stored tuple, in that order.
+     * <p>
+     * Files should test preds and pick out the columns as they read each
+     * page, before they make a Tuple, and may use preds to pass over pages
+     * that hold no matching tuples, or read only the pages of the fields
+     * asked for if they store fields apart, like {@link ColumnFile}.  By
+     * default every tuple is read whole, then tested and cut down.
+     *
+     * @param preds predicates on fields of getTupleDesc(), possibly none
+     * @param columns indexes of the fields to return, into getTupleDesc(),
+     *          or null to return every field
+     */
+    default DbFileIterator iterator(TransactionId tid, List<Predicate> preds, int[] columns) {
+        DbFileIterator it = iterator(tid);
+        TupleDesc td = columns == null ? null : getTupleDesc().project(columns);
+        PredicateCompiler.TupleMatcher match = PredicateCompiler.compile(preds, getTupleDesc());
+        return new DbFileIterator() {
+            private Tuple next;
+
+            public void open() throws DbException, TransactionAbortedException {
+                it.open();
+                next = null;
+            }
+
+            public boolean hasNext() throws DbException, TransactionAbortedException {
+                while (next == null && it.hasNext()) {
+                    Tuple t = it.next();
+                    if (match.matches(t)) {
+                        next = t;
+                    }
+                }
+                return next != null;
+            }
+
+            public Tuple next() throws DbException, TransactionAbortedException {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Tuple t = next;
+                next = null;
+                if (columns == null) {
+                    return t;
+                }
+                Tuple out = new Tuple(td);
+                for (int i = 0; i < columns.length; i++) {
+                    out.copyField(i, t, columns[i]);
+                }
+                out.setRecordId(t.getRecordId());
+                return out;
+            }
+
+            public void rewind() throws DbException, TransactionAbortedException {
+                it.rewind();
+                next = null;
+            }
+
+            public void close() {
+                it.close();
+                next = null;
+            }
+        };
+    }
+
     /**
      * Returns a unique ID used to identify this DbFile in the Catalog. This id
      * can be used to look up the table via {@link Catalog#getDatabaseFile} and
@@ -93,4 +207,14 @@ public interface DbFile {
      * @return TupleDesc of this DbFile.
      */
     TupleDesc getTupleDesc();
+
+    /**
+     * Releases any operating system resources, such as open file handles,
+     * held by this DbFile.  The file stays usable; resources are acquired
+     * again on the next access.
+     *
+     * @throws IOException if closing the underlying file fails
+     */
+    default void close() throws IOException {
+    }
 }
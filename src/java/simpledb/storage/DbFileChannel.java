@@ -0,0 +1,104 @@
+package simpledb.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The open file behind a DbFile.  The channel is opened on first use and
+ * kept open, and all I/O is positional, so concurrent readers and writers
+ * of different pages never share a file pointer or pay for an open and
+ * close per page.
+ * <p>
+ * close() may be called at any time; the next access simply reopens the
+ * file.  The same happens if the channel was closed underneath us, e.g.
+ * because a thread doing I/O on it was interrupted.
+ *
+ * @Threadsafe
+ */
+public class DbFileChannel implements Closeable {
+
+    private final File file;
+    private volatile FileChannel channel;
+
+    /** Reusable per-thread buffers for callers that copy the data out. */
+    private static final ThreadLocal<byte[]> scratch = new ThreadLocal<>();
+
+    public DbFileChannel(File file) {
+        this.file = file;
+    }
+
+    /** @return the open channel, opening the file if needed */
+    public FileChannel channel() throws IOException {
+        FileChannel ch = channel;
+        if (ch != null && ch.isOpen()) {
+            return ch;
+        }
+        synchronized (this) {
+            ch = channel;
+            if (ch == null || !ch.isOpen()) {
+                try {
+                    ch = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                } catch (AccessDeniedException e) {
+                    ch = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                }
+                channel = ch;
+            }
+            return ch;
+        }
+    }
+
+    /**
+     * Reads buf.length bytes starting at position pos into buf.
+     *
+     * @throws IllegalArgumentException if the file ends before pos + buf.length
+     */
+    public void read(byte[] buf, long pos) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buf);
+        FileChannel ch = channel();
+        while (bb.hasRemaining()) {
+            int n = ch.read(bb, pos + bb.position());
+            if (n < 0) {
+                throw new IllegalArgumentException("Unable to read " + buf.length
+                        + " bytes at offset " + pos + " of " + file);
+            }
+        }
+    }
+
+    /** Writes all of data starting at position pos, extending the file if needed. */
+    public void write(byte[] data, long pos) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(data);
+        FileChannel ch = channel();
+        while (bb.hasRemaining()) {
+            ch.write(bb, pos + bb.position());
+        }
+    }
+
+    /**
+     * Returns a buffer of len bytes private to the calling thread.  Only for
+     * callers that are done with the contents before their next call, e.g.
+     * page constructors that decode the data into their own structures.
+     */
+    public static byte[] scratchBuffer(int len) {
+        byte[] buf = scratch.get();
+        if (buf == null || buf.length != len) {
+            buf = new byte[len];
+            scratch.set(buf);
+        }
+        return buf;
+    }
+
+    /** Closes the channel if it is open. */
+    @Override
+    public synchronized void close() throws IOException {
+        FileChannel ch = channel;
+        channel = null;
+        if (ch != null) {
+            ch.close();
+        }
+    }
+}
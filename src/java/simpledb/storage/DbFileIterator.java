@@ -40,4 +40,17 @@ public interface DbFileIterator{
      * Closes the iterator.
      */
     void close();
+
+    /**
+     * Asks the iterator to return the same Tuple from every call to next(),
+     * refilled with the next tuple's values, rather than a new one each
+     * time.  Only callers that are done with each tuple before asking for
+     * the next should ask.  Takes effect at the next open().
+     *
+     * @return true if the iterator will reuse its Tuple; iterators that
+     *         cannot return false and keep returning new ones
+     */
+    default boolean setReuseTuples(boolean reuse) {
+        return false;
+    }
 }
@@ -0,0 +1,101 @@
+package simpledb.storage;
+
+import java.util.List;
+
+/**
+ * Replacement policy of one BufferPool shard.
+ * <p>
+ * The pool keeps one policy instance per shard.  admit, remove and victim
+ * are only called with the shard lock held; touch is called on every cache
+ * hit without any lock, so implementations must keep it to a plain write
+ * into the page's Handle (usually setting a reference bit).
+ */
+public interface EvictionPolicy {
+
+    /**
+     * Per-page replacement state.  Policies subclass this to keep whatever
+     * they need next to the page; the pool stores the handle in its frame.
+     */
+    class Handle {
+        final PageId pid;
+        volatile boolean referenced;
+
+        protected Handle(PageId pid) {
+            this.pid = pid;
+        }
+
+        /** @return the id of the page this handle tracks */
+        public PageId getPageId() {
+            return pid;
+        }
+    }
+
+    /** Creates policy instances; a BufferPool calls it once per shard. */
+    interface Factory {
+        EvictionPolicy create();
+    }
+
+    /** The policies that ship with SimpleDB. */
+    enum Kind implements Factory {
+        /** Second-chance CLOCK.  Cheapest; some resistance to scans. */
+        CLOCK() {
+            @Override
+            public EvictionPolicy create() {
+                return new ClockPolicy();
+            }
+        },
+        /** Full 2Q: new pages must be re-referenced after leaving a FIFO
+         * before they compete with the hot set, so scans cannot flush it. */
+        TWO_Q() {
+            @Override
+            public EvictionPolicy create() {
+                return new TwoQueuePolicy();
+            }
+        },
+        /** LRU-2: evicts the page whose second most recent access is oldest. */
+        LRU_K() {
+            @Override
+            public EvictionPolicy create() {
+                return new LruKPolicy(2);
+            }
+        };
+
+        public abstract EvictionPolicy create();
+    }
+
+    /** The policy used when none is given to the BufferPool constructor. */
+    Kind DEFAULT = Kind.TWO_Q;
+
+    /**
+     * Starts tracking a page that was just read into the pool.
+     *
+     * @return the handle the pool passes back to touch and remove
+     */
+    Handle admit(PageId pid);
+
+    /** Records a cache hit on the page.  Called without the shard lock. */
+    void touch(Handle h);
+
+    /** Stops tracking a page that is leaving the pool. */
+    void remove(Handle h);
+
+    /**
+     * Chooses the page to evict next.  The page stays tracked until the pool
+     * calls remove, which it does once the page has been flushed.
+     *
+     * @return the victim, or null if no page is tracked
+     */
+    Handle victim();
+
+    /**
+     * Lists up to n tracked pages in roughly the order victim would choose
+     * them, without changing any replacement state.  The background writer
+     * uses this to write dirty pages before they are evicted.
+     *
+     * @param out the list to append the pages to
+     */
+    void upcoming(int n, List<Handle> out);
+
+    /** @return the number of pages tracked */
+    int size();
+}
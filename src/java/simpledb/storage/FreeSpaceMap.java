@@ -0,0 +1,118 @@
+package simpledb.storage;
+
+import java.io.*;
+import java.util.BitSet;
+
+/**
+ * Remembers which pages of a heap file have a free slot, so an insert can
+ * go straight to such a page instead of trying every page from the first.
+ * <p>
+ * The map is a hint that is checked, never trusted: a set bit means the
+ * page had room when it was last seen, and the inserter still looks at the
+ * page itself.  Bits are set when a page with room is read from disk or
+ * has a tuple deleted, and cleared when an insert fills a page or finds it
+ * full.  A bit cleared by an insert that is then aborted comes back the
+ * next time the page is read.
+ * <p>
+ * The map is kept in a file next to the heap file (its name plus ".fsm"),
+ * written when the heap file is closed and read when it is opened.  A
+ * saved map is only used if the heap file's length and modification time
+ * are still those it was saved with; otherwise, or if there is none, all
+ * pages are assumed to have room until an insert finds otherwise.  So are
+ * pages that appear at the end of the file without going through the map.
+ */
+final class FreeSpaceMap {
+
+    private final File heapFile;
+    private final File file;
+    private final BitSet free = new BitSet();
+    /** Every page below this has its bit clear. */
+    private int first;
+    /** Pages the bits say something about; later ones are assumed to have room. */
+    private int known;
+    private boolean changed;
+
+    /**
+     * Loads the map saved for heapFile, if any.
+     *
+     * @param numPages the heap file's current number of pages
+     */
+    FreeSpaceMap(File heapFile, int numPages) {
+        this.heapFile = heapFile;
+        this.file = new File(heapFile.getPath() + ".fsm");
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readLong() == heapFile.length() && in.readLong() == heapFile.lastModified()) {
+                    long[] words = new long[in.readInt()];
+                    for (int i = 0; i < words.length; i++) {
+                        words[i] = in.readLong();
+                    }
+                    free.or(BitSet.valueOf(words));
+                    free.clear(numPages, Integer.MAX_VALUE);
+                    known = numPages;
+                    return;
+                }
+            } catch (IOException e) {
+                // unreadable, so of no use
+                free.clear();
+            }
+        }
+        free.set(0, numPages);
+        known = numPages;
+    }
+
+    /**
+     * @param numPages the heap file's current number of pages
+     * @return a page that may have a free slot, lowest first, or -1 if no
+     *         page is known to have one
+     */
+    synchronized int pageWithSpace(int numPages) {
+        if (numPages > known) {
+            free.set(known, numPages);
+            known = numPages;
+        }
+        int p = free.nextSetBit(first);
+        if (p >= 0) {
+            first = p;
+        }
+        return p;
+    }
+
+    /** Records whether page pgNo has a free slot. */
+    synchronized void update(int pgNo, boolean hasSpace) {
+        known = Math.max(known, pgNo + 1);
+        if (free.get(pgNo) == hasSpace) {
+            return;
+        }
+        free.set(pgNo, hasSpace);
+        if (hasSpace && pgNo < first) {
+            first = pgNo;
+        }
+        changed = true;
+    }
+
+    /** Writes the map out if it changed since it was loaded or last saved. */
+    synchronized void save(int numPages) throws IOException {
+        if (!changed) {
+            return;
+        }
+        long[] words = free.get(0, numPages).toLongArray();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeLong(heapFile.length());
+            out.writeLong(heapFile.lastModified());
+            out.writeInt(words.length);
+            for (long w : words) {
+                out.writeLong(w);
+            }
+        }
+        changed = false;
+    }
+
+    /** Removes the saved map, e.g. when its heap file is gone. */
+    synchronized void delete() {
+        file.delete();
+        changed = false;
+    }
+}
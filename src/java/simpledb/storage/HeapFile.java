@@ -4,11 +4,14 @@ import simpledb.common.Database;
 import simpledb.common.DbException;
 import simpledb.common.Debug;
 import simpledb.common.Permissions;
+import simpledb.execution.Predicate;
+import simpledb.execution.PredicateCompiler;
 import simpledb.index.BTreeRootPtrPage;
 import simpledb.transaction.TransactionAbortedException;
 import simpledb.transaction.TransactionId;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
@@ -17,6 +20,20 @@ import java.util.*;
  * size, and the file is simply a collection of those pages. HeapFile works
  * closely with HeapPage. The format of HeapPages is described in the HeapPage
  * constructor.
+ * <p>
+ * Pages are read with positional reads into a buffer that the page keeps
+ * and decodes its tuples from lazily.
+ * <p>
+ * Inserts find a page with a free slot through a {@link FreeSpaceMap},
+ * which is kept in a file next to the heap file, rather than by trying
+ * every page in turn.
+ * <p>
+ * Tables with a variable-length field, i.e. a VARCHAR, keep their tuples
+ * in {@link SlottedPage}s, so short values take only the space they need.
+ * <p>
+ * A {@link ZoneMap} keeps the range of each INT field on each page, learnt
+ * as pages are read, and scans with a predicate pass over the pages it
+ * rules out without reading them.
  * 
  * @see HeapPage#HeapPage
  * @author Sam Madden
@@ -32,11 +49,26 @@ public class HeapFile implements DbFile {
      */
     private File file;
     private TupleDesc td;
+    private final DbFileChannel channel;
+    /** Pages that may have a free slot. */
+    private final FreeSpaceMap freeSpace;
+    /** Value ranges of the INT fields on each page. */
+    private final ZoneMap zones;
+    /** Whether the pages are SlottedPages rather than HeapPages. */
+    private final boolean slotted;
 
     public HeapFile(File f, TupleDesc td) {
         // some code goes here
         this.file = f;
         this.td = td;
+        this.channel = new DbFileChannel(f);
+        boolean variable = false;
+        for (int i = 0; i < td.numFields(); i++) {
+            variable |= td.getFieldType(i).isVariableLength();
+        }
+        this.slotted = variable;
+        this.freeSpace = new FreeSpaceMap(f, numPages());
+        this.zones = new ZoneMap(td);
     }
 
     /**
@@ -80,31 +112,34 @@ public class HeapFile implements DbFile {
     public Page readPage(PageId pid) {
         // some code goes here
         HeapPageId heapPageId = (HeapPageId) pid;
-        RandomAccessFile rf;
-        HeapPage hp;
-        try {
-            rf = new RandomAccessFile(file, "r");
-        } catch (FileNotFoundException e) {
-            throw new IllegalArgumentException();
-        }
-
         int size = BufferPool.getPageSize();
-        byte[] input = new byte[size];
         try {
-//            这种写法存在问题，不知道为什么 input 也会相应的偏移
-//            rf.read(input, heapPageId.getPageNumber() * size, size);
-            rf.seek(heapPageId.getPageNumber() * size);
-            rf.read(input);
+            // the page keeps the array and decodes tuples from it lazily
+            byte[] input = new byte[size];
+            channel.read(input, (long) heapPageId.getPageNumber() * size);
+            TuplePage page = newPage(heapPageId, ByteBuffer.wrap(input));
+            if (page.getNumEmptySlots() > 0) {
+                freeSpace.update(heapPageId.getPageNumber(), true);
+            }
+            zones.learn(heapPageId.getPageNumber(), page);
+            return page;
         } catch (IOException e) {
-            throw new IllegalArgumentException();
+            throw new IllegalArgumentException(e);
         }
-        try {
-            rf.close();//此处不关闭文件似乎也不影响测试
-            hp = new HeapPage(heapPageId, input);
-        } catch (IOException e) {
-            throw new IllegalArgumentException();
+    }
+
+    /** Makes a page of this file's layout from its bytes. */
+    private TuplePage newPage(HeapPageId pid, ByteBuffer data) throws IOException {
+        if (slotted) {
+            SlottedPage page = new SlottedPage(pid, data);
+            page.freeSpace = freeSpace;
+            page.zones = zones;
+            return page;
         }
-        return  hp;
+        HeapPage page = new HeapPage(pid, data);
+        page.freeSpace = freeSpace;
+        page.zones = zones;
+        return page;
     }
 
     // see DbFile.java for javadocs
@@ -112,17 +147,19 @@ public class HeapFile implements DbFile {
         // some code goes here
         // not necessary for lab1
         HeapPageId heapPageId = (HeapPageId) page.getId();
-        byte[] data = page.getPageData();
-        RandomAccessFile rf = new RandomAccessFile(file, "rw");
-        if(heapPageId.getPageNumber() == 0) {
-            rf.write(data);
-            rf.close();
-        }
-        else {
-            rf.seek((long) heapPageId.getPageNumber() * BufferPool.getPageSize());
-            rf.write(data);
-            rf.close();
+        channel.write(page.getPageData(), (long) heapPageId.getPageNumber() * BufferPool.getPageSize());
+        // the page may not be the one in the pool, e.g. a before image on abort
+        zones.compute(heapPageId.getPageNumber(), (TuplePage) page);
+    }
+
+    // see DbFile.java for javadocs
+    public void close() throws IOException {
+        if (file.exists()) {
+            freeSpace.save(numPages());
+        } else {
+            freeSpace.delete();
         }
+        channel.close();
     }
 
     /**
@@ -138,31 +175,67 @@ public class HeapFile implements DbFile {
             throws DbException, IOException, TransactionAbortedException {
         // some code goes here
         List<Page> list = new ArrayList<>();
-        boolean found = false;
-        for(int pageNo = 0; pageNo < numPages(); pageNo++) {
-            HeapPageId heapPageId = new HeapPageId(getId(), pageNo);
-            HeapPage curPage = (HeapPage) Database.getBufferPool()
-                    .getPage(tid, heapPageId, Permissions.READ_WRITE);
-            if (curPage.getNumEmptySlots() > 0) {
+        TuplePage curPage = pageWithSpace(tid);
+        curPage.insertTuple(t);
+        curPage.markDirty(true, tid);
+        list.add(curPage);
+        return list;
+        // not necessary for lab1
+    }
 
-                curPage.insertTuple(t);
-                curPage.markDirty(true, tid);
+    // see DbFile.java for javadocs
+    @Override
+    public List<Page> insertTuples(TransactionId tid, Iterable<Tuple> tuples)
+            throws DbException, IOException, TransactionAbortedException {
+        List<Page> list = new ArrayList<>();
+        TuplePage curPage = null;
+        for (Tuple t : tuples) {
+            if (curPage == null || curPage.getNumEmptySlots() == 0) {
+                curPage = pageWithSpace(tid);
                 list.add(curPage);
-                found = true;
-                break;
             }
-        }
-        if (!found) {
-            HeapPageId newHeapPageId = new HeapPageId(getId(), numPages());
-            this.writePage(new HeapPage (newHeapPageId, new byte[4096]));
-            HeapPage newPage = (HeapPage) Database.getBufferPool()
-                    .getPage(tid, newHeapPageId, Permissions.READ_WRITE);
-            newPage.insertTuple(t);
-            newPage.markDirty(true, tid);
-            list.add(newPage);
+            curPage.insertTuple(t);
+            // after every insert: the background writer may have written
+            // and cleaned the page since the last one
+            curPage.markDirty(true, tid);
         }
         return list;
-        // not necessary for lab1
+    }
+
+    /**
+     * Returns a page with a free slot, locked READ_WRITE for tid, appending
+     * one to the file if no page has room.
+     */
+    private TuplePage pageWithSpace(TransactionId tid)
+            throws DbException, IOException, TransactionAbortedException {
+        while (true) {
+            int pageNo = freeSpace.pageWithSpace(numPages());
+            if (pageNo < 0) {
+                pageNo = appendEmptyPage();
+            } else if (pageNo >= numPages()) {
+                freeSpace.update(pageNo, false);
+                continue;
+            }
+            TuplePage curPage = (TuplePage) Database.getBufferPool()
+                    .getPage(tid, new HeapPageId(getId(), pageNo), Permissions.READ_WRITE);
+            if (curPage.getNumEmptySlots() > 0) {
+                return curPage;
+            }
+            // the map was stale, e.g. another transaction filled the page
+            freeSpace.update(pageNo, false);
+        }
+    }
+
+    /**
+     * Writes an empty page at the end of the file.
+     *
+     * @return the new page's number
+     */
+    private synchronized int appendEmptyPage() throws IOException {
+        int pageNo = numPages();
+        writePage(newPage(new HeapPageId(getId(), pageNo), ByteBuffer.wrap(HeapPage.createEmptyPageData())));
+        freeSpace.update(pageNo, true);
+        return pageNo;
     }
 
     // see DbFile.java for javadocs
@@ -171,7 +244,7 @@ public class HeapFile implements DbFile {
         // some code goes here
         ArrayList<Page> list = new ArrayList<>();
         HeapPageId heapPageId = new HeapPageId(getId(), t.getRecordId().getPageId().getPageNumber());
-        HeapPage curPage = (HeapPage) Database.getBufferPool()
+        TuplePage curPage = (TuplePage) Database.getBufferPool()
                     .getPage(tid, heapPageId, Permissions.READ_WRITE);
         curPage.deleteTuple(t);
         curPage.markDirty(true, tid);
@@ -184,52 +257,137 @@ public class HeapFile implements DbFile {
     // see DbFile.java for javadocs
     public DbFileIterator iterator(TransactionId tid) {
         // some code goes here
-        return new HeapFileIterator(this, tid);
+        return new HeapFileIterator(this, tid, Collections.emptyList(), null, null);
+    }
+
+    /**
+     * Returns an iterator over the tuples of this file that satisfy preds,
+     * cut down to columns.  Pages the zone map rules out are not read, and
+     * on the others the predicates are evaluated on the page's raw bytes,
+     * so tuples that fail them are never decoded, and those that pass have
+     * only the fields in columns decoded.
+     */
+    @Override
+    public DbFileIterator iterator(TransactionId tid, List<Predicate> preds, int[] columns) {
+        return new HeapFileIterator(this, tid, preds, columns, null);
+    }
+
+    /**
+     * Returns an iterator like {@link #iterator(TransactionId, List, int[])}
+     * over only the pages it claims from morsels, which other iterators of
+     * this file share, so that each page is read by just one of them.
+     */
+    public DbFileIterator iterator(TransactionId tid, List<Predicate> preds, int[] columns,
+                                   PageMorsels morsels) {
+        if (morsels.getFile() != this) {
+            throw new IllegalArgumentException("morsels of another file");
+        }
+        return new HeapFileIterator(this, tid, preds, columns, morsels);
     }
 
     class HeapFileIterator implements DbFileIterator {
         HeapFile f;
         TransactionId tid;
+        // tuples must pass all of these
+        final List<Predicate> preds;
+        // preds compiled for HeapPages, or null for SlottedPages
+        final PredicateCompiler.SlotMatcher match;
+        // fields to return, or null for all
+        final int[] columns;
+        final TupleDesc outTd;
+        boolean reuse = false;
+        // the Tuple every next() returns, if reuse
+        Tuple row = null;
         Iterator<Tuple> it =null;
-        HeapPage curPage = null;
+        // number of the next page to look at
+        int nextPageNo;
+        // where pages come from if shared with other iterators, else null
+        final PageMorsels morsels;
+        // one past the last page of the current morsel
+        int endPageNo;
+        // private frames for scans too big for the shared pool, else null
+        BufferRing ring = null;
 
-        public HeapFileIterator(HeapFile f, TransactionId tid) {
+        public HeapFileIterator(HeapFile f, TransactionId tid, List<Predicate> preds, int[] columns,
+                                PageMorsels morsels) {
             this.f = f;
             this.tid = tid;
+            this.preds = preds;
+            this.match = slotted ? null : PredicateCompiler.compileSlot(preds, td);
+            this.columns = columns;
+            this.outTd = columns == null ? td : td.project(columns);
+            this.morsels = morsels;
         }
 
         @Override
         public void open() throws DbException, TransactionAbortedException {
-            HeapPageId heapPageId = new HeapPageId(f.getId(),0);
-            curPage = (HeapPage) Database.getBufferPool()
-                    .getPage(tid, heapPageId, Permissions.READ_ONLY);
-            it = curPage.iterator();
+            if (morsels != null && it == null) {
+                morsels.attach();
+            }
+            ring = Database.getBufferPool().newScanRing(numPages());
+            nextPageNo = 0;
+            endPageNo = 0;
+            it = Collections.emptyIterator();
+            row = reuse ? new Tuple(outTd) : null;
+        }
+
+        @Override
+        public boolean setReuseTuples(boolean reuse) {
+            this.reuse = reuse;
+            return true;
         }
 
         @Override
         public boolean hasNext() throws DbException, TransactionAbortedException {
-            int pageMaxNo = numPages() - 1;
             // may not open
             if (it == null) return false;
             if (it.hasNext()) return true;
+            // only look at the file length when moving to the next page
+            int numPages = morsels == null ? numPages() : endPageNo;
             //当前页没有，需要跳入下一页确认，由于这个过程可能要迭代多次，所以这里为while循环，直到找到符合条件的页后退出
-            while (pageMaxNo > curPage.getId().getPageNumber()) {
-                int curpageno = curPage.getId().getPageNumber();
-                HeapPageId nextHeapPageId = new HeapPageId(f.getId(),
-                        curpageno + 1);
-                curPage = (HeapPage) Database.getBufferPool()
-                        .getPage(tid, nextHeapPageId, Permissions.READ_ONLY);
-
-                it = curPage.iterator();
+            while (nextPageNo < numPages || nextMorsel()) {
+                numPages = morsels == null ? numPages : endPageNo;
+                int pageNo = nextPageNo++;
+                if (!mayMatch(pageNo)) {
+                    continue;
+                }
+                TuplePage curPage = (TuplePage) Database.getBufferPool()
+                        .getPage(tid, new HeapPageId(f.getId(), pageNo), Permissions.READ_ONLY, ring);
+                it = match != null ? ((HeapPage) curPage).iterator(match, columns, outTd, row)
+                        : curPage.iterator(preds, columns, outTd, row);
                 if (it.hasNext()) return true;
             }
 
             return  false;
         }
 
+        /** Moves on to a morsel no other iterator has had, if any are left. */
+        private boolean nextMorsel() {
+            if (morsels == null) {
+                return false;
+            }
+            int start = morsels.claim();
+            if (start < 0) {
+                return false;
+            }
+            nextPageNo = start;
+            endPageNo = morsels.end(start);
+            return true;
+        }
+
+        /** @return false if the zone map rules out page pageNo for some predicate */
+        private boolean mayMatch(int pageNo) {
+            for (Predicate pred : preds) {
+                if (!zones.mayMatch(pageNo, pred)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         @Override
         public Tuple next() throws DbException, TransactionAbortedException, NoSuchElementException {
-            if (it == null) throw new NoSuchElementException();
+            if (it == null || !hasNext()) throw new NoSuchElementException();
             return it.next();
         }
 
@@ -241,8 +399,11 @@ public class HeapFile implements DbFile {
 
         @Override
         public void close() {
+            if (morsels != null && it != null) {
+                morsels.detach();
+            }
             it = null;
-            curPage = null;
+            ring = null;
         }
     }
 
@@ -1,11 +1,14 @@
 package simpledb.storage;
 
+import simpledb.common.DbException;
 import simpledb.common.Type;
 import simpledb.common.Utility;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * HeapFileEncoder reads a comma delimited text file or accepts
@@ -78,9 +81,10 @@ public class HeapFileEncoder {
     * where each row represents a tuple.<br>
     * <p>
     * The format of the output file will be as specified in HeapPage and
-    * HeapFile.
+    * HeapFile, or in SlottedPage if any of the types is variable-length.
     *
     * @see HeapPage
+    * @see SlottedPage
     * @see HeapFile
     * @param inFile The input file to read data from
     * @param outFile The output file to write data to
@@ -93,6 +97,13 @@ public class HeapFileEncoder {
                  int numFields, Type[] typeAr, char fieldSeparator)
       throws IOException {
 
+      for (Type type : typeAr) {
+          if (type.isVariableLength()) {
+              convertSlotted(inFile, outFile, npagebytes, typeAr, fieldSeparator);
+              return;
+          }
+      }
+
       int nrecbytes = 0;
       for (int i = 0; i < numFields ; i++) {
           nrecbytes += typeAr[i].getLen();
@@ -224,4 +235,65 @@ public class HeapFileEncoder {
     br.close();
     os.close();
   }
+
+  /**
+   * Like {@link #convert(File, File, int, int, Type[], char)}, but writes
+   * SlottedPages, each filled until it reports no room.
+   */
+  private static void convertSlotted(File inFile, File outFile, int npagebytes,
+                 Type[] typeAr, char fieldSeparator)
+      throws IOException {
+      if (npagebytes != BufferPool.getPageSize()) {
+          throw new IOException("slotted pages must be " + BufferPool.getPageSize() + " bytes");
+      }
+      TupleDesc td = new TupleDesc(typeAr);
+      String separator = Pattern.quote(String.valueOf(fieldSeparator));
+      int npages = 0;
+      SlottedPage page = new SlottedPage(new HeapPageId(0, npages), td,
+              ByteBuffer.wrap(SlottedPage.createEmptyPageData()));
+      boolean empty = true;
+      try (BufferedReader br = new BufferedReader(new FileReader(inFile));
+           OutputStream os = new BufferedOutputStream(new FileOutputStream(outFile))) {
+          String line;
+          while ((line = br.readLine()) != null) {
+              if (line.isEmpty()) {
+                  continue;
+              }
+              String[] values = line.split(separator, -1);
+              Tuple t = new Tuple(td);
+              for (int i = 0; i < typeAr.length; i++) {
+                  String v = i < values.length ? values[i].trim() : "";
+                  if (typeAr[i] == Type.INT_TYPE) {
+                      try {
+                          t.setField(i, new IntField(Integer.parseInt(v)));
+                      } catch (NumberFormatException e) {
+                          System.out.println ("BAD LINE : " + line);
+                          t.setField(i, new IntField(0));
+                      }
+                  } else if (typeAr[i] == Type.VARCHAR_TYPE) {
+                      t.setField(i, new VarcharField(v, Type.STRING_LEN));
+                  } else {
+                      t.setField(i, new StringField(v, Type.STRING_LEN));
+                  }
+              }
+              try {
+                  page.insertTuple(t);
+              } catch (DbException e) {
+                  throw new IOException(e.getMessage());
+              }
+              empty = false;
+              if (page.getNumEmptySlots() == 0) {
+                  os.write(page.getPageData());
+                  npages++;
+                  page = new SlottedPage(new HeapPageId(0, npages), td,
+                          ByteBuffer.wrap(SlottedPage.createEmptyPageData()));
+                  empty = true;
+              }
+          }
+          // write the last page, or one empty page for an empty table
+          if (!empty || npages == 0) {
+              os.write(page.getPageData());
+          }
+      }
+  }
 }
@@ -4,34 +4,65 @@ import simpledb.common.Database;
 import simpledb.common.DbException;
 import simpledb.common.Debug;
 import simpledb.common.Catalog;
+import simpledb.common.Type;
+import simpledb.execution.Predicate;
+import simpledb.execution.PredicateCompiler;
 import simpledb.transaction.TransactionId;
 
 import java.util.*;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Each instance of HeapPage stores data for one page of HeapFiles and 
  * implements the Page interface that is used by BufferPool.
+ * <p>
+ * The page keeps its raw bytes and decodes tuples only when they are asked
+ * for, so loading a page costs a copy of its header and nothing else, and
+ * tuples a predicate rejects are never materialized at all.  The bytes it
+ * was built from are never written: the first modification copies them
+ * into a private buffer, which is also when the before image is taken.
  *
  * @see HeapFile
  * @see BufferPool
  *
  */
-public class HeapPage implements Page {
+public class HeapPage implements TuplePage {
 
     final HeapPageId pid;
     final TupleDesc td;
     final byte[] header;
-    final Tuple[] tuples;
     final int numSlots;
+    final int tupleSize;
 
+    /** The page's bytes.  header[] supersedes the header bytes in here. */
+    private volatile ByteBuffer data;
+    /**
+     * Whether data is our own copy and may be written.  Cleared when an
+     * iterator takes data, so that the iterator keeps reading the page as it
+     * was when it was made.  Volatile because iterators clear it from
+     * reader threads.
+     */
+    private volatile boolean ownData;
+
+    /** Before image, or null if the page is unchanged since it was read. */
     byte[] oldData;
-    private final Byte oldDataLock= (byte) 0;
+    private final Object oldDataLock = new Object();
 
     private TransactionId transactionId;
     private boolean dirty;
 
+    /** Free-space map of the file this page was read from, or null. */
+    FreeSpaceMap freeSpace;
+    /** Zone map of the file this page was read from, or null. */
+    ZoneMap zones;
+
+    /** Number of empty slots, kept up to date by markSlotUsed. */
+    private int emptySlots;
+    /** No slot below this one is empty. */
+    private int firstFree;
+
     /**
      * Create a HeapPage from a set of bytes of data read from disk.
      * The format of a HeapPage is a set of header bytes indicating
@@ -49,27 +80,41 @@ public class HeapPage implements Page {
      * @see BufferPool#getPageSize()
      */
     public HeapPage(HeapPageId id, byte[] data) throws IOException {
+        this(id, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Create a HeapPage from the page's bytes in a buffer, in the format
+     * described at {@link #HeapPage(HeapPageId, byte[])}.  The page occupies
+     * indexes 0 to BufferPool.getPageSize() - 1 of data, which may be a slice
+     * of a larger buffer; it is read with absolute gets, so no copy of the
+     * page is made and the buffer's position is left alone.
+     * <p>
+     * The page keeps referring to data until it is first modified, so the
+     * caller must not change its contents in the meantime.
+     */
+    public HeapPage(HeapPageId id, ByteBuffer data) throws IOException {
         this.pid = id;
         this.td = Database.getCatalog().getTupleDesc(id.getTableId());
         this.numSlots = getNumTuples();
-        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+        this.tupleSize = td.getSize();
+        if (data.limit() < BufferPool.getPageSize()) {
+            // missing trailing bytes are zeroes, i.e. empty slots
+            byte[] padded = new byte[BufferPool.getPageSize()];
+            ByteBuffer src = data.duplicate();
+            src.position(0);
+            src.get(padded, 0, src.remaining());
+            data = ByteBuffer.wrap(padded);
+        }
 
         // allocate and read the header slots of this page
         header = new byte[getHeaderSize()];
         for (int i=0; i<header.length; i++)
-            header[i] = dis.readByte();
-        
-        tuples = new Tuple[numSlots];
-        try{
-            // allocate and read the actual records of this page
-            for (int i=0; i<tuples.length; i++)
-                tuples[i] = readNextTuple(dis,i);
-        }catch(NoSuchElementException e){
-            e.printStackTrace();
-        }
-        dis.close();
+            header[i] = data.get(i);
+        emptySlots = countEmptySlots();
 
-        setBeforeImage();
+        // the tuples are decoded from the data on demand
+        this.data = data;
     }
 
     /** Retrieve the number of tuples on this page.
@@ -80,6 +125,11 @@ public class HeapPage implements Page {
         return (BufferPool.getPageSize() * 8) / (this.td.getSize() * 8 + 1);
     }
 
+    /** @return the index in the page data of the first byte of slot i */
+    private int slotOffset(int i) {
+        return header.length + i * tupleSize;
+    }
+
     /**
      * Computes the number of bytes in the header of a page in a HeapFile with each tuple occupying tupleSize bytes
      * @return the number of bytes in the header of a page in a HeapFile with each tuple occupying tupleSize bytes
@@ -100,6 +150,10 @@ public class HeapPage implements Page {
             {
                 oldDataRef = oldData;
             }
+            if (oldDataRef == null) {
+                // not modified since it was read, so it is its own before image
+                oldDataRef = getPageData();
+            }
             return new HeapPage(pid,oldDataRef);
         } catch (IOException e) {
             e.printStackTrace();
@@ -112,8 +166,28 @@ public class HeapPage implements Page {
     public void setBeforeImage() {
         synchronized(oldDataLock)
         {
-        oldData = getPageData().clone();
+        oldData = getPageData();
+        }
+    }
+
+    /**
+     * Makes data a private, writable copy before the first modification,
+     * and remembers the page as it was as the before image unless one has
+     * been set explicitly.
+     */
+    private void ensureWritable() {
+        if (ownData) {
+            return;
+        }
+        byte[] copy = getPageData();
+        synchronized(oldDataLock)
+        {
+            if (oldData == null) {
+                oldData = copy.clone();
+            }
         }
+        data = ByteBuffer.wrap(copy);
+        ownData = true;
     }
 
     /**
@@ -126,39 +200,63 @@ public class HeapPage implements Page {
     }
 
     /**
-     * Suck up tuples from the source file.
+     * Decodes the tuple in slotId from the page's bytes.
      */
-    private Tuple readNextTuple(DataInputStream dis, int slotId) throws NoSuchElementException {
-        // if associated bit is not set, read forward to the next tuple, and
-        // return null.
+    private Tuple readNextTuple(ByteBuffer data, int slotId) throws NoSuchElementException {
+        // if associated bit is not set, there is no tuple: return null.
         if (!isSlotUsed(slotId)) {
-            for (int i=0; i<td.getSize(); i++) {
-                try {
-                    dis.readByte();
-                } catch (IOException e) {
-                    throw new NoSuchElementException("error reading empty tuple");
-                }
-            }
             return null;
         }
 
+        return readInto(new Tuple(td), data, slotId);
+    }
+
+    /** Decodes the tuple in used slot slotId into t, which it returns. */
+    private Tuple readInto(Tuple t, ByteBuffer data, int slotId) throws NoSuchElementException {
         // read fields in the tuple
-        Tuple t = new Tuple(td);
         RecordId rid = new RecordId(pid, slotId);
         t.setRecordId(rid);
+        int offset = slotOffset(slotId);
         try {
             for (int j=0; j<td.numFields(); j++) {
-                Field f = td.getFieldType(j).parse(dis);
-                t.setField(j, f);
+                Type type = td.getFieldType(j);
+                t.parseField(j, type, data, offset);
+                offset += type.getLen();
             }
-        } catch (java.text.ParseException e) {
-            e.printStackTrace();
-            throw new NoSuchElementException("parsing error!");
+        } catch (IndexOutOfBoundsException e) {
+            throw new NoSuchElementException("error reading tuple " + slotId);
         }
 
         return t;
     }
 
+    /**
+     * Returns the tuple in slot i, decoding it from the page's bytes.  Each
+     * call returns a new Tuple.
+     *
+     * @throws NoSuchElementException if slot i is empty
+     */
+    public Tuple getTuple(int i) throws NoSuchElementException {
+        Tuple t = readNextTuple(data, i);
+        if (t == null) {
+            throw new NoSuchElementException("slot " + i + " is empty");
+        }
+        return t;
+    }
+
+    /**
+     * Returns one field of the tuple in slot i without decoding the rest of
+     * the tuple.
+     *
+     * @throws NoSuchElementException if slot i is empty
+     */
+    public Field getField(int i, int fieldIndex) throws NoSuchElementException {
+        if (!isSlotUsed(i)) {
+            throw new NoSuchElementException("slot " + i + " is empty");
+        }
+        return td.getFieldType(fieldIndex).parse(data, slotOffset(i) + td.getFieldOffset(fieldIndex));
+    }
+
     /**
      * Generates a byte array representing the contents of this page.
      * Used to serialize this page to disk.
@@ -172,63 +270,12 @@ public class HeapPage implements Page {
      */
     public byte[] getPageData() {
         int len = BufferPool.getPageSize();
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(len);
-        DataOutputStream dos = new DataOutputStream(baos);
-
-        // create the header of the page
-        for (byte b : header) {
-            try {
-                dos.writeByte(b);
-            } catch (IOException e) {
-                // this really shouldn't happen
-                e.printStackTrace();
-            }
-        }
-
-        // create the tuples
-        for (int i=0; i<tuples.length; i++) {
-
-            // empty slot
-            if (!isSlotUsed(i)) {
-                for (int j=0; j<td.getSize(); j++) {
-                    try {
-                        dos.writeByte(0);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-
-                }
-                continue;
-            }
-
-            // non-empty slot
-            for (int j=0; j<td.numFields(); j++) {
-                Field f = tuples[i].getField(j);
-                try {
-                    f.serialize(dos);
-                
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-
-        // padding
-        int zerolen = BufferPool.getPageSize() - (header.length + td.getSize() * tuples.length); //- numSlots * td.getSize();
-        byte[] zeroes = new byte[zerolen];
-        try {
-            dos.write(zeroes, 0, zerolen);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        try {
-            dos.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return baos.toByteArray();
+        byte[] out = new byte[len];
+        ByteBuffer src = data.duplicate();
+        src.clear();
+        src.get(out, 0, len);
+        System.arraycopy(header, 0, out, 0, header.length);
+        return out;
     }
 
     /**
@@ -255,23 +302,24 @@ public class HeapPage implements Page {
     public void deleteTuple(Tuple t) throws DbException {
         // some code goes here
         // not necessary for lab1
-        int tupleNo = 0;
-        boolean found = false;
-        for(Tuple tupletmp: tuples) {
-            if(tupletmp!=null && tupletmp.equals(t)) {
-                found = true;
-                break;
-            }
-            else tupleNo++;
-        }
-        if (!found) {
+        RecordId rid = t.getRecordId();
+        if (rid == null || !pid.equals(rid.getPageId())) {
             throw  new DbException("Can not found targetTuple");
         }
-        if (!isSlotUsed(tupleNo)) {
+        int tupleNo = rid.getTupleNumber();
+        if (tupleNo < 0 || tupleNo >= numSlots || !isSlotUsed(tupleNo)) {
             throw  new DbException("tuple slot is already empty");
         }
+        ensureWritable();
         markSlotUsed(tupleNo, false);
-
+        // empty slots are all zeroes on disk
+        ByteBuffer buf = data;
+        for (int i = slotOffset(tupleNo), end = i + tupleSize; i < end; i++) {
+            buf.put(i, (byte) 0);
+        }
+        if (freeSpace != null) {
+            freeSpace.update(pid.getPageNumber(), true);
+        }
     }
 
     /**
@@ -290,15 +338,46 @@ public class HeapPage implements Page {
         if (!t.getTupleDesc().equals(td)) {
             throw  new DbException("Tupledesc is mismatch");
         }
-        for (int i = 0; i <  numSlots; i++){
+        for (int i = firstFree; i <  numSlots; i++){
             if (!isSlotUsed(i)) {
+                ensureWritable();
+                writeTuple(i, t);
                 markSlotUsed(i, true);
                 t.setRecordId(new RecordId(pid, i));
-                tuples[i] = t;
+                firstFree = i + 1;
                 break;
             }
         }
+        if (freeSpace != null && getNumEmptySlots() == 0) {
+            freeSpace.update(pid.getPageNumber(), false);
+        }
+        if (zones != null) {
+            zones.widen(pid.getPageNumber(), t);
+        }
+    }
 
+    /** Serializes t into slot i of the (writable) page data. */
+    private void writeTuple(int i, Tuple t) throws DbException {
+        ByteBuffer buf = data;
+        int offset = slotOffset(i);
+        for (int j = 0; j < td.numFields(); j++) {
+            Field f = t.getField(j);
+            if (f instanceof IntField) {
+                buf.putInt(offset, ((IntField) f).getValue());
+            } else {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream(f.getType().getLen());
+                try {
+                    f.serialize(new DataOutputStream(baos));
+                } catch (IOException e) {
+                    throw new DbException("cannot serialize field " + j + ": " + e.getMessage());
+                }
+                byte[] bytes = baos.toByteArray();
+                for (int k = 0; k < bytes.length; k++) {
+                    buf.put(offset + k, bytes[k]);
+                }
+            }
+            offset += td.getFieldType(j).getLen();
+        }
     }
 
     /**
@@ -325,31 +404,26 @@ public class HeapPage implements Page {
     /**
      * Returns the number of empty slots on this page.
      */
-    //TODO 这里总觉得不太妥当。感觉是有些问题。
     public int getNumEmptySlots() {
         // some code goes here
-        int res = 0;
-        for (int j = 0; j < getHeaderSize() -1 ;j++) {
-            int tmp = header[j];
-            for (int i = 0; i < 8; i++) {
-                if ((tmp & 1) == 0) res++;
-                tmp = ( tmp >>> 1);
-            }
+        return emptySlots;
+    }
+
+    /** Counts the clear bits of the header's first numSlots bits. */
+    private int countEmptySlots() {
+        int used = 0;
+        for (int j = 0; j < numSlots / 8; j++) {
+            used += Integer.bitCount(header[j] & 0xFF);
         }
-        int tmp = header[getHeaderSize() -1];
-        if (getHeaderSize() * 8 > numSlots) {
-            for (int i=0; i< 8 -getHeaderSize() * 8 + numSlots; i++) {
-                if ((tmp & 1) == 0) res++;
-                tmp = ( tmp >> 1);
-            }
-        } else {
-            for (int i = 0; i < 8; i++) {
-                if ((tmp & 1) == 0) res++;
-                tmp = (tmp >> 1);//这里之前是左移，导致在跳转到这里时，在处理还剩8，7，6元素时报错
-            }
+        if (numSlots % 8 != 0) {
+            used += Integer.bitCount(header[numSlots / 8] & ((1 << (numSlots % 8)) - 1));
         }
+        return numSlots - used;
+    }
 
-        return res;
+    /** @return the number of tuple slots on this page, used or not */
+    public int getNumSlots() {
+        return numSlots;
     }
 
     /**
@@ -367,10 +441,16 @@ public class HeapPage implements Page {
      */
     private void markSlotUsed(int i, boolean value) {
         int m = 1 << (i%8);
+        if (isSlotUsed(i) == value) {
+            return;
+        }
         if (value) {
             header[i/8] = (byte) (header[i/8] | m);
+            emptySlots--;
         } else {
             header[i/8] = (byte) (header[i/8] & ~m);
+            emptySlots++;
+            firstFree = Math.min(firstFree, i);
         }
 
     }
@@ -381,39 +461,123 @@ public class HeapPage implements Page {
      */
     public Iterator<Tuple> iterator() {
         // some code goes here
-        return new Itr();
+        return iterator(null);
+    }
+
+    /**
+     * @return an iterator over the tuples on this page that satisfy pred.
+     * The predicate is evaluated on the page's bytes, so only matching
+     * tuples are decoded.
+     */
+    public Iterator<Tuple> iterator(Predicate pred) {
+        return iterator(pred == null ? Collections.emptyList() : Collections.singletonList(pred), null, td, null);
+    }
+
+    // see TuplePage.java for javadocs
+    public int fill(TupleBatch batch, int slot, int[] columns) {
+        int n = columns == null ? td.numFields() : columns.length;
+        int[] offsets = new int[n];
+        Type[] types = new Type[n];
+        for (int j = 0; j < n; j++) {
+            int field = columns == null ? j : columns[j];
+            offsets[j] = td.getFieldOffset(field);
+            types[j] = td.getFieldType(field);
+        }
+        ByteBuffer buf = data;
+        for (; slot < numSlots && !batch.isFull(); slot++) {
+            if ((header[slot >> 3] & (1 << (slot & 7))) == 0) {
+                continue;
+            }
+            int row = batch.addRow();
+            int offset = slotOffset(slot);
+            for (int j = 0; j < n; j++) {
+                if (types[j] == Type.INT_TYPE) {
+                    batch.getInts(j)[row] = buf.getInt(offset + offsets[j]);
+                } else {
+                    batch.getFields(j)[row] = types[j].parse(buf, offset + offsets[j]);
+                }
+            }
+        }
+        return slot;
     }
+
+    // see TuplePage.java for javadocs
+    public Iterator<Tuple> iterator(List<Predicate> preds, int[] columns, TupleDesc outTd, Tuple reuse) {
+        return new Itr(PredicateCompiler.compileSlot(preds, td), columns, outTd, reuse);
+    }
+
+    /**
+     * Like {@link #iterator(List, int[], TupleDesc, Tuple)}, with the
+     * predicates already compiled by
+     * {@link PredicateCompiler#compileSlot} for the page's TupleDesc, so
+     * that a scan compiles them once rather than once per page.
+     */
+    Iterator<Tuple> iterator(PredicateCompiler.SlotMatcher match, int[] columns, TupleDesc outTd, Tuple reuse) {
+        return new Itr(match, columns, outTd, reuse);
+    }
+
     private class Itr implements Iterator<Tuple> {
-        //已经被便利的slot编号，初始化为-1。
+        //下一个要返回的 slot 编号，没有时为 numSlots
         int slotId = -1;
-        int cursor = 0;
-        int size;
-
-        Itr() {
-            int count = 0;
-            for (int i = 0; i < header.length ; i++) {
-                if (header[i] == 0) continue;
-                for (int j = 0; j < 8; j++) {
-                    int m = 1<< j;
-                    if ((header[i] & m) > 0) count++;
+        // tests the predicates tuples must pass, on a slot's bytes
+        final PredicateCompiler.SlotMatcher match;
+        final int[] columns;
+        final TupleDesc outTd;
+        // filled in by every next() if not null
+        final Tuple reuse;
+        // the page as it was when the iterator was made: tuples inserted or
+        // deleted since go to a copy of the data, see ensureWritable
+        final ByteBuffer buf = data;
+        final byte[] used = header.clone();
+
+        Itr(PredicateCompiler.SlotMatcher match, int[] columns, TupleDesc outTd, Tuple reuse) {
+            ownData = false;
+            this.match = match;
+            this.columns = columns;
+            this.outTd = outTd;
+            this.reuse = reuse;
+            advance();
+        }
+
+        /** Moves slotId to the next used slot that passes preds. */
+        private void advance() {
+            while (++slotId < numSlots) {
+                if ((used[slotId >> 3] & (1 << (slotId & 7))) == 0) {
+                    // skip whole empty header bytes
+                    if (used[slotId >> 3] == 0) {
+                        slotId |= 7;
+                    }
+                    continue;
+                }
+                if (match.matches(buf, slotOffset(slotId))) {
+                    return;
                 }
             }
-            size = count;
         }
 
-
         @Override
         public boolean hasNext() {
-            return cursor != size;
+            return slotId < numSlots;
         }
 
         @Override
         public Tuple next() {
-            while (!isSlotUsed(++slotId)){}
-            cursor++;
-            return tuples[slotId];
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Tuple t = reuse != null ? reuse : new Tuple(outTd);
+            if (columns == null) {
+                readInto(t, buf, slotId);
+            } else {
+                t.setRecordId(new RecordId(pid, slotId));
+                int offset = slotOffset(slotId);
+                for (int j = 0; j < columns.length; j++) {
+                    t.parseField(j, td.getFieldType(columns[j]), buf, offset + td.getFieldOffset(columns[j]));
+                }
+            }
+            advance();
+            return t;
         }
     }
 
 }
-
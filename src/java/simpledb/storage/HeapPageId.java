@@ -44,7 +44,7 @@ public class HeapPageId implements PageId {
     public int hashCode() {
         // some code goes here
 //        throw new UnsupportedOperationException("implement this");
-        return tableId << 1  + pgNo;
+        return 31 * tableId + pgNo;
     }
 
     /**
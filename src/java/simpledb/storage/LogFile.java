@@ -2,12 +2,18 @@
 package simpledb.storage;
 
 import simpledb.common.Database;
+import simpledb.index.*;
 import simpledb.transaction.TransactionId;
 import simpledb.common.Debug;
 
 import java.io.*;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.*;
-import java.lang.reflect.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /*
 LogFile implements the recovery subsystem of SimpleDb.  This class is
@@ -36,6 +42,12 @@ must not be declared synchronized and must begin with a block like:
        }
     }
 </pre>
+
+BufferPool logs and forces the update record of a dirty page while it
+holds the page's shard lock, just before writing the page.  Code
+holding this monitor must therefore never wait for a shard lock, i.e.
+must not flush or evict pages; logCheckpoint flushes the pool before
+it enters the monitor.
 */
 
 /**
@@ -49,11 +61,16 @@ last written checkpoint, or -1 if there are no checkpoints
 <li> All additional data in the log consists of log records.  Log
 records are variable length.
 
-<li> Each log record begins with an integer type and a long integer
-transaction id.
+<li> Each log record begins with an integer type, a long integer
+transaction id and an integer length of the record's payload, which
+follows.
 
-<li> Each log record ends with a long integer file offset representing
-the position in the log file where the record began.
+<li> Each log record ends with an integer CRC-32C of the record's
+header and payload and a long integer file offset representing the
+position in the log file where the record began.  A record whose
+checksum does not match, e.g. one torn by a crash, ends the log.
+readRecord() reads and checks a whole record; see LogFile.print()
+for an example.
 
 <li> There are five record types: ABORT, COMMIT, UPDATE, BEGIN, and
 CHECKPOINT
@@ -63,7 +80,9 @@ CHECKPOINT
 <li>UPDATE RECORDS consist of two entries, a before image and an
 after image.  These images are serialized Page objects, and can be
 accessed with the LogFile.readPageData() and LogFile.writePageData()
-methods.  See LogFile.print() for an example.
+methods.  An image is a byte tag naming the kind of page (see
+registerPageKind), the page id as a byte count and that many
+integers, and the page data with runs of zero bytes left out.
 
 <li> CHECKPOINT records consist of active transactions at the time
 the checkpoint was taken and their first log record on disk.  The format
@@ -89,9 +108,102 @@ public class LogFile {
     final static int INT_SIZE = 4;
     final static int LONG_SIZE = 8;
 
+    /** Default time a committer waits for others to share its force. */
+    public static final long DEFAULT_GROUP_COMMIT_WAIT_MICROS = 0;
+    /** Default number of waiting committers that ends the wait early. */
+    public static final int DEFAULT_GROUP_COMMIT_BATCH = 64;
+
     long currentOffset = -1;//protected by this
 //    int pageSize;
     int totalRecords = 0; // for PatchTest //protected by this
+    long appendSeq = 0; // records ever appended, never reset //protected by this
+
+    final static int RECORD_HEADER_SIZE = INT_SIZE + LONG_SIZE + INT_SIZE;
+    final static int RECORD_TRAILER_SIZE = INT_SIZE + LONG_SIZE;
+    /** Zero runs at least this long are left out of logged page data. */
+    final static int MIN_ZERO_RUN = 8;
+
+    /** Records are appended here and written to the file in one piece
+        by the next force, or once the buffer holds APPEND_BUFFER_BYTES.
+        Any other access to raf must call flushAppendBuffer() first.
+        currentOffset counts buffered bytes. */
+    static final int APPEND_BUFFER_BYTES = 1 << 16;
+    private final RecordBuffer appendBytes = new RecordBuffer(APPEND_BUFFER_BYTES); //protected by this
+    private final DataOutputStream appendBuffer = new DataOutputStream(appendBytes); //protected by this
+
+    /** Builds a page read back from the log out of its serialized id
+        (see PageId.serialize) and its data. */
+    public interface PageFactory {
+        Page create(int[] pid, byte[] data) throws IOException;
+    }
+
+    // page kind registry; the tag of a page class is written before each image
+    private static final PageFactory[] factories = new PageFactory[256];
+    private static final Map<Class<?>, Integer> kinds = new HashMap<>();
+
+    static {
+        registerPageKind(1, HeapPage.class,
+                (pid, data) -> new HeapPage(new HeapPageId(pid[0], pid[1]), data));
+        registerPageKind(2, BTreeRootPtrPage.class,
+                (pid, data) -> new BTreeRootPtrPage(new BTreePageId(pid[0], pid[1], pid[2]), data));
+        registerPageKind(3, BTreeInternalPage.class,
+                (pid, data) -> new BTreeInternalPage(new BTreePageId(pid[0], pid[1], pid[2]), data, keyField(pid[0])));
+        registerPageKind(4, BTreeLeafPage.class,
+                (pid, data) -> new BTreeLeafPage(new BTreePageId(pid[0], pid[1], pid[2]), data, keyField(pid[0])));
+        registerPageKind(5, BTreeHeaderPage.class,
+                (pid, data) -> new BTreeHeaderPage(new BTreePageId(pid[0], pid[1], pid[2]), data));
+        registerPageKind(6, SlottedPage.class,
+                (pid, data) -> new SlottedPage(new HeapPageId(pid[0], pid[1]), data));
+    }
+
+    private static int keyField(int tableId) {
+        return ((BTreeFile) Database.getCatalog().getDatabaseFile(tableId)).keyField();
+    }
+
+    /** Register a kind of page that can be logged.  Images of pageClass,
+        or of a subclass registered under no tag of its own, are logged
+        with the given tag and read back with factory.
+
+        @param tag the page kind's tag, 1 to 255
+    */
+    public static synchronized void registerPageKind(int tag, Class<? extends Page> pageClass,
+                                                     PageFactory factory) {
+        if (tag < 1 || tag > 255) {
+            throw new IllegalArgumentException("page kind tag must be 1 to 255: " + tag);
+        }
+        factories[tag] = factory;
+        kinds.put(pageClass, tag);
+    }
+
+    private static synchronized int pageKind(Class<?> pageClass) throws IOException {
+        for (Class<?> c = pageClass; c != null; c = c.getSuperclass()) {
+            Integer tag = kinds.get(c);
+            if (tag != null) {
+                return tag;
+            }
+        }
+        throw new IOException("page class not registered with LogFile: " + pageClass.getName());
+    }
+
+    private static synchronized PageFactory pageFactory(int tag) throws IOException {
+        PageFactory f = factories[tag];
+        if (f == null) {
+            throw new IOException("unknown page kind in log: " + tag);
+        }
+        return f;
+    }
+
+    // group commit state, protected by groupLock.  Lock order is this,
+    // then groupLock; never take this while holding groupLock.
+    private final ReentrantLock groupLock = new ReentrantLock();
+    private final Condition forced = groupLock.newCondition();
+    private final Condition batchFull = groupLock.newCondition();
+    private long durableSeq = 0; // appendSeq covered by the last force
+    private boolean forcing = false; // a leader is gathering or forcing
+    private int committers = 0; // commits waiting to become durable
+    private volatile long groupCommitWaitNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_GROUP_COMMIT_WAIT_MICROS);
+    private volatile int groupCommitBatch = DEFAULT_GROUP_COMMIT_BATCH;
+    private final LongAdder forces = new LongAdder();
 
     final Map<Long,Long> tidToFirstLogRecord = new HashMap<>();
 
@@ -127,6 +239,7 @@ public class LogFile {
     // the log.
     void preAppend() throws IOException {
         totalRecords++;
+        appendSeq++;
         if(recoveryUndecided){
             recoveryUndecided = false;
             raf.seek(0);
@@ -140,6 +253,26 @@ public class LogFile {
     public synchronized int getTotalRecords() {
         return totalRecords;
     }
+
+    /** Number of times the log has been forced to disk. */
+    public long getForceCount() {
+        return forces.sum();
+    }
+
+    /** Configure group commit.  A committer that finds no force in
+        progress leads the next one: it waits up to maxWaitMicros, or
+        until batchSize committers are waiting, and then forces the log
+        once for all of them.  Committers arriving while a force is in
+        progress always wait for the next one, so with maxWaitMicros = 0
+        commits are still batched whenever they overlap.
+
+        @param maxWaitMicros longest a leader waits before forcing
+        @param batchSize number of waiting committers that ends the wait
+    */
+    public void setGroupCommit(long maxWaitMicros, int batchSize) {
+        groupCommitWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        groupCommitBatch = Math.max(1, batchSize);
+    }
     
     /** Write an abort record to the log for the specified tid, force
         the log to disk, and perform a rollback
@@ -152,7 +285,7 @@ public class LogFile {
         synchronized (Database.getBufferPool()) {
 
             synchronized(this) {
-                preAppend();
+                flushAppendBuffer();
                 //Debug.log("ABORT");
                 //should we verify that this is a live transaction?
 
@@ -160,10 +293,7 @@ public class LogFile {
                 // live transactions (needs tidToFirstLogRecord)
                 rollback(tid);
 
-                raf.writeInt(ABORT_RECORD);
-                raf.writeLong(tid.getId());
-                raf.writeLong(currentOffset);
-                currentOffset = raf.getFilePointer();
+                endRecord(beginRecord(ABORT_RECORD, tid.getId()));
                 force();
                 tidToFirstLogRecord.remove(tid.getId());
             }
@@ -171,21 +301,101 @@ public class LogFile {
     }
 
     /** Write a commit record to disk for the specified tid,
-        and force the log to disk.
+        and force the log to disk.  Returns once a force covering the
+        record has completed; concurrent commits share one force (see
+        setGroupCommit).
 
         @param tid The committing transaction.
     */
-    public synchronized void logCommit(TransactionId tid) throws IOException {
-        preAppend();
-        Debug.log("COMMIT " + tid.getId());
-        //should we verify that this is a live transaction?
+    public void logCommit(TransactionId tid) throws IOException {
+        long seq;
+        synchronized (this) {
+            Debug.log("COMMIT " + tid.getId());
+            //should we verify that this is a live transaction?
+
+            endRecord(beginRecord(COMMIT_RECORD, tid.getId()));
+            tidToFirstLogRecord.remove(tid.getId());
+            seq = appendSeq;
+        }
+        awaitDurable(seq);
+    }
 
-        raf.writeInt(COMMIT_RECORD);
-        raf.writeLong(tid.getId());
-        raf.writeLong(currentOffset);
-        currentOffset = raf.getFilePointer();
-        force();
-        tidToFirstLogRecord.remove(tid.getId());
+    /** Wait until the log is forced through record seq, leading the
+        force if no other committer is. */
+    private void awaitDurable(long seq) throws IOException {
+        groupLock.lock();
+        try {
+            committers++;
+            if (committers >= groupCommitBatch) {
+                batchFull.signal();
+            }
+            while (durableSeq < seq) {
+                if (forcing) {
+                    forced.await();
+                    continue;
+                }
+                forcing = true;
+                try {
+                    long left = groupCommitWaitNanos;
+                    while (committers < groupCommitBatch && left > 0) {
+                        left = batchFull.awaitNanos(left);
+                    }
+                    groupLock.unlock();
+                    try {
+                        forceAppended();
+                    } finally {
+                        groupLock.lock();
+                    }
+                } finally {
+                    forcing = false;
+                    forced.signalAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for log force");
+        } finally {
+            committers--;
+            groupLock.unlock();
+        }
+    }
+
+    /** Force everything appended so far without holding this, so that
+        other transactions can keep appending meanwhile. */
+    private void forceAppended() throws IOException {
+        long seq;
+        FileChannel ch;
+        synchronized (this) {
+            flushAppendBuffer();
+            seq = appendSeq;
+            ch = raf.getChannel();
+        }
+        try {
+            ch.force(true);
+        } catch (ClosedChannelException e) {
+            synchronized (this) {
+                if (ch == raf.getChannel()) {
+                    throw e;
+                }
+            }
+            // the log was truncated and reopened meanwhile
+            force();
+            return;
+        }
+        forces.increment();
+        markDurable(seq);
+    }
+
+    private void markDurable(long seq) {
+        groupLock.lock();
+        try {
+            if (seq > durableSeq) {
+                durableSeq = seq;
+                forced.signalAll();
+            }
+        } finally {
+            groupLock.unlock();
+        }
     }
 
     /** Write an UPDATE record to disk for the specified tid and page
@@ -199,93 +409,170 @@ public class LogFile {
     public  synchronized void logWrite(TransactionId tid, Page before,
                                        Page after)
         throws IOException  {
-        Debug.log("WRITE, offset = " + raf.getFilePointer());
-        preAppend();
+        Debug.log("WRITE, offset = " + currentOffset);
         /* update record conists of
 
-           record type
-           transaction id
+           record header
            before page data (see writePageData)
            after page data
-           start offset
+           record trailer
         */
-        raf.writeInt(UPDATE_RECORD);
-        raf.writeLong(tid.getId());
-
-        writePageData(raf,before);
-        writePageData(raf,after);
-        raf.writeLong(currentOffset);
-        currentOffset = raf.getFilePointer();
+        int start = beginRecord(UPDATE_RECORD, tid.getId());
+        writePageData(appendBuffer,before);
+        writePageData(appendBuffer,after);
+        endRecord(start);
 
         Debug.log("WRITE OFFSET = " + currentOffset);
     }
 
-    void writePageData(RandomAccessFile raf, Page p) throws IOException{
-        PageId pid = p.getId();
-        int[] pageInfo = pid.serialize();
+    void writePageData(DataOutput raf, Page p) throws IOException{
+        int[] pageInfo = p.getId().serialize();
 
         //page data is:
-        // page class name
-        // id class name
-        // id class bytes
-        // id class data
-        // page class bytes
-        // page class data
-
-        String pageClassName = p.getClass().getName();
-        String idClassName = pid.getClass().getName();
+        // page kind tag (byte)
+        // id length (byte)
+        // id data
+        // page data (see writeSparse)
 
-        raf.writeUTF(pageClassName);
-        raf.writeUTF(idClassName);
-
-        raf.writeInt(pageInfo.length);
+        raf.writeByte(pageKind(p.getClass()));
+        raf.writeByte(pageInfo.length);
         for (int j : pageInfo) {
             raf.writeInt(j);
         }
-        byte[] pageData = p.getPageData();
-        raf.writeInt(pageData.length);
-        raf.write(pageData);
-        //        Debug.log ("WROTE PAGE DATA, CLASS = " + pageClassName + ", table = " +  pid.getTableId() + ", page = " + pid.pageno());
+        writeSparse(raf, p.getPageData());
     }
 
-    Page readPageData(RandomAccessFile raf) throws IOException {
-        PageId pid;
-        Page newPage = null;
-
-        String pageClassName = raf.readUTF();
-        String idClassName = raf.readUTF();
+    Page readPageData(DataInput raf) throws IOException {
+        PageFactory factory = pageFactory(raf.readUnsignedByte());
+        int[] pageInfo = new int[raf.readUnsignedByte()];
+        for (int i = 0; i < pageInfo.length; i++) {
+            pageInfo[i] = raf.readInt();
+        }
+        return factory.create(pageInfo, readSparse(raf));
+    }
 
-        try {
-            Class<?> idClass = Class.forName(idClassName);
-            Class<?> pageClass = Class.forName(pageClassName);
-
-            Constructor<?>[] idConsts = idClass.getDeclaredConstructors();
-            int numIdArgs = raf.readInt();
-            Object[] idArgs = new Object[numIdArgs];
-            for (int i = 0; i<numIdArgs;i++) {
-                idArgs[i] = raf.readInt();
+    /** Write data as its length followed by alternating runs: a count of
+        zero bytes left out, then a count of literal bytes and the bytes
+        themselves.  Zero runs shorter than MIN_ZERO_RUN stay literal. */
+    static void writeSparse(DataOutput out, byte[] data) throws IOException {
+        int n = data.length;
+        writeVarInt(out, n);
+        int i = 0;
+        while (i < n) {
+            int lit = i;
+            while (lit < n && data[lit] == 0) {
+                lit++;
             }
-            pid = (PageId)idConsts[0].newInstance(idArgs);
+            int end = lit, scan = lit;
+            while (scan < n) {
+                if (data[scan] != 0) {
+                    end = ++scan;
+                    continue;
+                }
+                int zeros = scan;
+                while (zeros < n && data[zeros] == 0) {
+                    zeros++;
+                }
+                if (zeros - scan >= MIN_ZERO_RUN || zeros == n) {
+                    break;
+                }
+                scan = zeros;
+            }
+            writeVarInt(out, lit - i);
+            writeVarInt(out, end - lit);
+            out.write(data, lit, end - lit);
+            i = end;
+        }
+    }
 
-            Constructor<?>[] pageConsts = pageClass.getDeclaredConstructors();
-            int pageSize = raf.readInt();
+    static byte[] readSparse(DataInput in) throws IOException {
+        byte[] data = new byte[readVarInt(in)];
+        int i = 0;
+        while (i < data.length) {
+            i += readVarInt(in);
+            int len = readVarInt(in);
+            if (i + len > data.length) {
+                throw new IOException("corrupt page data in log");
+            }
+            in.readFully(data, i, len);
+            i += len;
+        }
+        return data;
+    }
 
-            byte[] pageData = new byte[pageSize];
-            raf.read(pageData); //read before image
+    private static void writeVarInt(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
 
-            Object[] pageArgs = new Object[2];
-            pageArgs[0] = pid;
-            pageArgs[1] = pageData;
+    private static int readVarInt(DataInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("corrupt varint in log");
+    }
 
-            newPage = (Page)pageConsts[0].newInstance(pageArgs);
+    /** A log record read back with readRecord. */
+    static final class LogRecord {
+        final int type;
+        final long tid;
+        final long offset;
+        private final byte[] body;
+        private final int length;
+
+        LogRecord(int type, long tid, long offset, byte[] body, int length) {
+            this.type = type;
+            this.tid = tid;
+            this.offset = offset;
+            this.body = body;
+            this.length = length;
+        }
 
-            //            Debug.log("READ PAGE OF TYPE " + pageClassName + ", table = " + newPage.getId().getTableId() + ", page = " + newPage.getId().pageno());
-        } catch (ClassNotFoundException | InvocationTargetException | IllegalAccessException | InstantiationException e){
-            e.printStackTrace();
-            throw new IOException();
+        /** @return the record's payload, e.g. for readPageData */
+        DataInputStream payload() {
+            return new DataInputStream(new ByteArrayInputStream(body, 0, length));
         }
-        return newPage;
+    }
 
+    /** Read the record at raf's file pointer, leaving the pointer just
+        past it.
+
+        @return the record, or null at the end of the log or at a record
+        that is incomplete or whose checksum does not match
+    */
+    LogRecord readRecord(RandomAccessFile raf) throws IOException {
+        long offset = raf.getFilePointer();
+        long left = raf.length() - offset;
+        if (left < RECORD_HEADER_SIZE + RECORD_TRAILER_SIZE) {
+            return null;
+        }
+        byte[] header = new byte[RECORD_HEADER_SIZE];
+        raf.readFully(header);
+        DataInputStream h = new DataInputStream(new ByteArrayInputStream(header));
+        int type = h.readInt();
+        long tid = h.readLong();
+        int length = h.readInt();
+        if (length < 0 || length > left - RECORD_HEADER_SIZE - RECORD_TRAILER_SIZE) {
+            return null;
+        }
+        byte[] body = new byte[length + RECORD_TRAILER_SIZE];
+        raf.readFully(body);
+        Crc32c crc = new Crc32c();
+        crc.update(header, 0, header.length);
+        crc.update(body, 0, length);
+        DataInputStream t = new DataInputStream(new ByteArrayInputStream(body, length, RECORD_TRAILER_SIZE));
+        if ((int) crc.getValue() != t.readInt() || t.readLong() != offset) {
+            return null;
+        }
+        return new LogRecord(type, tid, offset, body, length);
     }
 
     /** Write a BEGIN record for the specified transaction
@@ -299,12 +586,9 @@ public class LogFile {
             System.err.print("logXactionBegin: already began this tid\n");
             throw new IOException("double logXactionBegin()");
         }
-        preAppend();
-        raf.writeInt(BEGIN_RECORD);
-        raf.writeLong(tid.getId());
-        raf.writeLong(currentOffset);
+        int start = beginRecord(BEGIN_RECORD, tid.getId());
         tidToFirstLogRecord.put(tid.getId(), currentOffset);
-        currentOffset = raf.getFilePointer();
+        endRecord(start);
 
         Debug.log("BEGIN OFFSET = " + currentOffset);
     }
@@ -313,36 +597,33 @@ public class LogFile {
     public void logCheckpoint() throws IOException {
         //make sure we have buffer pool lock before proceeding
         synchronized (Database.getBufferPool()) {
+            // logs and forces the update record of every page it writes
+            Database.getBufferPool().flushAllPages();
             synchronized (this) {
-                //Debug.log("CHECKPOINT, offset = " + raf.getFilePointer());
-                preAppend();
-                long startCpOffset, endCpOffset;
+                //Debug.log("CHECKPOINT, offset = " + currentOffset);
                 Set<Long> keys = tidToFirstLogRecord.keySet();
                 Iterator<Long> els = keys.iterator();
-                force();
-                Database.getBufferPool().flushAllPages();
-                startCpOffset = raf.getFilePointer();
-                raf.writeInt(CHECKPOINT_RECORD);
-                raf.writeLong(-1); //no tid , but leave space for convenience
+                int start = beginRecord(CHECKPOINT_RECORD, -1); //no tid , but leave space for convenience
+                long startCpOffset = currentOffset;
 
                 //write list of outstanding transactions
-                raf.writeInt(keys.size());
+                appendBuffer.writeInt(keys.size());
                 while (els.hasNext()) {
                     Long key = els.next();
                     Debug.log("WRITING CHECKPOINT TRANSACTION ID: " + key);
-                    raf.writeLong(key);
+                    appendBuffer.writeLong(key);
                     //Debug.log("WRITING CHECKPOINT TRANSACTION OFFSET: " + tidToFirstLogRecord.get(key));
-                    raf.writeLong(tidToFirstLogRecord.get(key));
+                    appendBuffer.writeLong(tidToFirstLogRecord.get(key));
                 }
+                endRecord(start);
+                force();
 
                 //once the CP is written, make sure the CP location at the
                 // beginning of the log file is updated
-                endCpOffset = raf.getFilePointer();
                 raf.seek(0);
                 raf.writeLong(startCpOffset);
-                raf.seek(endCpOffset);
-                raf.writeLong(currentOffset);
-                currentOffset = raf.getFilePointer();
+                raf.seek(raf.length());
+                force();
                 //Debug.log("CP OFFSET = " + currentOffset);
             }
         }
@@ -354,6 +635,7 @@ public class LogFile {
         consumption */
     public synchronized void logTruncate() throws IOException {
         preAppend();
+        flushAppendBuffer();
         raf.seek(0);
         long cpLoc = raf.readLong();
 
@@ -361,20 +643,19 @@ public class LogFile {
 
         if (cpLoc != -1L) {
             raf.seek(cpLoc);
-            int cpType = raf.readInt();
-            @SuppressWarnings("unused")
-            long cpTid = raf.readLong();
+            LogRecord cp = readRecord(raf);
 
-            if (cpType != CHECKPOINT_RECORD) {
+            if (cp == null || cp.type != CHECKPOINT_RECORD) {
                 throw new RuntimeException("Checkpoint pointer does not point to checkpoint record");
             }
 
-            int numOutstanding = raf.readInt();
+            DataInputStream in = cp.payload();
+            int numOutstanding = in.readInt();
 
             for (int i = 0; i < numOutstanding; i++) {
                 @SuppressWarnings("unused")
-                long tid = raf.readLong();
-                long firstLogRecord = raf.readLong();
+                long tid = in.readLong();
+                long firstLogRecord = in.readLong();
                 if (firstLogRecord < minLogRecord) {
                     minLogRecord = firstLogRecord;
                 }
@@ -384,54 +665,49 @@ public class LogFile {
         // we can truncate everything before minLogRecord
         File newFile = new File("logtmp" + System.currentTimeMillis());
         RandomAccessFile logNew = new RandomAccessFile(newFile, "rw");
-        logNew.seek(0);
-        logNew.writeLong((cpLoc - minLogRecord) + LONG_SIZE);
+        RecordBuffer out = new RecordBuffer(APPEND_BUFFER_BYTES);
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeLong((cpLoc - minLogRecord) + LONG_SIZE);
+        long written = 0; // bytes of out already written to logNew
 
         raf.seek(minLogRecord);
 
         //have to rewrite log records since offsets are different after truncation
-        while (true) {
-            try {
-                int type = raf.readInt();
-                long record_tid = raf.readLong();
-                long newStart = logNew.getFilePointer();
-
-                Debug.log("NEW START = " + newStart);
-
-                logNew.writeInt(type);
-                logNew.writeLong(record_tid);
-
-                switch (type) {
-                case UPDATE_RECORD:
-                    Page before = readPageData(raf);
-                    Page after = readPageData(raf);
-
-                    writePageData(logNew, before);
-                    writePageData(logNew, after);
-                    break;
-                case CHECKPOINT_RECORD:
-                    int numXactions = raf.readInt();
-                    logNew.writeInt(numXactions);
-                    while (numXactions-- > 0) {
-                        long xid = raf.readLong();
-                        long xoffset = raf.readLong();
-                        logNew.writeLong(xid);
-                        logNew.writeLong((xoffset - minLogRecord) + LONG_SIZE);
-                    }
-                    break;
-                case BEGIN_RECORD:
-                    tidToFirstLogRecord.put(record_tid,newStart);
-                    break;
+        LogRecord rec;
+        while ((rec = readRecord(raf)) != null) {
+            long newStart = written + out.size();
+
+            Debug.log("NEW START = " + newStart);
+
+            int start = out.begin(rec.type, rec.tid);
+            switch (rec.type) {
+            case CHECKPOINT_RECORD:
+                DataInputStream in = rec.payload();
+                int numXactions = in.readInt();
+                dout.writeInt(numXactions);
+                while (numXactions-- > 0) {
+                    long xid = in.readLong();
+                    long xoffset = in.readLong();
+                    dout.writeLong(xid);
+                    dout.writeLong((xoffset - minLogRecord) + LONG_SIZE);
                 }
-
-                //all xactions finish with a pointer
-                logNew.writeLong(newStart);
-                raf.readLong();
-
-            } catch (EOFException e) {
+                break;
+            case BEGIN_RECORD:
+                tidToFirstLogRecord.put(rec.tid,newStart);
+                // fall through
+            default:
+                out.write(rec.body, 0, rec.length);
                 break;
             }
+
+            //all xactions finish with a checksum and a pointer
+            out.end(start, newStart);
+            if (out.size() >= APPEND_BUFFER_BYTES) {
+                written += out.writeTo(logNew);
+            }
         }
+        out.writeTo(logNew);
+        logNew.close();
 
         Debug.log("TRUNCATING LOG;  WAS " + raf.length() + " BYTES ; NEW START : " + minLogRecord + " NEW LENGTH: " + (raf.length() - minLogRecord));
 
@@ -459,6 +735,7 @@ public class LogFile {
         synchronized (Database.getBufferPool()) {
             synchronized(this) {
                 preAppend();
+                flushAppendBuffer();
                 // some code goes here
             }
         }
@@ -468,10 +745,17 @@ public class LogFile {
         is necessary so that start up can happen quickly (without
         extensive recovery.)
     */
-    public synchronized void shutdown() {
+    public void shutdown() {
         try {
+            synchronized (this) {
+                flushAppendBuffer();
+            }
+            // not under this monitor: the checkpoint flushes pages, which
+            // takes shard locks, and flushing threads log under those locks
             logCheckpoint();  //simple way to shutdown is to write a checkpoint record
-            raf.close();
+            synchronized (this) {
+                raf.close();
+            }
         } catch (IOException e) {
             System.out.println("ERROR SHUTTING DOWN -- IGNORING.");
             e.printStackTrace();
@@ -486,6 +770,7 @@ public class LogFile {
         synchronized (Database.getBufferPool()) {
             synchronized (this) {
                 recoveryUndecided = false;
+                flushAppendBuffer();
                 // some code goes here
             }
          }
@@ -493,82 +778,148 @@ public class LogFile {
 
     /** Print out a human readable represenation of the log */
     public void print() throws IOException {
+        flushAppendBuffer();
         long curOffset = raf.getFilePointer();
 
         raf.seek(0);
 
         System.out.println("0: checkpoint record at offset " + raf.readLong());
 
-        while (true) {
-            try {
-                int cpType = raf.readInt();
-                long cpTid = raf.readLong();
+        LogRecord rec;
+        while ((rec = readRecord(raf)) != null) {
+            long offset = rec.offset;
+            System.out.println(offset + ": RECORD TYPE " + rec.type);
+            System.out.println((offset + INT_SIZE) + ": TID " + rec.tid);
+            offset += RECORD_HEADER_SIZE;
+            DataInputStream in = rec.payload();
+
+            switch (rec.type) {
+            case BEGIN_RECORD:
+                System.out.println(" (BEGIN)");
+                break;
+            case ABORT_RECORD:
+                System.out.println(" (ABORT)");
+                break;
+            case COMMIT_RECORD:
+                System.out.println(" (COMMIT)");
+                break;
 
-                System.out.println((raf.getFilePointer() - (INT_SIZE + LONG_SIZE)) + ": RECORD TYPE " + cpType);
-                System.out.println((raf.getFilePointer() - LONG_SIZE) + ": TID " + cpTid);
+            case CHECKPOINT_RECORD:
+                System.out.println(" (CHECKPOINT)");
+                int numTransactions = in.readInt();
+                System.out.println(offset + ": NUMBER OF OUTSTANDING RECORDS: " + numTransactions);
+                offset += INT_SIZE;
+
+                while (numTransactions-- > 0) {
+                    long tid = in.readLong();
+                    long firstRecord = in.readLong();
+                    System.out.println(offset + ": TID: " + tid);
+                    System.out.println((offset + LONG_SIZE) + ": FIRST LOG RECORD: " + firstRecord);
+                    offset += 2 * LONG_SIZE;
+                }
+                break;
+            case UPDATE_RECORD:
+                System.out.println(" (UPDATE)");
 
-                switch (cpType) {
-                case BEGIN_RECORD:
-                    System.out.println(" (BEGIN)");
-                    System.out.println(raf.getFilePointer() + ": RECORD START OFFSET: " + raf.readLong());
-                    break;
-                case ABORT_RECORD:
-                    System.out.println(" (ABORT)");
-                    System.out.println(raf.getFilePointer() + ": RECORD START OFFSET: " + raf.readLong());
-                    break;
-                case COMMIT_RECORD:
-                    System.out.println(" (COMMIT)");
-                    System.out.println(raf.getFilePointer() + ": RECORD START OFFSET: " + raf.readLong());
-                    break;
+                Page before = readPageData(in);
+                long middle = offset + rec.length - in.available();
+                Page after = readPageData(in);
 
-                case CHECKPOINT_RECORD:
-                    System.out.println(" (CHECKPOINT)");
-                    int numTransactions = raf.readInt();
-                    System.out.println((raf.getFilePointer() - INT_SIZE) + ": NUMBER OF OUTSTANDING RECORDS: " + numTransactions);
+                System.out.println(offset + " TO " + middle + ": before image of " + before.getId().getTableId()
+                        + " page " + before.getId().getPageNumber());
+                System.out.println(middle + " TO " + (offset + rec.length) + ": after image of " + after.getId().getTableId()
+                        + " page " + after.getId().getPageNumber());
+                break;
+            }
+            offset = rec.offset + RECORD_HEADER_SIZE + rec.length;
+            System.out.println(offset + ": CHECKSUM");
+            System.out.println((offset + INT_SIZE) + ": RECORD START OFFSET: " + rec.offset);
+        }
 
-                    while (numTransactions-- > 0) {
-                        long tid = raf.readLong();
-                        long firstRecord = raf.readLong();
-                        System.out.println((raf.getFilePointer() - (LONG_SIZE + LONG_SIZE)) + ": TID: " + tid);
-                        System.out.println((raf.getFilePointer() - LONG_SIZE) + ": FIRST LOG RECORD: " + firstRecord);
-                    }
-                    System.out.println(raf.getFilePointer() + ": RECORD START OFFSET: " + raf.readLong());
+        // Return the file pointer to its original position
+        raf.seek(curOffset);
+    }
 
-                    break;
-                case UPDATE_RECORD:
-                    System.out.println(" (UPDATE)");
+    /** A buffer of whole log records. */
+    static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer(int size) {
+            super(size);
+        }
 
-                    long start = raf.getFilePointer();
-                    Page before = readPageData(raf);
+        /** Write a record header with a length to be filled in by end.
+            @return the position of the record in this buffer */
+        int begin(int type, long tid) {
+            int start = count;
+            putInt(type);
+            putLong(tid);
+            putInt(0);
+            return start;
+        }
 
-                    long middle = raf.getFilePointer();
-                    Page after = readPageData(raf);
+        /** Fill in the length of the record begun at start and write its
+            trailer.
+
+            @param offset where the record will start in the log file */
+        void end(int start, long offset) {
+            int end = count;
+            count = start + INT_SIZE + LONG_SIZE;
+            putInt(end - start - RECORD_HEADER_SIZE);
+            count = end;
+            putInt(Crc32c.of(buf, start, end - start));
+            putLong(offset);
+        }
 
-                    System.out.println(start + ": before image table id " + before.getId().getTableId());
-                    System.out.println((start + INT_SIZE) + ": before image page number " + before.getId().getPageNumber());
-                    System.out.println((start + INT_SIZE) + " TO " + (middle - INT_SIZE) + ": page data");
+        private void putInt(int v) {
+            write(v >>> 24);
+            write(v >>> 16);
+            write(v >>> 8);
+            write(v);
+        }
 
-                    System.out.println(middle + ": after image table id " + after.getId().getTableId());
-                    System.out.println((middle + INT_SIZE) + ": after image page number " + after.getId().getPageNumber());
-                    System.out.println((middle + INT_SIZE) + " TO " + (raf.getFilePointer()) + ": page data");
+        private void putLong(long v) {
+            putInt((int) (v >>> 32));
+            putInt((int) v);
+        }
 
-                    System.out.println(raf.getFilePointer() + ": RECORD START OFFSET: " + raf.readLong());
+        /** Append the contents to f at its file pointer and empty the buffer.
+            @return the number of bytes written */
+        int writeTo(RandomAccessFile f) throws IOException {
+            int n = count;
+            f.write(buf, 0, n);
+            reset();
+            return n;
+        }
+    }
 
-                    break;
-                }
+    /** Start a record in the append buffer.
+        @return its position in the buffer, for endRecord */
+    private int beginRecord(int type, long tid) throws IOException {
+        preAppend();
+        return appendBytes.begin(type, tid);
+    }
 
-            } catch (EOFException e) {
-                //e.printStackTrace();
-                break;
-            }
+    /** Finish the record begun at start, which begins at currentOffset
+        in the log. */
+    private void endRecord(int start) throws IOException {
+        appendBytes.end(start, currentOffset);
+        currentOffset += appendBytes.size() - start;
+        if (appendBytes.size() >= APPEND_BUFFER_BYTES) {
+            flushAppendBuffer();
         }
+    }
 
-        // Return the file pointer to its original position
-        raf.seek(curOffset);
+    /** Write the append buffer to the end of the file. */
+    synchronized void flushAppendBuffer() throws IOException {
+        if (appendBytes.size() > 0) {
+            appendBytes.writeTo(raf);
+        }
     }
 
     public  synchronized void force() throws IOException {
+        flushAppendBuffer();
         raf.getChannel().force(true);
+        forces.increment();
+        markDurable(appendSeq);
     }
 
 }
@@ -0,0 +1,164 @@
+package simpledb.storage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * LRU-K replacement (O'Neil, O'Neil and Weikum).
+ * <p>
+ * The victim is the page whose K-th most recent access is furthest in the
+ * past; pages seen fewer than K times count as infinitely old and go first,
+ * oldest last access first.  Pages referenced once by a scan therefore
+ * never displace pages with a history of repeated use.  Access histories of
+ * evicted pages are retained for a while so that a page coming back is not
+ * mistaken for a new one.
+ * <p>
+ * A hit records the access time in the page's history array; unlike the
+ * CLOCK-based policies this is a few plain writes rather than a single bit.
+ * Races between concurrent hits on one page can lose an access, which only
+ * makes the estimate slightly less precise.
+ * <p>
+ * Since hits do not take the shard lock they cannot reorder a heap, so
+ * victims come from a heap of keys copied when each entry was pushed.  A
+ * hit only ever makes a page's key larger, so a copied key is a lower
+ * bound: victim pops entries whose page has been hit since, pushes them
+ * again with a fresh copy, and stops at the first entry that is still
+ * current, which is then the true minimum.
+ */
+final class LruKPolicy implements EvictionPolicy {
+
+    private static final int MIN_RETAINED = 16;
+    /** Makes every recorded time positive, leaving 0 for "never". */
+    private static final long EPOCH = System.nanoTime() - 1;
+
+    private static final class Node extends Handle {
+        /** Access times, most recent first; 0 means no access. */
+        final long[] history;
+        int index;
+
+        Node(PageId pid, long[] history) {
+            super(pid);
+            this.history = history;
+        }
+    }
+
+    /** A node's replacement key as it was when the entry was made. */
+    private static final class Entry implements Comparable<Entry> {
+        final Node node;
+        final long kth, last;
+
+        Entry(Node node, int k) {
+            this.node = node;
+            this.last = node.history[0];
+            this.kth = node.history[k - 1];
+        }
+
+        /** Orders by backward K-distance, breaking ties on the last access. */
+        @Override
+        public int compareTo(Entry o) {
+            int c = Long.compare(kth, o.kth);
+            return c != 0 ? c : Long.compare(last, o.last);
+        }
+    }
+
+    private final int k;
+    private final ArrayList<Node> nodes = new ArrayList<>();
+    /** One entry per tracked node, plus entries of removed nodes not yet popped. */
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>();
+    private final LinkedHashMap<PageId, long[]> retained = new LinkedHashMap<>();
+
+    LruKPolicy(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        this.k = k;
+    }
+
+    @Override
+    public Handle admit(PageId pid) {
+        long[] history = retained.remove(pid);
+        if (history == null) {
+            history = new long[k];
+        }
+        Node n = new Node(pid, history);
+        record(n);
+        n.index = nodes.size();
+        nodes.add(n);
+        heap.add(new Entry(n, k));
+        return n;
+    }
+
+    @Override
+    public void touch(Handle h) {
+        record((Node) h);
+    }
+
+    private static void record(Node n) {
+        long[] history = n.history;
+        System.arraycopy(history, 0, history, 1, history.length - 1);
+        history[0] = System.nanoTime() - EPOCH;
+    }
+
+    @Override
+    public void remove(Handle h) {
+        Node n = (Node) h;
+        int i = n.index;
+        if (i < 0 || i >= nodes.size() || nodes.get(i) != n) {
+            return;
+        }
+        Node last = nodes.remove(nodes.size() - 1);
+        if (last != n) {
+            last.index = i;
+            nodes.set(i, last);
+        }
+        n.index = -1;
+        retained.put(n.pid, n.history);
+        int limit = Math.max(MIN_RETAINED, nodes.size());
+        while (retained.size() > limit) {
+            retained.remove(retained.keySet().iterator().next());
+        }
+        if (heap.size() > 2 * limit) {
+            heap.clear();
+            for (Node m : nodes) {
+                heap.add(new Entry(m, k));
+            }
+        }
+    }
+
+    @Override
+    public Handle victim() {
+        Entry e;
+        while ((e = heap.peek()) != null) {
+            Node n = e.node;
+            if (n.index < 0) {
+                heap.poll();
+            } else if (e.kth != n.history[k - 1] || e.last != n.history[0]) {
+                heap.poll();
+                heap.add(new Entry(n, k));
+            } else {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    /** Sorts copies of the keys, which hits may change during the sort. */
+    @Override
+    public void upcoming(int n, List<Handle> out) {
+        ArrayList<Entry> sorted = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            sorted.add(new Entry(node, k));
+        }
+        sorted.sort(null);
+        for (int i = 0; i < Math.min(n, sorted.size()); i++) {
+            out.add(sorted.get(i).node);
+        }
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+}
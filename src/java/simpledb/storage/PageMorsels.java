@@ -0,0 +1,80 @@
+package simpledb.storage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out the pages of a {@link HeapFile} in morsels, runs of adjacent
+ * pages, to the scans that share it, so that several threads can scan one
+ * file between them.  Each morsel goes to exactly one scan, whichever asks
+ * first, so a fast scan takes more of them than a slow one and all of them
+ * finish at about the same time.
+ * <p>
+ * The scans are the file's iterators made by
+ * {@link HeapFile#iterator(simpledb.transaction.TransactionId, java.util.List, int[], PageMorsels)}.
+ * The first of them to open starts handing out the file's pages from the
+ * beginning, as far as the file reaches then; the others join in.  Once all
+ * of them are closed, the next to open starts over, e.g. when the scans are
+ * rewound.
+ *
+ * @Threadsafe
+ */
+public final class PageMorsels {
+
+    /** Default number of pages in a morsel; 64KB with the default page size. */
+    public static final int DEFAULT_MORSEL_PAGES = 16;
+
+    private final HeapFile file;
+    private final int morselPages;
+    /** The first page of the next morsel. */
+    private final AtomicInteger next = new AtomicInteger();
+    /** Number of pages handed out, fixed when the first scan opens. */
+    private volatile int numPages;
+    /** Number of open scans; guarded by this. */
+    private int open;
+
+    public PageMorsels(HeapFile file) {
+        this(file, DEFAULT_MORSEL_PAGES);
+    }
+
+    /**
+     * @param morselPages number of pages in each morsel but perhaps the last
+     */
+    public PageMorsels(HeapFile file, int morselPages) {
+        if (morselPages < 1) {
+            throw new IllegalArgumentException("morsels must have a page");
+        }
+        this.file = file;
+        this.morselPages = morselPages;
+    }
+
+    public HeapFile getFile() {
+        return file;
+    }
+
+    /** Called by a scan as it opens. */
+    synchronized void attach() {
+        if (open++ == 0) {
+            numPages = file.numPages();
+            next.set(0);
+        }
+    }
+
+    /** Called by a scan that was opened as it closes. */
+    synchronized void detach() {
+        open--;
+    }
+
+    /**
+     * @return the number of the first page of a morsel no scan has had yet,
+     *         or -1 if there are none left
+     */
+    int claim() {
+        int start = next.getAndAdd(morselPages);
+        return start >= 0 && start < numPages ? start : -1;
+    }
+
+    /** @return one past the number of the last page of the morsel at start */
+    int end(int start) {
+        return Math.min(start + morselPages, numPages);
+    }
+}
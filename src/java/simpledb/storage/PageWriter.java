@@ -0,0 +1,117 @@
+package simpledb.storage;
+
+import simpledb.common.Database;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background writer and checkpointer of a BufferPool.
+ * <p>
+ * A single daemon thread wakes every TICK_MILLIS.  It asks the replacement
+ * policies which pages they will evict next and writes the dirty ones, at
+ * most pagesPerSecond pages in all, so that the next cleanTarget victims
+ * (counting free frames) are clean and eviction does not have to write on
+ * the caller's thread.  Every page is written through the pool's own flush
+ * path, which logs and forces the page's update record before the page
+ * itself goes to disk.
+ * <p>
+ * If a checkpoint interval is set, the writer also checkpoints the log.
+ * It first writes every page that is dirty at the start of the checkpoint,
+ * still at the bounded rate, and then calls {@link LogFile#logCheckpoint},
+ * which only has to flush the pages dirtied since.
+ */
+final class PageWriter implements Runnable {
+
+    private static final long TICK_MILLIS = 10;
+
+    private final BufferPool pool;
+    private final int pagesPerSecond;
+    private final int cleanTarget;
+    private final long checkpointNanos;
+    private final Thread thread;
+    private volatile boolean stopped;
+
+    /** Pages still to write for the checkpoint in progress, or null. */
+    private List<PageId> checkpointPages;
+    private long nextCheckpoint;
+
+    PageWriter(BufferPool pool, int pagesPerSecond, double cleanFraction, long checkpointMillis) {
+        this.pool = pool;
+        this.pagesPerSecond = Math.max(1, pagesPerSecond);
+        this.cleanTarget = (int) Math.ceil(cleanFraction * pool.getCapacity());
+        this.checkpointNanos = TimeUnit.MILLISECONDS.toNanos(checkpointMillis);
+        this.nextCheckpoint = System.nanoTime() + checkpointNanos;
+        thread = new Thread(this, "simpledb-page-writer");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /** Stops the writer and waits for it to finish the page it is writing. */
+    void stop() {
+        stopped = true;
+        // not interrupt: that would close the channel of a file being forced
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        // pages allowed per tick, carrying fractions over to the next one
+        double perTick = pagesPerSecond * TICK_MILLIS / 1000.0;
+        double budget = 0;
+        while (!stopped) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS));
+            if (stopped) {
+                break;
+            }
+            budget = Math.min(budget + perTick, Math.max(1, perTick));
+            try {
+                budget -= tick((int) budget);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /** @return the number of pages written */
+    private int tick(int budget) throws IOException {
+        int written = 0;
+        if (checkpointPages == null && checkpointNanos > 0 && System.nanoTime() - nextCheckpoint >= 0) {
+            checkpointPages = pool.dirtyPageIds();
+        }
+        if (checkpointPages != null) {
+            while (written < budget && !checkpointPages.isEmpty()) {
+                if (pool.flushCached(checkpointPages.remove(checkpointPages.size() - 1))) {
+                    written++;
+                }
+            }
+            if (checkpointPages.isEmpty()) {
+                checkpointPages = null;
+                nextCheckpoint = System.nanoTime() + checkpointNanos;
+                Database.getLogFile().logCheckpoint();
+            }
+        }
+        if (written >= budget) {
+            return written;
+        }
+        for (PageId pid : pool.upcomingDirtyPageIds(cleanTarget)) {
+            if (written >= budget) {
+                break;
+            }
+            if (pool.flushCached(pid)) {
+                written++;
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,209 @@
+package simpledb.storage;
+
+import simpledb.common.Database;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous read-ahead for a BufferPool.
+ * <p>
+ * The pool reports every miss on a HeapPage.  Once a table has seen two
+ * misses on consecutive pages, the prefetcher reads the next window pages
+ * of that table on a background executor.  Read pages are staged here,
+ * not in the pool, so that prefetching can never evict anything; a later
+ * miss on a staged page takes it from the stage instead of reading it
+ * again.  Callers that know what they will read next, such as a B+ tree
+ * scan following right-sibling pointers, can also ask for single pages.
+ * <p>
+ * The stage is bounded.  When it is full the oldest staged page is dropped,
+ * and so is any staged page the pool itself caches or discards, since the
+ * staged copy may be out of date; both count as unused prefetches.
+ *
+ * @Threadsafe
+ */
+final class Prefetcher {
+
+    /** Staged pages allowed per page of window, and at least this many. */
+    private static final int STAGED_PER_WINDOW_PAGE = 4;
+    private static final int MIN_STAGED = 64;
+
+    /** Shared by all pools; threads die off when there is nothing to read. */
+    private static final ThreadPoolExecutor executor;
+    static {
+        int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "simpledb-prefetch");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** A pending or completed read of one page. */
+    private static final class Staged extends FutureTask<Page> {
+        final long seq;
+
+        Staged(PageId pid, long seq) {
+            super(() -> Database.getCatalog().getDatabaseFile(pid.getTableId()).readPage(pid));
+            this.seq = seq;
+        }
+    }
+
+    /** Sequential access state of one table. */
+    private static final class Stream {
+        int last = -2;
+        int run;
+        /** Last page number read ahead for the current run. */
+        int issuedTo = -1;
+    }
+
+    private final BufferPool pool;
+    private volatile int window;
+    private final ConcurrentHashMap<PageId, Staged> staged = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Stream> streams = new ConcurrentHashMap<>();
+    private final AtomicLong seq = new AtomicLong();
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder used = new LongAdder();
+    private final LongAdder unused = new LongAdder();
+
+    Prefetcher(BufferPool pool, int window) {
+        this.pool = pool;
+        this.window = window;
+    }
+
+    int getWindow() {
+        return window;
+    }
+
+    void setWindow(int window) {
+        this.window = Math.max(0, window);
+    }
+
+    long getIssued() {
+        return issued.sum();
+    }
+
+    long getUsed() {
+        return used.sum();
+    }
+
+    long getUnused() {
+        return unused.sum();
+    }
+
+    /**
+     * Notes a miss on pid and, if it continues a sequential run through a
+     * heap file, reads ahead of it.
+     */
+    void onMiss(PageId pid) {
+        int w = window;
+        if (w <= 0 || !(pid instanceof HeapPageId)) {
+            return;
+        }
+        int n = pid.getPageNumber();
+        int table = pid.getTableId();
+        Stream s = streams.computeIfAbsent(table, k -> new Stream());
+        int from, to;
+        synchronized (s) {
+            if (n == s.last + 1) {
+                s.run++;
+            } else {
+                s.run = 1;
+                s.issuedTo = -1;
+            }
+            s.last = n;
+            if (s.run < 2) {
+                return;
+            }
+            from = Math.max(n + 1, s.issuedTo + 1);
+            to = n + w;
+            if (from > to) {
+                return;
+            }
+            s.issuedTo = to;
+        }
+
+        DbFile file;
+        try {
+            file = Database.getCatalog().getDatabaseFile(table);
+        } catch (NoSuchElementException e) {
+            return;
+        }
+        if (file instanceof HeapFile) {
+            to = Math.min(to, ((HeapFile) file).numPages() - 1);
+        }
+        for (int p = from; p <= to; p++) {
+            prefetch(new HeapPageId(table, p));
+        }
+    }
+
+    /** Starts reading pid in the background unless it is cached or staged. */
+    void prefetch(PageId pid) {
+        if (window <= 0 || pool.isCached(pid) || staged.containsKey(pid)) {
+            return;
+        }
+        if (staged.size() >= Math.max(MIN_STAGED, STAGED_PER_WINDOW_PAGE * window)) {
+            dropOldest();
+        }
+        Staged task = new Staged(pid, seq.incrementAndGet());
+        if (staged.putIfAbsent(pid, task) != null) {
+            return;
+        }
+        issued.increment();
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            staged.remove(pid, task);
+        }
+    }
+
+    /**
+     * Takes the staged copy of pid, waiting for its read to finish or doing
+     * the read in this thread if it has not started yet.
+     *
+     * @return the page, or null if it was not staged or could not be read
+     */
+    Page take(PageId pid) {
+        Staged task = staged.remove(pid);
+        if (task == null) {
+            return null;
+        }
+        task.run();
+        try {
+            Page page = task.get();
+            used.increment();
+            return page;
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /** Drops any staged copy of pid, which may be out of date. */
+    void invalidate(PageId pid) {
+        Staged task = staged.remove(pid);
+        if (task != null) {
+            task.cancel(false);
+            unused.increment();
+        }
+    }
+
+    private void dropOldest() {
+        Map.Entry<PageId, Staged> oldest = null;
+        for (Map.Entry<PageId, Staged> e : staged.entrySet()) {
+            if (oldest == null || e.getValue().seq < oldest.getValue().seq) {
+                oldest = e;
+            }
+        }
+        if (oldest != null) {
+            invalidate(oldest.getKey());
+        }
+    }
+}
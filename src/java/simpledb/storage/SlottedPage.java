@@ -0,0 +1,527 @@
+package simpledb.storage;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.execution.Predicate;
+import simpledb.transaction.TransactionId;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Each instance of SlottedPage stores data for one page of a HeapFile whose
+ * tuples have variable-length fields, such as VARCHARs.  Records take only
+ * the bytes their values need and are found through a slot directory:
+ * <pre>
+ *   0            number of slots (unsigned short)
+ *   2            start of the record area (unsigned short, 0 for the page end)
+ *   4 + 4 * i    slot i: offset and length of its record (unsigned shorts;
+ *                offset 0 marks an empty slot)
+ *   ...          free space
+ *   ...          records, packed towards the end of the page
+ * </pre>
+ * A record is its fields serialized one after the other, a VARCHAR taking
+ * two bytes of length plus its characters.  An all-zero page is empty.
+ * <p>
+ * Slot numbers are the tuples' RecordIds and never change.  The records
+ * themselves move when the page is compacted to reclaim the holes deletes
+ * leave.  {@link #getNumEmptySlots()} counts how many records of the
+ * table's largest possible size still fit, so a page that reports room
+ * takes any tuple; up to one such record's worth of space per page stays
+ * unused in return.
+ * <p>
+ * Like HeapPage, the page reads its bytes in place until the first
+ * modification, which copies them and takes the before image.
+ *
+ * @see HeapFile
+ * @see HeapPage
+ */
+public class SlottedPage implements TuplePage {
+
+    static final int HEADER_SIZE = 4;
+    static final int SLOT_SIZE = 4;
+
+    final HeapPageId pid;
+    final TupleDesc td;
+    /** The most bytes a record of td can take. */
+    private final int maxRecordSize;
+    private final int pageSize;
+
+    /** The page's bytes, header and directory included. */
+    private volatile ByteBuffer data;
+    /**
+     * Whether data is our own copy and may be written.  Cleared when an
+     * iterator takes data, so that the iterator keeps reading the page as it
+     * was when it was made.  Volatile because iterators clear it from
+     * reader threads.
+     */
+    private volatile boolean ownData;
+
+    /** Before image, or null if the page is unchanged since it was read. */
+    byte[] oldData;
+    private final Object oldDataLock = new Object();
+
+    private TransactionId transactionId;
+    private boolean dirty;
+
+    /** Free-space map of the file this page was read from, or null. */
+    FreeSpaceMap freeSpace;
+    /** Zone map of the file this page was read from, or null. */
+    ZoneMap zones;
+
+    private int numSlots;
+    private int recordStart;
+    /** Bytes taken by the records in use. */
+    private int liveBytes;
+    /** No empty slot below this one. */
+    private int firstFree;
+
+    /**
+     * Create a SlottedPage from a set of bytes of data read from disk, in
+     * the format described in the class comment.
+     */
+    public SlottedPage(HeapPageId id, byte[] data) throws IOException {
+        this(id, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Create a SlottedPage from the page's bytes at indexes 0 to
+     * BufferPool.getPageSize() - 1 of data, which may be a slice of a
+     * larger buffer.  The page keeps referring to data until it is
+     * first modified, so the caller must not change its contents meanwhile.
+     */
+    public SlottedPage(HeapPageId id, ByteBuffer data) throws IOException {
+        this(id, Database.getCatalog().getTupleDesc(id.getTableId()), data);
+    }
+
+    /** Create a SlottedPage of a table with schema td, e.g. one not in the catalog. */
+    SlottedPage(HeapPageId id, TupleDesc td, ByteBuffer data) {
+        this.pid = id;
+        this.td = td;
+        this.maxRecordSize = td.getSize();
+        this.pageSize = BufferPool.getPageSize();
+        if (data.limit() < pageSize) {
+            // missing trailing bytes are zeroes
+            byte[] padded = new byte[pageSize];
+            ByteBuffer src = data.duplicate();
+            src.position(0);
+            src.get(padded, 0, src.remaining());
+            data = ByteBuffer.wrap(padded);
+        }
+        this.data = data;
+        numSlots = data.getShort(0) & 0xFFFF;
+        recordStart = data.getShort(2) & 0xFFFF;
+        if (recordStart == 0) {
+            recordStart = pageSize;
+        }
+        for (int i = 0; i < numSlots; i++) {
+            if (recordOffset(data, i) != 0) {
+                liveBytes += recordLength(data, i);
+            }
+        }
+    }
+
+    private static int recordOffset(ByteBuffer buf, int slot) {
+        return buf.getShort(HEADER_SIZE + slot * SLOT_SIZE) & 0xFFFF;
+    }
+
+    private static int recordLength(ByteBuffer buf, int slot) {
+        return buf.getShort(HEADER_SIZE + slot * SLOT_SIZE + 2) & 0xFFFF;
+    }
+
+    private void setSlot(int slot, int offset, int length) {
+        data.putShort(HEADER_SIZE + slot * SLOT_SIZE, (short) offset);
+        data.putShort(HEADER_SIZE + slot * SLOT_SIZE + 2, (short) length);
+    }
+
+    private void writeHeader() {
+        data.putShort(0, (short) numSlots);
+        data.putShort(2, (short) (recordStart == pageSize ? 0 : recordStart));
+    }
+
+    public HeapPageId getId() {
+        return pid;
+    }
+
+    /** Return a view of this page before it was modified
+        -- used by recovery */
+    public SlottedPage getBeforeImage() {
+        byte[] oldDataRef;
+        synchronized (oldDataLock) {
+            oldDataRef = oldData;
+        }
+        if (oldDataRef == null) {
+            // not modified since it was read, so it is its own before image
+            oldDataRef = getPageData();
+        }
+        return new SlottedPage(pid, td, ByteBuffer.wrap(oldDataRef));
+    }
+
+    public void setBeforeImage() {
+        synchronized (oldDataLock) {
+            oldData = getPageData();
+        }
+    }
+
+    /**
+     * Makes data a private, writable copy before the first modification,
+     * and remembers the page as it was as the before image unless one has
+     * been set explicitly.
+     */
+    private void ensureWritable() {
+        if (ownData) {
+            return;
+        }
+        byte[] copy = getPageData();
+        synchronized (oldDataLock) {
+            if (oldData == null) {
+                oldData = copy.clone();
+            }
+        }
+        data = ByteBuffer.wrap(copy);
+        ownData = true;
+    }
+
+    public byte[] getPageData() {
+        byte[] out = new byte[pageSize];
+        ByteBuffer src = data.duplicate();
+        src.clear();
+        src.get(out, 0, pageSize);
+        return out;
+    }
+
+    /**
+     * Static method to generate a byte array corresponding to an empty
+     * SlottedPage.
+     */
+    public static byte[] createEmptyPageData() {
+        return new byte[BufferPool.getPageSize()];
+    }
+
+    public void markDirty(boolean dirty, TransactionId tid) {
+        this.dirty = dirty;
+        this.transactionId = tid;
+    }
+
+    public TransactionId isDirty() {
+        return dirty ? transactionId : null;
+    }
+
+    /**
+     * Returns how many records of the largest size the table allows still
+     * fit on this page, counting a new slot for each.
+     */
+    public int getNumEmptySlots() {
+        int free = pageSize - HEADER_SIZE - numSlots * SLOT_SIZE - liveBytes;
+        return Math.max(0, free / (maxRecordSize + SLOT_SIZE));
+    }
+
+    /**
+     * Returns true if associated slot on this page is filled.
+     */
+    public boolean isSlotUsed(int i) {
+        return i >= 0 && i < numSlots && recordOffset(data, i) != 0;
+    }
+
+    /** @return the number of slots in the directory, used or not */
+    public int getNumSlots() {
+        return numSlots;
+    }
+
+    /**
+     * Returns the tuple in slot i, decoding it from the page's bytes.
+     *
+     * @throws NoSuchElementException if slot i is empty
+     */
+    public Tuple getTuple(int i) throws NoSuchElementException {
+        if (!isSlotUsed(i)) {
+            throw new NoSuchElementException("slot " + i + " is empty");
+        }
+        return readTuple(data, i);
+    }
+
+    /**
+     * Returns one field of the tuple in slot i without decoding the rest of
+     * the tuple.
+     *
+     * @throws NoSuchElementException if slot i is empty
+     */
+    public Field getField(int i, int fieldIndex) throws NoSuchElementException {
+        if (!isSlotUsed(i)) {
+            throw new NoSuchElementException("slot " + i + " is empty");
+        }
+        ByteBuffer buf = data;
+        return td.getFieldType(fieldIndex).parse(buf, fieldOffset(buf, recordOffset(buf, i), fieldIndex));
+    }
+
+    /** @return the index of field fieldIndex of the record starting at offset */
+    private int fieldOffset(ByteBuffer buf, int offset, int fieldIndex) {
+        for (int j = 0; j < fieldIndex; j++) {
+            offset += td.getFieldType(j).getLen(buf, offset);
+        }
+        return offset;
+    }
+
+    private Tuple readTuple(ByteBuffer buf, int slot) {
+        return readInto(new Tuple(td), buf, slot);
+    }
+
+    /** Decodes the record in used slot slot into t, which it returns. */
+    private Tuple readInto(Tuple t, ByteBuffer buf, int slot) {
+        t.setRecordId(new RecordId(pid, slot));
+        int offset = recordOffset(buf, slot);
+        try {
+            for (int j = 0; j < td.numFields(); j++) {
+                Type type = td.getFieldType(j);
+                t.parseField(j, type, buf, offset);
+                offset += type.getLen(buf, offset);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new NoSuchElementException("error reading tuple " + slot);
+        }
+        return t;
+    }
+
+    /** Serializes t as a record, each field in its column's format. */
+    private byte[] encode(Tuple t) throws DbException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(maxRecordSize);
+        DataOutputStream dos = new DataOutputStream(baos);
+        try {
+            for (int j = 0; j < td.numFields(); j++) {
+                Type type = td.getFieldType(j);
+                Field f = t.getField(j);
+                if (type == Type.VARCHAR_TYPE) {
+                    VarcharField.write(dos, ((StringField) f).getValue());
+                } else if (type == Type.STRING_TYPE) {
+                    new StringField(((StringField) f).getValue(), Type.STRING_LEN).serialize(dos);
+                } else {
+                    f.serialize(dos);
+                }
+            }
+        } catch (IOException | ClassCastException e) {
+            throw new DbException("cannot serialize tuple: " + e.getMessage());
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Adds the specified tuple to the page, in the first empty slot, and
+     * sets its RecordId.
+     *
+     * @throws DbException if the page is full or the tuple's TupleDesc does
+     *         not match the page's
+     */
+    public void insertTuple(Tuple t) throws DbException {
+        if (getNumEmptySlots() == 0) {
+            throw new DbException("Page is full");
+        }
+        if (!t.getTupleDesc().equals(td)) {
+            throw new DbException("Tupledesc is mismatch");
+        }
+        byte[] record = encode(t);
+        ensureWritable();
+
+        int slot = firstFree;
+        while (slot < numSlots && recordOffset(data, slot) != 0) {
+            slot++;
+        }
+        int directoryEnd = HEADER_SIZE + Math.max(numSlots, slot + 1) * SLOT_SIZE;
+        if (recordStart - directoryEnd < record.length) {
+            compact();
+        }
+        recordStart -= record.length;
+        ByteBuffer dst = data.duplicate();
+        dst.position(recordStart);
+        dst.put(record);
+        numSlots = Math.max(numSlots, slot + 1);
+        setSlot(slot, recordStart, record.length);
+        writeHeader();
+        liveBytes += record.length;
+        firstFree = slot + 1;
+        t.setRecordId(new RecordId(pid, slot));
+        if (freeSpace != null && getNumEmptySlots() == 0) {
+            freeSpace.update(pid.getPageNumber(), false);
+        }
+        if (zones != null) {
+            zones.widen(pid.getPageNumber(), t);
+        }
+    }
+
+    /**
+     * Delete the specified tuple from the page.  Its slot becomes empty and
+     * its bytes are zeroed; they are reclaimed when the page is compacted.
+     *
+     * @throws DbException if this tuple is not on this page, or its slot is
+     *         already empty
+     */
+    public void deleteTuple(Tuple t) throws DbException {
+        RecordId rid = t.getRecordId();
+        if (rid == null || !pid.equals(rid.getPageId())) {
+            throw new DbException("Can not found targetTuple");
+        }
+        int slot = rid.getTupleNumber();
+        if (!isSlotUsed(slot)) {
+            throw new DbException("tuple slot is already empty");
+        }
+        ensureWritable();
+        int offset = recordOffset(data, slot);
+        int length = recordLength(data, slot);
+        for (int i = offset; i < offset + length; i++) {
+            data.put(i, (byte) 0);
+        }
+        setSlot(slot, 0, 0);
+        liveBytes -= length;
+        if (offset == recordStart) {
+            recordStart += length;
+        }
+        // empty slots at the end of the directory are dropped
+        while (numSlots > 0 && recordOffset(data, numSlots - 1) == 0) {
+            numSlots--;
+        }
+        writeHeader();
+        firstFree = Math.min(firstFree, slot);
+        if (freeSpace != null && getNumEmptySlots() > 0) {
+            freeSpace.update(pid.getPageNumber(), true);
+        }
+    }
+
+    /** Moves the records in use together at the end of the page. */
+    private void compact() {
+        byte[] old = getPageData();
+        ByteBuffer src = ByteBuffer.wrap(old);
+        int end = pageSize;
+        for (int i = 0; i < numSlots; i++) {
+            int offset = recordOffset(src, i);
+            if (offset == 0) {
+                continue;
+            }
+            int length = recordLength(src, i);
+            end -= length;
+            ByteBuffer dst = data.duplicate();
+            dst.position(end);
+            dst.put(old, offset, length);
+            setSlot(i, end, length);
+        }
+        for (int i = HEADER_SIZE + numSlots * SLOT_SIZE; i < end; i++) {
+            data.put(i, (byte) 0);
+        }
+        recordStart = end;
+        writeHeader();
+    }
+
+    /**
+     * @return an iterator over all tuples on this page (calling remove on
+     * this iterator throws an UnsupportedOperationException)
+     */
+    public Iterator<Tuple> iterator() {
+        return iterator(null);
+    }
+
+    /**
+     * @return an iterator over the tuples on this page that satisfy pred.
+     * Only the field pred looks at is decoded before a tuple passes.
+     */
+    public Iterator<Tuple> iterator(Predicate pred) {
+        return new Itr(pred == null ? Collections.emptyList() : Collections.singletonList(pred), null, td, null);
+    }
+
+    // see TuplePage.java for javadocs
+    public int fill(TupleBatch batch, int slot, int[] columns) {
+        ByteBuffer buf = data;
+        for (; slot < numSlots && !batch.isFull(); slot++) {
+            int offset = recordOffset(buf, slot);
+            if (offset == 0) {
+                continue;
+            }
+            int row = batch.addRow();
+            int n = columns == null ? td.numFields() : columns.length;
+            for (int j = 0; j < n; j++) {
+                int field = columns == null ? j : columns[j];
+                Type type = td.getFieldType(field);
+                int at = fieldOffset(buf, offset, field);
+                if (type == Type.INT_TYPE) {
+                    batch.getInts(j)[row] = buf.getInt(at);
+                } else {
+                    batch.getFields(j)[row] = type.parse(buf, at);
+                }
+            }
+        }
+        return slot;
+    }
+
+    // see TuplePage.java for javadocs
+    public Iterator<Tuple> iterator(List<Predicate> preds, int[] columns, TupleDesc outTd, Tuple reuse) {
+        return new Itr(preds, columns, outTd, reuse);
+    }
+
+    private class Itr implements Iterator<Tuple> {
+        // next slot to return, or slots when there is none
+        int slot = -1;
+        final Predicate[] preds;
+        final int[] columns;
+        final TupleDesc outTd;
+        // filled in by every next() if not null
+        final Tuple reuse;
+        // the page as it was when the iterator was made: tuples inserted or
+        // deleted since go to a copy of the data, see ensureWritable
+        final ByteBuffer buf = data;
+        final int slots = numSlots;
+
+        Itr(List<Predicate> preds, int[] columns, TupleDesc outTd, Tuple reuse) {
+            ownData = false;
+            this.preds = preds.toArray(new Predicate[0]);
+            this.columns = columns;
+            this.outTd = outTd;
+            this.reuse = reuse;
+            advance();
+        }
+
+        /** Moves slot to the next used slot that passes preds. */
+        private void advance() {
+            next:
+            while (++slot < slots) {
+                int offset = recordOffset(buf, slot);
+                if (offset == 0) {
+                    continue;
+                }
+                for (Predicate pred : preds) {
+                    int field = pred.getField();
+                    Field value = td.getFieldType(field).parse(buf, fieldOffset(buf, offset, field));
+                    if (!value.compare(pred.getOp(), pred.getOperand())) {
+                        continue next;
+                    }
+                }
+                return;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot < slots;
+        }
+
+        @Override
+        public Tuple next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Tuple t = reuse != null ? reuse : new Tuple(outTd);
+            if (columns == null) {
+                readInto(t, buf, slot);
+            } else {
+                t.setRecordId(new RecordId(pid, slot));
+                int offset = recordOffset(buf, slot);
+                for (int j = 0; j < columns.length; j++) {
+                    t.parseField(j, td.getFieldType(columns[j]), buf, fieldOffset(buf, offset, columns[j]));
+                }
+            }
+            advance();
+            return t;
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package simpledb.storage;
 
-import sun.tools.tree.PreIncExpression;
+import simpledb.common.Type;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 
 /**
  * Tuple maintains information about the contents of a tuple. Tuples have a
  * specified schema specified by a TupleDesc object and contain Field objects
  * with the data for each field.
+ * <p>
+ * INT fields may also be held as plain ints, set with {@link #setInt} and
+ * read with {@link #getInt}, so a tuple read from a page and tested by a
+ * predicate need not allocate an IntField per field.  getField() builds the
+ * IntField the first time it is asked for one.
  */
 public class Tuple implements Serializable {
 
@@ -18,6 +27,11 @@ public class Tuple implements Serializable {
     private TupleDesc tupleDesc;
     private RecordId recordId;
     private Field [] fields;
+    /** Values of the fields marked INT_VALUE in fields; allocated on first use. */
+    private int[] ints;
+
+    /** Marks a field whose value is in ints. */
+    private static final Field INT_VALUE = new IntField(0);
 
 
     /**
@@ -29,8 +43,8 @@ public class Tuple implements Serializable {
      */
     public Tuple(TupleDesc td) {
         // some code goes here
-        tupleDesc = new TupleDesc(td);
-        fields = new Field[tupleDesc.getSize()];
+        tupleDesc = td;
+        fields = new Field[td.numFields()];
     }
 
     /**
@@ -82,7 +96,55 @@ public class Tuple implements Serializable {
      */
     public Field getField(int i) {
         // some code goes here
-        return fields[i];
+        Field f = fields[i];
+        if (f == INT_VALUE) {
+            f = fields[i] = new IntField(ints[i]);
+        }
+        return f;
+    }
+
+    /**
+     * Sets the ith field, which must be of type INT, to v without building
+     * an IntField for it.
+     */
+    public void setInt(int i, int v) {
+        if (ints == null) {
+            ints = new int[fields.length];
+        }
+        ints[i] = v;
+        fields[i] = INT_VALUE;
+    }
+
+    /**
+     * @return the value of the ith field, which must be a set INT field
+     */
+    public int getInt(int i) {
+        Field f = fields[i];
+        return f == INT_VALUE ? ints[i] : ((IntField) f).getValue();
+    }
+
+    /**
+     * Sets the ith field of this tuple to the jth field of src, keeping an
+     * INT held as a plain int that way.
+     */
+    public void copyField(int i, Tuple src, int j) {
+        if (src.fields[j] == INT_VALUE) {
+            setInt(i, src.ints[j]);
+        } else {
+            fields[i] = src.fields[j];
+        }
+    }
+
+    /**
+     * Sets the ith field from the serialized form of the field at offset
+     * in data, e.g. in a page, reading an INT as a plain int.
+     */
+    void parseField(int i, Type type, ByteBuffer data, int offset) {
+        if (type == Type.INT_TYPE) {
+            setInt(i, data.getInt(offset));
+        } else {
+            fields[i] = type.parse(data, offset);
+        }
     }
 
     /**
@@ -97,8 +159,8 @@ public class Tuple implements Serializable {
         // some code goes here
 //        throw new UnsupportedOperationException("Implement this");
         StringBuilder res = new StringBuilder();
-        for (Field i: fields){
-            res.append(i).append(" ");
+        for (int i = 0; i < fields.length; i++) {
+            res.append(getField(i)).append(" ");
         }
         return res.toString();
     }
@@ -110,7 +172,20 @@ public class Tuple implements Serializable {
     public Iterator<Field> fields()
     {
         // some code goes here
-        return Arrays.stream(fields).iterator();
+        return new Iterator<Field>() {
+            private int i = 0;
+
+            public boolean hasNext() {
+                return i < fields.length;
+            }
+
+            public Field next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getField(i++);
+            }
+        };
     }
 
     /**
@@ -139,7 +214,7 @@ public class Tuple implements Serializable {
             return false;
         }
 
-        if (!recordId.equals(oTuple.recordId)) {
+        if (!Objects.equals(recordId, oTuple.recordId)) {
             return false;
         }
         Iterator<Field> it =  fields();
@@ -154,5 +229,14 @@ public class Tuple implements Serializable {
         return !it.hasNext() && !oit.hasNext();
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // INT_VALUE is only recognized by identity, which does not survive
+        for (int i = 0; i < fields.length; i++) {
+            getField(i);
+        }
+        ints = null;
+        out.defaultWriteObject();
+    }
+
 
 }
@@ -0,0 +1,227 @@
+package simpledb.storage;
+
+import simpledb.common.Type;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * TupleBatch holds up to a fixed number of rows of one TupleDesc column by
+ * column: INT columns as int arrays, others as arrays of Fields.  Batch
+ * operators pass batches rather than tuples, so the per-row work of a scan,
+ * filter or aggregate is a loop over an array instead of a chain of
+ * virtual calls.
+ * <p>
+ * Rows 0 to getRowCount()-1 hold values.  A selection vector, if set, lists
+ * in order the rows still in the batch, e.g. those that passed a filter,
+ * so filtering moves no values; size() and row(i) see only those rows.
+ * Batches carry no RecordIds, so they are for reading, not for deletes.
+ */
+public class TupleBatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Rows per batch unless a capacity is given. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final TupleDesc td;
+    private int capacity;
+    /** ints[c] holds column c if it is an INT column, else null. */
+    private final int[][] ints;
+    /** fields[c] holds column c if it is not an INT column, else null. */
+    private final Field[][] fields;
+    private int rows;
+    /** The rows in the batch, in order, or null for all of them. */
+    private int[] sel;
+    private int selSize;
+
+    public TupleBatch(TupleDesc td) {
+        this(td, DEFAULT_CAPACITY);
+    }
+
+    public TupleBatch(TupleDesc td, int capacity) {
+        this.td = td;
+        this.capacity = capacity;
+        this.ints = new int[td.numFields()][];
+        this.fields = new Field[td.numFields()][];
+        for (int c = 0; c < td.numFields(); c++) {
+            if (td.getFieldType(c) == Type.INT_TYPE) {
+                ints[c] = new int[capacity];
+            } else {
+                fields[c] = new Field[capacity];
+            }
+        }
+    }
+
+    /** A batch whose columns are set by {@link #project}. */
+    private TupleBatch(TupleDesc td, int[][] ints, Field[][] fields) {
+        this.td = td;
+        this.ints = ints;
+        this.fields = fields;
+    }
+
+    public TupleDesc getTupleDesc() {
+        return td;
+    }
+
+    /** @return the number of rows the batch has room for */
+    public int capacity() {
+        return capacity;
+    }
+
+    /** @return the number of rows holding values, selected or not */
+    public int getRowCount() {
+        return rows;
+    }
+
+    public boolean isFull() {
+        return rows == capacity;
+    }
+
+    /** @return the number of rows in the batch */
+    public int size() {
+        return sel == null ? rows : selSize;
+    }
+
+    /** @return the index of the ith row in the batch */
+    public int row(int i) {
+        return sel == null ? i : sel[i];
+    }
+
+    /** @return the selection vector, or null if every row is selected */
+    public int[] getSelection() {
+        return sel;
+    }
+
+    /**
+     * Keeps only the rows sel[0] to sel[n-1], which must be in increasing
+     * order.  The batch refers to sel until it is cleared.
+     */
+    public void select(int[] sel, int n) {
+        this.sel = sel;
+        this.selSize = n;
+    }
+
+    /** Empties the batch for refilling. */
+    public void clear() {
+        rows = 0;
+        sel = null;
+        selSize = 0;
+    }
+
+    /** @return the values of column c, an INT column, indexed by row */
+    public int[] getInts(int c) {
+        return ints[c];
+    }
+
+    /** @return the values of column c, not an INT column, indexed by row */
+    public Field[] getFields(int c) {
+        return fields[c];
+    }
+
+    /** @return the value of column c in row row, as a Field */
+    public Field getField(int row, int c) {
+        return ints[c] != null ? new IntField(ints[c][row]) : fields[c][row];
+    }
+
+    /**
+     * Adds an unselected row at the end of the batch for the caller to set
+     * the values of.  Rows may only be added while no selection is set.
+     *
+     * @return the index of the new row
+     */
+    public int addRow() {
+        if (rows == capacity) {
+            throw new IllegalStateException("batch is full");
+        }
+        return rows++;
+    }
+
+    /** Adds a row holding the values of t. */
+    public void addTuple(Tuple t) {
+        int row = addRow();
+        for (int c = 0; c < ints.length; c++) {
+            if (ints[c] != null) {
+                ints[c][row] = t.getInt(c);
+            } else {
+                fields[c][row] = t.getField(c);
+            }
+        }
+    }
+
+    /**
+     * Adds the rows in src, which must have this batch's TupleDesc, growing
+     * the batch if they do not fit.  The rows are added unselected.
+     */
+    public void append(TupleBatch src) {
+        int n = src.size();
+        if (rows + n > capacity) {
+            capacity = Math.max(rows + n, capacity * 2);
+            for (int c = 0; c < ints.length; c++) {
+                if (ints[c] != null) {
+                    ints[c] = Arrays.copyOf(ints[c], capacity);
+                } else {
+                    fields[c] = Arrays.copyOf(fields[c], capacity);
+                }
+            }
+        }
+        for (int c = 0; c < ints.length; c++) {
+            if (ints[c] != null) {
+                int[] from = src.ints[c];
+                int[] to = ints[c];
+                for (int i = 0; i < n; i++) {
+                    to[rows + i] = from[src.row(i)];
+                }
+            } else {
+                Field[] from = src.fields[c];
+                Field[] to = fields[c];
+                for (int i = 0; i < n; i++) {
+                    to[rows + i] = from[src.row(i)];
+                }
+            }
+        }
+        rows += n;
+    }
+
+    /** Sets the fields of t to the values in row row. */
+    public void readInto(Tuple t, int row) {
+        for (int c = 0; c < ints.length; c++) {
+            if (ints[c] != null) {
+                t.setInt(c, ints[c][row]);
+            } else {
+                t.setField(c, fields[c][row]);
+            }
+        }
+    }
+
+    /** @return a new Tuple of the values in row row */
+    public Tuple getTuple(int row) {
+        Tuple t = new Tuple(td);
+        readInto(t, row);
+        return t;
+    }
+
+    /**
+     * Returns a batch of the columns columns of this one, described by
+     * outTd.  The new batch shares this one's arrays and selection, so it
+     * is only good until this batch next changes; it must not be added to.
+     *
+     * @param reuse
+     *            a batch an earlier call returned for the same columns, to
+     *            be pointed at this one's arrays instead of making another,
+     *            or null
+     */
+    public TupleBatch project(int[] columns, TupleDesc outTd, TupleBatch reuse) {
+        TupleBatch out = reuse != null ? reuse
+                : new TupleBatch(outTd, new int[columns.length][], new Field[columns.length][]);
+        for (int i = 0; i < columns.length; i++) {
+            out.ints[i] = ints[columns[i]];
+            out.fields[i] = fields[columns[i]];
+        }
+        out.capacity = capacity;
+        out.rows = rows;
+        out.sel = sel;
+        out.selSize = selSize;
+        return out;
+    }
+}
@@ -8,14 +8,17 @@ import java.util.*;
 import static simpledb.execution.Aggregator.NO_GROUPING;
 
 /**
- * TupleDesc describes the schema of a tuple.
+ * TupleDesc describes the schema of a tuple.  A TupleDesc never changes once
+ * built, so tuples and operators share one instead of copying it.
  */
 public class TupleDesc implements Serializable {
 
     /**
      * A help class to facilitate organizing the information of each field
      * */
-    List<TDItem> TDItemList;
+    private final TDItem[] items;
+    /** Byte offset of each field within a tuple, then the tuple size. */
+    private final int[] offsets;
     public static class TDItem implements Serializable {
 
         private static final long serialVersionUID = 1L;
@@ -47,7 +50,7 @@ public class TupleDesc implements Serializable {
      * */
     public Iterator<TDItem> iterator() {
         // some code goes here
-        return TDItemList.iterator();
+        return Collections.unmodifiableList(Arrays.asList(items)).iterator();
 //        return null;
     }
 
@@ -66,11 +69,7 @@ public class TupleDesc implements Serializable {
      */
     public TupleDesc(Type[] typeAr, String[] fieldAr) {
         // some code goes here
-        if(typeAr.length < 1)return;
-        TDItemList = new ArrayList<>();
-        for (int i = 0; i < typeAr.length; i++) {
-            TDItemList.add(new TDItem(typeAr[i], fieldAr[i]));
-        }
+        this(items(typeAr, fieldAr));
     }
 
     /**
@@ -83,27 +82,39 @@ public class TupleDesc implements Serializable {
      */
     public TupleDesc(Type[] typeAr) {
         // some code goes here
-        if (typeAr.length < 1)return;
-        TDItemList = new ArrayList<>();
-        for (int i = 0; i < typeAr.length; i++){
-            TDItemList.add(new TDItem(typeAr[i], null));
-        }
+        this(items(typeAr, new String[typeAr.length]));
     }
 
+    /**
+     * Copy constructor.  TupleDescs are immutable, so sharing in is as good
+     * as a copy; this is kept for callers that ask for one.
+     */
     public TupleDesc(TupleDesc in) {
-        TDItemList = new ArrayList<>();
-        Iterator<TDItem> inIter = in.iterator();
-        while(inIter.hasNext()){
-            TDItemList.add(inIter.next());
+        this(in.items);
+    }
+
+    private TupleDesc(TDItem[] items) {
+        this.items = items;
+        offsets = new int[items.length + 1];
+        for (int i = 0; i < items.length; i++) {
+            offsets[i + 1] = offsets[i] + items[i].fieldType.getLen();
         }
     }
 
+    private static TDItem[] items(Type[] typeAr, String[] fieldAr) {
+        TDItem[] items = new TDItem[typeAr.length];
+        for (int i = 0; i < typeAr.length; i++) {
+            items[i] = new TDItem(typeAr[i], fieldAr[i]);
+        }
+        return items;
+    }
+
     /**
      * @return the number of fields in this TupleDesc
      */
     public int numFields() {
         // some code goes here
-        return TDItemList.size();
+        return items.length;
 //        return 0;
     }
 
@@ -118,15 +129,10 @@ public class TupleDesc implements Serializable {
      */
     public String getFieldName(int i) throws NoSuchElementException {
         // some code goes here
-        if(i < 0 || i >= getSize()){
+        if(i < 0 || i >= items.length){
             throw new NoSuchElementException();
         }
-        Iterator<TDItem> tmp = iterator();
-        while (tmp.hasNext() && i!=0){
-            tmp.next();
-            i--;
-        }
-        return tmp.next().fieldName;
+        return items[i].fieldName;
     }
 
     /**
@@ -144,15 +150,10 @@ public class TupleDesc implements Serializable {
         //这里特殊处理一下，针对 NO_GROUPING场景 TODO 待确认更好的做法
         if(i == NO_GROUPING) return Type.STRING_TYPE;
 
-        if (i < 0 || i >= TDItemList.size()) {
+        if (i < 0 || i >= items.length) {
             throw new NoSuchElementException();
         }
-        Iterator<TDItem> tmp = iterator();
-        while (tmp.hasNext() && i != 0){
-            tmp.next();
-            i--;
-        }
-        return tmp.next().fieldType;
+        return items[i].fieldType;
 
 //        return null;
     }
@@ -189,13 +190,22 @@ public class TupleDesc implements Serializable {
      */
     public int getSize() {
         // some code goes here
-        int size = 0;
-        Iterator<TDItem> tmp = iterator();
-        while (tmp.hasNext()) {
-            TDItem tdItem = tmp.next();
-            size += tdItem.fieldType.getLen();
+        return offsets[items.length];
+    }
+
+    /**
+     * Gets the byte offset of the ith field within the serialized form of a
+     * tuple with this TupleDesc, e.g. within a HeapPage slot.
+     *
+     * @param i
+     *            The index of the field. It must be a valid index.
+     * @return the number of bytes taken by fields 0 to i-1
+     */
+    public int getFieldOffset(int i) {
+        if (i < 0 || i >= numFields()) {
+            throw new NoSuchElementException();
         }
-        return size;
+        return offsets[i];
     }
 
     /**
@@ -210,9 +220,25 @@ public class TupleDesc implements Serializable {
      */
     public static TupleDesc merge(TupleDesc td1, TupleDesc td2) {
         // some code goes here
-        TupleDesc td3 = new TupleDesc(td1);
-        td3.TDItemList.addAll(td2.TDItemList);
-        return td3;
+        TDItem[] items = Arrays.copyOf(td1.items, td1.items.length + td2.items.length);
+        System.arraycopy(td2.items, 0, items, td1.items.length, td2.items.length);
+        return new TupleDesc(items);
+    }
+
+    /**
+     * Returns a TupleDesc of the given fields of this one, in the given order.
+     *
+     * @param fields indexes of the fields to keep
+     * @throws NoSuchElementException if an index is not a valid field
+     */
+    public TupleDesc project(int[] fields) {
+        Type[] types = new Type[fields.length];
+        String[] names = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            types[i] = getFieldType(fields[i]);
+            names[i] = getFieldName(fields[i]);
+        }
+        return new TupleDesc(types, names);
     }
 
     /**
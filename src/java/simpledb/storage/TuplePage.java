@@ -0,0 +1,68 @@
+package simpledb.storage;
+
+import simpledb.common.DbException;
+import simpledb.execution.Predicate;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The operations HeapFile needs from its pages, whichever of the two page
+ * layouts a table uses: {@link HeapPage} for tuples of a fixed size and
+ * {@link SlottedPage} for tuples with variable-length fields.  Public so
+ * that scans outside this package, such as BatchSeqScan, can read a heap
+ * file's pages themselves.
+ */
+public interface TuplePage extends Page {
+
+    /**
+     * @return how many more tuples the page is sure to take; while this is
+     *         positive, insertTuple succeeds for any tuple of the table
+     */
+    int getNumEmptySlots();
+
+    /** @return the number of tuple slots on the page, used or not */
+    int getNumSlots();
+
+    /** @return whether slot i holds a tuple */
+    boolean isSlotUsed(int i);
+
+    /**
+     * @return field fieldIndex of the tuple in slot i
+     * @throws java.util.NoSuchElementException if slot i is empty
+     */
+    Field getField(int i, int fieldIndex);
+
+    /**
+     * Adds t to the page and sets its RecordId.
+     *
+     * @throws DbException if the page is full or t does not fit the table
+     */
+    void insertTuple(Tuple t) throws DbException;
+
+    /**
+     * Removes t, which its RecordId places on this page.
+     *
+     * @throws DbException if t is not on this page
+     */
+    void deleteTuple(Tuple t) throws DbException;
+
+    /**
+     * @return an iterator over the tuples on this page that satisfy all of
+     *         preds, each cut down to the fields columns, or to all fields
+     *         if columns is null, and described by outTd.  preds are tested
+     *         before a tuple is decoded, and only the fields in columns are.
+     *         If reuse is not null, every call to next() fills in and
+     *         returns reuse instead of a new Tuple.
+     */
+    Iterator<Tuple> iterator(List<Predicate> preds, int[] columns, TupleDesc outTd, Tuple reuse);
+
+    /**
+     * Adds the fields columns, or all fields if columns is null, of the
+     * tuples in used slots from slot on to batch, until the page or the
+     * batch runs out.
+     *
+     * @return the slot to carry on from, or getNumSlots() if the page is done
+     */
+    int fill(TupleBatch batch, int slot, int[] columns);
+}
@@ -0,0 +1,120 @@
+package simpledb.storage;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The full 2Q algorithm of Johnson and Shasha, with CLOCK standing in for
+ * LRU on the main queue so that hits stay lock-free.
+ * <p>
+ * A page read for the first time goes on A1in, a FIFO.  Hits while it is
+ * there are deliberately ignored (they are usually correlated, e.g. several
+ * tuples of one page read by the same scan).  When it falls off A1in only
+ * its id is remembered on the A1out ghost list; if it is read again while
+ * still remembered it is admitted straight to Am, the hot set.  A sequential
+ * scan therefore only ever cycles through A1in and cannot push frequently
+ * used pages, such as the upper levels of a B+ tree, out of Am.
+ */
+final class TwoQueuePolicy implements EvictionPolicy {
+
+    /** Share of the shard's pages A1in may hold before it is drained first. */
+    private static final double KIN = 0.25;
+    /** Ghost entries remembered, as a share of the shard's pages. */
+    private static final double KOUT = 0.5;
+    private static final int MIN_GHOSTS = 16;
+
+    /** A page on A1in. */
+    private static final class InNode extends Handle {
+        InNode prev, next;
+
+        InNode(PageId pid) {
+            super(pid);
+        }
+    }
+
+    private InNode inHead, inTail;
+    private int inSize;
+    private final ClockPolicy am = new ClockPolicy();
+    private final LinkedHashMap<PageId, Boolean> ghosts = new LinkedHashMap<>();
+
+    @Override
+    public Handle admit(PageId pid) {
+        if (ghosts.remove(pid) != null) {
+            return am.admit(pid);
+        }
+        InNode n = new InNode(pid);
+        n.prev = inTail;
+        if (inTail == null) {
+            inHead = n;
+        } else {
+            inTail.next = n;
+        }
+        inTail = n;
+        inSize++;
+        return n;
+    }
+
+    @Override
+    public void touch(Handle h) {
+        // only matters on Am; A1in ignores reference bits
+        if (!h.referenced) {
+            h.referenced = true;
+        }
+    }
+
+    @Override
+    public void remove(Handle h) {
+        if (!(h instanceof InNode)) {
+            am.remove(h);
+            return;
+        }
+        InNode n = (InNode) h;
+        if (n.prev == null && inHead != n) {
+            return;
+        }
+        if (n.prev == null) {
+            inHead = n.next;
+        } else {
+            n.prev.next = n.next;
+        }
+        if (n.next == null) {
+            inTail = n.prev;
+        } else {
+            n.next.prev = n.prev;
+        }
+        n.prev = n.next = null;
+        inSize--;
+        remember(n.pid);
+    }
+
+    private void remember(PageId pid) {
+        ghosts.put(pid, Boolean.TRUE);
+        int limit = Math.max(MIN_GHOSTS, (int) (KOUT * size()));
+        while (ghosts.size() > limit) {
+            ghosts.remove(ghosts.keySet().iterator().next());
+        }
+    }
+
+    @Override
+    public Handle victim() {
+        if (inHead != null && (inSize > KIN * size() || am.size() == 0)) {
+            return inHead;
+        }
+        return am.victim();
+    }
+
+    /** A1in oldest first, then Am; A1in is drained first once it is full. */
+    @Override
+    public void upcoming(int n, List<Handle> out) {
+        int limit = out.size() + Math.min(n, size());
+        for (InNode node = inHead; node != null && out.size() < limit; node = node.next) {
+            out.add(node);
+        }
+        am.upcoming(limit - out.size(), out);
+    }
+
+    @Override
+    public int size() {
+        return inSize + am.size();
+    }
+}
@@ -0,0 +1,58 @@
+package simpledb.storage;
+
+import simpledb.common.Type;
+
+import java.io.*;
+
+/**
+ * Instance of Field that stores a single String of up to a maximum length,
+ * taking only as many bytes as the string has.  Compares and hashes like a
+ * StringField with the same value.
+ */
+public class VarcharField extends StringField {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param s
+	 *            The value of this field.
+	 * @param maxSize
+	 *            The maximum size of this string
+	 */
+	public VarcharField(String s, int maxSize) {
+		super(s, maxSize);
+	}
+
+	/**
+	 * Write this string to dos: two bytes of string length followed by the
+	 * string, with no padding.
+	 *
+	 * @param dos
+	 *            Where the string is written
+	 */
+	public void serialize(DataOutputStream dos) throws IOException {
+		write(dos, getValue());
+	}
+
+	/**
+	 * Writes s to dos in the format of {@link #serialize}, e.g. for a
+	 * StringField stored in a VARCHAR column.
+	 */
+	static void write(DataOutputStream dos, String s) throws IOException {
+		if (s.length() > Type.STRING_LEN) {
+			s = s.substring(0, Type.STRING_LEN);
+		}
+		dos.writeShort(s.length());
+		dos.writeBytes(s);
+	}
+
+	/**
+	 * @return the Type for this Field
+	 */
+	public Type getType() {
+
+		return Type.VARCHAR_TYPE;
+	}
+}
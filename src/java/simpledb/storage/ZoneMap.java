@@ -0,0 +1,147 @@
+package simpledb.storage;
+
+import simpledb.common.Type;
+import simpledb.execution.Predicate;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Keeps the smallest and largest value of each INT field on each page of a
+ * heap file, so a scan with a range predicate can pass over pages whose
+ * values cannot satisfy it without reading them.
+ * <p>
+ * Unlike a {@link FreeSpaceMap}, the map is trusted: a page it rules out is
+ * not looked at.  So it only says something about a page once it has seen
+ * all of it, i.e. when the page was read from or written to disk, and from
+ * then on every tuple inserted into the page widens its ranges.  Deletes
+ * leave the ranges as they are, which can only make them too wide, until
+ * the page is next written.  The map lives as long as its HeapFile and is
+ * not saved.
+ */
+final class ZoneMap {
+
+    /** The INT fields the map keeps ranges of. */
+    private final int[] fields;
+    /** Pages whose ranges below are complete. */
+    private final BitSet known = new BitSet();
+    /** min[p * fields.length + k] is the least value of fields[k] on page p. */
+    private int[] min = new int[0];
+    private int[] max = new int[0];
+    /** Reused to read the fields off a page, or null before the first page. */
+    private TupleBatch batch;
+
+    ZoneMap(TupleDesc td) {
+        int n = 0;
+        int[] fields = new int[td.numFields()];
+        for (int i = 0; i < td.numFields(); i++) {
+            if (td.getFieldType(i) == Type.INT_TYPE) {
+                fields[n++] = i;
+            }
+        }
+        this.fields = Arrays.copyOf(fields, n);
+    }
+
+    /**
+     * Sets the ranges of page pgNo from its contents, unless they are
+     * already known; for a page just read from disk.
+     */
+    synchronized void learn(int pgNo, TuplePage page) {
+        if (!known.get(pgNo)) {
+            compute(pgNo, page);
+        }
+    }
+
+    /**
+     * Sets the ranges of page pgNo from its contents; for a page being
+     * written to disk.
+     */
+    synchronized void compute(int pgNo, TuplePage page) {
+        if (fields.length == 0) {
+            return;
+        }
+        ensureCapacity(pgNo);
+        int base = pgNo * fields.length;
+        Arrays.fill(min, base, base + fields.length, Integer.MAX_VALUE);
+        Arrays.fill(max, base, base + fields.length, Integer.MIN_VALUE);
+        if (batch == null) {
+            Type[] types = new Type[fields.length];
+            Arrays.fill(types, Type.INT_TYPE);
+            batch = new TupleBatch(new TupleDesc(types));
+        }
+        // the page reads the ints straight from its bytes, without Fields
+        for (int slot = 0; slot < page.getNumSlots(); ) {
+            batch.clear();
+            slot = page.fill(batch, slot, fields);
+            for (int k = 0; k < fields.length; k++) {
+                int[] values = batch.getInts(k);
+                for (int row = 0; row < batch.getRowCount(); row++) {
+                    add(base + k, values[row]);
+                }
+            }
+        }
+        known.set(pgNo);
+    }
+
+    /** Widens the ranges of page pgNo, if known, to cover t. */
+    synchronized void widen(int pgNo, Tuple t) {
+        if (!known.get(pgNo)) {
+            return;
+        }
+        int base = pgNo * fields.length;
+        for (int k = 0; k < fields.length; k++) {
+            add(base + k, t.getInt(fields[k]));
+        }
+    }
+
+    private void add(int i, int v) {
+        if (v < min[i]) {
+            min[i] = v;
+        }
+        if (v > max[i]) {
+            max[i] = v;
+        }
+    }
+
+    private void ensureCapacity(int pgNo) {
+        int needed = (pgNo + 1) * fields.length;
+        if (min.length < needed) {
+            int size = Math.max(needed, min.length * 2);
+            min = Arrays.copyOf(min, size);
+            max = Arrays.copyOf(max, size);
+        }
+    }
+
+    /**
+     * @return false if no tuple on page pgNo can satisfy pred, true if some
+     *         may, or if the map knows nothing to tell
+     */
+    synchronized boolean mayMatch(int pgNo, Predicate pred) {
+        if (!known.get(pgNo) || !(pred.getOperand() instanceof IntField)) {
+            return true;
+        }
+        int k = Arrays.binarySearch(fields, pred.getField());
+        if (k < 0) {
+            return true;
+        }
+        int lo = min[pgNo * fields.length + k];
+        int hi = max[pgNo * fields.length + k];
+        int v = ((IntField) pred.getOperand()).getValue();
+        switch (pred.getOp()) {
+            case EQUALS:
+                return lo <= v && v <= hi;
+            case GREATER_THAN:
+                return hi > v;
+            case GREATER_THAN_OR_EQ:
+                return hi >= v;
+            case LESS_THAN:
+                return lo < v;
+            case LESS_THAN_OR_EQ:
+                return lo <= v;
+            case NOT_EQUALS:
+                return !(lo == v && hi == v);
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.execution.*;
+import simpledb.storage.ColumnFile;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the batch operators and the adapters between them and
+ * OpIterators.
+ */
+public class BatchOperatorsTest extends SimpleDbTestBase {
+
+    private static final int ROWS = 3000;
+
+    private List<List<Integer>> tuples;
+    private HeapFile hf;
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        tuples = new ArrayList<>();
+        hf = SystemTestUtil.createRandomHeapFile(3, ROWS, 50, null, tuples, "c");
+        tid = new TransactionId();
+    }
+
+    @After public void tearDown() {
+        Database.getBufferPool().transactionComplete(tid);
+        new File(hf.getFile().getPath() + ".fsm").delete();
+    }
+
+    private static List<List<Integer>> rows(OpIterator op) throws Exception {
+        List<List<Integer>> rows = new ArrayList<>();
+        op.open();
+        while (op.hasNext()) {
+            rows.add(SystemTestUtil.tupleToList(op.next()));
+        }
+        op.close();
+        return rows;
+    }
+
+    private static List<List<Integer>> sorted(List<List<Integer>> rows) {
+        rows.sort((a, b) -> a.toString().compareTo(b.toString()));
+        return rows;
+    }
+
+    private BatchIterator scanFilterProject(BatchIterator scan) {
+        Predicate p = new Predicate(0, Predicate.Op.LESS_THAN, new IntField(20));
+        return new BatchProject(Arrays.asList(2, 0), new Type[] {Type.INT_TYPE, Type.INT_TYPE},
+                new BatchFilter(p, scan));
+    }
+
+    /** @return field 2 then field 0 of the tuples whose field 0 is below 20 */
+    private List<List<Integer>> expected() {
+        List<List<Integer>> expected = new ArrayList<>();
+        for (List<Integer> t : tuples) {
+            if (t.get(0) < 20) {
+                expected.add(Arrays.asList(t.get(2), t.get(0)));
+            }
+        }
+        return expected;
+    }
+
+    /** Scan, filter and project a heap file, whose pages fill batches. */
+    @Test public void heapScan() throws Exception {
+        BatchIterator plan = scanFilterProject(new BatchSeqScan(tid, hf.getId(), "t"));
+        assertEquals("t.c2", plan.getTupleDesc().getFieldName(0));
+        assertEquals(expected(), rows(new BatchToTuple(plan)));
+    }
+
+    /** Other files are read a tuple at a time into batches. */
+    @Test public void otherFileScan() throws Exception {
+        File f = File.createTempFile("column", ".dat");
+        f.deleteOnExit();
+        ColumnFile cf = ColumnFile.convert(hf, tid, f, 1000);
+        Database.getCatalog().addTable(cf, SystemTestUtil.getUUID());
+        BatchIterator plan = scanFilterProject(new BatchSeqScan(tid, cf.getId(), "t"));
+        assertEquals(expected(), rows(new BatchToTuple(plan)));
+    }
+
+    /** Aggregates match those of Aggregate, grouped and not. */
+    @Test public void aggregate() throws Exception {
+        for (Aggregator.Op op : new Aggregator.Op[] {Aggregator.Op.MIN, Aggregator.Op.MAX,
+                Aggregator.Op.SUM, Aggregator.Op.AVG, Aggregator.Op.COUNT}) {
+            for (int gfield : new int[] {Aggregator.NO_GROUPING, 1}) {
+                OpIterator expected = new Aggregate(new SeqScan(tid, hf.getId(), "t"), 2, gfield, op);
+                // one side through TupleToBatch, to mix the two kinds
+                BatchIterator batches = new TupleToBatch(new SeqScan(tid, hf.getId(), "t"));
+                OpIterator actual = new BatchToTuple(new BatchAggregate(batches, 2, gfield, op));
+                assertEquals(op + " " + gfield, sorted(rows(expected)), sorted(rows(actual)));
+            }
+        }
+    }
+
+    /** A batch hash join returns the pairs HashEquiJoin does. */
+    @Test public void hashJoin() throws Exception {
+        JoinPredicate p = new JoinPredicate(1, Predicate.Op.EQUALS, 2);
+        OpIterator expected = new HashEquiJoin(p, new SeqScan(tid, hf.getId(), "a"),
+                new SeqScan(tid, hf.getId(), "b"));
+        Predicate small = new Predicate(0, Predicate.Op.LESS_THAN, new IntField(5));
+        OpIterator actual = new BatchToTuple(new BatchHashEquiJoin(p,
+                new BatchSeqScan(tid, hf.getId(), "a"), new BatchSeqScan(tid, hf.getId(), "b")));
+        List<List<Integer>> rows = sorted(rows(actual));
+        assertEquals(sorted(rows(expected)), rows);
+        assertTrue(rows.size() > 2 * 1024);
+
+        // probe side narrowed by a filter's selection vector
+        expected = new HashEquiJoin(p, new SeqScan(tid, hf.getId(), "a"),
+                new Filter(small, new SeqScan(tid, hf.getId(), "b")));
+        actual = new BatchToTuple(new BatchHashEquiJoin(p, new BatchSeqScan(tid, hf.getId(), "a"),
+                new BatchFilter(small, new BatchSeqScan(tid, hf.getId(), "b"))));
+        assertEquals(sorted(rows(expected)), sorted(rows(actual)));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(BatchOperatorsTest.class);
+    }
+}
@@ -0,0 +1,134 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Utility;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.optimizer.LogicalPlan;
+import simpledb.optimizer.TableStats;
+import simpledb.storage.*;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for ColumnFile.
+ */
+public class ColumnFileTest extends SimpleDbTestBase {
+
+    private static final int COLUMNS = 4;
+    // row groups of 1500 leave part-filled pages at the end of each group
+    private static final int ROWS = 4000;
+    private static final int ROWS_PER_GROUP = 1500;
+
+    private List<List<Integer>> tuples;
+    private ColumnFile cf;
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        tuples = new ArrayList<>();
+        HeapFile hf = SystemTestUtil.createRandomHeapFile(COLUMNS, ROWS, null, tuples, "c");
+        tid = new TransactionId();
+        File f = File.createTempFile("column", ".dat");
+        f.deleteOnExit();
+        cf = ColumnFile.convert(hf, tid, f, ROWS_PER_GROUP);
+        Database.getCatalog().addTable(cf, "col" + SystemTestUtil.getUUID());
+    }
+
+    /** Converted rows come back in the order of the heap file. */
+    @Test public void convertAndScan() throws Exception {
+        assertEquals(ROWS, cf.numRows());
+        DbFileIterator it = cf.iterator(tid);
+        it.open();
+        for (List<Integer> expected : tuples) {
+            assertTrue(it.hasNext());
+            assertEquals(expected, SystemTestUtil.tupleToList(it.next()));
+        }
+        assertFalse(it.hasNext());
+        it.close();
+
+        ColumnFile reopened = new ColumnFile(cf.getFile(), cf.getTupleDesc());
+        assertEquals(ROWS, reopened.numRows());
+        assertEquals(ROWS_PER_GROUP, reopened.rowsPerGroup());
+    }
+
+    /** A projected scan returns the chosen fields and reads only their pages. */
+    @Test public void projection() throws Exception {
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        int[] columns = {2, 0};
+        DbFileIterator it = cf.iterator(tid, columns);
+        it.open();
+        int n = 0;
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            assertEquals(2, t.getTupleDesc().numFields());
+            assertEquals("c2", t.getTupleDesc().getFieldName(0));
+            assertEquals(new IntField(tuples.get(n).get(2)), t.getField(0));
+            assertEquals(new IntField(tuples.get(n).get(0)), t.getField(1));
+            n++;
+        }
+        it.close();
+        assertEquals(ROWS, n);
+
+        int perPage = BufferPool.getPageSize() / 4;
+        int groupPages = 0;
+        for (int rows = ROWS; rows > 0; rows -= ROWS_PER_GROUP) {
+            groupPages += (Math.min(rows, ROWS_PER_GROUP) + perPage - 1) / perPage;
+        }
+        BufferPool pool = Database.getBufferPool();
+        assertEquals(columns.length * groupPages, pool.getHitCount() + pool.getMissCount());
+    }
+
+    /** Column files are written whole and refuse changes. */
+    @Test public void readOnly() throws Exception {
+        try {
+            cf.insertTuple(tid, Utility.getHeapTuple(new int[] {1, 2, 3, 4}));
+            fail("insert into a column file should fail");
+        } catch (DbException expected) {
+        }
+    }
+
+    /** The planner pushes the fields a query uses down to the scan. */
+    @Test public void plannerProjects() throws Exception {
+        String name = Database.getCatalog().getTableName(cf.getId());
+        LogicalPlan lp = new LogicalPlan();
+        lp.addScan(cf.getId(), "t");
+        lp.addProjectField("t.c3", null);
+        lp.addFilter("t.c1", Predicate.Op.LESS_THAN, "1000");
+        Map<String, TableStats> stats = new HashMap<>();
+        stats.put(name, new TableStats(cf.getId(), 1000));
+
+        OpIterator plan = lp.physicalPlan(tid, stats, false);
+        List<List<Integer>> expected = new ArrayList<>();
+        for (List<Integer> t : tuples) {
+            if (t.get(1) < 1000) {
+                expected.add(Collections.singletonList(t.get(3)));
+            }
+        }
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        SystemTestUtil.matchTuples(plan, expected);
+
+        // two of the four columns were read
+        int perPage = BufferPool.getPageSize() / 4;
+        BufferPool pool = Database.getBufferPool();
+        assertTrue(pool.getHitCount() + pool.getMissCount() <= 2 * (ROWS / perPage + 3));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ColumnFileTest.class);
+    }
+}
@@ -0,0 +1,207 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.storage.EvictionPolicy;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.PageId;
+import simpledb.systemtest.SimpleDbTestBase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class EvictionPolicyTest extends SimpleDbTestBase {
+
+    /**
+     * Replays accesses against policy with room for capacity pages and
+     * returns the number of misses on pages with a page number below hot.
+     */
+    private static int hotMisses(EvictionPolicy policy, int[] accesses, int capacity, int hot) {
+        Map<PageId, EvictionPolicy.Handle> resident = new HashMap<>();
+        int misses = 0;
+        for (int pgNo : accesses) {
+            PageId pid = new HeapPageId(1, pgNo);
+            EvictionPolicy.Handle h = resident.get(pid);
+            if (h != null) {
+                policy.touch(h);
+                continue;
+            }
+            if (pgNo < hot) {
+                misses++;
+            }
+            if (resident.size() == capacity) {
+                EvictionPolicy.Handle v = policy.victim();
+                resident.remove(v.getPageId());
+                policy.remove(v);
+            }
+            resident.put(pid, policy.admit(pid));
+            assertEquals(resident.size(), policy.size());
+        }
+        return misses;
+    }
+
+    /** Four hot pages read between every page of a long scan, twice over. */
+    private static int[] scanWithLookups() {
+        int hot = 4, scan = 500;
+        int[] accesses = new int[2 * scan * (hot + 1)];
+        int i = 0;
+        for (int round = 0; round < 2; round++) {
+            for (int p = 0; p < scan; p++) {
+                for (int h = 0; h < hot; h++) {
+                    accesses[i++] = h;
+                }
+                accesses[i++] = hot + p;
+            }
+        }
+        return accesses;
+    }
+
+    /**
+     * Unit test for basic bookkeeping of every policy.
+     */
+    @Test public void admitAndRemove() {
+        for (EvictionPolicy.Kind kind : EvictionPolicy.Kind.values()) {
+            EvictionPolicy policy = kind.create();
+            assertNull(policy.victim());
+            EvictionPolicy.Handle a = policy.admit(new HeapPageId(1, 0));
+            EvictionPolicy.Handle b = policy.admit(new HeapPageId(1, 1));
+            assertEquals(2, policy.size());
+            assertEquals(new HeapPageId(1, 1), b.getPageId());
+
+            policy.remove(a);
+            assertEquals(1, policy.size());
+            // removing twice is harmless
+            policy.remove(a);
+            assertEquals(1, policy.size());
+            assertSame(b, policy.victim());
+
+            policy.remove(b);
+            assertEquals(0, policy.size());
+            assertNull(policy.victim());
+        }
+    }
+
+    /**
+     * Unit test for CLOCK: a referenced page gets a second chance.
+     */
+    @Test public void clockSecondChance() {
+        EvictionPolicy policy = EvictionPolicy.Kind.CLOCK.create();
+        EvictionPolicy.Handle a = policy.admit(new HeapPageId(1, 0));
+        EvictionPolicy.Handle b = policy.admit(new HeapPageId(1, 1));
+        policy.admit(new HeapPageId(1, 2));
+        policy.touch(a);
+        assertSame(b, policy.victim());
+        policy.remove(b);
+        // a's bit was cleared by the sweep, but the hand has moved past it
+        assertEquals(new HeapPageId(1, 2), policy.victim().getPageId());
+    }
+
+    /**
+     * Unit test for 2Q: a page only reaches the hot set after being read
+     * again once it has left A1in.
+     */
+    @Test public void twoQueuePromotion() {
+        EvictionPolicy policy = EvictionPolicy.Kind.TWO_Q.create();
+        PageId hot = new HeapPageId(1, 0);
+        EvictionPolicy.Handle h = policy.admit(hot);
+        assertSame(h, policy.victim());
+        policy.remove(h);
+
+        h = policy.admit(hot);
+        for (int i = 1; i <= 10; i++) {
+            policy.admit(new HeapPageId(1, i));
+        }
+        // A1in is over its share, so its oldest page goes before the hot one
+        assertEquals(new HeapPageId(1, 1), policy.victim().getPageId());
+    }
+
+    /**
+     * Unit test for LRU-K: pages with fewer than K accesses go first.
+     */
+    @Test public void lruKHistory() {
+        EvictionPolicy policy = EvictionPolicy.Kind.LRU_K.create();
+        EvictionPolicy.Handle a = policy.admit(new HeapPageId(1, 0));
+        policy.touch(a);
+        EvictionPolicy.Handle b = policy.admit(new HeapPageId(1, 1));
+        assertSame(b, policy.victim());
+        policy.touch(b);
+        assertSame(a, policy.victim());
+    }
+
+    /**
+     * Unit test for LRU-K: hits after a page was queued for eviction still
+     * move it back, so victim keeps agreeing with a full sort.
+     */
+    @Test public void lruKHitsReorder() {
+        EvictionPolicy policy = EvictionPolicy.Kind.LRU_K.create();
+        List<EvictionPolicy.Handle> handles = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            handles.add(policy.admit(new HeapPageId(1, i)));
+        }
+        java.util.Random r = new java.util.Random(7);
+        List<EvictionPolicy.Handle> next = new ArrayList<>();
+        while (policy.size() > 0) {
+            for (int i = 0; i < 16; i++) {
+                policy.touch(handles.get(r.nextInt(handles.size())));
+            }
+            next.clear();
+            policy.upcoming(1, next);
+            EvictionPolicy.Handle v = policy.victim();
+            assertSame(next.get(0), v);
+            policy.remove(v);
+            handles.remove(v);
+        }
+        assertNull(policy.victim());
+    }
+
+    /**
+     * Unit test for upcoming: it predicts victim without changing what
+     * victim returns, and lists each page at most once.
+     */
+    @Test public void upcoming() {
+        for (EvictionPolicy.Kind kind : EvictionPolicy.Kind.values()) {
+            EvictionPolicy policy = kind.create();
+            List<EvictionPolicy.Handle> handles = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                handles.add(policy.admit(new HeapPageId(1, i)));
+            }
+            policy.touch(handles.get(0));
+            policy.touch(handles.get(0));
+
+            List<EvictionPolicy.Handle> next = new ArrayList<>();
+            policy.upcoming(3, next);
+            assertEquals(3, next.size());
+            assertSame(next.get(0), policy.victim());
+
+            next.clear();
+            policy.upcoming(100, next);
+            assertEquals(8, new HashSet<>(next).size());
+            assertEquals(8, next.size());
+        }
+    }
+
+    /**
+     * A scan far larger than the pool must not evict pages that are read
+     * between each of its pages under the scan resistant policies.
+     */
+    @Test public void scanResistance() {
+        int[] accesses = scanWithLookups();
+        assertTrue(hotMisses(EvictionPolicy.Kind.TWO_Q.create(), accesses, 16, 4) <= 8);
+        assertTrue(hotMisses(EvictionPolicy.Kind.LRU_K.create(), accesses, 16, 4) <= 4);
+        assertTrue(hotMisses(EvictionPolicy.Kind.CLOCK.create(), accesses, 16, 4) <= 4);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(EvictionPolicyTest.class);
+    }
+}
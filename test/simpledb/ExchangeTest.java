@@ -0,0 +1,165 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.execution.*;
+import simpledb.optimizer.LogicalPlan;
+import simpledb.optimizer.OperatorCardinality;
+import simpledb.optimizer.TableStats;
+import simpledb.storage.*;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for Exchange and scans sharing PageMorsels.
+ */
+public class ExchangeTest extends SimpleDbTestBase {
+
+    /** Enough two-field rows for about 80 pages. */
+    private static final int ROWS = 40000;
+
+    private List<List<Integer>> tuples;
+    private HeapFile hf;
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        tuples = new ArrayList<>();
+        hf = SystemTestUtil.createRandomHeapFile(2, ROWS, 100, null, tuples, "c");
+        tid = new TransactionId();
+    }
+
+    @After public void tearDown() {
+        Database.getBufferPool().transactionComplete(tid);
+        new File(hf.getFile().getPath() + ".fsm").delete();
+    }
+
+    private static List<List<Integer>> drain(OpIterator it) throws Exception {
+        List<List<Integer>> result = new ArrayList<>();
+        while (it.hasNext()) {
+            result.add(SystemTestUtil.tupleToList(it.next()));
+        }
+        return result;
+    }
+
+    private static List<List<Integer>> sorted(List<List<Integer>> rows) {
+        List<List<Integer>> copy = new ArrayList<>(rows);
+        copy.sort(Comparator.comparing((List<Integer> r) -> r.get(0)).thenComparing(r -> r.get(1)));
+        return copy;
+    }
+
+    private Exchange scan(int workers, int morselPages, List<Predicate> preds, int[] columns) {
+        PageMorsels morsels = new PageMorsels(hf, morselPages);
+        OpIterator[] scans = new OpIterator[workers];
+        for (int i = 0; i < workers; i++) {
+            scans[i] = new SeqScan(tid, hf.getId(), "t", preds, columns, morsels);
+        }
+        return new Exchange(scans);
+    }
+
+    /** Workers sharing morsels return every tuple once between them, and again after rewind. */
+    @Test public void scanAndRewind() throws Exception {
+        Exchange ex = scan(4, 3, Collections.emptyList(), null);
+        ex.open();
+        assertEquals(sorted(tuples), sorted(drain(ex)));
+        ex.rewind();
+        assertEquals(sorted(tuples), sorted(drain(ex)));
+        ex.close();
+    }
+
+    /** Predicates and projections still apply to the pages a worker claims. */
+    @Test public void pushdown() throws Exception {
+        List<Predicate> preds = Collections.singletonList(
+                new Predicate(0, Predicate.Op.LESS_THAN, new IntField(30)));
+        Exchange ex = scan(3, PageMorsels.DEFAULT_MORSEL_PAGES, preds, new int[] {1, 0});
+        List<List<Integer>> expected = new ArrayList<>();
+        for (List<Integer> t : tuples) {
+            if (t.get(0) < 30) {
+                expected.add(Arrays.asList(t.get(1), t.get(0)));
+            }
+        }
+        ex.open();
+        assertEquals(sorted(expected), sorted(drain(ex)));
+        ex.close();
+    }
+
+    /** What a worker throws is thrown to the consumer. */
+    @Test(expected = DbException.class) public void workerFailure() throws Exception {
+        OpIterator failing = new Filter(new Predicate(0, Predicate.Op.EQUALS, new IntField(0)),
+                new SeqScan(tid, hf.getId(), "t")) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected Tuple fetchNext() throws DbException {
+                throw new DbException("failed");
+            }
+        };
+        Exchange ex = new Exchange(new OpIterator[] {scan(1, 4, Collections.emptyList(), null), failing});
+        ex.open();
+        try {
+            drain(ex);
+        } finally {
+            ex.close();
+        }
+    }
+
+    /** The planner splits scans and aggregates between workers, with the same results. */
+    @Test public void plannerParallelizes() throws Exception {
+        String name = Database.getCatalog().getTableName(hf.getId());
+        Map<String, TableStats> stats = new HashMap<>();
+        stats.put(name, new TableStats(hf.getId(), 1000));
+        for (String agg : new String[] {"SUM", "COUNT", "MIN", "AVG"}) {
+            List<List<Integer>> results = new ArrayList<>();
+            for (int workers : new int[] {1, 4}) {
+                LogicalPlan lp = new LogicalPlan();
+                lp.setWorkers(workers);
+                lp.addScan(hf.getId(), "t");
+                lp.addFilter("t.c1", Predicate.Op.GREATER_THAN, "20");
+                lp.addProjectField("t.c0", null);
+                lp.addProjectField("t.c1", agg);
+                lp.addAggregate(agg, "t.c1", "t.c0");
+                OpIterator plan = lp.physicalPlan(tid, stats, false);
+                assertEquals(agg, workers > 1, contains(plan, Exchange.class));
+                OperatorCardinality.updateOperatorCardinality((Operator) plan,
+                        lp.getTableAliasToIdMapping(), stats);
+                plan.open();
+                results.addAll(sorted(drain(plan)));
+                plan.close();
+            }
+            int n = results.size() / 2;
+            assertEquals(agg, results.subList(0, n), results.subList(n, 2 * n));
+        }
+    }
+
+    private static boolean contains(OpIterator plan, Class<?> type) {
+        if (type.isInstance(plan)) {
+            return true;
+        }
+        if (plan instanceof Operator) {
+            for (OpIterator child : ((Operator) plan).getChildren()) {
+                if (child != null && contains(child, type)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ExchangeTest.class);
+    }
+}
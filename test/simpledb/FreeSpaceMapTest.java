@@ -0,0 +1,105 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.storage.*;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the free-space map HeapFile inserts through.
+ */
+public class FreeSpaceMapTest extends SimpleDbTestBase {
+
+    /** Two-int tuples per page. */
+    private static final int SLOTS = 504;
+
+    private HeapFile hf;
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        hf = SystemTestUtil.createRandomHeapFile(2, 3 * SLOTS, null, new ArrayList<>());
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        tid = new TransactionId();
+    }
+
+    @After public void tearDown() {
+        Database.getBufferPool().transactionComplete(tid);
+        new File(hf.getFile().getPath() + ".fsm").delete();
+    }
+
+    /** @return how many pages the pool was asked for while inserting a tuple */
+    private long fetchesToInsert(HeapFile f) throws Exception {
+        BufferPool pool = Database.getBufferPool();
+        long before = pool.getHitCount() + pool.getMissCount();
+        f.insertTuple(tid, Utility.getHeapTuple(1, 2));
+        return pool.getHitCount() + pool.getMissCount() - before;
+    }
+
+    /** Once a page is known to be full, inserts no longer fetch it. */
+    @Test public void skipsFullPages() throws Exception {
+        // nothing is known about the three full pages yet
+        assertEquals(4, fetchesToInsert(hf));
+        assertEquals(4, hf.numPages());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, fetchesToInsert(hf));
+        }
+        assertEquals(4, hf.numPages());
+    }
+
+    /** Deleting a tuple makes its page a target for the next insert. */
+    @Test public void deleteFreesPage() throws Exception {
+        fetchesToInsert(hf);
+        List<Tuple> page1 = new ArrayList<>();
+        DbFileIterator it = hf.iterator(tid);
+        it.open();
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            if (t.getRecordId().getPageId().getPageNumber() == 1) {
+                page1.add(t);
+            }
+        }
+        it.close();
+        Database.getBufferPool().deleteTuple(tid, page1.get(7));
+
+        Tuple t = Utility.getHeapTuple(2, 2);
+        hf.insertTuple(tid, t);
+        assertEquals(1, t.getRecordId().getPageId().getPageNumber());
+        assertEquals(7, t.getRecordId().getTupleNumber());
+    }
+
+    /** The map is saved on close and used when the file is opened again. */
+    @Test public void persists() throws Exception {
+        fetchesToInsert(hf);
+        Database.getBufferPool().transactionComplete(tid);
+        hf.close();
+        assertTrue(new File(hf.getFile().getPath() + ".fsm").exists());
+
+        HeapFile reopened = new HeapFile(hf.getFile(), hf.getTupleDesc());
+        Database.getCatalog().addTable(reopened, SystemTestUtil.getUUID());
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        tid = new TransactionId();
+        assertEquals(1, fetchesToInsert(reopened));
+        assertEquals(4, reopened.numPages());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(FreeSpaceMapTest.class);
+    }
+}
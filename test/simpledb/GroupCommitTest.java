@@ -0,0 +1,116 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.storage.LogFile;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for group commit in LogFile.
+ */
+public class GroupCommitTest extends SimpleDbTestBase {
+
+    /** Bytes of a record without payload: header, checksum and start offset. */
+    private static final int RECORD = 28;
+
+    private File file;
+    private LogFile log;
+
+    @Before public void setUp() throws Exception {
+        file = File.createTempFile("grouplog", ".dat");
+        file.deleteOnExit();
+        log = new LogFile(file);
+    }
+
+    @After public void tearDown() {
+        file.delete();
+    }
+
+    /** Commits each of the given transactions on its own thread, all at once. */
+    private void commitConcurrently(List<TransactionId> tids) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (TransactionId tid : tids) {
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    log.logCommit(tid);
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private List<TransactionId> begin(int n) throws Exception {
+        List<TransactionId> tids = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            TransactionId tid = new TransactionId();
+            log.logXactionBegin(tid);
+            tids.add(tid);
+        }
+        return tids;
+    }
+
+    /** A full batch of committers shares a single force. */
+    @Test public void batch() throws Exception {
+        log.setGroupCommit(10000000, 4);
+        List<TransactionId> tids = begin(4);
+        long forces = log.getForceCount();
+        commitConcurrently(tids);
+        assertEquals(forces + 1, log.getForceCount());
+        assertEquals(8, log.getTotalRecords());
+        // checkpoint pointer plus eight records, all on disk
+        assertEquals(8 + 8 * RECORD, file.length());
+    }
+
+    /** Without a wait, a lone committer forces at once. */
+    @Test public void single() throws Exception {
+        log.setGroupCommit(0, 64);
+        List<TransactionId> tids = begin(1);
+        long forces = log.getForceCount();
+        log.logCommit(tids.get(0));
+        assertEquals(forces + 1, log.getForceCount());
+        assertEquals(8 + 2 * RECORD, file.length());
+    }
+
+    /** Many concurrent committers all return, with fewer forces than commits. */
+    @Test public void concurrent() throws Exception {
+        log.setGroupCommit(0, 64);
+        List<TransactionId> tids = begin(32);
+        long forces = log.getForceCount();
+        commitConcurrently(tids);
+        assertTrue(log.getForceCount() - forces <= 32);
+        assertEquals(8 + 64 * RECORD, file.length());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(GroupCommitTest.class);
+    }
+}
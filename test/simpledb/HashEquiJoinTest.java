@@ -0,0 +1,135 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.execution.*;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.storage.TupleIterator;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for HashEquiJoin spilling partitions to disk.
+ */
+public class HashEquiJoinTest extends SimpleDbTestBase {
+
+    /** A budget of a few hundred two-field tuples. */
+    private static final long SMALL_BUDGET = 32 * 1024;
+
+    private HeapFile left, right;
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        // keys repeat on both sides, and some have no match
+        left = SystemTestUtil.createRandomHeapFile(2, 20000, 8000, null, new ArrayList<>(), "l");
+        right = SystemTestUtil.createRandomHeapFile(2, 20000, 10000, null, new ArrayList<>(), "r");
+        tid = new TransactionId();
+    }
+
+    @After public void tearDown() {
+        Database.getBufferPool().transactionComplete(tid);
+        new File(left.getFile().getPath() + ".fsm").delete();
+        new File(right.getFile().getPath() + ".fsm").delete();
+    }
+
+    /** @return the rest of the tuples of it, as strings, sorted */
+    private static List<String> drain(OpIterator it) throws Exception {
+        List<String> result = new ArrayList<>();
+        while (it.hasNext()) {
+            result.add(it.next().toString());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static int spillFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir"))
+                .listFiles((dir, name) -> name.startsWith("simpledb") && name.endsWith(".spill"));
+        return files == null ? 0 : files.length;
+    }
+
+    /** A join over its budget spills, returns what one in memory does, also after rewind, and cleans up. */
+    @Test public void spill() throws Exception {
+        JoinPredicate p = new JoinPredicate(0, Predicate.Op.EQUALS, 1);
+        HashEquiJoin inMemory = new HashEquiJoin(p, new SeqScan(tid, left.getId(), "l"),
+                new SeqScan(tid, right.getId(), "r"));
+        inMemory.open();
+        assertEquals(0, inMemory.numSpilledPartitions());
+        List<String> expected = drain(inMemory);
+        inMemory.close();
+        assertFalse(expected.isEmpty());
+
+        int files = spillFiles();
+        HashEquiJoin j = new HashEquiJoin(p, new SeqScan(tid, left.getId(), "l"),
+                new SeqScan(tid, right.getId(), "r"), SMALL_BUDGET);
+        j.open();
+        assertTrue(j.numSpilledPartitions() > 0);
+        assertEquals(expected, drain(j));
+        j.rewind();
+        assertEquals(expected, drain(j));
+        j.close();
+        assertEquals(files, spillFiles());
+    }
+
+    /** A partition of a single join value is held in memory once it cannot be split further. */
+    @Test public void oneValue() throws Exception {
+        Object[] build = new Object[2 * 2000];
+        for (int i = 0; i < build.length; i += 2) {
+            build[i] = 7;
+            build[i + 1] = i;
+        }
+        Object[] probe = new Object[] {7, 1, 8, 2, 7, 3};
+        JoinPredicate p = new JoinPredicate(0, Predicate.Op.EQUALS, 0);
+        HashEquiJoin j = new HashEquiJoin(p, TestUtil.createTupleList(2, build),
+                TestUtil.createTupleList(2, probe), 1024);
+        j.open();
+        assertEquals(2 * 2000, drain(j).size());
+        j.close();
+    }
+
+    /** StringFields in a VARCHAR column are spilled and read back as VARCHARs. */
+    @Test public void stringsInVarcharColumn() throws Exception {
+        TupleDesc td = new TupleDesc(new Type[] {Type.INT_TYPE, Type.VARCHAR_TYPE});
+        List<Tuple> build = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Tuple t = new Tuple(td);
+            t.setField(0, new IntField(i % 100));
+            t.setField(1, new StringField("s" + i, Type.STRING_LEN));
+            build.add(t);
+        }
+        JoinPredicate p = new JoinPredicate(0, Predicate.Op.EQUALS, 0);
+        HashEquiJoin inMemory = new HashEquiJoin(p, new TupleIterator(td, build), new TupleIterator(td, build));
+        inMemory.open();
+        List<String> expected = drain(inMemory);
+        inMemory.close();
+
+        HashEquiJoin j = new HashEquiJoin(p, new TupleIterator(td, build), new TupleIterator(td, build), 4096);
+        j.open();
+        assertTrue(j.numSpilledPartitions() > 0);
+        assertEquals(expected, drain(j));
+        j.close();
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(HashEquiJoinTest.class);
+    }
+}
@@ -7,12 +7,15 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 import junit.framework.JUnit4TestAdapter;
 import simpledb.common.Database;
+import simpledb.common.Permissions;
 import simpledb.common.Utility;
 import simpledb.storage.*;
 import simpledb.systemtest.SystemTestUtil;
 import simpledb.transaction.TransactionId;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class HeapFileWriteTest extends TestUtil.CreateHeapFile {
     private TransactionId tid;
@@ -50,6 +53,52 @@ public class HeapFileWriteTest extends TestUtil.CreateHeapFile {
         assertEquals(3, empty.numPages());
     }
 
+    /**
+     * Unit test for HeapFile.insertTuples()
+     */
+    @Test public void addTuples() throws Exception {
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 2 * 504 + 1; ++i) {
+            tuples.add(Utility.getHeapTuple(i, 2));
+        }
+        List<Page> dirtied = empty.insertTuples(tid, tuples);
+
+        // each page is filled in turn and returned once
+        assertEquals(3, dirtied.size());
+        assertEquals(3, empty.numPages());
+        for (int i = 0; i < dirtied.size(); i++) {
+            assertEquals(i, dirtied.get(i).getId().getPageNumber());
+            assertEquals(tid, dirtied.get(i).isDirty());
+        }
+        assertEquals(503, ((HeapPage) dirtied.get(2)).getNumEmptySlots());
+        assertEquals(2, tuples.get(2 * 504).getRecordId().getPageId().getPageNumber());
+    }
+
+    /**
+     * Unit test for HeapFile.insertTuples() when the page is written and
+     * cleaned, as the background writer does, in the middle of a batch
+     */
+    @Test public void addTuplesCleanedMidBatch() throws Exception {
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            tuples.add(Utility.getHeapTuple(i, 2));
+        }
+        Iterable<Tuple> cleaning = () -> tuples.stream().peek(t -> {
+            if (t == tuples.get(10)) {
+                try {
+                    Database.getBufferPool().getPage(tid,
+                            tuples.get(9).getRecordId().getPageId(), Permissions.READ_WRITE)
+                            .markDirty(false, null);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }).iterator();
+        List<Page> dirtied = empty.insertTuples(tid, cleaning);
+        assertEquals(1, dirtied.size());
+        assertEquals(tid, dirtied.get(0).isDirty());
+    }
+
     @Test
     public void testAlternateEmptyAndFullPagesThenIterate() throws Exception {
         // Create HeapFile/Table
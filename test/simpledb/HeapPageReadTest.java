@@ -3,16 +3,19 @@ package simpledb;
 import simpledb.TestUtil.SkeletonFile;
 import simpledb.common.Database;
 import simpledb.common.Utility;
+import simpledb.execution.Predicate;
 import simpledb.storage.*;
 import simpledb.systemtest.SimpleDbTestBase;
 import simpledb.systemtest.SystemTestUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import org.junit.Before;
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -123,6 +126,63 @@ public class HeapPageReadTest extends SimpleDbTestBase {
             assertFalse(page.isSlotUsed(i));
     }
 
+    /**
+     * Unit test for HeapPage.iterator(Predicate)
+     */
+    @Test public void testIteratorPredicate() throws Exception {
+        HeapPage page = new HeapPage(pid, EXAMPLE_DATA);
+        Predicate pred = new Predicate(1, Predicate.Op.GREATER_THAN, new IntField(40000));
+        Iterator<Tuple> it = page.iterator(pred);
+
+        int matched = 0;
+        for (int[] row : EXAMPLE_VALUES) {
+            if (row[1] <= 40000)
+                continue;
+            assertTrue(it.hasNext());
+            Tuple tup = it.next();
+            assertEquals(row[0], ((IntField) tup.getField(0)).getValue());
+            matched++;
+        }
+        assertFalse(it.hasNext());
+        assertEquals(9, matched);
+    }
+
+    /**
+     * Unit test for HeapPage.getField()
+     */
+    @Test public void getField() throws Exception {
+        HeapPage page = new HeapPage(pid, EXAMPLE_DATA);
+        for (int i = 0; i < EXAMPLE_VALUES.length; i++) {
+            assertEquals(new IntField(EXAMPLE_VALUES[i][1]), page.getField(i, 1));
+            assertEquals(page.getTuple(i).getField(0), page.getField(i, 0));
+        }
+    }
+
+    /**
+     * Unit test for HeapPage(HeapPageId, ByteBuffer) over a slice of a
+     * larger direct buffer.
+     */
+    @Test public void testByteBufferSlice() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocateDirect(EXAMPLE_DATA.length + 100);
+        buf.position(100);
+        buf.put(EXAMPLE_DATA);
+        buf.position(100);
+        ByteBuffer slice = buf.slice();
+        HeapPage page = new HeapPage(pid, slice);
+
+        Iterator<Tuple> it = page.iterator();
+        int row = 0;
+        while (it.hasNext()) {
+            Tuple tup = it.next();
+            assertEquals(EXAMPLE_VALUES[row][0], ((IntField) tup.getField(0)).getValue());
+            assertEquals(EXAMPLE_VALUES[row][1], ((IntField) tup.getField(1)).getValue());
+            row++;
+        }
+        assertEquals(EXAMPLE_VALUES.length, row);
+        assertEquals(0, slice.position());
+        assertArrayEquals(EXAMPLE_DATA, page.getPageData());
+    }
+
     /**
      * JUnit suite target
      */
@@ -1,7 +1,9 @@
 package simpledb;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 
 import junit.framework.JUnit4TestAdapter;
 
@@ -131,6 +133,69 @@ public class HeapPageWriteTest extends SimpleDbTestBase {
         }
     }
 
+    /**
+     * Unit test for HeapPage.getBeforeImage() after modifications, which
+     * must neither change the before image nor the bytes the page was
+     * built from.
+     */
+    @Test public void beforeImage() throws Exception {
+        byte[] data = HeapPageReadTest.EXAMPLE_DATA.clone();
+        HeapPage page = new HeapPage(pid, data);
+        int free = page.getNumEmptySlots();
+        page.insertTuple(Utility.getHeapTuple(7, 2));
+        page.deleteTuple(page.iterator().next());
+
+        assertArrayEquals(HeapPageReadTest.EXAMPLE_DATA, data);
+        assertArrayEquals(data, page.getBeforeImage().getPageData());
+        assertEquals(free, page.getNumEmptySlots());
+
+        page.setBeforeImage();
+        assertArrayEquals(page.getPageData(), page.getBeforeImage().getPageData());
+        assertEquals(free, new HeapPage(pid, page.getPageData()).getNumEmptySlots());
+    }
+
+    /**
+     * Unit test for HeapPage.iterator() while the page is modified: the
+     * iterator returns the tuples the page had when it was made, e.g. while
+     * an INSERT ... SELECT inserts into the page it scans.
+     */
+    @Test public void modifyWhileIterating() throws Exception {
+        HeapPage page = new HeapPage(pid, HeapPageReadTest.EXAMPLE_DATA);
+        List<String> expected = new ArrayList<>();
+        for (Iterator<Tuple> it = page.iterator(); it.hasNext(); ) {
+            expected.add(it.next().toString());
+        }
+
+        // into a clean page, then into one already written
+        for (int round = 0; round < 2; round++) {
+            Iterator<Tuple> it = page.iterator();
+            List<String> seen = new ArrayList<>();
+            seen.add(it.next().toString());
+            page.insertTuple(Utility.getHeapTuple(7 + round, 2));
+            while (it.hasNext()) {
+                seen.add(it.next().toString());
+            }
+            assertEquals(expected, seen);
+            expected.clear();
+            for (it = page.iterator(); it.hasNext(); ) {
+                expected.add(it.next().toString());
+            }
+        }
+
+        // deleted tuples are still returned as they were
+        Iterator<Tuple> it = page.iterator();
+        Tuple first = it.next();
+        List<String> seen = new ArrayList<>();
+        seen.add(first.toString());
+        page.deleteTuple(first);
+        Iterator<Tuple> del = page.iterator();
+        page.deleteTuple(del.next());
+        while (it.hasNext()) {
+            seen.add(it.next().toString());
+        }
+        assertEquals(expected, seen);
+    }
+
     /**
      * JUnit suite target
      */
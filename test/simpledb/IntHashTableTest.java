@@ -0,0 +1,62 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.execution.IntHashTable;
+import simpledb.systemtest.SimpleDbTestBase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for IntHashTable.
+ */
+public class IntHashTableTest extends SimpleDbTestBase {
+
+    /** Keys get ids in the order they are first added, through growing, as a HashMap would number them. */
+    @Test public void addAndGet() {
+        IntHashTable table = new IntHashTable();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random r = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            // negative keys, and keys equal modulo the table size
+            int key = r.nextBoolean() ? r.nextInt(20000) - 10000 : (r.nextInt(100) << 20);
+            Integer id = expected.get(key);
+            if (id == null) {
+                id = expected.size();
+                expected.put(key, id);
+            }
+            assertEquals(id.intValue(), table.add(key));
+        }
+        assertEquals(expected.size(), table.size());
+        for (Map.Entry<Integer, Integer> e : expected.entrySet()) {
+            assertEquals(e.getValue().intValue(), table.get(e.getKey()));
+            assertEquals(e.getKey().intValue(), table.key(e.getValue()));
+        }
+        assertEquals(-1, table.get(12345678));
+    }
+
+    /** Integer.MIN_VALUE, 0 and -1 are keys like any other. */
+    @Test public void edgeKeys() {
+        IntHashTable table = new IntHashTable(1);
+        assertEquals(-1, table.get(0));
+        assertEquals(0, table.add(0));
+        assertEquals(1, table.add(-1));
+        assertEquals(2, table.add(Integer.MIN_VALUE));
+        assertEquals(0, table.add(0));
+        assertEquals(2, table.get(Integer.MIN_VALUE));
+        assertEquals(Integer.MIN_VALUE, table.key(2));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(IntHashTableTest.class);
+    }
+}
@@ -0,0 +1,91 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.execution.Aggregator;
+import simpledb.execution.IntKernels;
+import simpledb.execution.Predicate;
+import simpledb.storage.IntField;
+import simpledb.systemtest.SimpleDbTestBase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for IntKernels.
+ */
+public class IntKernelsTest extends SimpleDbTestBase {
+
+    private static final int N = 1000;
+
+    private final int[] v = new int[N];
+    /** every third row */
+    private final int[] sel = new int[N / 3];
+
+    {
+        Random r = new Random(42);
+        for (int i = 0; i < N; i++) {
+            v[i] = r.nextInt(20) - 10;
+        }
+        for (int i = 0; i < sel.length; i++) {
+            sel[i] = 3 * i;
+        }
+    }
+
+    /** Selection agrees with IntField.compare for every operator. */
+    @Test public void select() {
+        for (Predicate.Op op : Predicate.Op.values()) {
+            int[] out = new int[N];
+            int n = IntKernels.select(v, null, N, op, 3, out);
+            int k = 0;
+            for (int i = 0; i < N; i++) {
+                if (IntField.compare(op, v[i], 3)) {
+                    assertEquals(op.toString(), i, out[k++]);
+                }
+            }
+            assertEquals(op.toString(), k, n);
+
+            n = IntKernels.select(v, sel, sel.length, op, 3, out);
+            k = 0;
+            for (int r : sel) {
+                if (IntField.compare(op, v[r], 3)) {
+                    assertEquals(op.toString(), r, out[k++]);
+                }
+            }
+            assertEquals(op.toString(), k, n);
+        }
+    }
+
+    /** Selecting into the selection vector itself narrows it in place. */
+    @Test public void selectInPlace() {
+        int[] rows = sel.clone();
+        int n = IntKernels.select(v, rows, rows.length, Predicate.Op.GREATER_THAN, 0, rows);
+        int[] expected = Arrays.stream(sel).filter(r -> v[r] > 0).toArray();
+        assertArrayEquals(expected, Arrays.copyOf(rows, n));
+    }
+
+    /** Folds agree with a row at a time loop, dense and selected. */
+    @Test public void fold() {
+        assertEquals(Arrays.stream(v).sum(), IntKernels.fold(Aggregator.Op.SUM, 0, v, null, N));
+        assertEquals(Arrays.stream(v).min().getAsInt(),
+                IntKernels.fold(Aggregator.Op.MIN, IntKernels.identity(Aggregator.Op.MIN), v, null, N));
+        assertEquals(Arrays.stream(v).max().getAsInt(),
+                IntKernels.fold(Aggregator.Op.MAX, IntKernels.identity(Aggregator.Op.MAX), v, null, N));
+        assertEquals(Arrays.stream(sel).map(r -> v[r]).sum() + 5,
+                IntKernels.fold(Aggregator.Op.AVG, 5, v, sel, sel.length));
+        assertEquals(Arrays.stream(sel).map(r -> v[r]).min().getAsInt(),
+                IntKernels.min(v, sel, sel.length));
+        assertEquals(Integer.MIN_VALUE, IntKernels.max(v, sel, 0));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(IntKernelsTest.class);
+    }
+}
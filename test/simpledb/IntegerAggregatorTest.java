@@ -1,6 +1,8 @@
 package simpledb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
 import java.util.NoSuchElementException;
 
@@ -182,6 +184,47 @@ public class IntegerAggregatorTest extends SimpleDbTestBase {
     }
   }
 
+  /**
+   * Test that the aggregates IntegerAggregator cannot compute are rejected
+   * rather than silently computed as something else
+   */
+  @Test public void unsupportedOps() {
+    for (Aggregator.Op op : new Aggregator.Op[] {Aggregator.Op.SUM_COUNT, Aggregator.Op.SC_AVG}) {
+      for (Type gbType : new Type[] {null, Type.INT_TYPE, Type.STRING_TYPE}) {
+        try {
+          new IntegerAggregator(gbType == null ? Aggregator.NO_GROUPING : 0, gbType, 1, op);
+          fail("expected IllegalArgumentException for " + op);
+        } catch (IllegalArgumentException e) {
+          // explicitly ignored
+        }
+      }
+    }
+  }
+
+  /**
+   * Test that a COUNT or SUM of no tuples is 0 without grouping, unless it
+   * is one worker's part of a parallel aggregate
+   */
+  @Test public void emptyInput() throws Exception {
+    for (Aggregator.Op op : new Aggregator.Op[] {Aggregator.Op.COUNT, Aggregator.Op.SUM}) {
+      OpIterator it = new IntegerAggregator(Aggregator.NO_GROUPING, null, 1, op).iterator();
+      it.open();
+      OpIterator zero = TestUtil.createTupleList(1, new int[] { 0 });
+      zero.open();
+      TestUtil.compareDbIterators(zero, it);
+      it.close();
+
+      it = new IntegerAggregator(Aggregator.NO_GROUPING, null, 1, op, true).iterator();
+      it.open();
+      assertFalse(it.hasNext());
+      it.close();
+    }
+    OpIterator it = new IntegerAggregator(Aggregator.NO_GROUPING, null, 1, Aggregator.Op.MIN).iterator();
+    it.open();
+    assertFalse(it.hasNext());
+    it.close();
+  }
+
   /**
    * JUnit suite target
    */
@@ -0,0 +1,142 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.index.BTreeFile;
+import simpledb.index.BTreeLeafPage;
+import simpledb.index.BTreePage;
+import simpledb.index.BTreePageId;
+import simpledb.storage.*;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the binary log record format.
+ */
+public class LogFormatTest extends SimpleDbTestBase {
+
+    private File file;
+    private LogFile log;
+    private HeapFile table;
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        file = File.createTempFile("formatlog", ".dat");
+        file.deleteOnExit();
+        log = new LogFile(file);
+        table = SystemTestUtil.createRandomHeapFile(2, 0, null, new ArrayList<>());
+        tid = new TransactionId();
+    }
+
+    @After public void tearDown() {
+        file.delete();
+    }
+
+    /** @return what log.print() writes */
+    private String print() throws Exception {
+        PrintStream out = System.out;
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(buf, true));
+        try {
+            log.print();
+        } finally {
+            System.setOut(out);
+        }
+        return buf.toString();
+    }
+
+    private static int count(String s, String what) {
+        int n = 0;
+        for (int i = s.indexOf(what); i >= 0; i = s.indexOf(what, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+
+    private HeapPage heapPage(int tuples) throws Exception {
+        HeapPage page = new HeapPage(new HeapPageId(table.getId(), 0), HeapPage.createEmptyPageData());
+        for (int i = 0; i < tuples; i++) {
+            page.insertTuple(Utility.getHeapTuple(i + 1, 2));
+        }
+        return page;
+    }
+
+    /** Update records are read back, and zero runs are left out of them. */
+    @Test public void updateRoundTrip() throws Exception {
+        log.logXactionBegin(tid);
+        log.logWrite(tid, heapPage(0), heapPage(1));
+        log.force();
+        // two nearly empty pages take far less than a page
+        assertTrue(file.length() < BufferPool.getPageSize() / 8);
+
+        String printed = print();
+        assertEquals(2, count(printed, "RECORD TYPE"));
+        assertEquals(1, count(printed, "(UPDATE)"));
+        assertTrue(printed.contains("before image of " + table.getId() + " page 0"));
+    }
+
+    /** Records with full pages survive the rewrite done by a checkpoint. */
+    @Test public void checkpointRewrite() throws Exception {
+        HeapPage full = heapPage(heapPage(0).getNumEmptySlots());
+        log.logXactionBegin(tid);
+        log.logWrite(tid, heapPage(0), full);
+        // the checkpoint truncates the log, which reads and rewrites every record
+        log.logCheckpoint();
+        String printed = print();
+        assertEquals(1, count(printed, "(UPDATE)"));
+        assertEquals(1, count(printed, "(CHECKPOINT)"));
+    }
+
+    /** B+ tree pages, which take a key field, can be logged and read back. */
+    @Test public void btreePage() throws Exception {
+        File f = File.createTempFile("formatbtree", ".dat");
+        f.deleteOnExit();
+        BTreeFile btree = new BTreeFile(f, 0, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(btree);
+        BTreePageId pid = new BTreePageId(btree.getId(), 1, BTreePageId.LEAF);
+        BTreeLeafPage page = new BTreeLeafPage(pid, BTreePage.createEmptyPageData(), 0);
+
+        log.logXactionBegin(tid);
+        log.logWrite(tid, page, page);
+        assertTrue(print().contains("after image of " + btree.getId() + " page 1"));
+    }
+
+    /** A record with a bad checksum, e.g. torn by a crash, ends the log. */
+    @Test public void tornRecord() throws Exception {
+        log.logXactionBegin(tid);
+        log.logCommit(tid);
+        assertEquals(2, count(print(), "RECORD TYPE"));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // flip a bit of the commit record's transaction id
+            long pos = raf.length() - 28 + 4;
+            raf.seek(pos);
+            int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 1);
+        }
+        assertEquals(1, count(print(), "RECORD TYPE"));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(LogFormatTest.class);
+    }
+}
@@ -0,0 +1,106 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the BufferPool's background writer.
+ */
+public class PageWriterTest extends SimpleDbTestBase {
+
+    private static final int PAGES = 10;
+
+    private HeapFile table;
+    private BufferPool pool;
+    private TransactionId tid;
+
+    /** Fills PAGES pages of an empty table through the pool, leaving them dirty. */
+    @Before public void setUp() throws Exception {
+        table = SystemTestUtil.createRandomHeapFile(2, 0, null, new ArrayList<>());
+        pool = Database.resetBufferPool(50);
+        tid = new TransactionId();
+        int perPage = (BufferPool.getPageSize() * 8) / (2 * 4 * 8 + 1);
+        for (int i = 0; i < PAGES * perPage; i++) {
+            pool.insertTuple(tid, table.getId(), Utility.getHeapTuple(i, 2));
+        }
+        assertEquals(PAGES, pool.getDirtyPageCount());
+    }
+
+    @After public void tearDown() {
+        pool.stopBackgroundWriter();
+    }
+
+    /** Waits up to a few seconds for the writer to clean every page. */
+    private void awaitClean() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getDirtyPageCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.getDirtyPageCount());
+    }
+
+    /**
+     * The writer writes dirty pages down to its clean target, logging each
+     * one first, and the pages on disk then hold the inserted tuples.
+     */
+    @Test public void writesDirtyPages() throws Exception {
+        int logged = Database.getLogFile().getTotalRecords();
+        pool.startBackgroundWriter(10000, 1.0, 0);
+        awaitClean();
+        assertEquals(PAGES, pool.getFlushCount());
+        assertTrue(pool.getFlushTimeNanos() >= pool.getMaxFlushTimeNanos());
+        assertTrue(pool.getMaxFlushTimeNanos() > 0);
+        assertTrue(Database.getLogFile().getTotalRecords() >= logged + PAGES);
+
+        assertEquals(PAGES, table.numPages());
+        HeapPage last = (HeapPage) table.readPage(new HeapPageId(table.getId(), PAGES - 1));
+        assertEquals(0, last.getNumEmptySlots());
+    }
+
+    /** Nothing is written while enough of the pool is clean. */
+    @Test public void cleanTarget() throws Exception {
+        pool.startBackgroundWriter(10000, 0.5, 0);
+        Thread.sleep(100);
+        assertEquals(0, pool.getFlushCount());
+        assertEquals(PAGES, pool.getDirtyPageCount());
+    }
+
+    /** The writer stays under its rate limit. */
+    @Test public void rateLimit() throws Exception {
+        pool.startBackgroundWriter(20, 1.0, 0);
+        Thread.sleep(200);
+        pool.stopBackgroundWriter();
+        assertTrue(pool.getFlushCount() <= 6);
+    }
+
+    /** A periodic checkpoint writes every dirty page before it is logged. */
+    @Test public void checkpoint() throws Exception {
+        pool.startBackgroundWriter(10000, 0, 20);
+        awaitClean();
+        assertEquals(PAGES, pool.getFlushCount());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PageWriterTest.class);
+    }
+}
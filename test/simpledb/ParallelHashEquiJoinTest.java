@@ -0,0 +1,142 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.execution.*;
+import simpledb.optimizer.JoinOptimizer;
+import simpledb.optimizer.LogicalJoinNode;
+import simpledb.optimizer.TableStats;
+import simpledb.storage.HeapFile;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for ParallelHashEquiJoin.
+ */
+public class ParallelHashEquiJoinTest extends SimpleDbTestBase {
+
+    private HeapFile left, right;
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        // keys repeat on both sides, and some have no match
+        left = SystemTestUtil.createRandomHeapFile(2, 5000, 3000, null, new ArrayList<>(), "l");
+        right = SystemTestUtil.createRandomHeapFile(3, 40000, 4000, null, new ArrayList<>(), "r");
+        tid = new TransactionId();
+    }
+
+    @After public void tearDown() {
+        Database.getBufferPool().transactionComplete(tid);
+        new File(left.getFile().getPath() + ".fsm").delete();
+        new File(right.getFile().getPath() + ".fsm").delete();
+    }
+
+    /** @return the tuples of it, as strings, sorted */
+    private static List<String> drain(OpIterator it) throws Exception {
+        List<String> result = new ArrayList<>();
+        it.open();
+        while (it.hasNext()) {
+            result.add(it.next().toString());
+        }
+        it.close();
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Split scans on both sides join as HashEquiJoin does, also after rewind. */
+    @Test public void splitScans() throws Exception {
+        JoinPredicate p = new JoinPredicate(0, Predicate.Op.EQUALS, 1);
+        SeqScan l = new SeqScan(tid, left.getId(), "l");
+        SeqScan r = new SeqScan(tid, right.getId(), "r");
+        List<String> expected = drain(new HashEquiJoin(p, l, r));
+        assertFalse(expected.isEmpty());
+
+        ParallelHashEquiJoin j = new ParallelHashEquiJoin(p, l.split(3), r.split(4));
+        assertEquals(expected, drain(j));
+        j.open();
+        j.rewind();
+        List<String> again = new ArrayList<>();
+        while (j.hasNext()) {
+            again.add(j.next().toString());
+        }
+        j.close();
+        Collections.sort(again);
+        assertEquals(expected, again);
+    }
+
+    /** Keys that are not INTs are hashed and compared as Fields. */
+    @Test public void stringKeys() throws Exception {
+        Object[] build = new Object[] {"a", 1, "b", 2, "a", 3, "c", 4};
+        Object[] probe = new Object[] {5, "a", 6, "c", 7, "d", 8, "a"};
+        JoinPredicate p = new JoinPredicate(0, Predicate.Op.EQUALS, 1);
+        List<String> expected = drain(new HashEquiJoin(p,
+                TestUtil.createTupleList(2, build), TestUtil.createTupleList(2, probe)));
+        assertEquals(5, expected.size());
+        ParallelHashEquiJoin j = new ParallelHashEquiJoin(p,
+                new OpIterator[] {TestUtil.createTupleList(2, build)},
+                new OpIterator[] {TestUtil.createTupleList(2, Arrays.copyOf(probe, 4)),
+                        TestUtil.createTupleList(2, Arrays.copyOfRange(probe, 4, 8))});
+        assertEquals(expected, drain(j));
+    }
+
+    /** The optimizer splits equi-joins of scans only when the inputs are large enough. */
+    @Test public void instantiateJoin() throws Exception {
+        Map<String, TableStats> stats = new HashMap<>();
+        stats.put(Database.getCatalog().getTableName(left.getId()), new TableStats(left.getId(), 1));
+        stats.put(Database.getCatalog().getTableName(right.getId()), new TableStats(right.getId(), 1));
+        LogicalJoinNode lj = new LogicalJoinNode("l", "r", "l0", "r1", Predicate.Op.EQUALS);
+
+        OpIterator j = JoinOptimizer.instantiateJoin(lj, new SeqScan(tid, left.getId(), "l"),
+                new SeqScan(tid, right.getId(), "r"), stats, 4);
+        assertTrue(j instanceof ParallelHashEquiJoin);
+        assertEquals(drain(JoinOptimizer.instantiateJoin(lj, new SeqScan(tid, left.getId(), "l"),
+                new SeqScan(tid, right.getId(), "r"))), drain(j));
+
+        j = JoinOptimizer.instantiateJoin(lj, new SeqScan(tid, left.getId(), "l"),
+                new SeqScan(tid, right.getId(), "r"), stats, 1);
+        assertTrue(j instanceof HashEquiJoin);
+        // small inputs do not pay for the threads
+        assertTrue(JoinOptimizer.estimateHashJoinCost(100, 1000, 2) > JoinOptimizer.estimateHashJoinCost(100, 1000, 1));
+        assertTrue(JoinOptimizer.estimateHashJoinCost(1000000, 10000000, 8)
+                < JoinOptimizer.estimateHashJoinCost(1000000, 10000000, 1));
+    }
+
+    /**
+     * A build side too big for HashEquiJoin's memory budget is not split,
+     * since the parallel build cannot spill.
+     */
+    @Test public void instantiateJoinOverBudget() throws Exception {
+        Map<String, TableStats> stats = new HashMap<>();
+        // claims far more tuples than fit the budget
+        stats.put(Database.getCatalog().getTableName(left.getId()), new TableStats(left.getId(), 1) {
+            @Override
+            public int estimateTableCardinality(double selectivityFactor) {
+                return 100000000;
+            }
+        });
+        stats.put(Database.getCatalog().getTableName(right.getId()), new TableStats(right.getId(), 1));
+        LogicalJoinNode lj = new LogicalJoinNode("l", "r", "l0", "r1", Predicate.Op.EQUALS);
+
+        OpIterator j = JoinOptimizer.instantiateJoin(lj, new SeqScan(tid, left.getId(), "l"),
+                new SeqScan(tid, right.getId(), "r"), stats, 4);
+        assertTrue(j instanceof HashEquiJoin);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ParallelHashEquiJoinTest.class);
+    }
+}
@@ -0,0 +1,132 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.common.Type;
+import simpledb.execution.Predicate;
+import simpledb.execution.PredicateCompiler;
+import simpledb.storage.*;
+import simpledb.systemtest.SimpleDbTestBase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for PredicateCompiler.
+ */
+public class PredicateCompilerTest extends SimpleDbTestBase {
+
+    private static final TupleDesc TD = new TupleDesc(
+            new Type[] {Type.INT_TYPE, Type.STRING_TYPE, Type.INT_TYPE}, new String[] {"a", "s", "b"});
+
+    private final List<Tuple> tuples = new ArrayList<>();
+
+    {
+        Random r = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Tuple t = new Tuple(TD);
+            t.setInt(0, r.nextInt(10));
+            t.setField(1, new StringField("s" + r.nextInt(10), Type.STRING_LEN));
+            t.setField(2, new IntField(r.nextInt(10)));
+            tuples.add(t);
+        }
+    }
+
+    /** @return every operator on each field, against a middling operand */
+    private static List<Predicate> predicates() {
+        List<Predicate> preds = new ArrayList<>();
+        for (Predicate.Op op : Predicate.Op.values()) {
+            preds.add(new Predicate(0, op, new IntField(5)));
+            preds.add(new Predicate(1, op, new StringField("s5", Type.STRING_LEN)));
+            preds.add(new Predicate(2, op, new IntField(3)));
+        }
+        return preds;
+    }
+
+    private static ByteBuffer serialize(Tuple t) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xdead); // the tuple does not start at 0
+        for (int i = 0; i < TD.numFields(); i++) {
+            t.getField(i).serialize(out);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /** Compiled predicates agree with Predicate.filter on tuples and bytes. */
+    @Test public void singlePredicates() throws Exception {
+        for (Predicate p : predicates()) {
+            PredicateCompiler.TupleMatcher m = PredicateCompiler.compile(Collections.singletonList(p), TD);
+            PredicateCompiler.SlotMatcher s = PredicateCompiler.compileSlot(Collections.singletonList(p), TD);
+            for (Tuple t : tuples) {
+                assertEquals(p.toString(), p.filter(t), m.matches(t));
+                assertEquals(p.toString(), p.filter(t), s.matches(serialize(t), 4));
+            }
+        }
+    }
+
+    /** Conjunctions of every length hold when all their predicates do. */
+    @Test public void conjunctions() throws Exception {
+        List<Predicate> all = predicates();
+        Random r = new Random(3);
+        for (int n = 0; n <= 5; n++) {
+            List<Predicate> preds = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                preds.add(all.get(r.nextInt(all.size())));
+            }
+            PredicateCompiler.TupleMatcher m = PredicateCompiler.compile(preds, TD);
+            PredicateCompiler.SlotMatcher s = PredicateCompiler.compileSlot(preds, TD);
+            for (Tuple t : tuples) {
+                boolean expected = preds.stream().allMatch(p -> p.filter(t));
+                assertEquals(preds.toString(), expected, m.matches(t));
+                assertEquals(preds.toString(), expected, s.matches(serialize(t), 4));
+            }
+        }
+    }
+
+    /** Conjunctions of the same signature share one compiled matcher. */
+    @Test public void cached() {
+        List<Predicate> a = Arrays.asList(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(5)),
+                new Predicate(2, Predicate.Op.EQUALS, new IntField(1)));
+        List<Predicate> b = Arrays.asList(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(5)),
+                new Predicate(2, Predicate.Op.EQUALS, new IntField(1)));
+        List<Predicate> c = Arrays.asList(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(6)),
+                new Predicate(2, Predicate.Op.EQUALS, new IntField(1)));
+        assertSame(PredicateCompiler.compile(a, TD), PredicateCompiler.compile(b, TD));
+        assertNotSame(PredicateCompiler.compile(a, TD), PredicateCompiler.compile(c, TD));
+        assertSame(PredicateCompiler.compileSlot(a, TD), PredicateCompiler.compileSlot(b, TD));
+    }
+
+    /** A string operand that spells out another predicate does not share its matcher. */
+    @Test public void operandsNotConfused() throws Exception {
+        List<Predicate> two = Arrays.asList(
+                new Predicate(1, Predicate.Op.EQUALS, new StringField("s5", Type.STRING_LEN)),
+                new Predicate(2, Predicate.Op.LESS_THAN, new IntField(5)));
+        // what the second predicate would add to a signature made of strings
+        String spelled = "s5&2:" + TD.getFieldType(2) + "@" + TD.getFieldOffset(2)
+                + Predicate.Op.LESS_THAN + TD.getFieldType(2) + new IntField(5);
+        List<Predicate> one = Collections.singletonList(
+                new Predicate(1, Predicate.Op.EQUALS, new StringField(spelled, Type.STRING_LEN)));
+        PredicateCompiler.compile(two, TD);
+        PredicateCompiler.compileSlot(two, TD);
+        PredicateCompiler.TupleMatcher m = PredicateCompiler.compile(one, TD);
+        PredicateCompiler.SlotMatcher sm = PredicateCompiler.compileSlot(one, TD);
+        for (Tuple t : tuples) {
+            assertFalse(m.matches(t));
+            assertFalse(sm.matches(serialize(t), 4));
+        }
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PredicateCompilerTest.class);
+    }
+}
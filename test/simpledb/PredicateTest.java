@@ -2,9 +2,13 @@ package simpledb;
 
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+
 import simpledb.common.Utility;
 import simpledb.execution.Predicate;
+import simpledb.storage.TupleDesc;
 import simpledb.systemtest.SimpleDbTestBase;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import junit.framework.JUnit4TestAdapter;
@@ -57,6 +61,30 @@ public class PredicateTest extends SimpleDbTestBase{
     }
   }
 
+  /**
+   * Unit test for Predicate.filter() on serialized tuples
+   */
+  @Test public void filterBytes() {
+    TupleDesc td = Utility.getTupleDesc(2);
+    ByteBuffer data = ByteBuffer.allocate(3 + 2 * td.getSize());
+    int[] vals = new int[] { -1, 0, 1 };
+    for (int i : vals) {
+      // a three byte prefix, then the tuples (i, i - 1) and (i, i + 1)
+      data.putInt(3, i);
+      data.putInt(7, i - 1);
+      data.putInt(11, i);
+      data.putInt(15, i + 1);
+      for (Predicate.Op op : new Predicate.Op[] { Predicate.Op.EQUALS,
+          Predicate.Op.LESS_THAN, Predicate.Op.GREATER_THAN_OR_EQ }) {
+        Predicate p = new Predicate(1, op, TestUtil.getField(i));
+        assertEquals(p.filter(Utility.getHeapTuple(new int[] { i, i - 1 })),
+            p.filter(data, 3, td));
+        assertEquals(p.filter(Utility.getHeapTuple(new int[] { i, i + 1 })),
+            p.filter(data, 3 + td.getSize(), td));
+      }
+    }
+  }
+
   /**
    * JUnit suite target
    */
@@ -0,0 +1,124 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Permissions;
+import simpledb.common.Utility;
+import simpledb.storage.*;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for BufferPool read-ahead.
+ */
+public class PrefetchTest extends SimpleDbTestBase {
+
+    private static final int PAGES = 40;
+
+    /** Counts readPage calls per page. */
+    private static class CountingHeapFile extends HeapFile {
+        final AtomicInteger[] reads;
+
+        CountingHeapFile(File f, TupleDesc td, int pages) {
+            super(f, td);
+            reads = new AtomicInteger[pages];
+            for (int i = 0; i < pages; i++) {
+                reads[i] = new AtomicInteger();
+            }
+        }
+
+        @Override
+        public Page readPage(PageId pid) throws NoSuchElementException {
+            reads[pid.getPageNumber()].incrementAndGet();
+            return super.readPage(pid);
+        }
+    }
+
+    private CountingHeapFile table;
+    private BufferPool pool;
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        List<List<Integer>> tuples = new ArrayList<>();
+        File f = SystemTestUtil.createRandomHeapFileUnopened(1, 992 * PAGES, 1000, null, tuples);
+        table = new CountingHeapFile(f, Utility.getTupleDesc(1), PAGES);
+        Database.getCatalog().addTable(table, SystemTestUtil.getUUID());
+        pool = Database.resetBufferPool(PAGES + 10);
+        tid = new TransactionId();
+    }
+
+    private Page get(int pgNo) throws Exception {
+        return pool.getPage(tid, new HeapPageId(table.getId(), pgNo), Permissions.READ_ONLY);
+    }
+
+    /**
+     * A sequential pass reads ahead, every page read ahead is used, and no
+     * page is read twice.
+     */
+    @Test public void sequential() throws Exception {
+        pool.setPrefetchWindow(8);
+        for (int i = 0; i < PAGES; i++) {
+            assertEquals(i, get(i).getId().getPageNumber());
+        }
+        assertTrue(pool.getPrefetchIssuedCount() > 0);
+        assertEquals(pool.getPrefetchIssuedCount(), pool.getPrefetchUsedCount());
+        assertEquals(0, pool.getPrefetchUnusedCount());
+        for (int i = 0; i < PAGES; i++) {
+            assertEquals(1, table.reads[i].get());
+        }
+    }
+
+    /** Accesses that never touch consecutive pages do not read ahead. */
+    @Test public void random() throws Exception {
+        pool.setPrefetchWindow(8);
+        int[] order = {7, 3, 30, 12, 25, 0, 18, 35};
+        for (int pgNo : order) {
+            get(pgNo);
+        }
+        assertEquals(0, pool.getPrefetchIssuedCount());
+    }
+
+    /** A window of 0 turns read-ahead off. */
+    @Test public void disabled() throws Exception {
+        pool.setPrefetchWindow(0);
+        for (int i = 0; i < PAGES; i++) {
+            get(i);
+        }
+        assertEquals(0, pool.getPrefetchIssuedCount());
+    }
+
+    /** A hinted page that is discarded before it is read counts as unused. */
+    @Test public void hintDiscarded() throws Exception {
+        HeapPageId pid = new HeapPageId(table.getId(), 5);
+        pool.prefetch(pid);
+        assertEquals(1, pool.getPrefetchIssuedCount());
+        pool.discardPage(pid);
+        assertEquals(1, pool.getPrefetchUnusedCount());
+        assertEquals(0, pool.getPrefetchUsedCount());
+
+        // a cached page is not read ahead again
+        get(6);
+        pool.prefetch(new HeapPageId(table.getId(), 6));
+        assertEquals(1, pool.getPrefetchIssuedCount());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PrefetchTest.class);
+    }
+}
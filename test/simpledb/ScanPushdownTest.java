@@ -0,0 +1,137 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.execution.Filter;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.execution.Project;
+import simpledb.execution.SeqScan;
+import simpledb.optimizer.LogicalPlan;
+import simpledb.optimizer.TableStats;
+import simpledb.storage.*;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for predicates and projections pushed down into DbFile iterators.
+ */
+public class ScanPushdownTest extends SimpleDbTestBase {
+
+    private static final int ROWS = 3000;
+
+    private List<List<Integer>> tuples;
+    private HeapFile hf;
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        tuples = new ArrayList<>();
+        hf = SystemTestUtil.createRandomHeapFile(3, ROWS, 100, null, tuples, "c");
+        tid = new TransactionId();
+    }
+
+    @After public void tearDown() {
+        Database.getBufferPool().transactionComplete(tid);
+        new File(hf.getFile().getPath() + ".fsm").delete();
+    }
+
+    private static final List<Predicate> PREDS = Arrays.asList(
+            new Predicate(0, Predicate.Op.LESS_THAN, new IntField(50)),
+            new Predicate(2, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(20)));
+
+    /** @return field 1 then field 0 of the tuples that satisfy PREDS */
+    private List<List<Integer>> expected() {
+        List<List<Integer>> expected = new ArrayList<>();
+        for (List<Integer> t : tuples) {
+            if (t.get(0) < 50 && t.get(2) >= 20) {
+                expected.add(Arrays.asList(t.get(1), t.get(0)));
+            }
+        }
+        return expected;
+    }
+
+    private void check(DbFile f) throws Exception {
+        DbFileIterator it = f.iterator(tid, PREDS, new int[] {1, 0});
+        it.open();
+        List<List<Integer>> actual = new ArrayList<>();
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            assertEquals("c1", t.getTupleDesc().getFieldName(0));
+            actual.add(SystemTestUtil.tupleToList(t));
+        }
+        it.close();
+        assertEquals(expected(), actual);
+    }
+
+    /** A heap file tests the predicates and projects as it reads each page. */
+    @Test public void heapFile() throws Exception {
+        check(hf);
+    }
+
+    /** A column file tests fields it does not return. */
+    @Test public void columnFile() throws Exception {
+        File f = File.createTempFile("column", ".dat");
+        f.deleteOnExit();
+        ColumnFile cf = ColumnFile.convert(hf, tid, f, 1000);
+        Database.getCatalog().addTable(cf, SystemTestUtil.getUUID());
+        check(cf);
+    }
+
+    /** Files without their own pushdown get the DbFile default. */
+    @Test public void defaultIterator() throws Exception {
+        TestUtil.SkeletonFile plain = new TestUtil.SkeletonFile(hf.getId(), hf.getTupleDesc()) {
+            @Override
+            public DbFileIterator iterator(TransactionId tid) {
+                return hf.iterator(tid);
+            }
+        };
+        check(plain);
+    }
+
+    /** The planner folds filters into the scan instead of adding Filters. */
+    @Test public void plannerFoldsFilters() throws Exception {
+        String name = Database.getCatalog().getTableName(hf.getId());
+        LogicalPlan lp = new LogicalPlan();
+        lp.addScan(hf.getId(), "t");
+        lp.addProjectField("t.c1", null);
+        lp.addProjectField("t.c0", null);
+        lp.addFilter("t.c0", Predicate.Op.LESS_THAN, "50");
+        lp.addFilter("t.c2", Predicate.Op.GREATER_THAN_OR_EQ, "20");
+        Map<String, TableStats> stats = new HashMap<>();
+        stats.put(name, new TableStats(hf.getId(), 1000));
+
+        OpIterator plan = lp.physicalPlan(tid, stats, false);
+        assertTrue(plan instanceof Project);
+        OpIterator child = ((Project) plan).getChildren()[0];
+        assertFalse(child instanceof Filter);
+        assertEquals(2, ((SeqScan) child).getPredicates().size());
+        // c2 is only filtered on, so the scan does not return it
+        assertEquals(2, child.getTupleDesc().numFields());
+
+        plan.open();
+        List<List<Integer>> actual = new ArrayList<>();
+        while (plan.hasNext()) {
+            actual.add(SystemTestUtil.tupleToList(plan.next()));
+        }
+        plan.close();
+        assertEquals(expected(), actual);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ScanPushdownTest.class);
+    }
+}
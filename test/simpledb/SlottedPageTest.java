@@ -0,0 +1,193 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.TestUtil.SkeletonFile;
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.execution.Predicate;
+import simpledb.storage.*;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for SlottedPage and the VARCHAR type.
+ */
+public class SlottedPageTest extends SimpleDbTestBase {
+
+    private static final TupleDesc TD = new TupleDesc(new Type[] {Type.INT_TYPE, Type.VARCHAR_TYPE});
+
+    private HeapPageId pid;
+
+    @Before public void addTable() {
+        this.pid = new HeapPageId(-2, 0);
+        Database.getCatalog().addTable(new SkeletonFile(-2, TD), SystemTestUtil.getUUID());
+    }
+
+    private static Tuple tuple(int i, String s) {
+        Tuple t = new Tuple(TD);
+        t.setField(0, new IntField(i));
+        t.setField(1, new VarcharField(s, Type.STRING_LEN));
+        return t;
+    }
+
+    private static String name(int i) {
+        return "name" + i;
+    }
+
+    private SlottedPage fill() throws Exception {
+        SlottedPage page = new SlottedPage(pid, SlottedPage.createEmptyPageData());
+        for (int i = 0; page.getNumEmptySlots() > 0; i++) {
+            page.insertTuple(tuple(i, name(i)));
+        }
+        return page;
+    }
+
+    /** VARCHAR values serialize to their length and parse back. */
+    @Test public void varcharField() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new VarcharField("abc", Type.STRING_LEN).serialize(new DataOutputStream(baos));
+        assertEquals(5, baos.size());
+        Field f = Type.VARCHAR_TYPE.parse(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+        assertEquals(Type.VARCHAR_TYPE, f.getType());
+        assertEquals("abc", ((StringField) f).getValue());
+        // compares with a STRING of the same value
+        assertTrue(f.compare(Predicate.Op.EQUALS, new StringField("abc", Type.STRING_LEN)));
+    }
+
+    /** Short values pack many more tuples onto a page than fixed-size slots. */
+    @Test public void density() throws Exception {
+        SlottedPage page = fill();
+        int fixed = (BufferPool.getPageSize() * 8) / (TD.getSize() * 8 + 1);
+        assertTrue(page.getNumSlots() > 4 * fixed);
+
+        SlottedPage copy = new SlottedPage(pid, page.getPageData());
+        Iterator<Tuple> it = copy.iterator();
+        for (int i = 0; i < page.getNumSlots(); i++) {
+            Tuple t = it.next();
+            assertEquals(new IntField(i), t.getField(0));
+            assertEquals(name(i), ((StringField) t.getField(1)).getValue());
+            assertEquals(i, t.getRecordId().getTupleNumber());
+        }
+        assertFalse(it.hasNext());
+        try {
+            page.insertTuple(tuple(0, "x"));
+            fail("full page should refuse a tuple");
+        } catch (DbException expected) {
+        }
+    }
+
+    /** Deleted slots are reused and their space reclaimed by compaction. */
+    @Test public void deleteAndCompact() throws Exception {
+        SlottedPage page = fill();
+        int slots = page.getNumSlots();
+        List<Tuple> all = new ArrayList<>();
+        page.iterator().forEachRemaining(all::add);
+        for (int i = 0; i < slots; i += 2) {
+            page.deleteTuple(all.get(i));
+        }
+        assertFalse(page.isSlotUsed(0));
+        assertTrue(page.getNumEmptySlots() > 0);
+
+        // longer values than before only fit once the holes are squeezed out
+        String longer = "a much longer name than any before it";
+        int inserted = 0;
+        while (page.getNumEmptySlots() > 0) {
+            Tuple t = tuple(-1, longer);
+            page.insertTuple(t);
+            assertTrue(t.getRecordId().getTupleNumber() < slots);
+            inserted++;
+        }
+        assertTrue(inserted > 0);
+
+        SlottedPage copy = new SlottedPage(pid, page.getPageData());
+        int kept = 0;
+        for (Iterator<Tuple> it = copy.iterator(); it.hasNext(); ) {
+            Tuple t = it.next();
+            int i = ((IntField) t.getField(0)).getValue();
+            assertEquals(i < 0 ? longer : name(i), ((StringField) t.getField(1)).getValue());
+            kept++;
+        }
+        assertEquals(slots / 2 + inserted, kept);
+    }
+
+    /** An iterator keeps returning the page as it was when it was made. */
+    @Test public void modifyWhileIterating() throws Exception {
+        SlottedPage page = fill();
+        List<Tuple> all = new ArrayList<>();
+        page.iterator().forEachRemaining(all::add);
+        for (int i = 0; i < all.size(); i += 2) {
+            page.deleteTuple(all.get(i));
+        }
+        List<String> expected = new ArrayList<>();
+        page.iterator().forEachRemaining(t -> expected.add(t.toString()));
+
+        Iterator<Tuple> it = page.iterator();
+        List<String> seen = new ArrayList<>();
+        seen.add(it.next().toString());
+        // compacts the page to make room
+        while (page.getNumEmptySlots() > 0) {
+            page.insertTuple(tuple(-1, "a much longer name than any before it"));
+        }
+        it.forEachRemaining(t -> seen.add(t.toString()));
+        assertEquals(expected, seen);
+    }
+
+    /** The predicate iterator only returns matching tuples. */
+    @Test public void predicate() throws Exception {
+        SlottedPage page = fill();
+        Predicate p = new Predicate(1, Predicate.Op.EQUALS, new StringField(name(7), Type.STRING_LEN));
+        Iterator<Tuple> it = page.iterator(p);
+        assertEquals(new IntField(7), it.next().getField(0));
+        assertFalse(it.hasNext());
+    }
+
+    /** A HeapFile with a VARCHAR column stores and scans slotted pages. */
+    @Test public void heapFile() throws Exception {
+        File f = File.createTempFile("varchar", ".dat");
+        f.deleteOnExit();
+        HeapFile hf = new HeapFile(f, TD);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        TransactionId tid = new TransactionId();
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tuples.add(tuple(i, name(i)));
+        }
+        Database.getBufferPool().insertTuples(tid, hf.getId(), tuples);
+        Database.getBufferPool().transactionComplete(tid);
+        assertTrue(hf.numPages() < 1000 / ((BufferPool.getPageSize() * 8) / (TD.getSize() * 8 + 1)));
+
+        tid = new TransactionId();
+        DbFileIterator it = hf.iterator(tid);
+        it.open();
+        int n = 0;
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            assertEquals(name(((IntField) t.getField(0)).getValue()), ((StringField) t.getField(1)).getValue());
+            n++;
+        }
+        it.close();
+        Database.getBufferPool().transactionComplete(tid);
+        assertEquals(1000, n);
+        f.delete();
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SlottedPageTest.class);
+    }
+}
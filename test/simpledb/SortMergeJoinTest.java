@@ -0,0 +1,220 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.execution.*;
+import simpledb.optimizer.JoinOptimizer;
+import simpledb.optimizer.LogicalJoinNode;
+import simpledb.optimizer.TableStats;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.storage.TupleIterator;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for SortMergeJoin.
+ */
+public class SortMergeJoinTest extends SimpleDbTestBase {
+
+    private Object[] left, right;
+
+    @Before public void setUp() {
+        // few values, so runs of equal values on both sides
+        Random r = new Random(42);
+        left = new Object[2 * 300];
+        for (int i = 0; i < left.length; i += 2) {
+            left[i] = r.nextInt(40);
+            left[i + 1] = i;
+        }
+        right = new Object[3 * 200];
+        for (int i = 0; i < right.length; i += 3) {
+            right[i] = i;
+            right[i + 1] = r.nextInt(40) + 5;
+            right[i + 2] = -i;
+        }
+    }
+
+    /** @return the tuples of it, as strings, sorted */
+    private static List<String> drain(OpIterator it) throws Exception {
+        List<String> result = new ArrayList<>();
+        while (it.hasNext()) {
+            result.add(it.next().toString());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /** @return the tuples of data, with fields named as those of a scan of alias */
+    private static TupleIterator named(int width, Object[] data, String alias) throws Exception {
+        TupleDesc td = Utility.getTupleDesc(width, alias + "." + alias);
+        OpIterator it = TestUtil.createTupleList(width, data);
+        List<Tuple> tuples = new ArrayList<>();
+        while (it.hasNext()) {
+            Tuple t = it.next(), copy = new Tuple(td);
+            for (int i = 0; i < width; i++) {
+                copy.setField(i, t.getField(i));
+            }
+            tuples.add(copy);
+        }
+        return new TupleIterator(td, tuples);
+    }
+
+    private static List<String> join(OpIterator j) throws Exception {
+        j.open();
+        List<String> result = drain(j);
+        j.close();
+        return result;
+    }
+
+    /** Every operator joins what nested loops do, from unsorted and from sorted inputs. */
+    @Test public void operators() throws Exception {
+        for (Predicate.Op op : Predicate.Op.values()) {
+            if (op == Predicate.Op.LIKE) {
+                continue;
+            }
+            JoinPredicate p = new JoinPredicate(0, op, 1);
+            List<String> expected = join(new Join(p,
+                    TestUtil.createTupleList(2, left), TestUtil.createTupleList(3, right)));
+            assertFalse(op.toString(), expected.isEmpty());
+
+            SortMergeJoin unsorted = new SortMergeJoin(p,
+                    TestUtil.createTupleList(2, left), TestUtil.createTupleList(3, right));
+            assertArrayEquals(new boolean[] {false, false}, unsorted.getSortedInputs());
+            assertEquals(op.toString(), expected, join(unsorted));
+            assertFalse(unsorted.usesNestedLoops());
+
+            SortMergeJoin sorted = new SortMergeJoin(p,
+                    new OrderBy(0, true, TestUtil.createTupleList(2, left)),
+                    new Filter(new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(0)),
+                            new OrderBy(1, true, TestUtil.createTupleList(3, right))));
+            assertArrayEquals(new boolean[] {true, true}, sorted.getSortedInputs());
+            assertEquals(op.toString(), expected, join(sorted));
+        }
+    }
+
+    /** Tuples of scans, whose TupleDesc is their file's rather than the scan's, are sorted too. */
+    @Test public void scans() throws Exception {
+        HeapFile a = SystemTestUtil.createRandomHeapFile(2, 300, 50, null, new ArrayList<>(), "a");
+        HeapFile b = SystemTestUtil.createRandomHeapFile(2, 300, 50, null, new ArrayList<>(), "b");
+        TransactionId tid = new TransactionId();
+        try {
+            JoinPredicate p = new JoinPredicate(1, Predicate.Op.GREATER_THAN_OR_EQ, 0);
+            assertEquals(join(new Join(p, new SeqScan(tid, a.getId(), "a"), new SeqScan(tid, b.getId(), "b"))),
+                    join(new SortMergeJoin(p, new SeqScan(tid, a.getId(), "a"), new SeqScan(tid, b.getId(), "b"))));
+        } finally {
+            Database.getBufferPool().transactionComplete(tid);
+            new File(a.getFile().getPath() + ".fsm").delete();
+            new File(b.getFile().getPath() + ".fsm").delete();
+        }
+    }
+
+    /** Rewind starts the merge over, runs included. */
+    @Test public void rewind() throws Exception {
+        JoinPredicate p = new JoinPredicate(0, Predicate.Op.EQUALS, 1);
+        SortMergeJoin j = new SortMergeJoin(p, TestUtil.createTupleList(2, left),
+                new OrderBy(1, true, TestUtil.createTupleList(3, right)));
+        j.open();
+        for (int i = 0; i < 50; i++) {
+            j.next();
+        }
+        j.rewind();
+        List<String> first = drain(j);
+        j.rewind();
+        assertEquals(first, drain(j));
+        j.close();
+    }
+
+    /** Inputs over the memory budget are not held but joined by nested loops, also after rewind. */
+    @Test public void overBudget() throws Exception {
+        for (Predicate.Op op : new Predicate.Op[] {Predicate.Op.LESS_THAN, Predicate.Op.EQUALS}) {
+            JoinPredicate p = new JoinPredicate(0, op, 1);
+            List<String> expected = join(new Join(p,
+                    TestUtil.createTupleList(2, left), TestUtil.createTupleList(3, right)));
+
+            // room for child1 but not child2
+            SortMergeJoin j = new SortMergeJoin(p,
+                    TestUtil.createTupleList(2, left), TestUtil.createTupleList(3, right),
+                    SortMergeJoin.estimateMemory(left.length / 2 + 10, 8));
+            j.open();
+            assertTrue(op.toString(), j.usesNestedLoops());
+            assertEquals(op.toString(), expected, drain(j));
+            j.rewind();
+            assertEquals(op.toString(), expected, drain(j));
+            j.close();
+            assertFalse(j.usesNestedLoops());
+        }
+    }
+
+    /** The optimizer merges equi-joins of sorted inputs and all range joins. */
+    @Test public void instantiateJoin() throws Exception {
+        TupleIterator l = named(2, left, "l");
+        TupleIterator r = named(3, right, "r");
+        LogicalJoinNode eq = new LogicalJoinNode("l", "r", "l0", "r1", Predicate.Op.EQUALS);
+        assertTrue(JoinOptimizer.instantiateJoin(eq, l, r) instanceof HashEquiJoin);
+        assertTrue(JoinOptimizer.instantiateJoin(eq, new OrderBy(0, true, l),
+                new OrderBy(1, true, r)) instanceof SortMergeJoin);
+        assertTrue(JoinOptimizer.instantiateJoin(eq, new OrderBy(0, false, l),
+                new OrderBy(1, true, r)) instanceof HashEquiJoin);
+
+        LogicalJoinNode lt = new LogicalJoinNode("l", "r", "l0", "r1", Predicate.Op.LESS_THAN);
+        assertTrue(JoinOptimizer.instantiateJoin(lt, l, r) instanceof SortMergeJoin);
+        // sorting is free for sorted inputs
+        assertTrue(JoinOptimizer.estimateSortMergeJoinCost(1000, 1000, true, true, 10)
+                < JoinOptimizer.estimateSortMergeJoinCost(1000, 1000, false, true, 10));
+    }
+
+    /**
+     * The optimizer joins scans too big to sort in memory by nested loops
+     * rather than by SortMergeJoin.
+     */
+    @Test public void instantiateJoinOverBudget() throws Exception {
+        HeapFile lf = SystemTestUtil.createRandomHeapFile(2, 100, 40, null, new ArrayList<>(), "l");
+        HeapFile rf = SystemTestUtil.createRandomHeapFile(2, 100, 40, null, new ArrayList<>(), "r");
+        String ln = Database.getCatalog().getTableName(lf.getId());
+        String rn = Database.getCatalog().getTableName(rf.getId());
+        TransactionId tid = new TransactionId();
+        try {
+            LogicalJoinNode lt = new LogicalJoinNode("l", "r", "l0", "r1", Predicate.Op.LESS_THAN);
+            Map<String, TableStats> stats = new HashMap<>();
+            stats.put(ln, new TableStats(lf.getId(), 1));
+            stats.put(rn, new TableStats(rf.getId(), 1));
+            assertTrue(JoinOptimizer.instantiateJoin(lt, new SeqScan(tid, lf.getId(), "l"),
+                    new SeqScan(tid, rf.getId(), "r"), stats, 1) instanceof SortMergeJoin);
+
+            // claims far more tuples than fit the budget
+            stats.put(ln, new TableStats(lf.getId(), 1) {
+                @Override
+                public int estimateTableCardinality(double selectivityFactor) {
+                    return 100000000;
+                }
+            });
+            assertTrue(JoinOptimizer.instantiateJoin(lt, new SeqScan(tid, lf.getId(), "l"),
+                    new SeqScan(tid, rf.getId(), "r"), stats, 1) instanceof Join);
+        } finally {
+            Database.getBufferPool().transactionComplete(tid);
+            new File(lf.getFile().getPath() + ".fsm").delete();
+            new File(rf.getFile().getPath() + ".fsm").delete();
+        }
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SortMergeJoinTest.class);
+    }
+}
@@ -1,13 +1,23 @@
 package simpledb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import junit.framework.JUnit4TestAdapter;
 
 import org.junit.Test;
 
+import simpledb.common.Database;
 import simpledb.common.Utility;
+import simpledb.execution.SeqScan;
 import simpledb.storage.*;
 import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TupleTest extends SimpleDbTestBase {
 
@@ -38,6 +48,57 @@ public class TupleTest extends SimpleDbTestBase {
         TupleDesc td = Utility.getTupleDesc(5);
         Tuple tup = new Tuple(td);
         assertEquals(td, tup.getTupleDesc());
+        assertSame(td, tup.getTupleDesc());
+    }
+
+    /**
+     * Unit test for Tuple.getInt(), Tuple.setInt() and Tuple.copyField()
+     */
+    @Test public void intFields() {
+        TupleDesc td = Utility.getTupleDesc(2);
+        Tuple tup = new Tuple(td);
+        tup.setInt(0, 7);
+        tup.setField(1, new IntField(8));
+        assertEquals(7, tup.getInt(0));
+        assertEquals(8, tup.getInt(1));
+        assertEquals(new IntField(7), tup.getField(0));
+        assertEquals(7, tup.getInt(0));
+
+        Tuple copy = new Tuple(td);
+        copy.copyField(0, tup, 1);
+        copy.copyField(1, tup, 0);
+        assertEquals(8, copy.getInt(0));
+        assertEquals(new IntField(7), copy.getField(1));
+
+        Tuple same = new Tuple(td);
+        same.setField(0, new IntField(7));
+        same.setInt(1, 8);
+        assertTrue(same.equals(tup));
+        assertTrue(tup.equals(same));
+    }
+
+    /**
+     * Unit test for scans that refill one Tuple
+     */
+    @Test public void reusedScanTuples() throws Exception {
+        List<List<Integer>> tuples = new ArrayList<>();
+        HeapFile hf = SystemTestUtil.createRandomHeapFile(2, 1000, 100, null, tuples);
+        TransactionId tid = new TransactionId();
+        SeqScan scan = new SeqScan(tid, hf.getId(), "t");
+        assertTrue(scan.setReuseTuples(true));
+        scan.open();
+        Tuple first = scan.next();
+        List<List<Integer>> actual = new ArrayList<>();
+        actual.add(SystemTestUtil.tupleToList(first));
+        while (scan.hasNext()) {
+            Tuple t = scan.next();
+            assertSame(first, t);
+            actual.add(SystemTestUtil.tupleToList(t));
+        }
+        scan.close();
+        assertEquals(tuples, actual);
+        Database.getBufferPool().transactionComplete(tid);
+        new File(hf.getFile().getPath() + ".fsm").delete();
     }
 
     /**
@@ -0,0 +1,133 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.storage.*;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the zone map HeapFile scans with a predicate skip pages by.
+ */
+public class ZoneMapTest extends SimpleDbTestBase {
+
+    /** Two-int tuples per page. */
+    private static final int SLOTS = 504;
+    private static final int PAGES = 5;
+
+    private HeapFile hf;
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        // field 0 counts up, so each page holds its own range of values
+        List<List<Integer>> tuples = new ArrayList<>();
+        for (int i = 0; i < PAGES * SLOTS; i++) {
+            tuples.add(Arrays.asList(i, i % 7));
+        }
+        File f = File.createTempFile("zones", ".dat");
+        f.deleteOnExit();
+        HeapFileEncoder.convert(tuples, f, BufferPool.getPageSize(), 2);
+        hf = Utility.openHeapFile(2, f);
+        tid = new TransactionId();
+    }
+
+    @After public void tearDown() {
+        Database.getBufferPool().transactionComplete(tid);
+        new File(hf.getFile().getPath() + ".fsm").delete();
+    }
+
+    private static Predicate pred(Predicate.Op op, int v) {
+        return new Predicate(0, op, new IntField(v));
+    }
+
+    /** @return the number of tuples a fresh pool's scan with pred returns */
+    private int scan(Predicate pred) throws Exception {
+        // read-ahead would show the map pages the scan itself skips
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES).setPrefetchWindow(0);
+        SeqScan scan = new SeqScan(tid, hf.getId(), "t", pred);
+        scan.open();
+        int n = 0;
+        while (scan.hasNext()) {
+            assertTrue(pred.filter(scan.next()));
+            n++;
+        }
+        scan.close();
+        return n;
+    }
+
+    private static long pagesRead() {
+        BufferPool pool = Database.getBufferPool();
+        return pool.getHitCount() + pool.getMissCount();
+    }
+
+    /** Once pages have been read, scans skip those out of range. */
+    @Test public void skipsPages() throws Exception {
+        // nothing is known before the first scan
+        assertEquals(10, scan(pred(Predicate.Op.LESS_THAN, 10)));
+        assertEquals(PAGES, pagesRead());
+
+        assertEquals(10, scan(pred(Predicate.Op.LESS_THAN, 10)));
+        assertEquals(1, pagesRead());
+        assertEquals(SLOTS + 1, scan(pred(Predicate.Op.GREATER_THAN_OR_EQ, (PAGES - 1) * SLOTS - 1)));
+        assertEquals(2, pagesRead());
+        assertEquals(1, scan(pred(Predicate.Op.EQUALS, 2 * SLOTS)));
+        assertEquals(1, pagesRead());
+        assertEquals(0, scan(pred(Predicate.Op.EQUALS, -1)));
+        assertEquals(0, pagesRead());
+    }
+
+    /** A tuple inserted into a known page widens its range. */
+    @Test public void insertWidens() throws Exception {
+        scan(pred(Predicate.Op.LESS_THAN, 0));
+        Predicate big = pred(Predicate.Op.GREATER_THAN, 1000000);
+        assertEquals(0, scan(big));
+        assertEquals(0, pagesRead());
+
+        // make room on page 0, where the insert then goes
+        DbFileIterator it = hf.iterator(tid);
+        it.open();
+        Tuple first = it.next();
+        it.close();
+        Database.getBufferPool().deleteTuple(tid, first);
+        Tuple t = Utility.getHeapTuple(new int[] {2000000, 0});
+        Database.getBufferPool().insertTuple(tid, hf.getId(), t);
+        assertEquals(0, t.getRecordId().getPageId().getPageNumber());
+
+        SeqScan scan = new SeqScan(tid, hf.getId(), "t", big);
+        scan.open();
+        assertTrue(scan.hasNext());
+        assertEquals(new IntField(2000000), scan.next().getField(0));
+        assertFalse(scan.hasNext());
+        scan.close();
+    }
+
+    /** A predicate that every page's range admits reads every page. */
+    @Test public void noSkipping() throws Exception {
+        scan(pred(Predicate.Op.LESS_THAN, 0));
+        Predicate p = new Predicate(1, Predicate.Op.EQUALS, new IntField(3));
+        assertEquals((PAGES * SLOTS + 3) / 7, scan(p));
+        assertEquals(PAGES, pagesRead());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ZoneMapTest.class);
+    }
+}
@@ -0,0 +1,75 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.execution.Filter;
+import simpledb.execution.Predicate;
+import simpledb.execution.Project;
+import simpledb.execution.SeqScan;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.transaction.TransactionId;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * SELECT c1, c0 FROM t WHERE c0 &lt; x over a table of random INT columns,
+ * run as Project over Filter over SeqScan with the whole table in the
+ * pool, reporting throughput and the bytes the scanning thread allocates
+ * per input row.  Each selectivity runs once with a fresh Tuple for every
+ * row and once with the scan and the projection reusing one row each.
+ * The first pass of each warms the JIT and is not reported.
+ *
+ * Arguments: [rows] [columns] [passes]
+ */
+public class AllocationBenchmark {
+
+    private static final int MAX = 1 << 20;
+
+    public static void main(String[] args) throws Exception {
+        int rows = BenchmarkUtil.intArg(args, 0, 1000000);
+        int columns = BenchmarkUtil.intArg(args, 1, 8);
+        int passes = BenchmarkUtil.intArg(args, 2, 3);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long self = Thread.currentThread().getId();
+
+        HeapFile hf = BenchmarkUtil.createRandomHeapFile(columns, rows, MAX);
+        int poolPages = hf.numPages() + 10;
+        System.out.println("pages=" + hf.numPages() + " pool=" + poolPages);
+
+        for (double selectivity : new double[] {0.1, 1.0}) {
+            Predicate pred = new Predicate(0, Predicate.Op.LESS_THAN, new IntField((int) (MAX * selectivity)));
+            for (boolean reuse : new boolean[] {false, true}) {
+                Database.resetBufferPool(poolPages);
+                for (int pass = 0; pass <= passes; pass++) {
+                    TransactionId tid = new TransactionId();
+                    long bytes = threads.getThreadAllocatedBytes(self);
+                    long start = System.nanoTime();
+                    SeqScan scan = new SeqScan(tid, hf.getId(), "t");
+                    Project project = new Project(Arrays.asList(1, 0),
+                            new Type[] {Type.INT_TYPE, Type.INT_TYPE}, new Filter(pred, scan));
+                    scan.setReuseTuples(reuse);
+                    project.setReuseTuples(reuse);
+                    project.open();
+                    long n = 0;
+                    while (project.hasNext()) {
+                        project.next();
+                        n++;
+                    }
+                    project.close();
+                    long nanos = System.nanoTime() - start;
+                    bytes = threads.getThreadAllocatedBytes(self) - bytes;
+                    if (pass > 0) {
+                        System.out.printf("%4.0f%% %-6s pass %d: %,d rows in %.1f ms, %s input rows, %.1f bytes/row%n",
+                                selectivity * 100, reuse ? "reuse" : "fresh", pass, n, nanos / 1e6,
+                                BenchmarkUtil.rate(rows, nanos / 1000000), (double) bytes / rows);
+                    }
+                }
+            }
+        }
+        hf.close();
+    }
+}
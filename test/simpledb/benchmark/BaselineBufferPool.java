@@ -0,0 +1,87 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.storage.DbFile;
+import simpledb.storage.Page;
+import simpledb.storage.PageId;
+import simpledb.transaction.TransactionId;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The page table of BufferPool as it was before it was sharded: one
+ * LinkedHashMap in LRU order behind one lock, with pages read from disk
+ * while the lock is held.  Kept only for BufferPoolBenchmark to compare
+ * against.
+ * <p>
+ * The original took the read lock in getPage, so threads could reorder and
+ * evict from the map at the same time, which corrupts it under the
+ * benchmark's threads.  This copy takes the write lock there instead, i.e.
+ * the global lock the code needed; it is otherwise the original getPage,
+ * put, makeRecently, flushPage and evictPage.
+ */
+class BaselineBufferPool {
+
+    private final LinkedHashMap<PageId, Page> cache;
+    private final int capacity;
+    private final ReadWriteLock rwlock;
+
+    BaselineBufferPool(int numPages) {
+        cache = new LinkedHashMap<>();
+        capacity = numPages;
+        rwlock = new ReentrantReadWriteLock();
+    }
+
+    Page getPage(TransactionId tid, PageId pid) throws DbException {
+        rwlock.writeLock().lock();
+        try {
+            Page page = cache.get(pid);
+            if (page == null) {
+                DbFile file = Database.getCatalog().getDatabaseFile(pid.getTableId());
+                page = file.readPage(pid);
+            }
+            put(pid, page);
+            return page;
+        } finally {
+            rwlock.writeLock().unlock();
+        }
+    }
+
+    private void put(PageId pageId, Page page) throws DbException {
+        if (cache.containsKey(pageId)) {
+            makeRecently(pageId);
+        } else if (cache.size() >= capacity) {
+            evictPage();
+        }
+        cache.put(pageId, page);
+    }
+
+    private void makeRecently(PageId pageId) {
+        Page page = cache.remove(pageId);
+        cache.put(pageId, page);
+    }
+
+    private synchronized void flushPage(PageId pid) throws IOException {
+        Page page = cache.get(pid);
+        TransactionId tid = page.isDirty();
+        if (tid != null) {
+            DbFile dbFile = Database.getCatalog().getDatabaseFile(pid.getTableId());
+            dbFile.writePage(page);
+            page.markDirty(false, tid);
+        }
+    }
+
+    private synchronized void evictPage() throws DbException {
+        PageId pageOldest = cache.keySet().iterator().next();
+        try {
+            flushPage(pageOldest);
+        } catch (IOException e) {
+            throw new DbException(" flush page error");
+        }
+        cache.remove(pageOldest);
+    }
+}
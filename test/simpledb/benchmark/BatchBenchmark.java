@@ -0,0 +1,66 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.execution.*;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.transaction.TransactionId;
+
+/**
+ * SELECT SUM(c2) FROM t WHERE c0 &lt; x, and the same grouped by c1, which
+ * takes 100 values, over a table of INT columns held in the pool, run as
+ * Aggregate over Filter over SeqScan a tuple at a time and as
+ * BatchAggregate over BatchFilter over BatchSeqScan a batch at a time.  The
+ * first pass of each warms the JIT and is not reported.
+ *
+ * Arguments: [rows] [columns] [passes]
+ */
+public class BatchBenchmark {
+
+    private static final int MAX = 1 << 20;
+
+    public static void main(String[] args) throws Exception {
+        int rows = BenchmarkUtil.intArg(args, 0, 2000000);
+        int columns = BenchmarkUtil.intArg(args, 1, 4);
+        int passes = BenchmarkUtil.intArg(args, 2, 3);
+
+        HeapFile hf = BenchmarkUtil.createHeapFile(columns, rows,
+                (row, col) -> col == 1 ? row % 100 : (int) (((row * 2654435761L) ^ (col * 40503L)) & (MAX - 1)));
+        int poolPages = hf.numPages() + 10;
+        System.out.println("pages=" + hf.numPages() + " pool=" + poolPages);
+        Database.resetBufferPool(poolPages);
+
+        for (int gfield : new int[] {Aggregator.NO_GROUPING, 1}) {
+            for (double selectivity : new double[] {0.1, 0.9}) {
+                Predicate pred = new Predicate(0, Predicate.Op.LESS_THAN, new IntField((int) (MAX * selectivity)));
+                for (boolean batched : new boolean[] {false, true}) {
+                    for (int pass = 0; pass <= passes; pass++) {
+                        TransactionId tid = new TransactionId();
+                        long start = System.nanoTime();
+                        OpIterator op = batched
+                                ? new BatchToTuple(new BatchAggregate(new BatchFilter(pred,
+                                        new BatchSeqScan(tid, hf.getId(), "t")), 2, gfield, Aggregator.Op.SUM))
+                                : new Aggregate(new Filter(pred, new SeqScan(tid, hf.getId(), "t")),
+                                        2, gfield, Aggregator.Op.SUM);
+                        op.open();
+                        long n = 0;
+                        while (op.hasNext()) {
+                            op.next();
+                            n++;
+                        }
+                        op.close();
+                        long nanos = System.nanoTime() - start;
+                        Database.getBufferPool().transactionComplete(tid);
+                        if (pass > 0) {
+                            System.out.printf("%-8s %3.0f%% %-6s pass %d: %,d groups in %.1f ms, %s input rows%n",
+                                    gfield == Aggregator.NO_GROUPING ? "sum" : "sum/c1", selectivity * 100,
+                                    batched ? "batch" : "tuple", pass, n, nanos / 1e6,
+                                    BenchmarkUtil.rate(rows, nanos / 1000000));
+                        }
+                    }
+                }
+            }
+        }
+        hf.close();
+    }
+}
@@ -0,0 +1,133 @@
+package simpledb.benchmark;
+
+import simpledb.common.Utility;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+
+import java.io.*;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Helpers shared by the benchmark drivers in this package.  Benchmarks are
+ * plain main() programs; run them with
+ * <pre>ant runbench -Dbench=BufferPoolBenchmark -Dbenchargs="..."</pre>
+ */
+public class BenchmarkUtil {
+
+    /** Generates the value of column col of row row. */
+    public interface ValueGenerator {
+        int value(int row, int col);
+    }
+
+    /** A body run repeatedly by each benchmark thread. */
+    public interface Operation {
+        void run(int thread, Random r) throws Exception;
+    }
+
+    /**
+     * Writes a heap file of rows rows with columns INT columns, without
+     * materializing the rows in memory, and adds it to the catalog.
+     */
+    public static HeapFile createHeapFile(int columns, int rows, ValueGenerator gen)
+            throws IOException {
+        return Utility.openHeapFile(columns, writeHeapFile(columns, rows, gen));
+    }
+
+    /**
+     * Writes the pages of a heap file of rows rows with columns INT columns
+     * to a temporary file, without adding it to the catalog.
+     */
+    public static File writeHeapFile(int columns, int rows, ValueGenerator gen)
+            throws IOException {
+        File f = File.createTempFile("bench", ".dat");
+        f.deleteOnExit();
+        int pageSize = BufferPool.getPageSize();
+        int slots = (pageSize * 8) / (columns * 4 * 8 + 1);
+        int headerBytes = (slots + 7) / 8;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(f), 1 << 16))) {
+            int row = 0;
+            while (row < rows) {
+                int n = Math.min(slots, rows - row);
+                for (int b = 0; b < headerBytes; b++) {
+                    int bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        if (b * 8 + i < n) bits |= 1 << i;
+                    }
+                    out.writeByte(bits);
+                }
+                for (int s = 0; s < slots; s++) {
+                    for (int c = 0; c < columns; c++) {
+                        out.writeInt(s < n ? gen.value(row + s, c) : 0);
+                    }
+                }
+                int written = headerBytes + slots * columns * 4;
+                for (int i = written; i < pageSize; i++) {
+                    out.writeByte(0);
+                }
+                row += n;
+            }
+        }
+        return f;
+    }
+
+    /** Random values in [0, maxValue). */
+    public static HeapFile createRandomHeapFile(int columns, int rows, final int maxValue)
+            throws IOException {
+        final Random r = new Random(42);
+        return createHeapFile(columns, rows, (row, col) -> r.nextInt(maxValue));
+    }
+
+    /**
+     * Runs op in a loop on threads threads for the given number of
+     * milliseconds and returns the total number of completed operations.
+     */
+    public static long runFor(int threads, long millis, final Operation op)
+            throws InterruptedException {
+        final LongAdder ops = new LongAdder();
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            Thread th = new Thread(() -> {
+                Random r = new Random(id);
+                try {
+                    start.await();
+                    while (!stop.get()) {
+                        op.run(id, r);
+                        ops.increment();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    failed.set(true);
+                } finally {
+                    done.countDown();
+                }
+            });
+            th.setDaemon(true);
+            th.start();
+        }
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        done.await();
+        if (failed.get()) {
+            throw new IllegalStateException("benchmark thread failed");
+        }
+        return ops.sum();
+    }
+
+    /** Parses args[i] as an int, or returns def if it is absent. */
+    public static int intArg(String[] args, int i, int def) {
+        return args.length > i ? Integer.parseInt(args[i]) : def;
+    }
+
+    public static String rate(long ops, long millis) {
+        return String.format("%,.0f/s", ops * 1000.0 / millis);
+    }
+}
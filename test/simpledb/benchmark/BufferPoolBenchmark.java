@@ -0,0 +1,62 @@
+package simpledb.benchmark;
+
+import simpledb.common.Permissions;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPageId;
+import simpledb.transaction.TransactionId;
+
+/**
+ * Measures multi-threaded getPage() throughput against a buffer pool.
+ *
+ * With the default arguments the table fits in the pool, so after warm-up
+ * every call is a hit and the run measures the lookup path.  Pass more
+ * pages than pool pages to measure the miss and eviction path instead.
+ * <p>
+ * Three pools are run: {@link BaselineBufferPool}, the globally locked
+ * page table BufferPool had before it was sharded; BufferPool with a single
+ * shard, whose hits are lock-free but whose misses all take one lock; and
+ * BufferPool with the default number of shards.
+ *
+ * Arguments: [pages] [poolPages] [millisPerRun] [maxThreads]
+ */
+public class BufferPoolBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int pages = BenchmarkUtil.intArg(args, 0, 400);
+        int poolPages = BenchmarkUtil.intArg(args, 1, 500);
+        int millis = BenchmarkUtil.intArg(args, 2, 2000);
+        int maxThreads = BenchmarkUtil.intArg(args, 3, 2 * Runtime.getRuntime().availableProcessors());
+
+        int rowsPerPage = (BufferPool.getPageSize() * 8) / (2 * 4 * 8 + 1);
+        HeapFile hf = BenchmarkUtil.createRandomHeapFile(2, pages * rowsPerPage, 1 << 20);
+        final int tableId = hf.getId();
+        final int numPages = hf.numPages();
+
+        System.out.println("pages=" + numPages + " pool=" + poolPages + " millis=" + millis);
+        final BaselineBufferPool baseline = new BaselineBufferPool(poolPages);
+        final TransactionId baselineTid = new TransactionId();
+        for (int p = 0; p < numPages; p++) {
+            baseline.getPage(baselineTid, new HeapPageId(tableId, p));
+        }
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long ops = BenchmarkUtil.runFor(threads, millis, (t, r) ->
+                    baseline.getPage(baselineTid, new HeapPageId(tableId, r.nextInt(numPages))));
+            System.out.printf("baseline    threads=%-3d getPage %s%n", threads, BenchmarkUtil.rate(ops, millis));
+        }
+        for (int shards : new int[]{1, BufferPool.DEFAULT_SHARDS}) {
+            final BufferPool bp = new BufferPool(poolPages, shards);
+            final TransactionId tid = new TransactionId();
+            for (int p = 0; p < numPages; p++) {
+                bp.getPage(tid, new HeapPageId(tableId, p), Permissions.READ_ONLY);
+            }
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                long ops = BenchmarkUtil.runFor(threads, millis, (t, r) ->
+                        bp.getPage(tid, new HeapPageId(tableId, r.nextInt(numPages)),
+                                Permissions.READ_ONLY));
+                System.out.printf("shards=%-4d threads=%-3d getPage %s%n",
+                        bp.getNumShards(), threads, BenchmarkUtil.rate(ops, millis));
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Utility;
+import simpledb.index.BTreeUtility;
+import simpledb.storage.BufferPool;
+import simpledb.storage.DbFile;
+import simpledb.storage.Tuple;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Loads rows into an empty HeapFile and an empty BTreeFile, once with one
+ * BufferPool.insertTuple call per row and once with BufferPool.insertTuples
+ * on batches of rows, committing every commitRows rows.  Reports the load
+ * rate and page fetches per row of each.  B+ tree keys are random, heap
+ * rows sequential.  The B+ tree runs need BTreeFile.findLeafPage and
+ * splitLeafPage, which are lab exercises, and report a failure until those
+ * are filled in.
+ *
+ * Arguments: [rows] [batch] [commitRows] [poolPages]
+ */
+public class BulkLoadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = BenchmarkUtil.intArg(args, 0, 200000);
+        int batch = BenchmarkUtil.intArg(args, 1, 1024);
+        int commitRows = BenchmarkUtil.intArg(args, 2, 10240);
+        int poolPages = BenchmarkUtil.intArg(args, 3, 1000);
+
+        for (String kind : new String[] {"heap", "btree"}) {
+            for (boolean batched : new boolean[] {false, true}) {
+                String name = String.format("%-5s %-9s", kind, batched ? "batched" : "per-tuple");
+                try {
+                    run(name, kind, batched, rows, batch, commitRows, poolPages);
+                } catch (RuntimeException | DbException e) {
+                    System.out.println(name + " failed: " + e);
+                }
+            }
+        }
+    }
+
+    private static void run(String name, String kind, boolean batched, int rows, int batch,
+                            int commitRows, int poolPages) throws Exception {
+        File f = File.createTempFile("bulk", ".dat");
+        f.deleteOnExit();
+        DbFile file = kind.equals("heap")
+                ? Utility.createEmptyHeapFile(f.getPath(), 2)
+                : BTreeUtility.createEmptyBTreeFile(f.getPath(), 2, 0);
+        BufferPool pool = Database.resetBufferPool(poolPages);
+        Random r = new Random(42);
+
+        long start = System.currentTimeMillis();
+        TransactionId tid = new TransactionId();
+        List<Tuple> tuples = new ArrayList<>(batch);
+        for (int i = 0; i < rows; i++) {
+            int key = kind.equals("heap") ? i : r.nextInt();
+            tuples.add(Utility.getHeapTuple(new int[] {key, i}));
+            if (tuples.size() == batch || i == rows - 1) {
+                if (batched) {
+                    pool.insertTuples(tid, file.getId(), tuples);
+                } else {
+                    for (Tuple t : tuples) {
+                        pool.insertTuple(tid, file.getId(), t);
+                    }
+                }
+                tuples.clear();
+            }
+            if ((i + 1) % commitRows == 0 || i == rows - 1) {
+                pool.transactionComplete(tid);
+                tid = new TransactionId();
+            }
+        }
+        long millis = Math.max(1, System.currentTimeMillis() - start);
+
+        long fetches = pool.getHitCount() + pool.getMissCount();
+        System.out.printf("%s %,d rows in %,d ms (%s), %.3f page fetches per row%n",
+                name, rows, millis, BenchmarkUtil.rate(rows, millis), (double) fetches / rows);
+        file.close();
+        f.delete();
+        new File(f.getPath() + ".fsm").delete();
+    }
+}
@@ -0,0 +1,78 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.ColumnFile;
+import simpledb.storage.HeapFile;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.UUID;
+
+/**
+ * Scans a wide INT table stored as a HeapFile and as a ColumnFile converted
+ * from it, returning the first 1, 2, 4, ... of its columns, and reports the
+ * time and pages read by each.  The heap file reads every page whatever the
+ * projection; the column file reads only the projected columns' pages.  The
+ * first pass of each scan warms the OS page cache and the JIT and is not
+ * reported.
+ *
+ * Arguments: [rows] [columns] [poolPages] [passes]
+ */
+public class ColumnScanBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = BenchmarkUtil.intArg(args, 0, 1000000);
+        int columns = BenchmarkUtil.intArg(args, 1, 16);
+        int poolPages = BenchmarkUtil.intArg(args, 2, BufferPool.DEFAULT_PAGES);
+        int passes = BenchmarkUtil.intArg(args, 3, 3);
+
+        HeapFile hf = BenchmarkUtil.createHeapFile(columns, rows, (row, col) -> row * 31 + col);
+        File f = File.createTempFile("bench", ".col");
+        f.deleteOnExit();
+        TransactionId tid = new TransactionId();
+        long start = System.nanoTime();
+        ColumnFile cf = ColumnFile.convert(hf, tid, f);
+        Database.getBufferPool().transactionComplete(tid);
+        Database.getCatalog().addTable(cf, UUID.randomUUID().toString());
+        System.out.printf("heap %,d pages, column %,d pages, converted in %d ms%n",
+                hf.numPages(), cf.numPages(), (System.nanoTime() - start) / 1000000);
+
+        for (int width = 1; ; width = Math.min(width * 2, columns)) {
+            int[] projection = new int[width];
+            for (int i = 0; i < width; i++) {
+                projection[i] = i;
+            }
+            scan("heap", hf.getId(), projection, poolPages, passes);
+            scan("column", cf.getId(), projection, poolPages, passes);
+            if (width == columns) {
+                break;
+            }
+        }
+        cf.close();
+        hf.close();
+    }
+
+    private static void scan(String kind, int tableId, int[] projection, int poolPages, int passes)
+            throws Exception {
+        for (int pass = 0; pass <= passes; pass++) {
+            BufferPool pool = Database.resetBufferPool(poolPages);
+            long start = System.nanoTime();
+            SeqScan scan = new SeqScan(new TransactionId(), tableId, "t", projection);
+            scan.open();
+            long n = 0;
+            while (scan.hasNext()) {
+                scan.next();
+                n++;
+            }
+            scan.close();
+            long nanos = System.nanoTime() - start;
+            if (pass > 0) {
+                System.out.printf("%-6s %2d cols pass %d: %,d rows in %d ms, %,d pages read%n",
+                        kind, projection.length, pass, n, nanos / 1000000,
+                        pool.getHitCount() + pool.getMissCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package simpledb.benchmark;
+
+import simpledb.common.Utility;
+import simpledb.execution.Predicate;
+import simpledb.execution.PredicateCompiler;
+import simpledb.storage.IntField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Conjunctions of one to four range predicates over a million in-memory
+ * tuples of random INT fields, tested with Predicate.filter per predicate,
+ * as Filter did, and with the matcher PredicateCompiler builds for them.
+ * Each predicate passes about 80% of the tuples, so most conjunctions test
+ * several.  The first pass of each warms the JIT and is not reported.
+ *
+ * Arguments: [tuples] [passes]
+ */
+public class CompiledPredicateBenchmark {
+
+    private static final int MAX = 1000;
+
+    public static void main(String[] args) {
+        int rows = BenchmarkUtil.intArg(args, 0, 1000000);
+        int passes = BenchmarkUtil.intArg(args, 1, 3);
+
+        TupleDesc td = Utility.getTupleDesc(4);
+        Tuple[] tuples = new Tuple[rows];
+        Random r = new Random(5);
+        for (int i = 0; i < rows; i++) {
+            tuples[i] = new Tuple(td);
+            for (int f = 0; f < 4; f++) {
+                tuples[i].setField(f, new IntField(r.nextInt(MAX)));
+            }
+        }
+        long sink = 0;
+
+        for (int k = 1; k <= 4; k++) {
+            List<Predicate> preds = new ArrayList<>();
+            for (int f = 0; f < k; f++) {
+                preds.add(f % 2 == 0
+                        ? new Predicate(f, Predicate.Op.LESS_THAN, new IntField(MAX * 8 / 10))
+                        : new Predicate(f, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(MAX * 2 / 10)));
+            }
+            Predicate[] array = preds.toArray(new Predicate[0]);
+            for (boolean compiled : new boolean[] {false, true}) {
+                for (int pass = 0; pass <= passes; pass++) {
+                    long start = System.nanoTime();
+                    int n = compiled
+                            ? countCompiled(tuples, PredicateCompiler.compile(preds, td))
+                            : countFiltered(tuples, array);
+                    long nanos = System.nanoTime() - start;
+                    sink += n;
+                    if (pass > 0) {
+                        System.out.printf("%d preds %-8s pass %d: %,d match in %.1f ms, %s tuples%n",
+                                k, compiled ? "compiled" : "filter", pass, n, nanos / 1e6,
+                                BenchmarkUtil.rate(rows, Math.max(1, nanos / 1000000)));
+                    }
+                }
+            }
+        }
+        System.out.println("(" + sink + ")");
+    }
+
+    private static int countFiltered(Tuple[] tuples, Predicate[] preds) {
+        int n = 0;
+        for (Tuple t : tuples) {
+            boolean all = true;
+            for (Predicate p : preds) {
+                if (!p.filter(t)) {
+                    all = false;
+                    break;
+                }
+            }
+            n += all ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static int countCompiled(Tuple[] tuples, PredicateCompiler.TupleMatcher m) {
+        int n = 0;
+        for (Tuple t : tuples) {
+            n += m.matches(t) ? 1 : 0;
+        }
+        return n;
+    }
+}
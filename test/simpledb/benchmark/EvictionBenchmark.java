@@ -0,0 +1,61 @@
+package simpledb.benchmark;
+
+import simpledb.common.Permissions;
+import simpledb.storage.BufferPool;
+import simpledb.storage.EvictionPolicy;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPageId;
+import simpledb.transaction.TransactionId;
+
+import java.util.Random;
+
+/**
+ * Compares the replacement policies on a workload that mixes sequential
+ * scans of a large table with skewed point lookups into a small hot table
+ * (standing in for the upper levels of an index).  Reports the hit ratio of
+ * the lookups, which is what a scan-resistant policy protects, and overall.
+ *
+ * Arguments: [scanPages] [hotPages] [poolPages] [lookupsPerScanPage] [scans]
+ */
+public class EvictionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int scanPages = BenchmarkUtil.intArg(args, 0, 2000);
+        int hotPages = BenchmarkUtil.intArg(args, 1, 64);
+        int poolPages = BenchmarkUtil.intArg(args, 2, 128);
+        int lookups = BenchmarkUtil.intArg(args, 3, 4);
+        int scans = BenchmarkUtil.intArg(args, 4, 3);
+
+        int rowsPerPage = (BufferPool.getPageSize() * 8) / (2 * 4 * 8 + 1);
+        HeapFile big = BenchmarkUtil.createRandomHeapFile(2, scanPages * rowsPerPage, 1000);
+        HeapFile hot = BenchmarkUtil.createRandomHeapFile(2, hotPages * rowsPerPage, 1000);
+
+        System.out.println("scanPages=" + scanPages + " hotPages=" + hotPages
+                + " pool=" + poolPages + " lookups/scan page=" + lookups);
+        for (EvictionPolicy.Kind kind : EvictionPolicy.Kind.values()) {
+            BufferPool bp = new BufferPool(poolPages, kind);
+            TransactionId tid = new TransactionId();
+            Random r = new Random(7);
+            long lookupHits = 0, lookupCount = 0;
+            long start = System.nanoTime();
+            for (int s = 0; s < scans; s++) {
+                for (int p = 0; p < scanPages; p++) {
+                    bp.getPage(tid, new HeapPageId(big.getId(), p), Permissions.READ_ONLY);
+                    for (int l = 0; l < lookups; l++) {
+                        // squaring a uniform draw skews lookups toward low page numbers
+                        double u = r.nextDouble();
+                        int pg = (int) (u * u * hotPages);
+                        long before = bp.getHitCount();
+                        bp.getPage(tid, new HeapPageId(hot.getId(), pg), Permissions.READ_ONLY);
+                        lookupHits += bp.getHitCount() - before;
+                        lookupCount++;
+                    }
+                }
+            }
+            long millis = (System.nanoTime() - start) / 1000000;
+            long total = bp.getHitCount() + bp.getMissCount();
+            System.out.printf("%-6s lookup hit ratio %5.1f%%  overall %5.1f%%  %d ms%n", kind,
+                    100.0 * lookupHits / lookupCount, 100.0 * bp.getHitCount() / total, millis);
+        }
+    }
+}
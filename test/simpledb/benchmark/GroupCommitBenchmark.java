@@ -0,0 +1,61 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.execution.Insert;
+import simpledb.storage.HeapFile;
+import simpledb.storage.LogFile;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleIterator;
+import simpledb.transaction.Transaction;
+
+import java.util.Collections;
+
+/**
+ * Commit throughput of small transactions, each inserting one row with
+ * the Insert operator and committing, with 1, 8 and 64 concurrent
+ * threads.  Every thread inserts into its own table, since the buffer pool
+ * does no page locking.  Each thread count is run with the given group
+ * commit settings; the number of commits sharing each force of the log
+ * shows how much of the fsync cost group commit saves (1 per commit is
+ * what a force per commit costs).
+ *
+ * Arguments: [millisPerRun] [maxWaitMicros] [batchSize]
+ */
+public class GroupCommitBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int millis = BenchmarkUtil.intArg(args, 0, 3000);
+        int waitMicros = BenchmarkUtil.intArg(args, 1, (int) LogFile.DEFAULT_GROUP_COMMIT_WAIT_MICROS);
+        int batch = BenchmarkUtil.intArg(args, 2, LogFile.DEFAULT_GROUP_COMMIT_BATCH);
+        int[] threadCounts = {1, 8, 64};
+
+        Database.resetBufferPool(4096);
+        LogFile log = Database.getLogFile();
+        log.setGroupCommit(waitMicros, batch);
+        final HeapFile[] tables = new HeapFile[threadCounts[threadCounts.length - 1]];
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = BenchmarkUtil.createHeapFile(2, 0, (row, col) -> row);
+        }
+
+        System.out.println("millis=" + millis + " maxWait=" + waitMicros + "us batch=" + batch);
+        for (int threads : threadCounts) {
+            long forcesBefore = log.getForceCount();
+            long commits = BenchmarkUtil.runFor(threads, millis, (t, r) -> {
+                Transaction tx = new Transaction();
+                tx.start();
+                Tuple row = Utility.getHeapTuple(r.nextInt(), 2);
+                Insert insert = new Insert(tx.getId(),
+                        new TupleIterator(row.getTupleDesc(), Collections.singletonList(row)),
+                        tables[t].getId());
+                insert.open();
+                insert.next();
+                insert.close();
+                tx.commit();
+            });
+            long forces = log.getForceCount() - forcesBefore;
+            System.out.printf("threads=%-3d commits %s, %.1f commits per force%n",
+                    threads, BenchmarkUtil.rate(commits, millis), (double) commits / Math.max(1, forces));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.execution.HashEquiJoin;
+import simpledb.execution.JoinPredicate;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.storage.HeapFile;
+import simpledb.transaction.TransactionId;
+
+/**
+ * Equi-join of a build table of unique keys with a probe table whose keys
+ * are drawn from twice the build keys, by HashEquiJoin with memory budgets
+ * from the given number of MB down to a sixteenth of it, so that more and
+ * more of the partitions spill to temporary files.  Each budget reads both
+ * tables once; the time spent beyond the largest budget's is that of writing
+ * and reading back the spilled tuples.  The first pass of each warms the JIT
+ * and is not reported.
+ *
+ * Arguments: [build rows] [probe rows] [budget MB] [passes]
+ */
+public class HashJoinSpillBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int buildRows = BenchmarkUtil.intArg(args, 0, 2000000);
+        int probeRows = BenchmarkUtil.intArg(args, 1, 4000000);
+        int budgetMB = BenchmarkUtil.intArg(args, 2, 256);
+        int passes = BenchmarkUtil.intArg(args, 3, 2);
+
+        HeapFile build = BenchmarkUtil.createHeapFile(2, buildRows, (row, col) -> col == 0 ? row : -row);
+        HeapFile probe = BenchmarkUtil.createHeapFile(2, probeRows,
+                (row, col) -> col == 0 ? (int) ((row * 2654435761L) % (2L * buildRows)) : row);
+        int poolPages = build.numPages() + probe.numPages() + 10;
+        System.out.println("pages=" + (poolPages - 10));
+        Database.resetBufferPool(poolPages);
+        JoinPredicate p = new JoinPredicate(0, Predicate.Op.EQUALS, 0);
+
+        for (long budget = (long) budgetMB << 20; budget >= ((long) budgetMB << 20) / 16; budget /= 4) {
+            for (int pass = 0; pass <= passes; pass++) {
+                TransactionId tid = new TransactionId();
+                long start = System.nanoTime();
+                HashEquiJoin join = new HashEquiJoin(p, new SeqScan(tid, build.getId(), "b"),
+                        new SeqScan(tid, probe.getId(), "p"), budget);
+                join.open();
+                int spilled = join.numSpilledPartitions();
+                long n = 0;
+                while (join.hasNext()) {
+                    join.next();
+                    n++;
+                }
+                join.close();
+                long nanos = System.nanoTime() - start;
+                Database.getBufferPool().transactionComplete(tid);
+                if (pass > 0) {
+                    System.out.printf("budget %4d MB pass %d: %,d tuples in %.1f ms, %2d partitions spilled, %s probe rows%n",
+                            budget >> 20, pass, n, nanos / 1e6, spilled,
+                            BenchmarkUtil.rate(probeRows, Math.max(1, nanos / 1000000)));
+                }
+            }
+        }
+        build.close();
+        probe.close();
+    }
+}
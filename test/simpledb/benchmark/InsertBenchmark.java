@@ -0,0 +1,98 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.execution.Insert;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Operator;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+
+/**
+ * Bulk-loads rows into an empty two-column table through the Insert
+ * operator, committing every batch rows.  Reports the load rate and how
+ * many pages the buffer pool was asked for per row, which is what the
+ * free-space map keeps from growing with the table.
+ *
+ * Arguments: [rows] [batch] [poolPages]
+ */
+public class InsertBenchmark {
+
+    /** Produces rows (i, i) for i from first to first + count - 1. */
+    private static class RowSource extends Operator {
+        private static final long serialVersionUID = 1L;
+
+        private final TupleDesc td = Utility.getTupleDesc(2);
+        private final int first;
+        private final int count;
+        private int next;
+
+        RowSource(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        @Override
+        protected Tuple fetchNext() {
+            if (next == count) {
+                return null;
+            }
+            Tuple t = new Tuple(td);
+            t.setField(0, new IntField(first + next));
+            t.setField(1, new IntField(first + next));
+            next++;
+            return t;
+        }
+
+        @Override
+        public void rewind() {
+            next = 0;
+        }
+
+        @Override
+        public OpIterator[] getChildren() {
+            return new OpIterator[0];
+        }
+
+        @Override
+        public void setChildren(OpIterator[] children) {
+        }
+
+        @Override
+        public TupleDesc getTupleDesc() {
+            return td;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = BenchmarkUtil.intArg(args, 0, 1000000);
+        int batch = BenchmarkUtil.intArg(args, 1, 10000);
+        int poolPages = BenchmarkUtil.intArg(args, 2, BufferPool.DEFAULT_PAGES);
+
+        HeapFile hf = BenchmarkUtil.createHeapFile(2, 0, (row, col) -> row);
+        BufferPool pool = Database.resetBufferPool(poolPages);
+
+        long start = System.currentTimeMillis();
+        for (int done = 0; done < rows; done += batch) {
+            TransactionId tid = new TransactionId();
+            Insert insert = new Insert(tid, new RowSource(done, Math.min(batch, rows - done)), hf.getId());
+            insert.open();
+            insert.next();
+            insert.close();
+            pool.transactionComplete(tid);
+        }
+        long millis = System.currentTimeMillis() - start;
+
+        long fetches = pool.getHitCount() + pool.getMissCount();
+        System.out.printf("%,d rows in %,d ms (%s), %d pages, %.3f page fetches per row%n",
+                rows, millis, BenchmarkUtil.rate(rows, millis), hf.numPages(), (double) fetches / rows);
+        hf.close();
+        new File(hf.getFile().getPath() + ".fsm").delete();
+    }
+}
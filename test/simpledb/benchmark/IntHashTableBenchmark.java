@@ -0,0 +1,161 @@
+package simpledb.benchmark;
+
+import simpledb.common.Type;
+import simpledb.execution.Aggregator;
+import simpledb.execution.IntHashTable;
+import simpledb.execution.IntegerAggregator;
+import simpledb.storage.Field;
+import simpledb.storage.IntField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The maps that joins and aggregates on INT keys used, against
+ * IntHashTable, on the same random keys:
+ * <ul>
+ * <li>group: SUM by group in a ConcurrentHashMap keyed by the group's
+ * string form, as IntegerAggregator did, against ids from an IntHashTable
+ * and an int array of sums, and IntegerAggregator itself, which now does the
+ * latter;
+ * <li>join: a HashMap from IntField to lists of rows, as HashEquiJoin did,
+ * against an IntHashTable with row chains, built from one row per distinct
+ * key and probed with all the rows' keys, half of which are changed to miss.
+ * </ul>
+ * Each is run for the given numbers of distinct keys.  The first pass of
+ * each warms the JIT and is not reported.
+ *
+ * Arguments: [rows] [passes]
+ */
+public class IntHashTableBenchmark {
+
+    private static final int[] KEYS = {100, 10000, 1000000};
+
+    // keeps the JIT from dropping the work
+    private static long sink;
+
+    public static void main(String[] args) {
+        int rows = BenchmarkUtil.intArg(args, 0, 4000000);
+        int passes = BenchmarkUtil.intArg(args, 1, 3);
+        int[] data = new int[rows];
+        TupleDesc td = new TupleDesc(new Type[] {Type.INT_TYPE, Type.INT_TYPE});
+        for (int distinct : KEYS) {
+            long seed = 42;
+            for (int i = 0; i < rows; i++) {
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                data[i] = (int) ((seed >>> 33) % distinct) * 7919;
+            }
+            Tuple[] tuples = new Tuple[rows];
+            for (int i = 0; i < rows; i++) {
+                tuples[i] = new Tuple(td);
+                tuples[i].setInt(0, data[i]);
+                tuples[i].setInt(1, i);
+            }
+            for (int pass = 0; pass <= passes; pass++) {
+                long t0 = System.nanoTime();
+                sink += groupStrings(data);
+                long t1 = System.nanoTime();
+                sink += groupInts(data);
+                long t2 = System.nanoTime();
+                sink += groupAggregator(tuples);
+                long t3 = System.nanoTime();
+                sink += joinFields(data, distinct);
+                long t4 = System.nanoTime();
+                sink += joinInts(data, distinct);
+                long t5 = System.nanoTime();
+                if (pass > 0) {
+                    System.out.printf("%,9d keys pass %d: group String map %7.1f ms, IntHashTable %6.1f ms, "
+                                    + "IntegerAggregator %6.1f ms; join Field map %7.1f ms, IntHashTable %6.1f ms%n",
+                            distinct, pass, (t1 - t0) / 1e6, (t2 - t1) / 1e6, (t3 - t2) / 1e6,
+                            (t4 - t3) / 1e6, (t5 - t4) / 1e6);
+                }
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static long groupStrings(int[] data) {
+        ConcurrentHashMap<String, Integer> sums = new ConcurrentHashMap<>();
+        for (int i = 0; i < data.length; i++) {
+            String key = new IntField(data[i]).toString();
+            if (sums.containsKey(key)) {
+                sums.put(key, sums.get(key) + i);
+            } else {
+                sums.put(key, i);
+            }
+        }
+        return sums.size();
+    }
+
+    private static long groupInts(int[] data) {
+        IntHashTable groups = new IntHashTable();
+        int[] sums = new int[16];
+        for (int i = 0; i < data.length; i++) {
+            int group = groups.add(data[i]);
+            if (group == sums.length) {
+                sums = Arrays.copyOf(sums, 2 * group);
+            }
+            sums[group] += i;
+        }
+        return groups.size();
+    }
+
+    private static long groupAggregator(Tuple[] tuples) {
+        IntegerAggregator agg = new IntegerAggregator(0, Type.INT_TYPE, 1, Aggregator.Op.SUM);
+        for (Tuple t : tuples) {
+            agg.mergeTupleIntoGroup(t);
+        }
+        return agg.hashCode();
+    }
+
+    /** @return the probe key of row i, which misses for odd i */
+    private static int probeKey(int[] data, int i) {
+        return data[i] + (i & 1);
+    }
+
+    private static long joinFields(int[] data, int distinct) {
+        Map<Object, List<Integer>> map = new HashMap<>();
+        for (int k = 0; k < distinct; k++) {
+            map.computeIfAbsent(new IntField(k * 7919), key -> new ArrayList<>()).add(k);
+        }
+        long matches = 0;
+        for (int i = 0; i < data.length; i++) {
+            Field key = new IntField(probeKey(data, i));
+            List<Integer> l = map.get(key);
+            if (l != null) {
+                for (Integer row : l) {
+                    matches += row;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static long joinInts(int[] data, int distinct) {
+        IntHashTable keys = new IntHashTable(distinct);
+        int[] first = new int[distinct];
+        int[] next = new int[distinct];
+        Arrays.fill(first, -1);
+        for (int k = 0; k < distinct; k++) {
+            int id = keys.add(k * 7919);
+            next[k] = first[id];
+            first[id] = k;
+        }
+        long matches = 0;
+        for (int i = 0; i < data.length; i++) {
+            int id = keys.get(probeKey(data, i));
+            for (int row = id < 0 ? -1 : first[id]; row >= 0; row = next[row]) {
+                matches += row;
+            }
+        }
+        return matches;
+    }
+}
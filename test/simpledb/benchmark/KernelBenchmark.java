@@ -0,0 +1,108 @@
+package simpledb.benchmark;
+
+import simpledb.execution.Aggregator;
+import simpledb.execution.IntKernels;
+import simpledb.execution.Predicate;
+import simpledb.storage.IntField;
+
+import java.util.Random;
+
+/**
+ * Selection with each Predicate.Op and MIN, MAX and SUM over a column of
+ * random ints, run a row at a time through IntField.compare and a switch
+ * per row, as the tuple operators do, and through IntKernels, a batch of
+ * 1024 rows per call as BatchFilter and BatchAggregate make them.  The
+ * range comparisons pass about half the rows, where a branch per row
+ * mispredicts most.  The first pass of each warms the JIT and is not
+ * reported.
+ *
+ * Arguments: [rows] [passes]
+ */
+public class KernelBenchmark {
+
+    private static final int BATCH = 1024;
+
+    public static void main(String[] args) {
+        int rows = BenchmarkUtil.intArg(args, 0, 10000000);
+        int passes = BenchmarkUtil.intArg(args, 1, 3);
+
+        // the column, cut into batches as a TupleBatch's are
+        int[][] batches = new int[(rows + BATCH - 1) / BATCH][];
+        Random r = new Random(1);
+        for (int b = 0; b < batches.length; b++) {
+            batches[b] = new int[Math.min(BATCH, rows - b * BATCH)];
+            for (int i = 0; i < batches[b].length; i++) {
+                batches[b][i] = r.nextInt(1000);
+            }
+        }
+        int[] out = new int[BATCH];
+        long sink = 0;
+
+        for (Predicate.Op op : new Predicate.Op[] {Predicate.Op.EQUALS, Predicate.Op.NOT_EQUALS,
+                Predicate.Op.GREATER_THAN, Predicate.Op.GREATER_THAN_OR_EQ,
+                Predicate.Op.LESS_THAN, Predicate.Op.LESS_THAN_OR_EQ}) {
+            for (boolean kernel : new boolean[] {false, true}) {
+                for (int pass = 0; pass <= passes; pass++) {
+                    long start = System.nanoTime();
+                    long n = 0;
+                    for (int[] v : batches) {
+                        if (kernel) {
+                            n += IntKernels.select(v, null, v.length, op, 500, out);
+                        } else {
+                            int k = 0;
+                            for (int i = 0; i < v.length; i++) {
+                                if (IntField.compare(op, v[i], 500)) out[k++] = i;
+                            }
+                            n += k;
+                        }
+                    }
+                    long nanos = System.nanoTime() - start;
+                    sink += n;
+                    if (pass > 0) {
+                        report(op.toString(), kernel, pass, rows, nanos);
+                    }
+                }
+            }
+        }
+
+        for (Aggregator.Op op : new Aggregator.Op[] {Aggregator.Op.MIN, Aggregator.Op.MAX, Aggregator.Op.SUM}) {
+            for (boolean kernel : new boolean[] {false, true}) {
+                for (int pass = 0; pass <= passes; pass++) {
+                    long start = System.nanoTime();
+                    int acc = IntKernels.identity(op);
+                    for (int[] v : batches) {
+                        if (kernel) {
+                            acc = IntKernels.fold(op, acc, v, null, v.length);
+                        } else {
+                            for (int x : v) {
+                                acc = apply(op, acc, x);
+                            }
+                        }
+                    }
+                    long nanos = System.nanoTime() - start;
+                    sink += acc;
+                    if (pass > 0) {
+                        report(op.toString(), kernel, pass, rows, nanos);
+                    }
+                }
+            }
+        }
+        System.out.println("(" + sink + ")");
+    }
+
+    private static int apply(Aggregator.Op op, int acc, int x) {
+        switch (op) {
+            case MIN:
+                return Math.min(acc, x);
+            case MAX:
+                return Math.max(acc, x);
+            default:
+                return acc + x;
+        }
+    }
+
+    private static void report(String op, boolean kernel, int pass, int rows, long nanos) {
+        System.out.printf("%-5s %-7s pass %d: %.1f ms, %s rows%n", op, kernel ? "kernel" : "per-row",
+                pass, nanos / 1e6, BenchmarkUtil.rate(rows, Math.max(1, nanos / 1000000)));
+    }
+}
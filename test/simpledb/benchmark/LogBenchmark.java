@@ -0,0 +1,84 @@
+package simpledb.benchmark;
+
+import simpledb.common.Utility;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.LogFile;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+/**
+ * Writes UPDATE records for heap pages filled to a given percentage, then
+ * reads the whole log back through LogFile.print(), which decodes every
+ * page image the way recovery does.  Reports the write rate, the read
+ * rate and the bytes per record next to what the previous format, with
+ * class names and raw page data, took for the same records.
+ *
+ * Arguments: [records] [fillPercent]
+ */
+public class LogBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int records = BenchmarkUtil.intArg(args, 0, 20000);
+        int fill = BenchmarkUtil.intArg(args, 1, 50);
+
+        HeapFile hf = BenchmarkUtil.createHeapFile(2, 0, (row, col) -> row);
+        HeapPage[] pages = new HeapPage[16];
+        Random r = new Random(42);
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new HeapPage(new HeapPageId(hf.getId(), i), HeapPage.createEmptyPageData());
+            int tuples = pages[i].getNumEmptySlots() * fill / 100;
+            for (int t = 0; t < tuples; t++) {
+                pages[i].insertTuple(Utility.getHeapTuple(r.nextInt(), 2));
+            }
+        }
+
+        File f = File.createTempFile("benchlog", ".dat");
+        f.deleteOnExit();
+        LogFile log = new LogFile(f);
+        TransactionId tid = new TransactionId();
+        log.logXactionBegin(tid);
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            log.logWrite(tid, pages[i % pages.length], pages[(i + 1) % pages.length]);
+        }
+        log.force();
+        long writeNanos = System.nanoTime() - start;
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        start = System.nanoTime();
+        try {
+            log.print();
+        } finally {
+            System.setOut(out);
+        }
+        long readNanos = System.nanoTime() - start;
+
+        // type, tid, two images of class names, id and raw data, start offset
+        int image = 2 + HeapPage.class.getName().length() + 2 + HeapPageId.class.getName().length()
+                + 4 + 2 * 4 + 4 + BufferPool.getPageSize();
+        long oldBytes = 4 + 8 + 2L * image + 8;
+        double mb = records * 2.0 * BufferPool.getPageSize() / (1 << 20);
+        System.out.printf("%,d records, pages %d%% full: %,d bytes per record (was %,d)%n",
+                records, fill, f.length() / records, oldBytes);
+        System.out.printf("write %,.0f records/s (%,.0f MB/s of page images), read %,.0f records/s%n",
+                records * 1e9 / writeNanos, mb * 1e9 / writeNanos, records * 1e9 / readNanos);
+        hf.close();
+        f.delete();
+    }
+}
@@ -0,0 +1,78 @@
+package simpledb.benchmark;
+
+import simpledb.storage.BufferPool;
+import simpledb.storage.DbFileChannel;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+
+import java.io.RandomAccessFile;
+
+/**
+ * Pages per second of page I/O through one FileChannel kept open per file,
+ * as HeapFile and BTreeFile now do, against the previous approach of
+ * opening a RandomAccessFile for every page.  Reads hit the OS page cache,
+ * so the difference is the per-page syscall and allocation overhead.  The
+ * readPage lines include decoding the page, which both approaches share.
+ *
+ * Arguments: [pages] [millisPerRun]
+ */
+public class PageIoBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int pages = BenchmarkUtil.intArg(args, 0, 10000);
+        int millis = BenchmarkUtil.intArg(args, 1, 2000);
+        int rowsPerPage = (BufferPool.getPageSize() * 8) / (2 * 4 * 8 + 1);
+        final HeapFile hf = BenchmarkUtil.createRandomHeapFile(2, pages * rowsPerPage, 1000);
+        final int numPages = hf.numPages();
+        final int pageSize = BufferPool.getPageSize();
+        final DbFileChannel channel = new DbFileChannel(hf.getFile());
+
+        // a fixed set of pages to write back, so writes do not pay for decoding
+        final HeapPage[] dirty = new HeapPage[Math.min(numPages, 256)];
+        for (int i = 0; i < dirty.length; i++) {
+            dirty[i] = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), i));
+        }
+
+        System.out.println("pages=" + numPages);
+        long ops = BenchmarkUtil.runFor(1, millis, (t, r) -> {
+            byte[] input = new byte[pageSize];
+            try (RandomAccessFile rf = new RandomAccessFile(hf.getFile(), "r")) {
+                rf.seek((long) r.nextInt(numPages) * pageSize);
+                rf.read(input);
+            }
+        });
+        System.out.println("raw read,  open per page  " + BenchmarkUtil.rate(ops, millis));
+        ops = BenchmarkUtil.runFor(1, millis, (t, r) ->
+                channel.read(DbFileChannel.scratchBuffer(pageSize), (long) r.nextInt(numPages) * pageSize));
+        System.out.println("raw read,  FileChannel    " + BenchmarkUtil.rate(ops, millis));
+
+        ops = BenchmarkUtil.runFor(1, millis, (t, r) -> {
+            HeapPageId pid = new HeapPageId(hf.getId(), r.nextInt(numPages));
+            byte[] input = new byte[pageSize];
+            try (RandomAccessFile rf = new RandomAccessFile(hf.getFile(), "r")) {
+                rf.seek((long) pid.getPageNumber() * pageSize);
+                rf.read(input);
+            }
+            new HeapPage(pid, input);
+        });
+        System.out.println("readPage,  open per page  " + BenchmarkUtil.rate(ops, millis));
+        ops = BenchmarkUtil.runFor(1, millis, (t, r) ->
+                hf.readPage(new HeapPageId(hf.getId(), r.nextInt(numPages))));
+        System.out.println("readPage,  FileChannel    " + BenchmarkUtil.rate(ops, millis));
+
+        ops = BenchmarkUtil.runFor(1, millis, (t, r) -> {
+            HeapPage page = dirty[r.nextInt(dirty.length)];
+            try (RandomAccessFile rf = new RandomAccessFile(hf.getFile(), "rw")) {
+                rf.seek((long) page.getId().getPageNumber() * pageSize);
+                rf.write(page.getPageData());
+            }
+        });
+        System.out.println("writePage, open per page  " + BenchmarkUtil.rate(ops, millis));
+        ops = BenchmarkUtil.runFor(1, millis, (t, r) -> hf.writePage(dirty[r.nextInt(dirty.length)]));
+        System.out.println("writePage, FileChannel    " + BenchmarkUtil.rate(ops, millis));
+
+        channel.close();
+        hf.close();
+    }
+}
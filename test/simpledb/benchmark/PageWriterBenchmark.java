@@ -0,0 +1,72 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Permissions;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.Page;
+import simpledb.transaction.TransactionId;
+
+import java.util.Random;
+
+/**
+ * Dirties random pages of a table several times the size of the buffer
+ * pool, with and without the background writer, at a fixed request rate.
+ * Without the writer nearly every miss evicts a dirty page and writes it,
+ * forcing the log, on the requesting thread; with it most victims are
+ * already clean.  Reports the mean and worst getPage latency next to the
+ * pool's flush metrics.
+ *
+ * Arguments: [tablePages] [poolPages] [requestsPerSecond] [seconds] [writerPagesPerSecond]
+ */
+public class PageWriterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int pages = BenchmarkUtil.intArg(args, 0, 2000);
+        int poolPages = BenchmarkUtil.intArg(args, 1, 200);
+        int rate = BenchmarkUtil.intArg(args, 2, 200);
+        int seconds = BenchmarkUtil.intArg(args, 3, 5);
+        int writerRate = BenchmarkUtil.intArg(args, 4, BufferPool.DEFAULT_WRITER_PAGES_PER_SECOND);
+
+        int rowsPerPage = (BufferPool.getPageSize() * 8) / (2 * 4 * 8 + 1);
+        HeapFile hf = BenchmarkUtil.createRandomHeapFile(2, pages * rowsPerPage, 1 << 20);
+        System.out.println("pages=" + hf.numPages() + " pool=" + poolPages + " rate=" + rate + "/s");
+
+        for (boolean background : new boolean[]{false, true}) {
+            BufferPool pool = Database.resetBufferPool(poolPages);
+            pool.setPrefetchWindow(0);
+            if (background) {
+                pool.startBackgroundWriter(writerRate, BufferPool.DEFAULT_WRITER_CLEAN_FRACTION, 0);
+            }
+            TransactionId tid = new TransactionId();
+            Random r = new Random(42);
+            long interval = 1000000000L / rate;
+            long next = System.nanoTime();
+            long end = next + seconds * 1000000000L;
+            long ops = 0, totalNanos = 0, maxNanos = 0;
+            while (next < end) {
+                while (System.nanoTime() < next) {
+                    Thread.yield();
+                }
+                long start = System.nanoTime();
+                Page p = pool.getPage(tid, new HeapPageId(hf.getId(), r.nextInt(pages)),
+                        Permissions.READ_WRITE);
+                long nanos = System.nanoTime() - start;
+                p.markDirty(true, tid);
+                ops++;
+                totalNanos += nanos;
+                maxNanos = Math.max(maxNanos, nanos);
+                next += interval;
+            }
+            int dirty = pool.getDirtyPageCount();
+            pool.stopBackgroundWriter();
+            System.out.printf("writer %-3s: %,d requests, getPage mean %.1f us, max %.1f ms; "
+                            + "%,d pages written, mean %.1f us, max %.1f ms; %d dirty at end%n",
+                    background ? "on" : "off", ops, totalNanos / 1e3 / ops, maxNanos / 1e6,
+                    pool.getFlushCount(), pool.getFlushTimeNanos() / 1e3 / Math.max(1, pool.getFlushCount()),
+                    pool.getMaxFlushTimeNanos() / 1e6, dirty);
+        }
+        hf.close();
+    }
+}
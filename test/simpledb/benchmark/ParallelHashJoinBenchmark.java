@@ -0,0 +1,68 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.execution.HashEquiJoin;
+import simpledb.execution.JoinPredicate;
+import simpledb.execution.OpIterator;
+import simpledb.execution.ParallelHashEquiJoin;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.storage.HeapFile;
+import simpledb.transaction.TransactionId;
+
+/**
+ * Equi-join of a build table of unique keys with a larger probe table whose
+ * keys are drawn from twice the build keys, so that about half the probe
+ * tuples match, by HashEquiJoin and by ParallelHashEquiJoin with 1, 2, 4 and
+ * so on up to the given number of workers per side.  Both tables stay in the
+ * pool, so the join is bound by the CPU; the speedup is limited by the number
+ * of cores, which is printed.  The first pass of each warms the JIT and is
+ * not reported.
+ *
+ * Arguments: [build rows] [probe rows] [max workers] [passes]
+ */
+public class ParallelHashJoinBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int buildRows = BenchmarkUtil.intArg(args, 0, 1000000);
+        int probeRows = BenchmarkUtil.intArg(args, 1, 10000000);
+        int maxWorkers = BenchmarkUtil.intArg(args, 2, 8);
+        int passes = BenchmarkUtil.intArg(args, 3, 3);
+
+        HeapFile build = BenchmarkUtil.createHeapFile(2, buildRows, (row, col) -> col == 0 ? row : -row);
+        HeapFile probe = BenchmarkUtil.createHeapFile(2, probeRows,
+                (row, col) -> col == 0 ? (int) ((row * 2654435761L) % (2L * buildRows)) : row);
+        int poolPages = build.numPages() + probe.numPages() + 10;
+        System.out.println("pages=" + (poolPages - 10) + " cores=" + Runtime.getRuntime().availableProcessors());
+        Database.resetBufferPool(poolPages);
+        JoinPredicate p = new JoinPredicate(0, Predicate.Op.EQUALS, 0);
+
+        for (int workers = 0; workers <= maxWorkers; workers = Math.max(1, 2 * workers)) {
+            for (int pass = 0; pass <= passes; pass++) {
+                TransactionId tid = new TransactionId();
+                long start = System.nanoTime();
+                SeqScan s1 = new SeqScan(tid, build.getId(), "b");
+                SeqScan s2 = new SeqScan(tid, probe.getId(), "p");
+                // 0 workers stands for the serial HashEquiJoin
+                OpIterator join = workers == 0 ? new HashEquiJoin(p, s1, s2)
+                        : new ParallelHashEquiJoin(p, s1.split(workers), s2.split(workers));
+                join.open();
+                long n = 0;
+                while (join.hasNext()) {
+                    join.next();
+                    n++;
+                }
+                join.close();
+                long nanos = System.nanoTime() - start;
+                Database.getBufferPool().transactionComplete(tid);
+                if (pass > 0) {
+                    System.out.printf("%-14s pass %d: %,d tuples in %.1f ms, %s probe rows%n",
+                            workers == 0 ? "HashEquiJoin" : workers + " workers", pass, n, nanos / 1e6,
+                            BenchmarkUtil.rate(probeRows, Math.max(1, nanos / 1000000)));
+                }
+            }
+        }
+        build.close();
+        probe.close();
+    }
+}
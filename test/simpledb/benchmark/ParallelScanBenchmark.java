@@ -0,0 +1,80 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.optimizer.LogicalPlan;
+import simpledb.optimizer.TableStats;
+import simpledb.storage.HeapFile;
+import simpledb.transaction.TransactionId;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * SELECT c0, SUM(c1) FROM t WHERE c2 &lt; x GROUP BY c0 over a table of
+ * random INT columns, planned by LogicalPlan with 1, 2, 4 and so on up to
+ * the given number of workers.  With more than one, the scan is split into
+ * morsels between the workers, each of which also sums its own share, and
+ * an Exchange gathers the partial sums.  The whole table stays in the pool,
+ * so the scan is bound by the CPU; the speedup is limited by the number of
+ * cores, which is printed.  The first pass of each warms the JIT and is not
+ * reported.
+ *
+ * Arguments: [rows] [max workers] [passes]
+ */
+public class ParallelScanBenchmark {
+
+    private static final int MAX = 1 << 20;
+    private static final int GROUPS = 100;
+
+    public static void main(String[] args) throws Exception {
+        int rows = BenchmarkUtil.intArg(args, 0, 2000000);
+        int maxWorkers = BenchmarkUtil.intArg(args, 1, 8);
+        int passes = BenchmarkUtil.intArg(args, 2, 3);
+
+        // named fields, so the query can refer to them
+        HeapFile hf = new HeapFile(BenchmarkUtil.writeHeapFile(3, rows,
+                (row, col) -> col == 0 ? row % GROUPS : (int) ((row * 2654435761L + col) % MAX)),
+                Utility.getTupleDesc(3, "c"));
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        int poolPages = hf.numPages() + 10;
+        System.out.println("pages=" + hf.numPages() + " pool=" + poolPages
+                + " cores=" + Runtime.getRuntime().availableProcessors());
+        Database.resetBufferPool(poolPages);
+        String name = Database.getCatalog().getTableName(hf.getId());
+        Map<String, TableStats> stats = new HashMap<>();
+        stats.put(name, new TableStats(hf.getId(), 1000));
+
+        for (int workers = 1; workers <= maxWorkers; workers *= 2) {
+            for (int pass = 0; pass <= passes; pass++) {
+                TransactionId tid = new TransactionId();
+                long start = System.nanoTime();
+                LogicalPlan lp = new LogicalPlan();
+                lp.setWorkers(workers);
+                lp.addScan(hf.getId(), "t");
+                lp.addFilter("t.c2", Predicate.Op.LESS_THAN, String.valueOf(MAX / 2));
+                lp.addProjectField("t.c0", null);
+                lp.addProjectField("t.c1", "SUM");
+                lp.addAggregate("SUM", "t.c1", "t.c0");
+                OpIterator op = lp.physicalPlan(tid, stats, false);
+                op.open();
+                long n = 0;
+                while (op.hasNext()) {
+                    op.next();
+                    n++;
+                }
+                op.close();
+                long nanos = System.nanoTime() - start;
+                Database.getBufferPool().transactionComplete(tid);
+                if (pass > 0) {
+                    System.out.printf("%2d workers pass %d: %,d groups in %.1f ms, %s input rows%n",
+                            workers, pass, n, nanos / 1e6, BenchmarkUtil.rate(rows, Math.max(1, nanos / 1000000)));
+                }
+            }
+        }
+        hf.close();
+    }
+}
@@ -0,0 +1,83 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.Page;
+import simpledb.storage.PageId;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Full-table SeqScan time with read-ahead windows of 0 (off) and up, on a
+ * table whose reads each take a fixed latency to stand in for a disk or
+ * network volume that the OS page cache cannot hide.  Reports the scan time
+ * and how many pages were read ahead, used and wasted.
+ *
+ * Arguments: [pages] [readLatencyMicros] [windows...]
+ */
+public class PrefetchBenchmark {
+
+    /** A HeapFile whose every page read takes at least latencyNanos. */
+    private static class SlowHeapFile extends HeapFile {
+        private final long latencyNanos;
+
+        SlowHeapFile(File f, long latencyNanos) {
+            super(f, Utility.getTupleDesc(2));
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public Page readPage(PageId pid) throws NoSuchElementException {
+            long until = System.nanoTime() + latencyNanos;
+            Page page = super.readPage(pid);
+            for (long left; (left = until - System.nanoTime()) > 0; ) {
+                LockSupport.parkNanos(left);
+            }
+            return page;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int pages = BenchmarkUtil.intArg(args, 0, 2000);
+        int latencyMicros = BenchmarkUtil.intArg(args, 1, 200);
+        int[] windows = {0, 4, 16, 32};
+        if (args.length > 2) {
+            windows = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                windows[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+
+        int rowsPerPage = (BufferPool.getPageSize() * 8) / (2 * 4 * 8 + 1);
+        File f = BenchmarkUtil.writeHeapFile(2, pages * rowsPerPage, (row, col) -> row);
+        HeapFile hf = new SlowHeapFile(f, TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+        Database.getCatalog().addTable(hf, "slow");
+        System.out.println("pages=" + hf.numPages() + " latency=" + latencyMicros + "us");
+
+        for (int window : windows) {
+            BufferPool pool = Database.resetBufferPool(pages + 100);
+            pool.setPrefetchWindow(window);
+            long start = System.nanoTime();
+            SeqScan scan = new SeqScan(new TransactionId(), hf.getId());
+            scan.open();
+            long rows = 0;
+            while (scan.hasNext()) {
+                scan.next();
+                rows++;
+            }
+            scan.close();
+            long millis = (System.nanoTime() - start) / 1000000;
+            System.out.printf("window %2d: %,d rows in %,d ms; read ahead %d, used %d, unused %d%n",
+                    window, rows, millis, pool.getPrefetchIssuedCount(),
+                    pool.getPrefetchUsedCount(), pool.getPrefetchUnusedCount());
+        }
+        hf.close();
+    }
+}
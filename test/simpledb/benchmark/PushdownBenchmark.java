@@ -0,0 +1,80 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.execution.Filter;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.execution.Project;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.transaction.TransactionId;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SELECT c1 FROM t WHERE c0 &lt; x AND c2 &lt; x over a table of random INT
+ * columns, run as Project over two Filters over a SeqScan, and as a SeqScan
+ * that tests both predicates and picks out c1 as it reads each page.  The
+ * values are random, so the zone map skips nothing and the difference is
+ * the Tuples that are never built.  x is chosen for each selectivity of
+ * the conjunction.  The first pass of each warms the JIT and is not
+ * reported.
+ *
+ * Arguments: [rows] [columns] [passes]
+ */
+public class PushdownBenchmark {
+
+    private static final int MAX = 1 << 20;
+
+    public static void main(String[] args) throws Exception {
+        int rows = BenchmarkUtil.intArg(args, 0, 1000000);
+        int columns = BenchmarkUtil.intArg(args, 1, 8);
+        int passes = BenchmarkUtil.intArg(args, 2, 3);
+
+        HeapFile hf = BenchmarkUtil.createRandomHeapFile(columns, rows, MAX);
+        // the whole table stays in the pool, so no pass waits on the disk
+        int poolPages = hf.numPages() + 10;
+        System.out.println("pages=" + hf.numPages() + " pool=" + poolPages);
+
+        for (double selectivity : new double[] {0.01, 0.1, 0.5}) {
+            IntField x = new IntField((int) (MAX * Math.sqrt(selectivity)));
+            List<Predicate> preds = Arrays.asList(
+                    new Predicate(0, Predicate.Op.LESS_THAN, x),
+                    new Predicate(2, Predicate.Op.LESS_THAN, x));
+            for (boolean pushed : new boolean[] {false, true}) {
+                Database.resetBufferPool(poolPages);
+                for (int pass = 0; pass <= passes; pass++) {
+                    TransactionId tid = new TransactionId();
+                    long start = System.nanoTime();
+                    OpIterator op;
+                    if (pushed) {
+                        op = new SeqScan(tid, hf.getId(), "t", preds, new int[] {1});
+                    } else {
+                        op = new Project(Collections.singletonList(1), new Type[] {Type.INT_TYPE},
+                                new Filter(preds.get(1), new Filter(preds.get(0),
+                                        new SeqScan(tid, hf.getId(), "t"))));
+                    }
+                    op.open();
+                    long n = 0;
+                    while (op.hasNext()) {
+                        op.next();
+                        n++;
+                    }
+                    op.close();
+                    long nanos = System.nanoTime() - start;
+                    if (pass > 0) {
+                        System.out.printf("%4.0f%% %-7s pass %d: %,d rows in %.1f ms, %s input rows%n",
+                                selectivity * 100, pushed ? "pushed" : "filter", pass, n, nanos / 1e6,
+                                BenchmarkUtil.rate(rows, nanos / 1000000));
+                    }
+                }
+            }
+        }
+        hf.close();
+    }
+}
@@ -0,0 +1,121 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Permissions;
+import simpledb.common.Utility;
+import simpledb.execution.SeqScan;
+import simpledb.storage.*;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the hit ratio of OLTP-style point reads into a small table,
+ * first on their own and then while another thread repeatedly scans a table
+ * several times the size of the buffer pool.  The scan runs once through the
+ * shared pool and once through a private ring.
+ *
+ * Point reads pause thinkMicros between lookups, so that hot pages are not
+ * touched so often that no policy would ever consider evicting them.
+ *
+ * Arguments: [hotPages] [scanPages] [poolPages] [millisPerPhase] [thinkMicros] [policy]
+ * where policy is one of the {@link EvictionPolicy.Kind} names.
+ */
+public class ScanRingBenchmark {
+
+    /** Counts page reads so that misses on the hot table can be attributed. */
+    private static class CountingHeapFile extends HeapFile {
+        final LongAdder reads = new LongAdder();
+
+        CountingHeapFile(File f, TupleDesc td) {
+            super(f, td);
+        }
+
+        @Override
+        public Page readPage(PageId pid) {
+            reads.increment();
+            return super.readPage(pid);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int hotPages = BenchmarkUtil.intArg(args, 0, 60);
+        int scanPages = BenchmarkUtil.intArg(args, 1, 1000);
+        int poolPages = BenchmarkUtil.intArg(args, 2, 100);
+        int millis = BenchmarkUtil.intArg(args, 3, 2000);
+        int think = BenchmarkUtil.intArg(args, 4, 100);
+        EvictionPolicy.Kind policy = args.length > 5
+                ? EvictionPolicy.Kind.valueOf(args[5]) : EvictionPolicy.Kind.CLOCK;
+
+        int rowsPerPage = (BufferPool.getPageSize() * 8) / (2 * 4 * 8 + 1);
+        CountingHeapFile hot = new CountingHeapFile(
+                BenchmarkUtil.writeHeapFile(2, hotPages * rowsPerPage, (row, col) -> row),
+                Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(hot, "hot");
+        HeapFile big = BenchmarkUtil.createRandomHeapFile(2, scanPages * rowsPerPage, 1000);
+
+        System.out.println("hotPages=" + hotPages + " scanPages=" + scanPages
+                + " pool=" + poolPages + " policy=" + policy);
+        point(hot, poolPages, policy, millis, think, null, "no scan");
+        point(hot, poolPages, policy, millis, think, big, "scan via shared pool");
+        point(hot, poolPages, policy, millis, think, big, "scan via ring");
+    }
+
+    private static void point(CountingHeapFile hot, int poolPages, EvictionPolicy.Kind policy,
+            int millis, int think, HeapFile big, String label) throws Exception {
+        Database.resetBufferPool(new BufferPool(poolPages, policy));
+        if (label.endsWith("shared pool")) {
+            Database.getBufferPool().setRingThreshold(Double.MAX_VALUE);
+        }
+        TransactionId tid = new TransactionId();
+        for (int p = 0; p < hot.numPages(); p++) {
+            Database.getBufferPool().getPage(tid, new HeapPageId(hot.getId(), p), Permissions.READ_ONLY);
+        }
+
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final LongAdder scanned = new LongAdder();
+        Thread scanner = null;
+        if (big != null) {
+            scanner = new Thread(() -> {
+                try {
+                    SeqScan scan = new SeqScan(new TransactionId(), big.getId());
+                    while (!stop.get()) {
+                        scan.open();
+                        while (!stop.get() && scan.hasNext()) {
+                            scan.next();
+                            scanned.increment();
+                        }
+                        scan.close();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            scanner.start();
+        }
+
+        long readsBefore = hot.reads.sum();
+        long lookups = 0;
+        Random r = new Random(3);
+        long end = System.nanoTime() + millis * 1000000L;
+        while (System.nanoTime() < end) {
+            Database.getBufferPool().getPage(tid,
+                    new HeapPageId(hot.getId(), r.nextInt(hot.numPages())), Permissions.READ_ONLY);
+            lookups++;
+            if (think > 0) {
+                LockSupport.parkNanos(think * 1000L);
+            }
+        }
+        stop.set(true);
+        if (scanner != null) {
+            scanner.join();
+        }
+        long misses = hot.reads.sum() - readsBefore;
+        System.out.printf("%-22s point hit ratio %6.2f%%  lookups %,d  scanned tuples %,d%n",
+                label, 100.0 * (lookups - misses) / lookups, lookups, scanned.sum());
+    }
+}
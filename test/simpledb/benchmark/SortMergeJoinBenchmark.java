@@ -0,0 +1,80 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.execution.HashEquiJoin;
+import simpledb.execution.Join;
+import simpledb.execution.JoinPredicate;
+import simpledb.execution.OpIterator;
+import simpledb.execution.OrderBy;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.execution.SortMergeJoin;
+import simpledb.storage.HeapFile;
+import simpledb.transaction.TransactionId;
+
+/**
+ * Two joins of tables of random INT keys, each by the operators that can
+ * run it:
+ * <ul>
+ * <li>equi-join of inputs sorted on their keys by an OrderBy, as a
+ * BTreeScan on the key would be: HashEquiJoin, and SortMergeJoin, which
+ * merges them as they come;
+ * <li>band join, a.c0 &lt; b.c0 on small tables, as most rows of such a
+ * join pair up: nested loops Join, and SortMergeJoin, which sorts both
+ * and walks a cursor instead of comparing every pair.
+ * </ul>
+ * Both tables stay in the pool.  The first pass of each warms the JIT and is
+ * not reported.
+ *
+ * Arguments: [equi-join rows] [band join rows] [passes]
+ */
+public class SortMergeJoinBenchmark {
+
+    private interface JoinMaker {
+        OpIterator make(TransactionId tid);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = BenchmarkUtil.intArg(args, 0, 1000000);
+        int bandRows = BenchmarkUtil.intArg(args, 1, 3000);
+        int passes = BenchmarkUtil.intArg(args, 2, 3);
+
+        HeapFile a = BenchmarkUtil.createRandomHeapFile(2, rows, rows);
+        HeapFile b = BenchmarkUtil.createRandomHeapFile(2, rows, rows);
+        HeapFile c = BenchmarkUtil.createRandomHeapFile(2, bandRows, 1 << 20);
+        HeapFile d = BenchmarkUtil.createRandomHeapFile(2, bandRows, 1 << 20);
+        Database.resetBufferPool(a.numPages() + b.numPages() + c.numPages() + d.numPages() + 10);
+
+        JoinPredicate eq = new JoinPredicate(0, Predicate.Op.EQUALS, 0);
+        run("equi HashEquiJoin", passes, tid -> new HashEquiJoin(eq, sorted(tid, a), sorted(tid, b)));
+        run("equi SortMergeJoin", passes, tid -> new SortMergeJoin(eq, sorted(tid, a), sorted(tid, b)));
+        JoinPredicate lt = new JoinPredicate(0, Predicate.Op.LESS_THAN, 0);
+        run("band Join", passes, tid -> new Join(lt, new SeqScan(tid, c.getId()), new SeqScan(tid, d.getId())));
+        run("band SortMergeJoin", passes,
+                tid -> new SortMergeJoin(lt, new SeqScan(tid, c.getId()), new SeqScan(tid, d.getId())));
+    }
+
+    private static OpIterator sorted(TransactionId tid, HeapFile f) {
+        return new OrderBy(0, true, new SeqScan(tid, f.getId()));
+    }
+
+    private static void run(String name, int passes, JoinMaker maker) throws Exception {
+        for (int pass = 0; pass <= passes; pass++) {
+            TransactionId tid = new TransactionId();
+            long start = System.nanoTime();
+            OpIterator join = maker.make(tid);
+            join.open();
+            long n = 0;
+            while (join.hasNext()) {
+                join.next();
+                n++;
+            }
+            join.close();
+            long nanos = System.nanoTime() - start;
+            Database.getBufferPool().transactionComplete(tid);
+            if (pass > 0) {
+                System.out.printf("%-20s pass %d: %,d tuples in %.1f ms%n", name, pass, n, nanos / 1e6);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapFileEncoder;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionId;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Random;
+
+/**
+ * Stores the same (INT, name) rows, with names of 4 to 16 characters, in a
+ * STRING column and in a VARCHAR column, both converted from text with
+ * HeapFileEncoder.  Reports rows per page, file size and full-table SeqScan
+ * time through a small buffer pool for each.  The first pass of each
+ * warms the OS page cache and the JIT and is not reported.
+ *
+ * Arguments: [rows] [poolPages] [passes]
+ */
+public class VarcharBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = BenchmarkUtil.intArg(args, 0, 1000000);
+        int poolPages = BenchmarkUtil.intArg(args, 1, BufferPool.DEFAULT_PAGES);
+        int passes = BenchmarkUtil.intArg(args, 2, 3);
+
+        File text = File.createTempFile("names", ".txt");
+        text.deleteOnExit();
+        Random r = new Random(42);
+        try (BufferedWriter w = new BufferedWriter(new FileWriter(text))) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < rows; i++) {
+                sb.setLength(0);
+                for (int n = 4 + r.nextInt(13); n > 0; n--) {
+                    sb.append((char) ('a' + r.nextInt(26)));
+                }
+                w.write(i + "," + sb + "\n");
+            }
+        }
+
+        for (Type type : new Type[] {Type.STRING_TYPE, Type.VARCHAR_TYPE}) {
+            Type[] types = {Type.INT_TYPE, type};
+            File f = File.createTempFile("names", ".dat");
+            f.deleteOnExit();
+            HeapFileEncoder.convert(text, f, BufferPool.getPageSize(), 2, types);
+            HeapFile hf = new HeapFile(f, new TupleDesc(types));
+            Database.getCatalog().addTable(hf, type.name());
+            System.out.printf("%-12s %,d pages, %,.1f rows/page, %,d KB%n",
+                    type, hf.numPages(), (double) rows / hf.numPages(), f.length() >> 10);
+
+            for (int pass = 0; pass <= passes; pass++) {
+                Database.resetBufferPool(poolPages);
+                long start = System.nanoTime();
+                SeqScan scan = new SeqScan(new TransactionId(), hf.getId());
+                scan.open();
+                long n = 0;
+                while (scan.hasNext()) {
+                    scan.next();
+                    n++;
+                }
+                scan.close();
+                long nanos = System.nanoTime() - start;
+                if (pass > 0) {
+                    System.out.printf("%-12s pass %d: %,d rows in %d ms%n", type, pass, n, nanos / 1000000);
+                }
+            }
+            hf.close();
+            f.delete();
+        }
+    }
+}
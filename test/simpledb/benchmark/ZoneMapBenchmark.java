@@ -0,0 +1,61 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.execution.Filter;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.transaction.TransactionId;
+
+/**
+ * Range queries of selectivity 0.1%, 1% and 10% on a two-INT table whose
+ * first field counts up with the row, run as a Filter over a SeqScan and
+ * as a SeqScan carrying the predicate, which skips pages by the heap
+ * file's zone map.  Reports time and pages read for each.  The first pass
+ * of each warms the OS page cache, the JIT and the zone map and is not
+ * reported.
+ *
+ * Arguments: [rows] [poolPages] [passes]
+ */
+public class ZoneMapBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = BenchmarkUtil.intArg(args, 0, 2000000);
+        int poolPages = BenchmarkUtil.intArg(args, 1, BufferPool.DEFAULT_PAGES);
+        int passes = BenchmarkUtil.intArg(args, 2, 3);
+
+        HeapFile hf = BenchmarkUtil.createHeapFile(2, rows, (row, col) -> col == 0 ? row : row % 1000);
+        System.out.println("pages=" + hf.numPages() + " pool=" + poolPages);
+
+        for (double selectivity : new double[] {0.001, 0.01, 0.1}) {
+            Predicate pred = new Predicate(0, Predicate.Op.LESS_THAN, new IntField((int) (rows * selectivity)));
+            for (boolean pushed : new boolean[] {false, true}) {
+                for (int pass = 0; pass <= passes; pass++) {
+                    BufferPool pool = Database.resetBufferPool(poolPages);
+                    TransactionId tid = new TransactionId();
+                    long start = System.nanoTime();
+                    OpIterator op = pushed
+                            ? new SeqScan(tid, hf.getId(), "t", pred)
+                            : new Filter(pred, new SeqScan(tid, hf.getId(), "t"));
+                    op.open();
+                    long n = 0;
+                    while (op.hasNext()) {
+                        op.next();
+                        n++;
+                    }
+                    op.close();
+                    long nanos = System.nanoTime() - start;
+                    if (pass > 0) {
+                        System.out.printf("%5.1f%% %-7s pass %d: %,d rows in %.1f ms, %,d pages read%n",
+                                selectivity * 100, pushed ? "pushed" : "filter", pass, n, nanos / 1e6,
+                                pool.getHitCount() + pool.getMissCount());
+                    }
+                }
+            }
+        }
+        hf.close();
+    }
+}
@@ -85,7 +85,10 @@ public class ScanTest extends SimpleDbTestBase {
 
             @Override
             public Page readPage(PageId pid) throws NoSuchElementException {
-                readCount += 1;
+                // read-ahead calls this from background threads
+                synchronized (this) {
+                    readCount += 1;
+                }
                 return super.readPage(pid);
             }
 
@@ -110,6 +113,61 @@ public class ScanTest extends SimpleDbTestBase {
         assertEquals(0, table.readCount);
     }
 
+    /* Counts the number of readPage operations, for testScanRing. */
+    private static class CountingHeapFile extends HeapFile {
+        public CountingHeapFile(File f, TupleDesc td) {
+            super(f, td);
+        }
+
+        @Override
+        public Page readPage(PageId pid) throws NoSuchElementException {
+            // read-ahead calls this from background threads
+            synchronized (this) {
+                readCount += 1;
+            }
+            return super.readPage(pid);
+        }
+
+        public int readCount = 0;
+    }
+
+    /** Creates a one column table of the given number of full pages. */
+    private CountingHeapFile createCountingTable(int pages, List<List<Integer>> tuples)
+            throws IOException {
+        File f = SystemTestUtil.createRandomHeapFileUnopened(1, 992*pages, 1000, null, tuples);
+        TupleDesc td = Utility.getTupleDesc(1);
+        CountingHeapFile table = new CountingHeapFile(f, td);
+        Database.getCatalog().addTable(table, SystemTestUtil.getUUID());
+        return table;
+    }
+
+    /** Verifies that a scan bigger than the buffer pool reads through a
+     * private ring and does not evict pages cached by other queries.
+     * @throws TransactionAbortedException
+     * @throws DbException */
+    @Test public void testScanRing() throws IOException, DbException, TransactionAbortedException {
+        Database.resetBufferPool(20);
+        List<List<Integer>> hotTuples = new ArrayList<>();
+        CountingHeapFile hot = createCountingTable(5, hotTuples);
+        List<List<Integer>> bigTuples = new ArrayList<>();
+        CountingHeapFile big = createCountingTable(60, bigTuples);
+
+        SystemTestUtil.matchTuples(hot, hotTuples);
+        assertEquals(5, hot.readCount);
+        hot.readCount = 0;
+
+        // the big scan is still correct, and its pages bypass the pool
+        SystemTestUtil.matchTuples(big, bigTuples);
+        assertEquals(60, big.readCount);
+        SystemTestUtil.matchTuples(big, bigTuples);
+        assertEquals(120, big.readCount);
+
+        // so the small table is still cached
+        SystemTestUtil.matchTuples(hot, hotTuples);
+        assertEquals(0, hot.readCount);
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+    }
+
     /** Verifies SeqScan's getTupleDesc prefixes the table name + "." to the field names
      * @throws IOException
      */